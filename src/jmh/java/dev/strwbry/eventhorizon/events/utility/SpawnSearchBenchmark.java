@@ -0,0 +1,203 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+import dev.strwbry.eventhorizon.events.utility.LocationUtility.SpawnConfig;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.world.WorldMock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the spawn location search before and after the column scan.
+ * The legacy search is a copy of the block based walk that {@link ColumnScanner} replaced: it creates a Location and
+ * fetches Blocks on every probe, re-checks the whole clearance box for every candidate and steps up one block per try
+ * when it starts inside solid ground. The current search is {@link LocationUtility#getSafeLocation}.
+ * Both walk from the same starting points in a mock world, half of which start below the surface.
+ * Run with {@code mvn -P benchmark test-compile exec:exec -Djmh.includes=SpawnSearchBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpawnSearchBenchmark
+{
+    /** Height of the grass surface of the mock world */
+    private static final int SURFACE = 64;
+    /** Number of searches per invocation */
+    private static final int SEARCHES = 256;
+
+    /** Clearance of the searched locations */
+    @Param({"1", "3"})
+    public int clearance;
+
+    /** The mock server */
+    private ServerMock server;
+    /** The player the searches are made for */
+    private Player player;
+    /** The spawn configuration */
+    private SpawnConfig config;
+    /** Starting coordinates of the searches, as x, y, z triples */
+    private int[] starts;
+    /** Random source of the legacy walk */
+    private final Random random = new Random(42L);
+
+    /**
+     * Starts the mock server and creates a flat stone world with a grass surface.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = MockBukkit.mock();
+        WorldMock world = new WorldMock(Material.STONE, SURFACE);
+        server.addWorld(world);
+        player = server.addPlayer();
+        player.teleport(new Location(world, 0.5, SURFACE + 1, 0.5));
+        config = new SpawnConfig().setHeightClearance(clearance).setWidthClearance(clearance - 1);
+
+        Random startRandom = new Random(7L);
+        starts = new int[SEARCHES * 3];
+        for (int i = 0; i < SEARCHES; i++) {
+            starts[i * 3] = LocationUtility.getRandomOffset(startRandom, config.minSpawnRadius, config.maxSpawnRadius);
+            starts[i * 3 + 1] = SURFACE + LocationUtility.getRandomOffset(startRandom, config.minYRadius, config.maxYRadius);
+            starts[i * 3 + 2] = LocationUtility.getRandomOffset(startRandom, config.minSpawnRadius, config.maxSpawnRadius);
+        }
+    }
+
+    /**
+     * Stops the mock server.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Searches with the block based walk the column scan replaced.
+     *
+     * @param blackhole Consumes the found locations
+     */
+    @Benchmark
+    public void legacyBlockWalk(Blackhole blackhole) {
+        for (int i = 0; i < SEARCHES; i++) {
+            blackhole.consume(legacySafeLocation(player, starts[i * 3], starts[i * 3 + 1], starts[i * 3 + 2], config));
+        }
+    }
+
+    /**
+     * Searches with the current column scan walk.
+     *
+     * @param blackhole Consumes the found locations
+     */
+    @Benchmark
+    public void columnScanWalk(Blackhole blackhole) {
+        for (int i = 0; i < SEARCHES; i++) {
+            blackhole.consume(LocationUtility.getSafeLocation(player, starts[i * 3], starts[i * 3 + 1], starts[i * 3 + 2], config));
+        }
+    }
+
+    /**
+     * Copy of the block based walk before the column scan.
+     *
+     * @param player The player the location is searched for
+     * @param initialX Initial X coordinate
+     * @param initialY Initial Y coordinate
+     * @param initialZ Initial Z coordinate
+     * @param config The spawn configuration
+     * @return The safe location, or null if none was found
+     */
+    private Location legacySafeLocation(Player player, int initialX, int initialY, int initialZ, SpawnConfig config) {
+        World world = player.getWorld();
+        int maxTries = config.maxSpawnAttempts * 3;
+        int x = initialX;
+        int y = Math.max(world.getMinHeight(), Math.min(initialY, world.getMaxHeight() - 3));
+        int z = initialZ;
+
+        for (int currentTry = 0; currentTry < maxTries; currentTry++) {
+            Location location = new Location(world, x, y, z);
+            if (legacyIsSafe(location, config)) {
+                location.setX(x + 0.5);
+                location.setZ(z + 0.5);
+                return location;
+            }
+
+            Block block = location.getBlock();
+            Block blockBelow = location.clone().subtract(0, 1, 0).getBlock();
+            if (block.getType().isSolid()) {
+                y++;
+            } else if (!blockBelow.getType().isSolid() && !LocationUtility.isLiquidMaterial(blockBelow.getType(), config)) {
+                y--;
+            } else {
+                x += random.nextInt(3) - 1;
+                z += random.nextInt(3) - 1;
+            }
+
+            Location playerLocation = player.getLocation();
+            double distanceSquared = Math.pow(playerLocation.getX() - x, 2) + Math.pow(playerLocation.getZ() - z, 2);
+            if (distanceSquared > Math.pow(config.maxSpawnRadius, 2)) {
+                x = playerLocation.getBlockX() + LocationUtility.getRandomOffset(random, config.minSpawnRadius, config.maxSpawnRadius);
+                z = playerLocation.getBlockZ() + LocationUtility.getRandomOffset(random, config.minSpawnRadius, config.maxSpawnRadius);
+                y = playerLocation.getBlockY() + LocationUtility.getRandomOffset(random, config.minYRadius, config.maxYRadius);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copy of the block based safety check before the column scan.
+     *
+     * @param location The location to check
+     * @param config The spawn configuration
+     * @return true if the location is safe
+     */
+    private static boolean legacyIsSafe(Location location, SpawnConfig config) {
+        World world = location.getWorld();
+        if (location.getBlockY() < world.getMinHeight() || location.getBlockY() >= world.getMaxHeight()) {
+            return false;
+        }
+        Block block = location.getBlock();
+        Block blockBelow = location.clone().subtract(0, 1, 0).getBlock();
+        if (!legacyIsSafeMaterial(block.getType(), config) || !blockBelow.getType().isSolid()) {
+            return false;
+        }
+
+        int baseX = location.getBlockX();
+        int baseY = location.getBlockY();
+        int baseZ = location.getBlockZ();
+        int heightBlocks = (int) Math.ceil(config.heightClearance);
+        int widthBlocks = (int) Math.ceil(config.widthClearance);
+        if (baseY + config.heightClearance >= world.getMaxHeight()) {
+            return false;
+        }
+        int start = config.widthClearance % 2 == 1 ? -widthBlocks : 0;
+        for (int dy = 0; dy < heightBlocks; dy++) {
+            for (int dx = start; dx <= widthBlocks; dx++) {
+                for (int dz = start; dz <= widthBlocks; dz++) {
+                    if (!legacyIsSafeMaterial(world.getBlockAt(baseX + dx, baseY + dy, baseZ + dz).getType(), config)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy of the material check before the column scan.
+     *
+     * @param type The material
+     * @param config The spawn configuration
+     * @return true if the material is safe to occupy
+     */
+    private static boolean legacyIsSafeMaterial(Material type, SpawnConfig config) {
+        return type == Material.AIR || LocationUtility.isLiquidMaterial(type, config);
+    }
+}
@@ -0,0 +1,183 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.sk89q.worldedit.world.block.BlockType;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the per-block mask test over a synthetic region of about 10M blocks.
+ * The region is a column of 2442 chunk sections: a quarter empty, most of the rest pure stone, and some mixed
+ * sections with a few candidate blocks, roughly what a large surface event scans.
+ * Blocks are stored as ordinals; every block type has a single state, so a block's ordinal is its type's internal id.
+ * <ul>
+ *     <li>{@code perEditMask} compiles the mask for the edit and tests every block through a wrapper, the shape of
+ *     the per-edit BlockTypeMask wrapped in an InverseMask that {@link BlockTypeSetMask} replaced.</li>
+ *     <li>{@code sharedBitsetMask} tests every block against the shared {@link BlockTypeSet}.</li>
+ *     <li>{@code sectionPrefilter} asks {@link SectionPrefilter#appliesLayer} first and only tests the blocks of
+ *     sections holding a candidate.</li>
+ * </ul>
+ * Run with {@code mvn -P benchmark test-compile exec:exec -Djmh.includes=BlockMaskBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockMaskBenchmark
+{
+    /** Blocks per chunk section */
+    private static final int SECTION_VOLUME = 4096;
+    /** Number of sections, about 10M blocks */
+    private static final int SECTIONS = 10_000_000 / SECTION_VOLUME + 1;
+    /** Number of block types in the synthetic registry */
+    private static final int TYPES = 1024;
+    /** Internal id of air */
+    private static final int AIR = 0;
+    /** Internal id of stone */
+    private static final int STONE = 1;
+    /** Internal id of dirt */
+    private static final int DIRT = 2;
+    /** Internal ids of the replaced block types */
+    private static final int[] REPLACED = {3, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19};
+
+    /** Whether the mask is inverted */
+    @Param({"false", "true"})
+    public boolean inverted;
+
+    /** The replaced block types, as handed to an edit */
+    private List<BlockType> replacedTypes;
+    /** The replaced block types, compiled once */
+    private BlockTypeSet sharedSet;
+    /** The section prefilter of the replaced block types */
+    private SectionPrefilter prefilter;
+    /** Block ordinals of every section, null for empty sections */
+    private char[][] sections;
+    /** The chunk the sections are read from by the prefilter */
+    private IChunk chunk;
+
+    /**
+     * Creates the synthetic registry and region.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        replacedTypes = new ArrayList<>();
+        for (int id : REPLACED) {
+            BlockType type = mock(BlockType.class);
+            when(type.getInternalId()).thenReturn(id);
+            replacedTypes.add(type);
+        }
+        sharedSet = BlockTypeSet.of(replacedTypes);
+
+        boolean[] candidates = new boolean[TYPES];
+        for (int ordinal = 0; ordinal < TYPES; ordinal++) {
+            candidates[ordinal] = sharedSet.containsId(ordinal) != inverted;
+        }
+        prefilter = new SectionPrefilter(candidates, AIR, null);
+
+        Random random = new Random(42L);
+        sections = new char[SECTIONS][];
+        for (int layer = 0; layer < SECTIONS; layer++) {
+            double kind = random.nextDouble();
+            if (kind < 0.25) {
+                continue;
+            }
+            char[] section = new char[SECTION_VOLUME];
+            for (int i = 0; i < SECTION_VOLUME; i++) {
+                if (kind < 0.85) {
+                    section[i] = STONE;
+                } else {
+                    double block = random.nextDouble();
+                    section[i] = (char) (block < 0.02 ? REPLACED[random.nextInt(REPLACED.length)] : block < 0.5 ? DIRT : STONE);
+                }
+            }
+            sections[layer] = section;
+        }
+        chunk = (IChunk) Proxy.newProxyInstance(IChunk.class.getClassLoader(), new Class<?>[]{IChunk.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "hasSection" -> sections[(int) args[0]] != null;
+                    case "load" -> sections[(int) args[0]];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Compiles the mask for the edit and tests every block through an inverting wrapper.
+     *
+     * @return The number of matching blocks
+     */
+    @Benchmark
+    public long perEditMask() {
+        BlockTypeSet compiled = BlockTypeSet.of(new ArrayList<>(replacedTypes));
+        IntPredicate mask = compiled::containsId;
+        return countMatches(inverted ? mask.negate() : mask);
+    }
+
+    /**
+     * Tests every block against the shared set.
+     *
+     * @return The number of matching blocks
+     */
+    @Benchmark
+    public long sharedBitsetMask() {
+        return countMatches(id -> sharedSet.containsId(id) != inverted);
+    }
+
+    /**
+     * Tests the blocks of the sections the prefilter lets through against the shared set.
+     *
+     * @return The number of matching blocks
+     */
+    @Benchmark
+    public long sectionPrefilter() {
+        long matches = 0;
+        for (int layer = 0; layer < SECTIONS; layer++) {
+            if (prefilter.appliesLayer(chunk, layer)) {
+                matches += countMatches(layer, id -> sharedSet.containsId(id) != inverted);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Tests every block of the region.
+     *
+     * @param mask The per-block test, by internal id
+     * @return The number of matching blocks
+     */
+    private long countMatches(IntPredicate mask) {
+        long matches = 0;
+        for (int layer = 0; layer < SECTIONS; layer++) {
+            matches += countMatches(layer, mask);
+        }
+        return matches;
+    }
+
+    /**
+     * Tests every block of a section, empty sections hold air.
+     *
+     * @param layer The section index
+     * @param mask The per-block test, by internal id
+     * @return The number of matching blocks
+     */
+    private long countMatches(int layer, IntPredicate mask) {
+        char[] section = sections[layer];
+        long matches = 0;
+        for (int i = 0; i < SECTION_VOLUME; i++) {
+            if (mask.test(section == null ? AIR : section[i])) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
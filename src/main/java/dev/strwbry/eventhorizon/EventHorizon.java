@@ -3,8 +3,13 @@ package dev.strwbry.eventhorizon;
 import dev.strwbry.eventhorizon.commands.CommandRootEventHorizon;
 import dev.strwbry.eventhorizon.events.EventInitializer;
 import dev.strwbry.eventhorizon.events.EventManager;
+import dev.strwbry.eventhorizon.events.utility.ChunkPrefetcher;
+import dev.strwbry.eventhorizon.events.utility.EntityBudget;
 import dev.strwbry.eventhorizon.events.utility.fawe.BlockMasks;
 import dev.strwbry.eventhorizon.events.utility.fawe.RandomPatterns;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.DeferredRestores;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.EditJournal;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.ShutdownRestore;
 import dev.strwbry.eventhorizon.listeners.ListenerManager;
 import io.papermc.paper.plugin.lifecycle.event.types.LifecycleEvents;
 import org.bstats.bukkit.Metrics;
@@ -83,6 +88,8 @@ public final class EventHorizon extends JavaPlugin implements CommandExecutor
         ListenerManager.initializePlayerDropItem();
         ListenerManager.initializePlayerGamemodeChange();
         ListenerManager.unregisterAllListeners();
+        // Kept registered for the whole plugin lifetime, so entities from before a reload keep counting
+        EntityBudget.initialize();
 
         if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI")) { //
             new PlaceholderEventHorizon().register();
@@ -98,15 +105,26 @@ public final class EventHorizon extends JavaPlugin implements CommandExecutor
         // Possibly could just be: new Metrics(this, pluginId);
         Metrics metrics = new Metrics(this, pluginId);
 
+        // Undo block edits left behind by a crash or restart once the worlds are loaded, the journal may hold
+        // edits a shutdown couldn't restore in time even while journaling is disabled
+        Bukkit.getScheduler().runTask(this, EditJournal::recover);
+        // Pick up restores deferred for chunks that weren't loaded when an undo ran
+        Bukkit.getScheduler().runTask(this, DeferredRestores::load);
+
 
     }
 
     /**
      * Called when the plugin is disabled.
-     * Performs cleanup operations and logs shutdown message.
+     * Restores outstanding block edits, performs cleanup operations and logs shutdown message.
      */
     @Override
     public void onDisable() {
+        // Restore before prefetched chunks are released, so they don't have to load again
+        ShutdownRestore.run();
+        ChunkPrefetcher.releaseAll();
+        EditJournal.shutdown();
+        ListenerManager.unregisterEntityBudget();
         getLogger().info("EventHorizon has been disabled.");
     }
 
@@ -0,0 +1,139 @@
+package dev.strwbry.eventhorizon.commands;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import dev.strwbry.eventhorizon.events.utility.fawe.EditMetrics;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import io.papermc.paper.command.brigadier.CommandSourceStack;
+import io.papermc.paper.command.brigadier.Commands;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Command handler for inspecting the recorded block edit metrics.
+ * Without arguments it lists the totals of every event and the most recent edits,
+ * with an event name it lists that event's totals per player.
+ * Requires operator permissions to execute.
+ */
+public class CommandEditMetrics
+{
+    /** Number of recent edits listed without an event name */
+    private static final int RECENT_EDITS = 5;
+
+    /**
+     * Builds the edit metrics command structure with an optional event name argument.
+     *
+     * @param commandName The name of the command to be registered
+     * @return LiteralCommandNode containing the configured command structure
+     */
+    public static LiteralCommandNode<CommandSourceStack> buildCommand(final String commandName) {
+        return Commands.literal(commandName)
+                .requires(sender -> sender.getSender().isOp())
+                .executes(CommandEditMetrics::executeSummary)
+                .then(Commands.argument("eventName", StringArgumentType.word())
+                        .suggests(CommandEditMetrics::getCommandSuggestions)
+                        .executes(CommandEditMetrics::executeEventSummary)
+                )
+                .build();
+    }
+
+    /**
+     * Lists the totals of every event and the most recent edits.
+     *
+     * @param ctx Command context of the sender
+     * @return Command success status
+     */
+    private static int executeSummary(CommandContext<CommandSourceStack> ctx) {
+        CommandSender sender = ctx.getSource().getSender();
+
+        Map<String, EditMetrics.Summary> summaries = EditMetrics.summarizeByEvent();
+        if (summaries.isEmpty()) {
+            MsgUtility.message(sender, "<gray>No block edits recorded yet");
+            return Command.SINGLE_SUCCESS;
+        }
+        MsgUtility.message(sender, "<green>Block edit metrics (" + EditMetrics.size() + " edits recorded):");
+        summaries.forEach((eventName, summary) -> MsgUtility.message(sender, formatSummary(eventName, summary)));
+
+        MsgUtility.message(sender, "<green>Most recent edits:");
+        for (EditMetrics.EditRecord record : EditMetrics.getRecent(RECENT_EDITS)) {
+            MsgUtility.message(sender, "<gray>" + record.eventName() + " for " + record.owner() + " in " + record.world() +
+                    ": changed " + record.blocksChanged() + "/" + record.regionVolume() + " blocks in " +
+                    record.chunksTouched() + " chunks, " + String.format("%.1f", record.durationMillis()) + "ms, " +
+                    formatBytes(record.retainedBytes()) + " retained");
+        }
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Lists the totals of an event per player.
+     *
+     * @param ctx Command context containing the event name argument
+     * @return Command success status
+     */
+    private static int executeEventSummary(CommandContext<CommandSourceStack> ctx) {
+        CommandSender sender = ctx.getSource().getSender();
+        final String eventName = StringArgumentType.getString(ctx, "eventName");
+
+        Map<String, EditMetrics.Summary> summaries = EditMetrics.summarizeByOwner(eventName);
+        if (summaries.isEmpty()) {
+            MsgUtility.message(sender, "<gray>No block edits recorded for event: " + eventName);
+            return Command.SINGLE_SUCCESS;
+        }
+        MsgUtility.message(sender, "<green>Block edit metrics of " + eventName + " per player:");
+        summaries.forEach((owner, summary) -> MsgUtility.message(sender, formatSummary(owner, summary)));
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Formats the totals of a group of edits as a single line.
+     *
+     * @param name Name of the group
+     * @param summary Totals of the group
+     * @return The formatted line
+     */
+    private static String formatSummary(String name, EditMetrics.Summary summary) {
+        return "<gray>" + name + ": " + summary.edits() + " edits, changed " + summary.blocksChanged() + "/" +
+                summary.regionVolume() + " blocks in " + summary.chunksTouched() + " chunks, " +
+                String.format("%.1f", summary.durationNanos() / 1_000_000.0) + "ms total, slowest " +
+                String.format("%.1f", summary.slowestNanos() / 1_000_000.0) + "ms, " +
+                formatBytes(summary.retainedBytes()) + " retained";
+    }
+
+    /**
+     * Formats a byte count in the largest fitting unit.
+     *
+     * @param bytes The byte count
+     * @return The formatted size
+     */
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + "B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1fKB", bytes / 1024.0);
+        }
+        return String.format("%.1fMB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Provides tab completion suggestions for the events with recorded edits.
+     *
+     * @param ctx Command context for the suggestion request
+     * @param builder SuggestionsBuilder for adding event name suggestions
+     * @return CompletableFuture containing the event name suggestions
+     */
+    private static CompletableFuture<Suggestions> getCommandSuggestions(final CommandContext<CommandSourceStack> ctx, final SuggestionsBuilder builder) {
+        List<String> eventNames = List.copyOf(EditMetrics.summarizeByEvent().keySet());
+        for (String eventName : eventNames) {
+            builder.suggest(eventName);
+        }
+        return builder.buildFuture();
+    }
+}
@@ -70,6 +70,8 @@ public class CommandHelp {
         commands.put("reloadconfig", "Reloads the Event Horizon configuration file.");
         commands.put("resume", "Resumes the Event Horizon tournament timer.");
         commands.put("trigger", "Allows user to manually trigger events by name.");
+        commands.put("editmetrics", "Shows the recorded block edit metrics, per player for a given event name.");
+        commands.put("undoevent", "Lists event runs with block edits, or undoes a single run by id, optionally only for one player.");
     }
 }
 
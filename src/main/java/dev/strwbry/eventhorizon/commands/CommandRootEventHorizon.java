@@ -35,6 +35,8 @@ public class CommandRootEventHorizon
                 .then(CommandReloadConfig.buildCommand("reloadconfig"))
                 .then(CommandTrigger.buildCommand("trigger"))
                 .then(CommandTerminateEvent.buildCommand("terminateevent"))
+                .then(CommandEditMetrics.buildCommand("editmetrics"))
+                .then(CommandUndoEvent.buildCommand("undoevent"))
 
 
                 .then(Commands.argument("subcommands", StringArgumentType.word())
@@ -60,6 +62,8 @@ public class CommandRootEventHorizon
         builder.suggest("reloadconfig");
         builder.suggest("trigger");
         builder.suggest("terminateevent");
+        builder.suggest("editmetrics");
+        builder.suggest("undoevent");
         return builder.buildFuture();
     }
 }
@@ -1,5 +1,124 @@
 package dev.strwbry.eventhorizon.commands;
 
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.LiteralMessage;
+import com.mojang.brigadier.arguments.LongArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import dev.strwbry.eventhorizon.events.utility.fawe.BlockEditor;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.EditHistory;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import io.papermc.paper.command.brigadier.CommandSourceStack;
+import io.papermc.paper.command.brigadier.Commands;
+import org.bukkit.command.CommandSender;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Command handler for undoing the block edits of a single event run.
+ * Without arguments it lists the event runs with recorded edits, with a run id it undoes that run,
+ * and with a run id and a player name it undoes only the edits made for that player.
+ * Edits of other runs stay in place. Requires operator permissions to execute.
+ */
 public class CommandUndoEvent
 {
+    /**
+     * Builds the undo event command structure with the run id and player arguments.
+     *
+     * @param commandName The name of the command to be registered
+     * @return LiteralCommandNode containing the configured command structure
+     */
+    public static LiteralCommandNode<CommandSourceStack> buildCommand(final String commandName) {
+        return Commands.literal(commandName)
+                .requires(sender -> sender.getSender().isOp())
+                .executes(CommandUndoEvent::executeList)
+                .then(Commands.argument("runId", LongArgumentType.longArg(1))
+                        .suggests(CommandUndoEvent::getRunSuggestions)
+                        .executes(ctx -> executeUndo(ctx, null))
+                        .then(Commands.argument("player", StringArgumentType.word())
+                                .suggests(CommandUndoEvent::getPlayerSuggestions)
+                                .executes(ctx -> executeUndo(ctx, StringArgumentType.getString(ctx, "player")))
+                        )
+                )
+                .build();
+    }
+
+    /**
+     * Lists the event runs with recorded edits.
+     *
+     * @param ctx Command context of the sender
+     * @return Command success status
+     */
+    private static int executeList(CommandContext<CommandSourceStack> ctx) {
+        CommandSender sender = ctx.getSource().getSender();
+
+        List<EditHistory.RunSummary> runs = EditHistory.getRuns();
+        if (runs.isEmpty()) {
+            MsgUtility.message(sender, "<gray>No event runs with block edits to undo");
+            return Command.SINGLE_SUCCESS;
+        }
+        MsgUtility.message(sender, "<green>Event runs with block edits:");
+        for (EditHistory.RunSummary run : runs) {
+            MsgUtility.message(sender, "<gray>#" + run.runId() + " " + run.eventName() + ": " + run.edits() + " edits, " +
+                    run.changeCount() + " blocks, players: " + String.join(", ", run.owners()));
+        }
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Undoes the edits of an event run, or of a player's part of it.
+     *
+     * @param ctx Command context containing the run id argument
+     * @param playerName Name of the player whose edits are undone, or null for the whole run
+     * @return Command success status
+     */
+    private static int executeUndo(CommandContext<CommandSourceStack> ctx, String playerName) {
+        CommandSender sender = ctx.getSource().getSender();
+        final long runId = LongArgumentType.getLong(ctx, "runId");
+
+        String target = "#" + runId + (playerName == null ? "" : " for " + playerName);
+        if (EditHistory.getRuns().stream().noneMatch(run -> run.runId() == runId)) {
+            MsgUtility.message(sender, "<red>No block edits recorded for event run " + target);
+            return Command.SINGLE_SUCCESS;
+        }
+        MsgUtility.message(sender, "<green>Undoing block edits of event run " + target + "...");
+        BlockEditor.undoRun(runId, playerName).thenAccept(restored ->
+                MsgUtility.message(sender, "<green>Undo of event run " + target + " finished, restored " + restored + " blocks"));
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /**
+     * Provides tab completion suggestions for the run ids, with the run's event name as tooltip.
+     *
+     * @param ctx Command context for the suggestion request
+     * @param builder SuggestionsBuilder for adding run id suggestions
+     * @return CompletableFuture containing the run id suggestions
+     */
+    private static CompletableFuture<Suggestions> getRunSuggestions(final CommandContext<CommandSourceStack> ctx, final SuggestionsBuilder builder) {
+        for (EditHistory.RunSummary run : EditHistory.getRuns()) {
+            builder.suggest(String.valueOf(run.runId()), new LiteralMessage(run.eventName()));
+        }
+        return builder.buildFuture();
+    }
+
+    /**
+     * Provides tab completion suggestions for the players of the selected run.
+     *
+     * @param ctx Command context containing the run id argument
+     * @param builder SuggestionsBuilder for adding player name suggestions
+     * @return CompletableFuture containing the player name suggestions
+     */
+    private static CompletableFuture<Suggestions> getPlayerSuggestions(final CommandContext<CommandSourceStack> ctx, final SuggestionsBuilder builder) {
+        final long runId = LongArgumentType.getLong(ctx, "runId");
+        for (EditHistory.RunSummary run : EditHistory.getRuns()) {
+            if (run.runId() == runId) {
+                run.owners().forEach(builder::suggest);
+            }
+        }
+        return builder.buildFuture();
+    }
 }
@@ -1,11 +1,29 @@
 package dev.strwbry.eventhorizon.events.blockmodification;
 
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.block.BlockType;
+import dev.strwbry.eventhorizon.EventHorizon;
 import dev.strwbry.eventhorizon.events.BaseEvent;
 import dev.strwbry.eventhorizon.events.EventClassification;
+import dev.strwbry.eventhorizon.events.utility.fawe.BlockBudgetPlanner;
 import dev.strwbry.eventhorizon.events.utility.fawe.BlockEditor;
+import dev.strwbry.eventhorizon.events.utility.fawe.BlockRule;
+import dev.strwbry.eventhorizon.events.utility.fawe.BlockRuleSet;
+import dev.strwbry.eventhorizon.events.utility.fawe.EditMetrics;
+import dev.strwbry.eventhorizon.events.utility.fawe.EditProfile;
+import dev.strwbry.eventhorizon.events.utility.fawe.EditResult;
+import dev.strwbry.eventhorizon.events.utility.fawe.LazyBlockEditor;
+import dev.strwbry.eventhorizon.events.utility.fawe.ProgressiveEdit;
+import dev.strwbry.eventhorizon.events.utility.fawe.RegionPlanner;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.EditTag;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.UndoExecutor;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericCylindricalRegion;
 import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericRegion;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericSurfaceRegion;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
 import dev.strwbry.eventhorizon.utility.MsgUtility;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -13,8 +31,13 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Base class for block modification events that handles replacing blocks in specified regions.
@@ -32,6 +55,32 @@ public abstract class BaseBlockModification extends BaseEvent
     protected  boolean isMaskInverted;
     /** Collection of block types to be replaced */
     protected Collection<BlockType> blockTypesToReplace;
+    /** Whether edits are submitted to FAWE's worker threads instead of running on the server thread */
+    protected boolean useAsyncEdits = AdvConfig.getBlockModAsyncEdits();
+    /** Whether overlapping player regions are merged before editing */
+    protected boolean useRegionMerging = AdvConfig.getBlockModMergeRegions();
+    /** Whether edits wait for a running undo of a previous event to finish */
+    protected boolean waitForUndo = AdvConfig.getBlockModUndoWaitBeforeNextEdit();
+    /** The edit waiting for a running undo to finish, null if no edit is waiting */
+    protected CompletableFuture<Void> deferredEdit;
+    /** Incremented whenever the event's edits are stopped, so an edit deferred before that is dropped */
+    protected int stopCount = 0;
+    /** Whether edits are applied chunk by chunk as players visit them for the whole event */
+    protected boolean useLazyEdits = AdvConfig.getBlockModLazyEnabled();
+    /** The lazy edit rule of the running event, null if edits aren't applied lazily */
+    protected LazyBlockEditor.Rule lazyRule;
+    /** Whether edits are applied nearest-first under a per-tick block budget */
+    protected boolean useProgressiveEdits = AdvConfig.getBlockModProgressiveEnabled();
+    /** The progressive edit of the running event, null if edits aren't applied progressively */
+    protected ProgressiveEdit progressiveEdit;
+    /** Whether sub-events replacing blocks are fused into the event's own edit */
+    protected boolean useFusedRules = AdvConfig.getBlockModFuseSubEvents();
+    /** Whether player regions are scaled to keep the event within the total block budget */
+    protected boolean useBlockBudget = AdvConfig.getBlockModBudgetEnabled();
+    /** The budget plan of the latest run, null if the budget wasn't applied */
+    protected BlockBudgetPlanner.Plan budgetPlan;
+    /** Id of the latest run of the event in the edit history, {@link EditTag#UNTAGGED_RUN} before the first run */
+    protected long editRunId = EditTag.UNTAGGED_RUN;
 
     /**
      * Constructs a block modification event using a single replacement block.
@@ -69,6 +118,24 @@ public abstract class BaseBlockModification extends BaseEvent
         this.isMaskInverted = isMaskInverted;
     }
 
+    /**
+     * Creates the region of a cylindrical event, optionally limited to the terrain surface.
+     * Surface regions take their depth, the blocks above the surface and whether caves are included from the config.
+     *
+     * @param surfaceOnly Whether only a band around the terrain surface is edited
+     * @param radius The radius of the cylinder
+     * @param height The height of the cylinder
+     * @param heightOffset The vertical offset from the center point
+     * @return A GenericSurfaceRegion if surfaceOnly is set, a GenericCylindricalRegion otherwise
+     */
+    protected static GenericRegion cylinderRegion(boolean surfaceOnly, int radius, int height, int heightOffset) {
+        if (!surfaceOnly) {
+            return new GenericCylindricalRegion(radius, height, heightOffset);
+        }
+        return new GenericSurfaceRegion(radius, height, heightOffset, AdvConfig.getBlockModSurfaceDepth(),
+                AdvConfig.getBlockModSurfaceAbove(), AdvConfig.getBlockModSurfaceIncludeCaves());
+    }
+
     /**
      * Executes the block modification event for all players.
      *
@@ -82,13 +149,97 @@ public abstract class BaseBlockModification extends BaseEvent
         applyBlockEditToAllPlayers(replacingPattern, blockTypesToReplace, isMaskInverted);
     }
 
+    /**
+     * A sub-event whose replacement can be fused into the edit of its parent event.
+     *
+     * @param event The sub-event
+     * @param isUsingPattern Whether the sub-event uses pattern-based replacement instead of single block replacement
+     */
+    public record FusedSubEvent(BaseBlockModification event, boolean isUsingPattern) {
+    }
+
+    /**
+     * Executes the block modification event together with the replacements of its sub-events in a single pass.
+     * The event's own replacement takes priority, the sub-event rules follow in the given order. Every rule is
+     * applied within the event's region and recorded in one change set under the event's run.
+     * The fused edit is applied with the event's {@link EditProfile}, so sub-events with a different profile
+     * aren't fused and are executed on their own on the next server tick instead.
+     *
+     * @param isUsingPattern Whether to use pattern-based replacement instead of single block replacement
+     * @param subEvents The sub-events to fuse into the edit
+     */
+    public void executeFused(boolean isUsingPattern, FusedSubEvent... subEvents) {
+        EditProfile profile = EditProfile.forEvent(eventName);
+        List<BlockRule> rules = new ArrayList<>();
+        rules.add(toRule(isUsingPattern));
+        for (FusedSubEvent subEvent : subEvents) {
+            if (EditProfile.forEvent(subEvent.event().eventName).equals(profile)) {
+                rules.add(subEvent.event().toRule(subEvent.isUsingPattern()));
+            } else {
+                Bukkit.getScheduler().runTask(EventHorizon.getPlugin(),
+                        task -> subEvent.event().execute(subEvent.isUsingPattern()));
+            }
+        }
+        BlockRuleSet ruleSet = new BlockRuleSet(rules);
+        applyBlockEditToAllPlayers(ruleSet, ruleSet.getBlockTypesToReplace(), false);
+    }
+
+    /**
+     * Gets the replacement of the event as a rule that can be fused into another event's edit.
+     *
+     * @param isUsingPattern Whether to use pattern-based replacement instead of single block replacement
+     * @return The rule replacing the event's block types
+     */
+    public BlockRule toRule(boolean isUsingPattern) {
+        Pattern pattern = isUsingPattern ? replacingPattern : BukkitAdapter.asBlockType(replacementBlock).getDefaultState();
+        return new BlockRule(pattern, blockTypesToReplace, isMaskInverted);
+    }
+
     /**
      * Terminates the block modification event and undoes all modifications.
      */
     public void terminate(){
+        stopIncrementalEdits();
         BlockEditor.undoAllBlockModifications();
     }
 
+    /**
+     * Stops applying edits lazily or progressively, blocks that were already edited keep their changes.
+     * An edit still waiting for a running undo is cancelled.
+     */
+    protected void stopIncrementalEdits() {
+        stopCount++;
+        if (deferredEdit != null) {
+            deferredEdit.cancel(false);
+            deferredEdit = null;
+        }
+        LazyBlockEditor.stop(lazyRule);
+        lazyRule = null;
+        if (progressiveEdit != null) {
+            progressiveEdit.cancel();
+            progressiveEdit = null;
+        }
+    }
+
+    /**
+     * Gets the id under which the latest run of the event recorded its edits.
+     * The id can be passed to {@link BlockEditor#undoRun(long, String)} to undo that run only.
+     *
+     * @return The run id, {@link EditTag#UNTAGGED_RUN} if the event hasn't edited any blocks yet
+     */
+    public long getEditRunId() {
+        return editRunId;
+    }
+
+    /**
+     * Gets the block budget plan of the latest run of the event.
+     *
+     * @return The plan, or null if the event hasn't run with the block budget enabled
+     */
+    public BlockBudgetPlanner.Plan getBudgetPlan() {
+        return budgetPlan;
+    }
+
     /**
      * Applies block modifications to all online players using a single replacement block.
      *
@@ -97,31 +248,142 @@ public abstract class BaseBlockModification extends BaseEvent
      * @param isMaskInverted Whether to invert the block type mask
      */
     public void applyBlockEditToAllPlayers(Material replacementBlock, Collection<BlockType> blockTypesToReplace, boolean isMaskInverted) {
-        int successCount = 0;
-        Set<Player> players = getAvailableEventPlayers();
-
-        for (Player player : players) {
-            BlockEditor.replaceBlocksInRegion(this.region.getRegion(player), replacementBlock, blockTypesToReplace, isMaskInverted);
-            successCount++;
+        BlockType blockType = BukkitAdapter.asBlockType(replacementBlock);
+        if (blockType == null) {
+            MsgUtility.warning("Block type Null");
+            return;
         }
-        MsgUtility.log("<green>Applied block edit to " + successCount + "/" + players.size() + " players for event: " + this.eventName);
+        applyBlockEditToAllPlayers(blockType.getDefaultState(), blockTypesToReplace, isMaskInverted);
     }
 
     /**
      * Applies block modifications to all online players using a pattern.
+     * With {@link #useRegionMerging} overlapping player regions are merged so shared blocks are only edited once.
+     * With {@link #useAsyncEdits} the edits are submitted concurrently to FAWE's worker threads.
+     * With {@link #waitForUndo} the edits are deferred until a running undo of a previous event has finished, unless
+     * the event is terminated first.
+     * With {@link #useLazyEdits} nothing is edited up front; the edit is registered with the {@link LazyBlockEditor}
+     * and applied to the chunks of each player's region as they are visited until the event terminates.
+     * With {@link #useProgressiveEdits} the regions are split into chunk pieces that are edited nearest to the players
+     * first under a per-tick block budget.
+     * With {@link #useBlockBudget} the player regions are shrunk by the {@link BlockBudgetPlanner} so all of them
+     * together stay within the total block budget, and the estimate is logged before anything is edited.
+     * Every edit is recorded under a new run id, so the edits of this run can be undone on their own.
      *
      * @param replacingPattern The pattern to replace blocks with
      * @param blockTypesToReplace Collection of block types to be replaced
      * @param isMaskInverted Whether to invert the block type mask
      */
     public void applyBlockEditToAllPlayers(Pattern replacingPattern, Collection<BlockType> blockTypesToReplace, boolean isMaskInverted) {
-        int successCount = 0;
+        if (waitForUndo && UndoExecutor.isRunning()) {
+            MsgUtility.log("Waiting for the previous block undo to finish before applying event: " + this.eventName);
+            int stopCountBefore = stopCount;
+            deferredEdit = UndoExecutor.whenIdle().thenRun(() -> {
+                // The event was terminated or undone while waiting for the undo
+                if (stopCount != stopCountBefore) {
+                    return;
+                }
+                deferredEdit = null;
+                applyBlockEditToAllPlayers(replacingPattern, blockTypesToReplace, isMaskInverted);
+            });
+            return;
+        }
+
+        editRunId = EditTag.nextRunId();
         Set<Player> players = getAvailableEventPlayers();
+        GenericRegion regionTemplate = this.region;
+        if (useBlockBudget) {
+            budgetPlan = BlockBudgetPlanner.plan(this.region, players.size());
+            regionTemplate = budgetPlan.region();
+            MsgUtility.log("Block budget for event " + this.eventName + ": " + budgetPlan.describe());
+        }
+        if (useLazyEdits) {
+            stopIncrementalEdits();
+            lazyRule = LazyBlockEditor.start(this.eventName, editRunId, regionTemplate, players, replacingPattern, blockTypesToReplace, isMaskInverted, useAsyncEdits);
+            return;
+        }
 
+        List<Region> regions = new ArrayList<>();
+        Map<Region, String> owners = new IdentityHashMap<>();
         for (Player player : players) {
-            BlockEditor.replaceBlocksInRegion(this.region.getRegion(player), replacingPattern, blockTypesToReplace, isMaskInverted);
-            successCount++;
+            Region playerRegion = regionTemplate.getRegion(player);
+            regions.add(playerRegion);
+            owners.put(playerRegion, player.getName());
+        }
+        EditTag runTag = new EditTag(editRunId, this.eventName, "unknown");
+
+        long scannedBefore = -1;
+        if (useRegionMerging) {
+            RegionPlanner.Plan plan = RegionPlanner.plan(regions);
+            regions = plan.regions();
+            scannedBefore = plan.scannedBefore();
         }
-        MsgUtility.log("<green>Applied block edit to " + successCount + "/" + players.size() + " players for event: " + this.eventName);
+
+        if (useProgressiveEdits) {
+            stopIncrementalEdits();
+            List<BlockVector3> centers = new ArrayList<>();
+            for (Player player : players) {
+                centers.add(BlockVector3.at(player.getLocation().getBlockX(), player.getLocation().getBlockY(), player.getLocation().getBlockZ()));
+            }
+            progressiveEdit = ProgressiveEdit.start(regions, centers, replacingPattern, blockTypesToReplace, isMaskInverted, useAsyncEdits,
+                    piece -> runTag.withOwner(EditMetrics.ownerOf(piece, owners)));
+            logEditResults(progressiveEdit.getEdits(), players.size(), scannedBefore, owners);
+            return;
+        }
+
+        List<CompletableFuture<EditResult>> edits = new ArrayList<>();
+        for (Region editRegion : regions) {
+            EditTag tag = runTag.withOwner(EditMetrics.ownerOf(editRegion, owners));
+            edits.add(useAsyncEdits
+                    ? BlockEditor.replaceBlocksInRegionAsync(editRegion, replacingPattern, blockTypesToReplace, isMaskInverted, tag)
+                    : CompletableFuture.completedFuture(BlockEditor.replaceBlocksInRegion(editRegion, replacingPattern, blockTypesToReplace, isMaskInverted, tag)));
+        }
+        logEditResults(edits, players.size(), scannedBefore, owners);
+    }
+
+    /**
+     * Logs the combined result of the edits once all of them have completed and records each of them in the
+     * {@link EditMetrics}.
+     *
+     * @param edits The submitted edits
+     * @param playerCount The number of players the edits were made for
+     * @param scannedBefore Number of blocks the unmerged player regions would have scanned, or -1 if regions weren't merged
+     * @param owners Player names keyed by the regions created for them
+     * @return Future completed once every edit has completed, with the number of successful edits
+     */
+    protected CompletableFuture<Integer> logEditResults(List<CompletableFuture<EditResult>> edits, int playerCount, long scannedBefore,
+                                                        Map<Region, String> owners) {
+        return CompletableFuture.allOf(edits.toArray(new CompletableFuture[0])).handle((ignored, error) -> {
+            int successCount = 0;
+            long blocksScanned = 0;
+            long blocksChanged = 0;
+            double slowestMillis = 0;
+            for (CompletableFuture<EditResult> edit : edits) {
+                EditResult result;
+                try {
+                    result = edit.join();
+                } catch (CancellationException e) {
+                    continue;
+                } catch (CompletionException e) {
+                    MsgUtility.warning("Block edit failed for event " + this.eventName + ": " + e.getCause().getMessage());
+                    continue;
+                }
+                successCount++;
+                EditMetrics.record(this.eventName, EditMetrics.ownerOf(result.region(), owners), result);
+                blocksScanned += result.blocksScanned();
+                blocksChanged += result.blocksChanged();
+                slowestMillis = Math.max(slowestMillis, result.durationMillis());
+            }
+
+            MsgUtility.log("<green>Applied " + successCount + "/" + edits.size() + " block edits for " + playerCount + " players for event: " + this.eventName);
+            if (scannedBefore >= 0) {
+                MsgUtility.log("Merged player regions into " + edits.size() + " edits, scanned " + blocksScanned +
+                        " blocks instead of " + scannedBefore + ", changed " + blocksChanged + " blocks");
+            } else {
+                MsgUtility.log("Scanned " + blocksScanned + " blocks, changed " + blocksChanged + " blocks");
+            }
+            MsgUtility.log("Slowest edit took " + String.format("%.1f", slowestMillis) + "ms");
+            return successCount;
+        });
     }
 }
@@ -4,7 +4,6 @@ import dev.strwbry.eventhorizon.EventHorizon;
 import dev.strwbry.eventhorizon.events.EventClassification;
 import dev.strwbry.eventhorizon.events.blockmodification.subevents.SubPlantsToSculkInteractive;
 import dev.strwbry.eventhorizon.events.utility.EventLoggerUtility;
-import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericCylindricalRegion;
 import dev.strwbry.eventhorizon.utility.AdvConfig;
 import org.bukkit.Bukkit;
 
@@ -18,24 +17,32 @@ public class DeepDarkInvasion extends BaseBlockModification
      * Constructs a new DeepDarkInvasion event.
      * Initializes the event with negative classification, a cylindrical region of effect,
      * deep dark block patterns, and ground block masks.
+     * The region is limited to the terrain surface when surface-only is enabled.
      */
     public DeepDarkInvasion()
     {
-        super(EventClassification.NEGATIVE, "deepDarkInvasion", new GenericCylindricalRegion(AdvConfig.getDeepDarkRadius(),AdvConfig.getDeepDarkHeight(),AdvConfig.getDeepDarkOffset()),
+        super(EventClassification.NEGATIVE, "deepDarkInvasion", cylinderRegion(AdvConfig.getDeepDarkSurfaceOnly(),AdvConfig.getDeepDarkRadius(),AdvConfig.getDeepDarkHeight(),AdvConfig.getDeepDarkOffset()),
                 EventHorizon.getRandomPatterns().getDeepDarkPattern(), EventHorizon.getBlockMasks().getGroundBlocks(), false);
 
         EventLoggerUtility.logEventInitialization("Deep Dark Invasion",
                 "radius", AdvConfig.getDeepDarkRadius(),
                 "height", AdvConfig.getDeepDarkHeight(),
-                "offset", AdvConfig.getDeepDarkOffset()
+                "offset", AdvConfig.getDeepDarkOffset(),
+                "surface-only", AdvConfig.getDeepDarkSurfaceOnly()
         );
     }
 
     /**
      * Executes the Deep Dark invasion event.
-     * Performs the main terrain transformation and schedules the plant-to-sculk conversion.
+     * With fused rules the terrain transformation and plant-to-sculk conversion are applied in a single pass
+     * (unless the conversion has a different edit profile),
+     * otherwise the main terrain transformation is performed first and the conversion is scheduled.
      */
     public void execute(){
+        if (useFusedRules) {
+            executeFused(true, new FusedSubEvent(new SubPlantsToSculkInteractive(), true));
+            return;
+        }
         super.execute(true);
         Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task -> new SubPlantsToSculkInteractive().execute(true));
     }
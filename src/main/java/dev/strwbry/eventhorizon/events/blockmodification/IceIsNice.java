@@ -5,7 +5,6 @@ import dev.strwbry.eventhorizon.events.EventClassification;
 import dev.strwbry.eventhorizon.events.blockmodification.subevents.SubSpawnIceMobs;
 import dev.strwbry.eventhorizon.events.utility.EventLoggerUtility;
 import dev.strwbry.eventhorizon.events.utility.fawe.BlockEditor;
-import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericCylindricalRegion;
 import dev.strwbry.eventhorizon.utility.AdvConfig;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -21,19 +20,20 @@ public class IceIsNice extends BaseBlockModification
     /**
      * Constructs a new IceIsNice event.
      * Creates a cylindrical region with radius 100 and height 10 where ground blocks
-     * will be replaced with packed ice.
+     * will be replaced with packed ice, limited to the terrain surface when surface-only is enabled.
      */
     public IceIsNice()
     {
         super(EventClassification.NEUTRAL, "iceIsNice",
-                new GenericCylindricalRegion(AdvConfig.getIceRadius(), AdvConfig.getIceHeight(), AdvConfig.getIceHeightOffset()),
+                cylinderRegion(AdvConfig.getIceSurfaceOnly(), AdvConfig.getIceRadius(), AdvConfig.getIceHeight(), AdvConfig.getIceHeightOffset()),
                 Material.PACKED_ICE, EventHorizon.getBlockMasks().getGroundBlocks(), false
         );
 
         EventLoggerUtility.logEventInitialization("Ice Is Nice",
                 "radius", AdvConfig.getIceRadius(),
                 "height", AdvConfig.getIceHeight(),
-                "offset", AdvConfig.getIceHeightOffset()
+                "offset", AdvConfig.getIceHeightOffset(),
+                "surface-only", AdvConfig.getIceSurfaceOnly()
         );
     }
 
@@ -54,6 +54,7 @@ public class IceIsNice extends BaseBlockModification
      */
     @Override
     public void terminate(){
+        stopIncrementalEdits();
         BlockEditor.clearActiveEditSessions();
     }
 }
@@ -6,7 +6,6 @@ import dev.strwbry.eventhorizon.events.blockmodification.subevents.SubNetherRaid
 import dev.strwbry.eventhorizon.events.blockmodification.subevents.SubPlantsToFire;
 import dev.strwbry.eventhorizon.events.blockmodification.subevents.SubWaterToLava;
 import dev.strwbry.eventhorizon.events.utility.EventLoggerUtility;
-import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericCylindricalRegion;
 import dev.strwbry.eventhorizon.utility.AdvConfig;
 import org.bukkit.Bukkit;
 
@@ -23,30 +22,38 @@ public class NetherInvasion extends BaseBlockModification
     /**
      * Constructs a new NetherInvasion event.
      * Creates a cylindrical region with radius 100 and height 400 where ground blocks
-     * will be replaced with a random Nether-themed pattern.
+     * will be replaced with a random Nether-themed pattern, limited to the terrain surface when surface-only is enabled.
      */
     public NetherInvasion()
     {
-        super(EventClassification.NEGATIVE, "netherInvasion", new GenericCylindricalRegion(AdvConfig.getNetherRadius(),AdvConfig.getNetherHeight(),AdvConfig.getNetherOffset()),
+        super(EventClassification.NEGATIVE, "netherInvasion", cylinderRegion(AdvConfig.getNetherSurfaceOnly(),AdvConfig.getNetherRadius(),AdvConfig.getNetherHeight(),AdvConfig.getNetherOffset()),
                 EventHorizon.getRandomPatterns().getNetherPattern(), EventHorizon.getBlockMasks().getGroundBlocks(), false);
         this.subNetherRaid = new SubNetherRaid();
 
         EventLoggerUtility.logEventInitialization("Nether Invasion",
                 "radius", AdvConfig.getNetherRadius(),
                 "height", AdvConfig.getNetherHeight(),
-                "offset", AdvConfig.getNetherOffset()
+                "offset", AdvConfig.getNetherOffset(),
+                "surface-only", AdvConfig.getNetherSurfaceOnly()
         );
     }
 
     /**
      * Executes the Nether invasion event by transforming blocks and spawning mobs.
-     * First applies the Nether pattern transformation, then schedules water-to-lava conversion,
-     * grass-to-fire conversion, and spawns Nether mobs on the next server tick.
+     * With fused rules the Nether pattern, water-to-lava and grass-to-fire conversions are applied in a single pass
+     * (conversions with a different edit profile still run on their own),
+     * otherwise the Nether pattern is applied first and the conversions are scheduled on the next server tick.
+     * Nether mobs are spawned on the next server tick.
      */
     public void execute(){
-        super.execute(true);
-        Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task -> new SubWaterToLava().execute(false));
-        Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task -> new SubPlantsToFire().execute(false));
+        if (useFusedRules) {
+            executeFused(true, new FusedSubEvent(new SubWaterToLava(), false),
+                    new FusedSubEvent(new SubPlantsToFire(), false));
+        } else {
+            super.execute(true);
+            Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task -> new SubWaterToLava().execute(false));
+            Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task -> new SubPlantsToFire().execute(false));
+        }
         Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task -> subNetherRaid.execute());
     }
 
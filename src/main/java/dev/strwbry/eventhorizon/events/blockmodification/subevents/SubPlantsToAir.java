@@ -43,6 +43,7 @@ public class SubPlantsToAir extends BaseBlockModification
      */
     @Override
     public void terminate(){
+        stopIncrementalEdits();
         BlockEditor.clearActiveEditSessions();
     }
 }
@@ -45,6 +45,7 @@ public class SubWaterToLava extends BaseBlockModification
      */
     @Override
     public void terminate(){
+        stopIncrementalEdits();
         BlockEditor.clearActiveEditSessions();
     }
 }
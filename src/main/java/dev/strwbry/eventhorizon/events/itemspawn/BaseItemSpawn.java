@@ -3,10 +3,16 @@ package dev.strwbry.eventhorizon.events.itemspawn;
 import dev.strwbry.eventhorizon.EventHorizon;
 import dev.strwbry.eventhorizon.events.BaseEvent;
 import dev.strwbry.eventhorizon.events.EventClassification;
+import dev.strwbry.eventhorizon.events.utility.AsyncSpawnSearch;
+import dev.strwbry.eventhorizon.events.utility.EntityBudget;
+import dev.strwbry.eventhorizon.events.utility.LocationUtility.ChunkPolicy;
 import dev.strwbry.eventhorizon.events.utility.LocationUtility.SpawnConfig;
+import dev.strwbry.eventhorizon.events.utility.SpawnQueue;
 import dev.strwbry.eventhorizon.events.utility.SpawningUtility;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
 import dev.strwbry.eventhorizon.utility.MsgUtility;
 import org.apache.commons.lang3.tuple.Pair;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Item;
@@ -16,6 +22,7 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -36,7 +43,9 @@ public abstract class BaseItemSpawn extends BaseEvent {
     /** Unique identifier for marking spawned items */
     protected final NamespacedKey key;
     /** Spawn configuration for location utilities */
-    protected final SpawnConfig spawnConfig = new SpawnConfig();
+    protected final SpawnConfig spawnConfig = new SpawnConfig()
+            .setUseSiteIndex(AdvConfig.getSpawnSiteIndexEnabled())
+            .setChunkPolicy(ChunkPolicy.fromString(AdvConfig.getSpawnChunkPolicy()));
 
     // Default Configuration Values
     /** Default number of items to spawn per event */
@@ -67,12 +76,22 @@ public abstract class BaseItemSpawn extends BaseEvent {
     protected boolean useContinuousSpawning = DEFAULT_USE_CONTINUOUS_SPAWNING;
     /** Whether to randomly select item types from weightedItems */
     protected boolean useRandomItemTypes = DEFAULT_USE_RANDOM_ITEM_TYPES;
+    /** Whether spawn locations are searched off the main thread */
+    protected boolean useAsyncLocationSearch = AdvConfig.getItemSpawnAsyncLocationSearch();
+    /** Whether spawns are spread over several ticks through the spawn queue */
+    protected boolean useSpawnQueue = AdvConfig.getItemSpawnUseSpawnQueue();
 
     // Task Management
     /** Task for continuous spawning mode */
     protected BukkitTask continuousTask = null;
     /** Interval between continuous spawns in seconds */
     protected int spawnInterval = DEFAULT_SPAWN_INTERVAL;
+    /** Queue draining planned spawns under the per-tick budget, created on first use */
+    protected SpawnQueue<Item> spawnQueue = null;
+    /** Spawns of the last plan handed to the spawn queue, null until one was submitted */
+    protected CompletableFuture<Integer> queuedSpawning = null;
+    /** Incremented on every termination, so async searches started before it don't spawn anything */
+    protected int spawnGeneration = 0;
 
     // Constructors
     /**
@@ -155,34 +174,61 @@ public abstract class BaseItemSpawn extends BaseEvent {
                     MsgUtility.log("Event " + eventName +
                             " tried to start continuous spawning but it was already running");
                 }
+            } else if (useSpawnQueue || useAsyncLocationSearch) {
+                // Do a one-time spawn for all players, spread over several ticks or searched off the main thread
+                CompletableFuture<Integer> spawning = useSpawnQueue ? spawnForAllPlayersQueued() : spawnForAllPlayersAsync();
+                spawning.whenComplete((spawned, throwable) -> {
+                    if (throwable != null) {
+                        MsgUtility.warning("Error spawning items in " + eventName + ": " + throwable.getMessage());
+                        return;
+                    }
+                    this.lastSpawnCount = spawned;
+                    logSpawnResult(spawned);
+                });
             } else {
                 // Do a one-time spawn for all players
                 int spawned = spawnForAllPlayers();
                 this.lastSpawnCount = spawned;
-
-                if (useRandomItemTypes) {
-                    MsgUtility.log("Event " + eventName +
-                            " spawned " + spawned + " random items across " +
-                            plugin.getServer().getOnlinePlayers().size() +
-                            " players");
-                } else {
-                    MsgUtility.log("Event " + eventName +
-                            " spawned " + spawned + " " + itemType.toString() +
-                            " items across " + plugin.getServer().getOnlinePlayers().size() +
-                            " players");
-                }
+                logSpawnResult(spawned);
             }
         } catch (Exception e) {
             MsgUtility.warning("Error spawning items in " + eventName + ": " + e.getMessage());
         }
     }
 
+    /**
+     * Logs the result of a one-time spawn cycle.
+     *
+     * @param spawned total number of items spawned across all players
+     */
+    private void logSpawnResult(int spawned) {
+        if (useRandomItemTypes) {
+            MsgUtility.log("Event " + eventName +
+                    " spawned " + spawned + " random items across " +
+                    plugin.getServer().getOnlinePlayers().size() +
+                    " players");
+        } else {
+            MsgUtility.log("Event " + eventName +
+                    " spawned " + spawned + " " + itemType.toString() +
+                    " items across " + plugin.getServer().getOnlinePlayers().size() +
+                    " players");
+        }
+    }
+
     /**
      * Terminates the event by stopping any continuous spawning tasks.
      */
     @Override
     public void terminate() {
         boolean stopped = stopContinuousTask();
+        spawnGeneration++;
+
+        // Drop spawns that are still waiting in the queue
+        if (spawnQueue != null) {
+            spawnQueue.cancel();
+            spawnQueue = null;
+            queuedSpawning = null;
+        }
 
         if (stopped) {
             if (useRandomItemTypes) {
@@ -210,7 +256,16 @@ public abstract class BaseItemSpawn extends BaseEvent {
         continuousTask = new BukkitRunnable() {
             @Override
             public void run() {
-                spawnForAllPlayers();
+                if (useSpawnQueue) {
+                    // Skip this interval while the last plan is still searched or drained, so spawns don't pile up
+                    if (queuedSpawning == null || queuedSpawning.isDone()) {
+                        spawnForAllPlayersQueued();
+                    }
+                } else if (useAsyncLocationSearch) {
+                    spawnForAllPlayersAsync();
+                } else {
+                    spawnForAllPlayers();
+                }
             }
         }.runTaskTimer(plugin, 20L, spawnInterval * 20L);
 
@@ -253,9 +308,10 @@ public abstract class BaseItemSpawn extends BaseEvent {
     public int spawnForAllPlayers() {
         int totalSpawned = 0;
         Set<Player> players = getAvailableEventPlayers();
+        int count = EntityBudget.scaleCount(players, itemCount, eventName);
 
         for (Player player : players) {
-            List<Item> spawnedItems = spawnForPlayer(player);
+            List<Item> spawnedItems = spawnForPlayer(player, count);
             int playerSpawnCount = spawnedItems.size();
             totalSpawned += playerSpawnCount;
 
@@ -274,6 +330,85 @@ public abstract class BaseItemSpawn extends BaseEvent {
         return totalSpawned;
     }
 
+    /**
+     * Spawns items for all online players, searching spawn locations off the main thread.
+     * The items are dropped on the main thread once every player's search has finished, unless the event was
+     * terminated while searching.
+     *
+     * @return future completed on the main thread with the total number of items spawned across all players
+     */
+    public CompletableFuture<Integer> spawnForAllPlayersAsync() {
+        Set<Player> players = getAvailableEventPlayers();
+        int count = EntityBudget.scaleCount(players, itemCount, eventName);
+        int generation = spawnGeneration;
+        SpawningUtility.SpawnFunction<Item> marking = SpawningUtility.markingItem(key, this::getRandomWeightedItem);
+        // Skip the drops if the event was terminated while searching
+        SpawningUtility.SpawnFunction<Item> spawnFunction = (world, location) ->
+                generation == spawnGeneration ? marking.spawn(world, location) : null;
+        CompletableFuture<Map<Player, List<Item>>> spawning;
+
+        if (useGroupSpawning) {
+            spawning = AsyncSpawnSearch.spawnGroup(players, count, spawnConfig, spawnFunction);
+        } else {
+            spawning = AsyncSpawnSearch.spawnSpread(players, count, spawnConfig, spawnFunction);
+        }
+
+        return spawning.thenApply(results -> {
+            int totalSpawned = 0;
+            for (Map.Entry<Player, List<Item>> entry : results.entrySet()) {
+                Player player = entry.getKey();
+                List<Item> spawnedItems = entry.getValue();
+                totalSpawned += spawnedItems.size();
+
+                if (useRandomItemTypes) {
+                    MsgUtility.log("Spawned " + spawnedItems.size() + " random items for player " + player.getName());
+                } else {
+                    MsgUtility.log("Spawned " + spawnedItems.size() + " " + itemType.toString() +
+                            " items for player " + player.getName());
+                }
+
+                // Optional hook for child classes to implement additional logic
+                for (Item item : spawnedItems) {
+                    onItemSpawned(item, player);
+                }
+            }
+            return totalSpawned;
+        });
+    }
+
+    /**
+     * Plans item spawns for all online players and hands them to the spawn queue,
+     * which drops them over several ticks under the configured per-tick budget.
+     * The returned future is kept in {@link #queuedSpawning}, which continuous spawning checks before planning again.
+     *
+     * @return future completed on the main thread with the total number of items spawned across all players
+     */
+    public CompletableFuture<Integer> spawnForAllPlayersQueued() {
+        if (spawnQueue == null) {
+            spawnQueue = new SpawnQueue<>(SpawningUtility.markingItem(key, this::getRandomWeightedItem),
+                    this::onItemSpawned, spawnConfig);
+        }
+        SpawnQueue<Item> queue = spawnQueue;
+        Set<Player> players = getAvailableEventPlayers();
+        int count = EntityBudget.scaleCount(players, itemCount, eventName);
+
+        if (useAsyncLocationSearch) {
+            queuedSpawning = AsyncSpawnSearch.plan(players, count, spawnConfig, useGroupSpawning)
+                    // Skip the plan if the event was terminated while searching
+                    .thenCompose(plan -> queue == spawnQueue ? queue.submit(plan) : CompletableFuture.completedFuture(0));
+            return queuedSpawning;
+        }
+
+        Map<Player, List<Location>> plan = new LinkedHashMap<>();
+        for (Player player : players) {
+            plan.put(player, useGroupSpawning
+                    ? SpawningUtility.planGroup(player, count, spawnConfig)
+                    : SpawningUtility.planSpread(player, count, spawnConfig));
+        }
+        queuedSpawning = queue.submit(plan);
+        return queuedSpawning;
+    }
+
     /**
      * Spawns items for a specific player based on the configured settings.
      *
@@ -281,14 +416,25 @@ public abstract class BaseItemSpawn extends BaseEvent {
      * @return list of spawned Item entities
      */
     public List<Item> spawnForPlayer(Player player) {
+        return spawnForPlayer(player, itemCount);
+    }
+
+    /**
+     * Spawns a specific number of items for a player based on the configured settings.
+     *
+     * @param player the player to spawn items for
+     * @param count  the number of items to spawn
+     * @return list of spawned Item entities
+     */
+    public List<Item> spawnForPlayer(Player player, int count) {
         if (player == null || !player.isOnline()) {
             return Collections.emptyList();
         }
 
         if (useGroupSpawning) {
-            return SpawningUtility.spawnItemsGroup(player, itemCount, spawnConfig, key, this::getRandomWeightedItem);
+            return SpawningUtility.spawnItemsGroup(player, count, spawnConfig, key, this::getRandomWeightedItem);
         } else {
-            return SpawningUtility.spawnItemsSpread(player, itemCount, spawnConfig, key, this::getRandomWeightedItem);
+            return SpawningUtility.spawnItemsSpread(player, count, spawnConfig, key, this::getRandomWeightedItem);
         }
     }
 
@@ -570,4 +716,26 @@ public abstract class BaseItemSpawn extends BaseEvent {
         this.useRandomItemTypes = useRandom;
         return this;
     }
+
+    /**
+     * Sets whether spawn locations should be searched off the main thread.
+     *
+     * @param useAsync true to search locations on a worker pool using chunk snapshots
+     * @return this instance for method chaining
+     */
+    public BaseItemSpawn setUseAsyncLocationSearch(boolean useAsync) {
+        this.useAsyncLocationSearch = useAsync;
+        return this;
+    }
+
+    /**
+     * Sets whether spawns should be spread over several ticks through the spawn queue.
+     *
+     * @param useQueue true to drain spawns under the per-tick budget
+     * @return this instance for method chaining
+     */
+    public BaseItemSpawn setUseSpawnQueue(boolean useQueue) {
+        this.useSpawnQueue = useQueue;
+        return this;
+    }
 }
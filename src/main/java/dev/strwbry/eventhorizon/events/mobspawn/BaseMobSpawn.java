@@ -3,8 +3,14 @@ package dev.strwbry.eventhorizon.events.mobspawn;
 import dev.strwbry.eventhorizon.EventHorizon;
 import dev.strwbry.eventhorizon.events.BaseEvent;
 import dev.strwbry.eventhorizon.events.EventClassification;
+import dev.strwbry.eventhorizon.events.utility.AsyncSpawnSearch;
+import dev.strwbry.eventhorizon.events.utility.EntityBudget;
+import dev.strwbry.eventhorizon.events.utility.LocationUtility.ChunkPolicy;
 import dev.strwbry.eventhorizon.events.utility.LocationUtility.SpawnConfig;
+import dev.strwbry.eventhorizon.events.utility.SpawnQueue;
 import dev.strwbry.eventhorizon.events.utility.SpawningUtility;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import org.bukkit.Location;
 import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
@@ -13,6 +19,7 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static dev.strwbry.eventhorizon.utility.MsgUtility.log;
 import static dev.strwbry.eventhorizon.utility.MsgUtility.warning;
@@ -40,7 +47,9 @@ public abstract class BaseMobSpawn extends BaseEvent {
     /** Unique identifier for marking spawned items */
     protected final NamespacedKey key;
     /** Spawn configuration for location utilities */
-    protected final SpawnConfig spawnConfig = new SpawnConfig();
+    protected final SpawnConfig spawnConfig = new SpawnConfig()
+            .setUseSiteIndex(AdvConfig.getSpawnSiteIndexEnabled())
+            .setChunkPolicy(ChunkPolicy.fromString(AdvConfig.getSpawnChunkPolicy()));
 
     // Default configuration values
     /** Default number of mobs to spawn per player */
@@ -71,12 +80,22 @@ public abstract class BaseMobSpawn extends BaseEvent {
     protected boolean useContinuousSpawning = DEFAULT_USE_CONTINUOUS_SPAWNING;
     /** Whether to randomly select from multiple mob types */
     protected boolean useRandomMobTypes = DEFAULT_USE_RANDOM_MOB_TYPES;
+    /** Whether spawn locations are searched off the main thread */
+    protected boolean useAsyncLocationSearch = AdvConfig.getMobSpawnAsyncLocationSearch();
+    /** Whether spawns are spread over several ticks through the spawn queue */
+    protected boolean useSpawnQueue = AdvConfig.getMobSpawnUseSpawnQueue();
 
     // Task management
     /** Task for continuous spawning */
     protected BukkitTask continuousTask = null;
     /** Interval between continuous spawns in seconds */
     protected int spawnInterval = DEFAULT_SPAWN_INTERVAL;
+    /** Queue draining planned spawns under the per-tick budget, created on first use */
+    protected SpawnQueue<Entity> spawnQueue = null;
+    /** Spawns of the last plan handed to the spawn queue, null until one was submitted */
+    protected CompletableFuture<Integer> queuedSpawning = null;
+    /** Incremented on every termination, so async searches started before it don't spawn anything */
+    protected int spawnGeneration = 0;
 
     // Constructors
     /**
@@ -164,28 +183,47 @@ public abstract class BaseMobSpawn extends BaseEvent {
                     log("Event " + eventName +
                             " tried to start continuous spawning but it was already running");
                 }
+            } else if (useSpawnQueue || useAsyncLocationSearch) {
+                // Do a one-time spawn for all players, spread over several ticks or searched off the main thread
+                CompletableFuture<Integer> spawning = useSpawnQueue ? spawnForAllPlayersQueued() : spawnForAllPlayersAsync();
+                spawning.whenComplete((spawned, throwable) -> {
+                    if (throwable != null) {
+                        warning("Error spawning mobs in " + eventName + ": " + throwable.getMessage());
+                        return;
+                    }
+                    this.lastSpawnCount = spawned;
+                    logSpawnResult(spawned);
+                });
             } else {
                 // Do a one-time spawn for all players
                 int spawned = spawnForAllPlayers();
                 this.lastSpawnCount = spawned;
-
-                if (useRandomMobTypes) {
-                    log("Event " + eventName +
-                            " spawned " + spawned + " random mobs across " +
-                            plugin.getServer().getOnlinePlayers().size() +
-                            " players");
-                } else {
-                    log("Event " + eventName +
-                            " spawned " + spawned + " " + mobType.toString() +
-                            " mobs across " + plugin.getServer().getOnlinePlayers().size() +
-                            " players");
-                }
+                logSpawnResult(spawned);
             }
         } catch (Exception e) {
             warning("Error spawning mobs in " + eventName + ": " + e.getMessage());
         }
     }
 
+    /**
+     * Logs the result of a one-time spawn cycle.
+     *
+     * @param spawned The total number of mobs spawned across all players
+     */
+    private void logSpawnResult(int spawned) {
+        if (useRandomMobTypes) {
+            log("Event " + eventName +
+                    " spawned " + spawned + " random mobs across " +
+                    plugin.getServer().getOnlinePlayers().size() +
+                    " players");
+        } else {
+            log("Event " + eventName +
+                    " spawned " + spawned + " " + mobType.toString() +
+                    " mobs across " + plugin.getServer().getOnlinePlayers().size() +
+                    " players");
+        }
+    }
+
     /**
      * Terminates the event by stopping any continuous spawning tasks.
      * Logs appropriate messages based on whether the event was using random mob types
@@ -194,6 +232,14 @@ public abstract class BaseMobSpawn extends BaseEvent {
     @Override
     public void terminate() {
         boolean stopped = stopContinuousTask();
+        spawnGeneration++;
+
+        // Drop spawns that are still waiting in the queue
+        if (spawnQueue != null) {
+            spawnQueue.cancel();
+            spawnQueue = null;
+            queuedSpawning = null;
+        }
 
         if (stopped) {
             if (useRandomMobTypes) {
@@ -222,7 +268,16 @@ public abstract class BaseMobSpawn extends BaseEvent {
         continuousTask = new BukkitRunnable() {
             @Override
             public void run() {
-                spawnForAllPlayers();
+                if (useSpawnQueue) {
+                    // Skip this interval while the last plan is still searched or drained, so spawns don't pile up
+                    if (queuedSpawning == null || queuedSpawning.isDone()) {
+                        spawnForAllPlayersQueued();
+                    }
+                } else if (useAsyncLocationSearch) {
+                    spawnForAllPlayersAsync();
+                } else {
+                    spawnForAllPlayers();
+                }
             }
         }.runTaskTimer(plugin, 20L, spawnInterval * 20L);
 
@@ -268,9 +323,10 @@ public abstract class BaseMobSpawn extends BaseEvent {
     public int spawnForAllPlayers() {
         int totalSpawned = 0;
         Set<Player> players = getAvailableEventPlayers();
+        int count = EntityBudget.scaleCount(players, mobCount, eventName);
 
         for (Player player : players) {
-            List<Entity> spawnedEntities = spawnForPlayer(player);
+            List<Entity> spawnedEntities = spawnForPlayer(player, count);
             int playerSpawnCount = spawnedEntities.size();
             totalSpawned += playerSpawnCount;
 
@@ -289,6 +345,90 @@ public abstract class BaseMobSpawn extends BaseEvent {
         return totalSpawned;
     }
 
+    /**
+     * Spawns mobs for all online players, searching spawn locations off the main thread.
+     * Chunk snapshots are captured immediately, the search runs on a worker pool and the mobs are
+     * spawned on the main thread once every player's search has finished. Nothing is spawned if the event was
+     * terminated while searching.
+     * Logs the spawn results for each player and calls {@link #onMobSpawned} for each spawned entity.
+     *
+     * @return Future completed on the main thread with the total number of mobs spawned across all players
+     */
+    public CompletableFuture<Integer> spawnForAllPlayersAsync() {
+        Set<Player> players = getAvailableEventPlayers();
+        int count = EntityBudget.scaleCount(players, mobCount, eventName);
+        int generation = spawnGeneration;
+        SpawningUtility.SpawnFunction<Entity> marking = SpawningUtility.markingEntity(key,
+                (world, location) -> world.spawnEntity(location, getRandomMobType()));
+        // Skip the spawns if the event was terminated while searching
+        SpawningUtility.SpawnFunction<Entity> spawnFunction = (world, location) ->
+                generation == spawnGeneration ? marking.spawn(world, location) : null;
+        CompletableFuture<Map<Player, List<Entity>>> spawning;
+
+        if (useGroupSpawning) {
+            spawning = AsyncSpawnSearch.spawnGroup(players, count, spawnConfig, spawnFunction);
+        } else {
+            spawning = AsyncSpawnSearch.spawnSpread(players, count, spawnConfig, spawnFunction);
+        }
+
+        return spawning.thenApply(results -> {
+            int totalSpawned = 0;
+            for (Map.Entry<Player, List<Entity>> entry : results.entrySet()) {
+                Player player = entry.getKey();
+                List<Entity> spawnedEntities = entry.getValue();
+                totalSpawned += spawnedEntities.size();
+
+                if (useRandomMobTypes) {
+                    log("Spawned " + spawnedEntities.size() + " random mobs for player " + player.getName());
+                } else {
+                    log("Spawned " + spawnedEntities.size() + " " + mobType.toString() +
+                            " for player " + player.getName());
+                }
+
+                // Optional hook for child classes to implement additional logic
+                for (Entity entity : spawnedEntities) {
+                    onMobSpawned(entity, player);
+                }
+            }
+            return totalSpawned;
+        });
+    }
+
+    /**
+     * Plans mob spawns for all online players and hands them to the spawn queue,
+     * which spawns them over several ticks under the configured per-tick budget.
+     * Calls {@link #onMobSpawned} for each spawned entity as the queue drains.
+     * The returned future is kept in {@link #queuedSpawning}, which continuous spawning checks before planning again.
+     *
+     * @return Future completed on the main thread with the total number of mobs spawned across all players
+     */
+    public CompletableFuture<Integer> spawnForAllPlayersQueued() {
+        if (spawnQueue == null) {
+            spawnQueue = new SpawnQueue<>(SpawningUtility.markingEntity(key,
+                    (world, location) -> world.spawnEntity(location, getRandomMobType())),
+                    this::onMobSpawned, spawnConfig);
+        }
+        SpawnQueue<Entity> queue = spawnQueue;
+        Set<Player> players = getAvailableEventPlayers();
+        int count = EntityBudget.scaleCount(players, mobCount, eventName);
+
+        if (useAsyncLocationSearch) {
+            queuedSpawning = AsyncSpawnSearch.plan(players, count, spawnConfig, useGroupSpawning)
+                    // Skip the plan if the event was terminated while searching
+                    .thenCompose(plan -> queue == spawnQueue ? queue.submit(plan) : CompletableFuture.completedFuture(0));
+            return queuedSpawning;
+        }
+
+        Map<Player, List<Location>> plan = new LinkedHashMap<>();
+        for (Player player : players) {
+            plan.put(player, useGroupSpawning
+                    ? SpawningUtility.planGroup(player, count, spawnConfig)
+                    : SpawningUtility.planSpread(player, count, spawnConfig));
+        }
+        queuedSpawning = queue.submit(plan);
+        return queuedSpawning;
+    }
+
     /**
      * Spawns mobs for a specific player based on configuration settings.
      * Uses either group or spread spawning depending on {@link #useGroupSpawning}.
@@ -297,15 +437,27 @@ public abstract class BaseMobSpawn extends BaseEvent {
      * @return List of spawned entities, or empty list if player is null or offline
      */
     public List<Entity> spawnForPlayer(Player player) {
+        return spawnForPlayer(player, mobCount);
+    }
+
+    /**
+     * Spawns a specific number of mobs for a player based on configuration settings.
+     * Uses either group or spread spawning depending on {@link #useGroupSpawning}.
+     *
+     * @param player The player to spawn mobs for
+     * @param count  The number of mobs to spawn
+     * @return List of spawned entities, or empty list if player is null or offline
+     */
+    public List<Entity> spawnForPlayer(Player player, int count) {
         if (player == null || !player.isOnline()) {
             return Collections.emptyList();
         }
 
         if (useGroupSpawning) {
-            return SpawningUtility.spawnEntitiesGroup(player, mobCount, spawnConfig, key,
+            return SpawningUtility.spawnEntitiesGroup(player, count, spawnConfig, key,
                     (world, location) -> world.spawnEntity(location, getRandomMobType()));
         } else {
-            return SpawningUtility.spawnEntitiesSpread(player, mobCount, spawnConfig, key,
+            return SpawningUtility.spawnEntitiesSpread(player, count, spawnConfig, key,
                     (world, location) -> world.spawnEntity(location, getRandomMobType()));
         }
     }
@@ -618,4 +770,26 @@ public abstract class BaseMobSpawn extends BaseEvent {
         this.useRandomMobTypes = useRandom;
         return this;
     }
+
+    /**
+     * Sets whether spawn locations should be searched off the main thread.
+     *
+     * @param useAsync True to search locations on a worker pool using chunk snapshots
+     * @return This instance for method chaining
+     */
+    public BaseMobSpawn setUseAsyncLocationSearch(boolean useAsync) {
+        this.useAsyncLocationSearch = useAsync;
+        return this;
+    }
+
+    /**
+     * Sets whether spawns should be spread over several ticks through the spawn queue.
+     *
+     * @param useQueue True to drain spawns under the per-tick budget
+     * @return This instance for method chaining
+     */
+    public BaseMobSpawn setUseSpawnQueue(boolean useQueue) {
+        this.useSpawnQueue = useQueue;
+        return this;
+    }
 }
\ No newline at end of file
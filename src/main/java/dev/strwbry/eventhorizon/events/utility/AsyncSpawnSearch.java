@@ -0,0 +1,358 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.utility.LocationUtility.SpawnConfig;
+import dev.strwbry.eventhorizon.events.utility.SpawningUtility.SpawnFunction;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static dev.strwbry.eventhorizon.events.utility.LocationUtility.*;
+
+/**
+ * Searches for safe spawn locations off the main server thread.
+ * Chunk snapshots around every player are captured on the main thread, the random walk from
+ * {@link LocationUtility} is then evaluated against those snapshots on a worker pool (one task per player),
+ * and only the final coordinate list is handed back to the main thread where the actual spawning happens.
+ *
+ * The walk mirrors {@link LocationUtility#getSafeLocation} and {@link LocationUtility#getGroupSafeLocation}
+ * step for step, so spawn placement follows the same rules as the synchronous search.
+ */
+public class AsyncSpawnSearch {
+    /** Executor that runs tasks on the main server thread */
+    private static final Executor MAIN_THREAD = task -> Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task);
+
+    /**
+     * Searches spread spawn locations for every player and spawns objects at them once the search completes.
+     * Must be called from the main server thread.
+     *
+     * @param players       The players to spawn around.
+     * @param spawnCount    The number of entities/items to spawn per player.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @param spawnFunction Function to create the entity/item at the given location, called on the main thread.
+     * @param <T>           Type of the spawned object (Entity, Item, etc.).
+     * @return A future completed on the main thread with the spawned objects per player.
+     */
+    public static <T> CompletableFuture<Map<Player, List<T>>> spawnSpread(Collection<Player> players, int spawnCount,
+                                                                          SpawnConfig spawnConfig, SpawnFunction<T> spawnFunction) {
+        return spawn(players, spawnCount, spawnConfig, spawnFunction, false);
+    }
+
+    /**
+     * Searches group spawn locations for every player and spawns objects at them once the search completes.
+     * Must be called from the main server thread.
+     *
+     * @param players       The players to spawn around.
+     * @param spawnCount    The number of entities/items to spawn in each player's group.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @param spawnFunction Function to create the entity/item at the given location, called on the main thread.
+     * @param <T>           Type of the spawned object (Entity, Item, etc.).
+     * @return A future completed on the main thread with the spawned objects per player.
+     */
+    public static <T> CompletableFuture<Map<Player, List<T>>> spawnGroup(Collection<Player> players, int spawnCount,
+                                                                         SpawnConfig spawnConfig, SpawnFunction<T> spawnFunction) {
+        return spawn(players, spawnCount, spawnConfig, spawnFunction, true);
+    }
+
+    /**
+     * Captures snapshots, fans the search out across the worker pool and spawns on the main thread.
+     *
+     * @param players       The players to spawn around.
+     * @param spawnCount    The number of entities/items to spawn per player.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @param spawnFunction Function to create the entity/item at the given location.
+     * @param group         True to use group spawning, false for spread spawning.
+     * @param <T>           Type of the spawned object.
+     * @return A future completed on the main thread with the spawned objects per player.
+     */
+    private static <T> CompletableFuture<Map<Player, List<T>>> spawn(Collection<Player> players, int spawnCount,
+                                                                   SpawnConfig spawnConfig, SpawnFunction<T> spawnFunction,
+                                                                   boolean group) {
+        return plan(players, spawnCount, spawnConfig, group).thenApply(plan -> {
+            Map<Player, List<T>> results = new LinkedHashMap<>();
+            for (Map.Entry<Player, List<Location>> entry : plan.entrySet()) {
+                Player player = entry.getKey();
+                List<T> spawnedResults = new ArrayList<>();
+
+                if (player.isOnline()) {
+                    for (Location location : entry.getValue()) {
+                        // Snapshots may be a tick old, re-check the final spot against live blocks
+                        if (location.getWorld() != player.getWorld() || !isSafeLocation(location, spawnConfig)) {
+                            continue;
+                        }
+                        T spawnedObject = spawnFunction.spawn(location.getWorld(), location);
+                        if (spawnedObject != null) {
+                            spawnedResults.add(spawnedObject);
+                        }
+                    }
+                }
+                results.put(player, spawnedResults);
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Searches spawn locations for every player without spawning anything.
+     * Must be called from the main server thread.
+     *
+     * @param players     The players to search around.
+     * @param spawnCount  The number of locations to find per player.
+     * @param spawnConfig Configuration for spawning behavior.
+     * @param group       True to search a group around a single center, false for spread locations.
+     * @return A future completed on the main thread with the found locations per player.
+     */
+    public static CompletableFuture<Map<Player, List<Location>>> plan(Collection<Player> players, int spawnCount,
+                                                                      SpawnConfig spawnConfig, boolean group) {
+        Map<Player, CompletableFuture<List<Location>>> searches = search(players, spawnCount, spawnConfig, group);
+
+        return CompletableFuture.allOf(searches.values().toArray(new CompletableFuture[0]))
+                .thenApplyAsync(ignored -> {
+                    Map<Player, List<Location>> plan = new LinkedHashMap<>();
+                    searches.forEach((player, search) -> plan.put(player, search.join()));
+                    return plan;
+                }, MAIN_THREAD);
+    }
+
+    /**
+     * Captures chunk snapshots around every player and starts one search task per player.
+     * Snapshots are shared per world so chunks near several players are only captured once.
+     * Must be called from the main server thread.
+     *
+     * @param players     The players to search around.
+     * @param spawnCount  The number of locations to find per player.
+     * @param spawnConfig Configuration for spawning behavior.
+     * @param group       True to search a group around a single center, false for spread locations.
+     * @return The pending search per player, completed on the worker pool.
+     */
+    public static Map<Player, CompletableFuture<List<Location>>> search(Collection<Player> players, int spawnCount,
+                                                                      SpawnConfig spawnConfig, boolean group) {
+        int widthBlocks = (int) Math.ceil(spawnConfig.widthClearance);
+        int margin = spawnConfig.maxSpawnRadius + widthBlocks + 1;
+        if (group) {
+            margin += spawnConfig.groupSpacing;
+        }
+
+        // Capture every chunk the walk can reach, deduplicated across players in the same world
+        Map<World, SpawnSnapshot.Builder> builders = new HashMap<>();
+        List<Player> searchPlayers = new ArrayList<>();
+        for (Player player : players) {
+            if (player == null || !player.isOnline()) {
+                continue;
+            }
+            Location playerLocation = player.getLocation();
+            builders.computeIfAbsent(player.getWorld(), SpawnSnapshot::builder)
+                    .captureAround(playerLocation.getBlockX(), playerLocation.getBlockZ(), margin);
+            SpawningUtility.prefetchIfEnabled(player.getWorld(), playerLocation, margin, spawnConfig);
+            searchPlayers.add(player);
+        }
+
+        Map<World, SpawnSnapshot> snapshots = new HashMap<>();
+        builders.forEach((world, builder) -> snapshots.put(world, builder.build()));
+
+        Map<Player, CompletableFuture<List<Location>>> searches = new LinkedHashMap<>();
+        for (Player player : searchPlayers) {
+            SpawnSnapshot snapshot = snapshots.get(player.getWorld());
+            Location origin = player.getLocation();
+            searches.put(player, CompletableFuture.supplyAsync(() -> group
+                    ? searchGroup(snapshot, origin, spawnCount, spawnConfig)
+                    : searchSpread(snapshot, origin, spawnCount, spawnConfig), ForkJoinPool.commonPool()));
+        }
+        return searches;
+    }
+
+    /**
+     * Finds spread spawn locations around an origin, mirroring {@link SpawningUtility#spawnSpread}.
+     *
+     * @param snapshot    The captured chunks to read from.
+     * @param origin      The player location to search around.
+     * @param spawnCount  The number of locations to find.
+     * @param config      Configuration for spawning behavior.
+     * @return The safe locations found, possibly fewer than requested.
+     */
+    private static List<Location> searchSpread(SpawnSnapshot snapshot, Location origin, int spawnCount, SpawnConfig config) {
+        Random random = ThreadLocalRandom.current();
+        List<Location> locations = new ArrayList<>();
+        int attempts = 0;
+
+        while (locations.size() < spawnCount && attempts < config.maxSpawnAttempts) {
+            attempts++;
+
+            int initialX = origin.getBlockX() + getRandomOffset(random, config.minSpawnRadius, config.maxSpawnRadius);
+            int initialZ = origin.getBlockZ() + getRandomOffset(random, config.minSpawnRadius, config.maxSpawnRadius);
+            int initialY = origin.getBlockY() + getRandomOffset(random, config.minYRadius, config.maxYRadius);
+
+            if (config.surfaceOnlySpawning) {
+                initialY = snapshot.getHighestBlockYAt(initialX, initialZ);
+                if (initialY == Integer.MIN_VALUE) {
+                    continue;
+                }
+            }
+
+            Location location = walk(snapshot, random, origin, null, initialX, initialY, initialZ, config);
+            if (location != null) {
+                locations.add(location);
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Finds a group center and group member locations around an origin, mirroring {@link SpawningUtility#spawnGroup}.
+     *
+     * @param snapshot    The captured chunks to read from.
+     * @param origin      The player location to search around.
+     * @param spawnCount  The number of group members to find.
+     * @param config      Configuration for spawning behavior.
+     * @return The safe locations found, possibly fewer than requested.
+     */
+    private static List<Location> searchGroup(SpawnSnapshot snapshot, Location origin, int spawnCount, SpawnConfig config) {
+        Random random = ThreadLocalRandom.current();
+        List<Location> locations = new ArrayList<>();
+
+        // Find the group center
+        Location groupCenter = null;
+        int attempts = 0;
+        while (groupCenter == null && attempts < config.maxSpawnAttempts) {
+            attempts++;
+
+            int initialX = origin.getBlockX() + getRandomOffset(random, config.minSpawnRadius, config.maxSpawnRadius);
+            int initialY = origin.getBlockY() + getRandomOffset(random, config.minYRadius, config.maxYRadius);
+            int initialZ = origin.getBlockZ() + getRandomOffset(random, config.minSpawnRadius, config.maxSpawnRadius);
+
+            if (config.surfaceOnlySpawning) {
+                initialY = snapshot.getHighestBlockYAt(initialX, initialZ);
+                if (initialY == Integer.MIN_VALUE) {
+                    continue;
+                }
+            }
+
+            groupCenter = walk(snapshot, random, origin, null, initialX, initialY, initialZ, config);
+        }
+
+        if (groupCenter == null) {
+            return locations;
+        }
+
+        // Find the group members around the center
+        attempts = 0;
+        while (locations.size() < spawnCount && attempts < config.maxSpawnAttempts * 2) {
+            attempts++;
+
+            int initialX = groupCenter.getBlockX() + getRandomOffset(random, 0, config.groupSpacing);
+            int initialY = groupCenter.getBlockY() + getRandomOffset(random, 0, 1);
+            int initialZ = groupCenter.getBlockZ() + getRandomOffset(random, 0, config.groupSpacing);
+
+            if (config.surfaceOnlySpawning) {
+                initialY = snapshot.getHighestBlockYAt(initialX, initialZ);
+                if (initialY == Integer.MIN_VALUE) {
+                    continue;
+                }
+            }
+
+            Location location = walk(snapshot, random, origin, groupCenter, initialX, initialY, initialZ, config);
+            if (location != null) {
+                locations.add(location);
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Random-walks from the initial coordinates until a safe location is found.
+     * Behaves like {@link LocationUtility#getSafeLocation} when no group center is given and like
+     * {@link LocationUtility#getGroupSafeLocation} otherwise. Steps into chunks that were not captured
+     * are treated like leaving the search radius and reset the walk.
+     *
+     * @param snapshot    The captured chunks to read from.
+     * @param random      The random source of the current worker thread.
+     * @param origin      The player location the search is anchored to.
+     * @param groupCenter The group center to stay around, or null for a spread search.
+     * @param initialX    Initial X coordinate for the walk.
+     * @param initialY    Initial Y coordinate for the walk.
+     * @param initialZ    Initial Z coordinate for the walk.
+     * @param config      Configuration for spawning behavior.
+     * @return A block-centered safe location, or null if none was found within the allowed tries.
+     */
+    private static Location walk(SpawnSnapshot snapshot, Random random, Location origin, Location groupCenter,
+                                 int initialX, int initialY, int initialZ, SpawnConfig config) {
+        boolean group = groupCenter != null;
+        ColumnScanner.MaterialAccess access = snapshot::getType;
+        int maxTries = group ? config.maxSpawnAttempts : config.maxSpawnAttempts * 3;
+        int x = initialX;
+        int y = initialY;
+        int z = initialZ;
+
+        // Check world height boundaries
+        if (y < snapshot.getMinHeight()) {
+            y = snapshot.getMinHeight();
+        } else if (y >= snapshot.getMaxHeight()) {
+            y = snapshot.getMaxHeight() - 3;
+        }
+
+        for (int currentTry = 0; currentTry < maxTries; currentTry++) {
+            if (ColumnScanner.isSafe(access, x, y, z, snapshot.getMinHeight(), snapshot.getMaxHeight(), config)) {
+                return new Location(snapshot.getWorld(), x + 0.5, config.centerY ? y + 0.5 : y, z + 0.5);
+            }
+
+            Material type = snapshot.getType(x, y, z);
+            Material below = snapshot.getType(x, y - 1, z);
+            boolean outside = type == null || below == null;
+
+            if (!outside) {
+                if (type.isSolid()) {
+                    // Scan the column above once instead of stepping up block by block, like the synchronous walk
+                    int window = Math.max(1, Math.min(maxTries - currentTry - 1, config.maxYRadius));
+                    int safeY = ColumnScanner.findSafeY(access, x, z, y + 1, y + window,
+                            snapshot.getMinHeight(), snapshot.getMaxHeight(), config);
+                    if (safeY != ColumnScanner.NOT_FOUND) {
+                        return new Location(snapshot.getWorld(), x + 0.5, config.centerY ? safeY + 0.5 : safeY, z + 0.5);
+                    }
+                    // Each scanned layer counts as a try, then move on to a neighbouring column
+                    currentTry += window - 1;
+                    x += random.nextInt(3) - 1;
+                    z += random.nextInt(3) - 1;
+                } else if (!below.isSolid() && !isLiquidMaterial(below, config)) {
+                    y--;
+                } else {
+                    x += random.nextInt(3) - 1;
+                    z += random.nextInt(3) - 1;
+                }
+
+                double distanceSquared = group
+                        ? Math.pow(groupCenter.getX() - x, 2) + Math.pow(groupCenter.getZ() - z, 2)
+                        : Math.pow(origin.getX() - x, 2) + Math.pow(origin.getZ() - z, 2);
+                double radius = group ? config.groupSpacing : config.maxSpawnRadius;
+                outside = distanceSquared > radius * radius;
+            }
+
+            if (outside) {
+                // Reset to a new random position, just like the synchronous walk
+                if (group) {
+                    x = groupCenter.getBlockX() + random.nextInt(config.groupSpacing * 2 + 1) - config.groupSpacing;
+                    z = groupCenter.getBlockZ() + random.nextInt(config.groupSpacing * 2 + 1) - config.groupSpacing;
+                } else {
+                    x = origin.getBlockX() + getRandomOffset(random, config.minSpawnRadius, config.maxSpawnRadius);
+                    z = origin.getBlockZ() + getRandomOffset(random, config.minSpawnRadius, config.maxSpawnRadius);
+                }
+
+                if (config.surfaceOnlySpawning) {
+                    y = snapshot.getHighestBlockYAt(x, z);
+                } else if (group) {
+                    y = groupCenter.getBlockY() + (random.nextInt(3) - 1);
+                } else {
+                    y = origin.getBlockY() + getRandomOffset(random, config.minYRadius, config.maxYRadius);
+                }
+            }
+        }
+        return null;
+    }
+}
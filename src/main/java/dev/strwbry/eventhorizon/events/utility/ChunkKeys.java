@@ -0,0 +1,40 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+/**
+ * Packs chunk coordinates into a single long, used as map key and in sorted key arrays throughout the plugin.
+ * The X coordinate takes the high 32 bits and the Z coordinate the low 32 bits, so sorting keys orders chunks by X
+ * first and Z second.
+ */
+public class ChunkKeys {
+
+    /**
+     * Packs chunk coordinates into a single key.
+     *
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The packed key
+     */
+    public static long of(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the chunk X coordinate of a key.
+     *
+     * @param key The packed key
+     * @return The chunk X coordinate
+     */
+    public static int x(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Gets the chunk Z coordinate of a key.
+     *
+     * @param key The packed key
+     * @return The chunk Z coordinate
+     */
+    public static int z(long key) {
+        return (int) key;
+    }
+}
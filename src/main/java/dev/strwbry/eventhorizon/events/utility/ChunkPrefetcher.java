@@ -0,0 +1,137 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Loads chunks around players ahead of time through Paper's async chunk API.
+ * Prefetched chunks are held with a plugin chunk ticket for a configurable time so that the next
+ * spawn round can sample them without loading anything on the main thread. Chunks are never generated,
+ * only loaded from disk if they already exist.
+ */
+public class ChunkPrefetcher {
+    /** Held chunks mapped to the time their ticket expires, in milliseconds */
+    private static final Map<HeldChunk, Long> heldChunks = new HashMap<>();
+    /** Chunks with a pending async load */
+    private static final Set<HeldChunk> pendingChunks = new HashSet<>();
+    /** Task releasing expired tickets, null while nothing is held */
+    private static BukkitTask releaseTask = null;
+
+    /**
+     * Identifies a chunk held by the prefetcher.
+     *
+     * @param world  The world UID
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     */
+    private record HeldChunk(UUID world, int chunkX, int chunkZ) {
+    }
+
+    /**
+     * Requests an async load of every chunk within the radius of a block column that isn't loaded yet,
+     * and extends the hold time of chunks that were already prefetched.
+     * Must be called from the main server thread.
+     *
+     * @param world   The world to prefetch in
+     * @param centerX Block X coordinate of the center
+     * @param centerZ Block Z coordinate of the center
+     * @param radius  Radius around the center in blocks
+     */
+    public static void prefetch(World world, int centerX, int centerZ, int radius) {
+        long expiry = System.currentTimeMillis() + AdvConfig.getChunkPrefetchHoldSeconds() * 1000L;
+
+        for (int chunkX = (centerX - radius) >> 4; chunkX <= (centerX + radius) >> 4; chunkX++) {
+            for (int chunkZ = (centerZ - radius) >> 4; chunkZ <= (centerZ + radius) >> 4; chunkZ++) {
+                HeldChunk held = new HeldChunk(world.getUID(), chunkX, chunkZ);
+                if (heldChunks.containsKey(held)) {
+                    heldChunks.put(held, expiry);
+                    continue;
+                }
+                if (world.isChunkLoaded(chunkX, chunkZ) || pendingChunks.contains(held)) {
+                    continue;
+                }
+
+                pendingChunks.add(held);
+                // Async load only, never generate new chunks; Paper completes the future on the main thread
+                world.getChunkAtAsync(chunkX, chunkZ, false).thenAccept(chunk -> {
+                    pendingChunks.remove(held);
+                    if (chunk != null && chunk.addPluginChunkTicket(EventHorizon.getPlugin())) {
+                        heldChunks.put(held, expiry);
+                        startReleaseTask();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Starts the task releasing expired chunk tickets if it is not already running.
+     */
+    private static void startReleaseTask() {
+        if (releaseTask != null && !releaseTask.isCancelled()) {
+            return;
+        }
+
+        releaseTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                Iterator<Map.Entry<HeldChunk, Long>> iterator = heldChunks.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<HeldChunk, Long> entry = iterator.next();
+                    if (entry.getValue() <= now) {
+                        release(entry.getKey());
+                        iterator.remove();
+                    }
+                }
+                if (heldChunks.isEmpty()) {
+                    cancel();
+                    releaseTask = null;
+                }
+            }
+        }.runTaskTimer(EventHorizon.getPlugin(), 20L, 20L);
+    }
+
+    /**
+     * Removes the plugin ticket of a held chunk.
+     *
+     * @param held The held chunk
+     */
+    private static void release(HeldChunk held) {
+        World world = Bukkit.getWorld(held.world());
+        if (world != null) {
+            world.removePluginChunkTicket(held.chunkX(), held.chunkZ(), EventHorizon.getPlugin());
+        }
+    }
+
+    /**
+     * Releases every held chunk immediately.
+     * Should be called during plugin shutdown.
+     */
+    public static void releaseAll() {
+        for (HeldChunk held : heldChunks.keySet()) {
+            release(held);
+        }
+        heldChunks.clear();
+        pendingChunks.clear();
+        if (releaseTask != null) {
+            releaseTask.cancel();
+            releaseTask = null;
+        }
+    }
+
+    /**
+     * Gets the number of chunks currently held by the prefetcher.
+     *
+     * @return The held chunk count
+     */
+    public static int getHeldChunkCount() {
+        return heldChunks.size();
+    }
+}
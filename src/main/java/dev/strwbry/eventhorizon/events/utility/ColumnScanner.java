@@ -0,0 +1,208 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+import dev.strwbry.eventhorizon.events.utility.LocationUtility.SpawnConfig;
+import org.bukkit.Material;
+
+/**
+ * Allocation-free spawn safety checks on plain int coordinates.
+ * Block properties are looked up in a table indexed by {@link Material#ordinal()}, and clearance is checked
+ * by scanning each column of the clearance box once from the base upwards, counting consecutive passable
+ * blocks until the required height is reached. No objects are created per probe, so the checks can run
+ * hundreds of times per tick (or on worker threads against snapshots) without producing garbage.
+ */
+public class ColumnScanner {
+    /** Flag for blocks that count as a solid floor */
+    public static final byte SOLID = 1;
+    /** Flag for air */
+    public static final byte AIR = 2;
+    /** Flag for water */
+    public static final byte WATER = 4;
+    /** Flag for lava */
+    public static final byte LAVA = 8;
+    /** Returned by {@link #findSafeY} when no safe base exists in the scanned range */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    /** Block flags indexed by material ordinal */
+    private static final byte[] FLAGS = new byte[Material.values().length];
+
+    static {
+        for (Material material : Material.values()) {
+            if (material.isLegacy() || !material.isBlock()) {
+                continue;
+            }
+            byte flags = 0;
+            if (material.isSolid()) {
+                flags |= SOLID;
+            }
+            if (material == Material.AIR) {
+                flags |= AIR;
+            } else if (material == Material.WATER) {
+                flags |= WATER;
+            } else if (material == Material.LAVA) {
+                flags |= LAVA;
+            }
+            FLAGS[material.ordinal()] = flags;
+        }
+    }
+
+    /**
+     * Reads block materials by coordinates, e.g. {@code world::getType} or {@code snapshot::getType}.
+     * Implementations may return null for positions that can't be read; those count as neither solid nor passable.
+     */
+    @FunctionalInterface
+    public interface MaterialAccess {
+        Material getType(int x, int y, int z);
+    }
+
+    /**
+     * Gets the table flags of a material.
+     *
+     * @param type The material, or null
+     * @return The flags of the material, 0 for null
+     */
+    public static byte flags(Material type) {
+        return type == null ? 0 : FLAGS[type.ordinal()];
+    }
+
+    /**
+     * Builds the mask of block flags a spawn configuration treats as safe to occupy.
+     *
+     * @param config The spawn configuration containing liquid spawn settings
+     * @return The safe flag mask
+     */
+    public static int safeMask(SpawnConfig config) {
+        int mask = AIR;
+        if (config.allowWaterSpawns) {
+            mask |= WATER;
+        }
+        if (config.allowLavaSpawns) {
+            mask |= LAVA;
+        }
+        return mask;
+    }
+
+    /**
+     * Checks if a position is safe for spawning.
+     * Same rules as the block based check: the position must be air or an allowed liquid, the block
+     * below must be solid, and the clearance box above must only contain safe blocks.
+     *
+     * @param access    Block reader
+     * @param x         Block X coordinate
+     * @param y         Block Y coordinate
+     * @param z         Block Z coordinate
+     * @param minHeight World minimum height
+     * @param maxHeight World maximum height (exclusive)
+     * @param config    Spawn configuration containing clearance and liquid settings
+     * @return true if the position is safe, false otherwise
+     */
+    public static boolean isSafe(MaterialAccess access, int x, int y, int z, int minHeight, int maxHeight, SpawnConfig config) {
+        if (y < minHeight || y >= maxHeight) {
+            return false;
+        }
+        int safeMask = safeMask(config);
+        if ((flags(access.getType(x, y, z)) & safeMask) == 0 || (flags(access.getType(x, y - 1, z)) & SOLID) == 0) {
+            return false;
+        }
+        return isBoxClear(access, x, y, z, maxHeight, safeMask, config);
+    }
+
+    /**
+     * Checks the clearance box above a base position.
+     * Each column of the box is scanned upwards once, keeping a running count of consecutive safe blocks.
+     *
+     * @param access    Block reader
+     * @param x         Base X coordinate
+     * @param y         Base Y coordinate
+     * @param z         Base Z coordinate
+     * @param maxHeight World maximum height (exclusive)
+     * @param safeMask  Flags treated as safe
+     * @param config    Spawn configuration containing clearance settings
+     * @return true if the whole box is clear, false otherwise
+     */
+    private static boolean isBoxClear(MaterialAccess access, int x, int y, int z, int maxHeight, int safeMask, SpawnConfig config) {
+        if (y + config.heightClearance >= maxHeight) {
+            return false;
+        }
+
+        int heightBlocks = (int) Math.ceil(config.heightClearance);
+        int widthBlocks = (int) Math.ceil(config.widthClearance);
+        // If widthClearance is odd, check both negative and positive x and z directions
+        int start = config.widthClearance % 2 == 1 ? -widthBlocks : 0;
+
+        for (int dx = start; dx <= widthBlocks; dx++) {
+            for (int dz = start; dz <= widthBlocks; dz++) {
+                if (columnRun(access, x + dx, y, z + dz, heightBlocks, safeMask) < heightBlocks) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts consecutive safe blocks upwards from a position, stopping once the limit is reached.
+     *
+     * @param access   Block reader
+     * @param x        Column X coordinate
+     * @param y        Starting Y coordinate
+     * @param z        Column Z coordinate
+     * @param limit    Number of blocks after which counting stops
+     * @param safeMask Flags treated as safe
+     * @return The number of consecutive safe blocks, at most {@code limit}
+     */
+    private static int columnRun(MaterialAccess access, int x, int y, int z, int limit, int safeMask) {
+        int run = 0;
+        while (run < limit && (flags(access.getType(x, y + run, z)) & safeMask) != 0) {
+            run++;
+        }
+        return run;
+    }
+
+    /**
+     * Scans a column range once from the bottom up and returns the lowest safe base in it.
+     * A running count of consecutive clear layers slides up the column, so every layer of the
+     * clearance box is read only once regardless of how many bases are tested.
+     *
+     * @param access    Block reader
+     * @param x         Column X coordinate
+     * @param z         Column Z coordinate
+     * @param fromY     Lowest base Y to test (inclusive)
+     * @param toY       Highest base Y to test (inclusive)
+     * @param minHeight World minimum height
+     * @param maxHeight World maximum height (exclusive)
+     * @param config    Spawn configuration containing clearance and liquid settings
+     * @return The lowest safe base Y, or {@link #NOT_FOUND}
+     */
+    public static int findSafeY(MaterialAccess access, int x, int z, int fromY, int toY,
+                                int minHeight, int maxHeight, SpawnConfig config) {
+        int safeMask = safeMask(config);
+        int heightBlocks = (int) Math.ceil(config.heightClearance);
+        int required = Math.max(heightBlocks, 1);
+        int widthBlocks = (int) Math.ceil(config.widthClearance);
+        int start = config.widthClearance % 2 == 1 ? -widthBlocks : 0;
+
+        int from = Math.max(fromY, minHeight + 1);
+        int to = Math.min(toY, maxHeight - 1);
+        int run = 0;
+
+        for (int layer = from; layer <= to + required - 1 && layer < maxHeight; layer++) {
+            // A layer is clear when the center (and the whole box if clearance is needed) is safe
+            boolean clear = (flags(access.getType(x, layer, z)) & safeMask) != 0;
+            if (clear && heightBlocks > 0) {
+                for (int dx = start; dx <= widthBlocks && clear; dx++) {
+                    for (int dz = start; dz <= widthBlocks && clear; dz++) {
+                        clear = (flags(access.getType(x + dx, layer, z + dz)) & safeMask) != 0;
+                    }
+                }
+            }
+            run = clear ? run + 1 : 0;
+
+            int base = layer - required + 1;
+            if (run >= required && base <= to && base + config.heightClearance < maxHeight
+                    && (flags(access.getType(x, base - 1, z)) & SOLID) != 0) {
+                return base;
+            }
+        }
+        return NOT_FOUND;
+    }
+}
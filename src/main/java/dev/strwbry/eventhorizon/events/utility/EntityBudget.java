@@ -0,0 +1,291 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.listeners.ListenerManager;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Global budget for entities spawned by events.
+ * Live entities carrying an event mark are tracked per world and per chunk, and new event spawns are
+ * refused once a world or chunk reaches its configured limit. Spawn counts can be rescaled up front so the
+ * remaining budget is shared evenly between players instead of the first players using it all.
+ *
+ * Entities are tracked when an event spawns them and when marked entities are added back to the world
+ * (e.g. chunk loads), and untracked when they are removed from the world. Per-chunk counts are refreshed
+ * periodically because tracked entities move between chunks.
+ *
+ * Only loaded entities count against the budget: a marked entity in an unloaded chunk costs the server
+ * nothing until it loads again, at which point it is tracked again. This also keeps the counts reproducible
+ * after a restart, since {@link #initialize()} can only see entities in loaded chunks.
+ */
+public class EntityBudget {
+    /** Interval between per-chunk count refreshes in ticks */
+    private static final long REBUCKET_INTERVAL = 100L;
+
+    /** Tracked entities mapped to the chunk they were last counted in */
+    private static final Map<UUID, TrackedChunk> trackedEntities = new HashMap<>();
+    /** Tracked entity count per world */
+    private static final Map<UUID, Integer> worldCounts = new HashMap<>();
+    /** Tracked entity count per chunk */
+    private static final Map<TrackedChunk, Integer> chunkCounts = new HashMap<>();
+    /** Task refreshing per-chunk counts, null while nothing is tracked */
+    private static BukkitTask rebucketTask = null;
+
+    /**
+     * A chunk entities are counted in.
+     *
+     * @param world The world UID
+     * @param chunk The packed chunk coordinates from {@link ChunkKeys#of(int, int)}
+     */
+    private record TrackedChunk(UUID world, long chunk) {
+        /**
+         * Gets the chunk a location is in.
+         *
+         * @param location The location
+         * @return The chunk of the location
+         */
+        static TrackedChunk of(Location location) {
+            return new TrackedChunk(location.getWorld().getUID(),
+                    ChunkKeys.of(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+        }
+    }
+
+    /**
+     * Registers the listener keeping the budget in sync and counts marked entities that are already loaded,
+     * e.g. entities left over from before a restart or reload.
+     * Must be called once the plugin is enabled.
+     */
+    public static void initialize() {
+        clear();
+        ListenerManager.initializeEntityBudget();
+        for (World world : Bukkit.getWorlds()) {
+            for (Entity entity : world.getEntities()) {
+                if (isEventEntity(entity)) {
+                    track(entity);
+                }
+            }
+        }
+        MsgUtility.log("Entity budget is tracking " + getTotalUsage() + " loaded event entities");
+    }
+
+    /**
+     * Checks whether the budget is enforced.
+     *
+     * @return true if the entity budget is enabled in the config
+     */
+    public static boolean isEnabled() {
+        return AdvConfig.getEntityBudgetEnabled();
+    }
+
+    /**
+     * Checks whether another event entity may be spawned at the given location.
+     *
+     * @param location The planned spawn location
+     * @return true if neither the world nor the chunk limit is reached
+     */
+    public static boolean tryAcquire(Location location) {
+        if (!isEnabled()) {
+            return true;
+        }
+
+        return getWorldUsage(location.getWorld()) < AdvConfig.getEntityBudgetWorldLimit()
+                && chunkCounts.getOrDefault(TrackedChunk.of(location), 0) < AdvConfig.getEntityBudgetChunkLimit();
+    }
+
+    /**
+     * Scales a per-player spawn count down so that spawning it for every player stays within the
+     * remaining budget of each world the players are in.
+     *
+     * @param players   The players that will be spawned around
+     * @param requested The requested spawn count per player
+     * @param eventName Name of the event, used for logging
+     * @return The spawn count per player that fits into the budget
+     */
+    public static int scaleCount(Collection<Player> players, int requested, String eventName) {
+        if (!isEnabled() || players.isEmpty()) {
+            return requested;
+        }
+
+        Map<World, Integer> playersPerWorld = new HashMap<>();
+        for (Player player : players) {
+            playersPerWorld.merge(player.getWorld(), 1, Integer::sum);
+        }
+
+        int scaled = requested;
+        int worldLimit = AdvConfig.getEntityBudgetWorldLimit();
+        for (Map.Entry<World, Integer> entry : playersPerWorld.entrySet()) {
+            int remaining = Math.max(0, worldLimit - getWorldUsage(entry.getKey()));
+            scaled = Math.min(scaled, remaining / entry.getValue());
+        }
+
+        if (scaled < requested) {
+            MsgUtility.warning("Entity budget reached for event " + eventName +
+                    ": scaled spawn count from " + requested + " to " + scaled + " per player");
+        }
+        return scaled;
+    }
+
+    /**
+     * Starts tracking an entity spawned by an event.
+     *
+     * @param entity The spawned entity
+     */
+    public static void track(Entity entity) {
+        if (entity == null || !entity.isValid() || trackedEntities.containsKey(entity.getUniqueId())) {
+            return;
+        }
+
+        TrackedChunk chunk = TrackedChunk.of(entity.getLocation());
+        trackedEntities.put(entity.getUniqueId(), chunk);
+        worldCounts.merge(chunk.world(), 1, Integer::sum);
+        chunkCounts.merge(chunk, 1, Integer::sum);
+        startRebucketTask();
+    }
+
+    /**
+     * Stops tracking an entity, e.g. after it was removed from the world or its chunk unloaded.
+     *
+     * @param entity The removed entity
+     */
+    public static void untrack(Entity entity) {
+        TrackedChunk chunk = trackedEntities.remove(entity.getUniqueId());
+        if (chunk == null) {
+            return;
+        }
+        decrement(worldCounts, chunk.world());
+        decrement(chunkCounts, chunk);
+    }
+
+    /**
+     * Checks whether an entity carries an event mark.
+     * Event marks are BYTE entries in the plugin's namespace, see {@link MarkingUtility}.
+     *
+     * @param entity The entity to check
+     * @return true if the entity was marked by an event
+     */
+    public static boolean isEventEntity(Entity entity) {
+        if (entity instanceof Player) {
+            return false;
+        }
+        String namespace = EventHorizon.getPlugin().getName().toLowerCase(Locale.ROOT);
+        PersistentDataContainer container = entity.getPersistentDataContainer();
+        for (NamespacedKey key : container.getKeys()) {
+            if (key.getNamespace().equals(namespace) && container.has(key, PersistentDataType.BYTE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decrements a counter, removing it once it reaches zero.
+     *
+     * @param counts The counters
+     * @param key    The counter to decrement
+     * @param <K>    Type of the counter key
+     */
+    private static <K> void decrement(Map<K, Integer> counts, K key) {
+        counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Starts the task refreshing per-chunk counts if it is not already running.
+     */
+    private static void startRebucketTask() {
+        if (rebucketTask != null && !rebucketTask.isCancelled()) {
+            return;
+        }
+
+        rebucketTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                rebucket();
+                if (trackedEntities.isEmpty()) {
+                    cancel();
+                    rebucketTask = null;
+                }
+            }
+        }.runTaskTimer(EventHorizon.getPlugin(), REBUCKET_INTERVAL, REBUCKET_INTERVAL);
+    }
+
+    /**
+     * Recounts tracked entities by the chunk they are currently in and drops entities that are gone.
+     */
+    private static void rebucket() {
+        chunkCounts.clear();
+        worldCounts.clear();
+
+        Iterator<Map.Entry<UUID, TrackedChunk>> iterator = trackedEntities.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, TrackedChunk> entry = iterator.next();
+            Entity entity = Bukkit.getEntity(entry.getKey());
+            if (entity == null || !entity.isValid()) {
+                iterator.remove();
+                continue;
+            }
+
+            TrackedChunk chunk = TrackedChunk.of(entity.getLocation());
+            entry.setValue(chunk);
+            worldCounts.merge(chunk.world(), 1, Integer::sum);
+            chunkCounts.merge(chunk, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Stops tracking every entity.
+     * Used when add/remove events can no longer be observed, e.g. after listeners were unregistered.
+     */
+    public static void clear() {
+        trackedEntities.clear();
+        worldCounts.clear();
+        chunkCounts.clear();
+        if (rebucketTask != null) {
+            rebucketTask.cancel();
+            rebucketTask = null;
+        }
+    }
+
+    /**
+     * Gets the number of live event entities in a world.
+     *
+     * @param world The world
+     * @return The tracked entity count of the world
+     */
+    public static int getWorldUsage(World world) {
+        return worldCounts.getOrDefault(world.getUID(), 0);
+    }
+
+    /**
+     * Gets the number of live event entities in a chunk.
+     *
+     * @param world  The world of the chunk
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The tracked entity count of the chunk
+     */
+    public static int getChunkUsage(World world, int chunkX, int chunkZ) {
+        return chunkCounts.getOrDefault(new TrackedChunk(world.getUID(), ChunkKeys.of(chunkX, chunkZ)), 0);
+    }
+
+    /**
+     * Gets the number of live event entities across all worlds.
+     *
+     * @return The total tracked entity count
+     */
+    public static int getTotalUsage() {
+        return trackedEntities.size();
+    }
+}
@@ -1,9 +1,9 @@
 package dev.strwbry.eventhorizon.events.utility;
 
+import dev.strwbry.eventhorizon.events.utility.ColumnScanner.MaterialAccess;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
 import java.util.Random;
@@ -28,71 +28,10 @@ public class LocationUtility {
      * @return A safe Location for spawning, or null if no suitable location was found after max attempts.
      */
     public static Location getSafeLocation(Player player, int initialX, int initialY, int initialZ, SpawnConfig config) {
-        World world = player.getWorld();
-        int maxTries = config.maxSpawnAttempts * 3;
-        int currentTry = 0;
-
-        int x = initialX;
-        int y = initialY;
-        int z = initialZ;
-
-        // Check world height boundaries
-        if (y < world.getMinHeight()) {
-            y = world.getMinHeight();
-        } else if (y >= world.getMaxHeight()) {
-            y = world.getMaxHeight() - 3;
-        }
-
-        while (currentTry < maxTries) {
-            Location location = new Location(world, x, y, z);
-
-            if (isSafeLocation(location, config)) {
-                // Center the location in the block
-                location.setX(x + 0.5);
-                location.setZ(z + 0.5);
-                location.setY(config.centerY ? y + 0.5 : y);
-                return location;
-            }
-
-            // Adjust position based on issues
-            Block block = location.getBlock();
-            Block blockBelow = location.clone().subtract(0, 1, 0).getBlock();
-
-            if (block.getType().isSolid()) {
-                // If current block is solid, move up
-                y++;
-            } else if (!blockBelow.getType().isSolid() && !isLiquidLocation(blockBelow, config)) {
-                // If there's no solid block below, move down
-                y--;
-            } else {
-                // If other issues, try a small move horizontally
-                x += random.nextInt(3) - 1;
-                z += random.nextInt(3) - 1;
-            }
-
-            // Check if we're still within the radius
-            Location playerLocation = player.getLocation();
-            double distanceSquared = Math.pow(playerLocation.getX() - x, 2) +
-                    Math.pow(playerLocation.getZ() - z, 2);
-
-            if (distanceSquared > Math.pow(config.maxSpawnRadius, 2)) {
-                // If we've moved outside the radius, reset to a new random position within radius
-                int xOffset = getRandomOffset(config.minSpawnRadius, config.maxSpawnRadius);
-                int zOffset = getRandomOffset(config.minSpawnRadius, config.maxSpawnRadius);
-                x = playerLocation.getBlockX() + xOffset;
-                z = playerLocation.getBlockZ() + zOffset;
-
-                // Reset y based on surface setting
-                if (config.surfaceOnlySpawning) {
-                    y = world.getHighestBlockYAt(x, z);
-                } else {
-                    int yOffset = getRandomOffset(config.minYRadius, config.maxYRadius);
-                    y = playerLocation.getBlockY() + yOffset;
-                }
-            }
-            currentTry++;
-        }
-        return null;
+        Location playerLocation = player.getLocation();
+        return walk(player.getWorld(), playerLocation.getX(), playerLocation.getZ(),
+                playerLocation.getBlockX(), playerLocation.getBlockY(), playerLocation.getBlockZ(), false,
+                initialX, initialY, initialZ, config);
     }
 
     /**
@@ -108,40 +47,76 @@ public class LocationUtility {
      * @return A safe Location for spawning, or null if no suitable location was found after max attempts.
      */
     public static Location getGroupSafeLocation(Player player, Location groupCenter, int initialX, int initialY, int initialZ, SpawnConfig config) {
-        World world = player.getWorld();
-        int maxTries = config.maxSpawnAttempts;
-        int currentTry = 0;
+        return walk(player.getWorld(), groupCenter.getX(), groupCenter.getZ(),
+                groupCenter.getBlockX(), groupCenter.getBlockY(), groupCenter.getBlockZ(), true,
+                initialX, initialY, initialZ, config);
+    }
+
+    /**
+     * Random-walks from the initial coordinates until a safe location is found.
+     * Works on plain int coordinates and only creates a Location for the final result.
+     * When the walk starts inside solid blocks, the column above is scanned once for a safe base
+     * instead of stepping up one block per try. Unless the chunk policy allows loading, blocks in unloaded
+     * chunks read as unsafe and stepping into an unloaded column resets the walk.
+     *
+     * @param world     The world to search in.
+     * @param anchorX   Exact X coordinate the walk must stay around (player or group center).
+     * @param anchorZ   Exact Z coordinate the walk must stay around.
+     * @param anchorBlockX Block X coordinate of the anchor.
+     * @param anchorBlockY Block Y coordinate of the anchor.
+     * @param anchorBlockZ Block Z coordinate of the anchor.
+     * @param group     True to stay within the group spacing, false to stay within the spawn radius.
+     * @param initialX  Initial X coordinate for the walk.
+     * @param initialY  Initial Y coordinate for the walk.
+     * @param initialZ  Initial Z coordinate for the walk.
+     * @param config    The spawn configuration.
+     * @return A safe Location for spawning, or null if no suitable location was found after max attempts.
+     */
+    private static Location walk(World world, double anchorX, double anchorZ, int anchorBlockX, int anchorBlockY, int anchorBlockZ,
+                                 boolean group, int initialX, int initialY, int initialZ, SpawnConfig config) {
+        boolean loadedOnly = config.chunkPolicy != ChunkPolicy.LOAD;
+        MaterialAccess access = loadedOnly
+                ? (bx, by, bz) -> world.isChunkLoaded(bx >> 4, bz >> 4) ? world.getType(bx, by, bz) : null
+                : world::getType;
+        int minHeight = world.getMinHeight();
+        int maxHeight = world.getMaxHeight();
+        int maxTries = group ? config.maxSpawnAttempts : config.maxSpawnAttempts * 3;
+        double radius = group ? config.groupSpacing : config.maxSpawnRadius;
+        int safeMask = ColumnScanner.safeMask(config);
 
         int x = initialX;
         int y = initialY;
         int z = initialZ;
 
         // Check world height boundaries
-        if (y < world.getMinHeight()) {
-            y = world.getMinHeight();
-        } else if (y >= world.getMaxHeight()) {
-            y = world.getMaxHeight() - 3;
+        if (y < minHeight) {
+            y = minHeight;
+        } else if (y >= maxHeight) {
+            y = maxHeight - 3;
         }
 
+        int currentTry = 0;
         while (currentTry < maxTries) {
-            Location location = new Location(world, x, y, z);
-
-            if (isSafeLocation(location, config)) {
-                // Center the location in the block
-                location.setX(x + 0.5);
-                location.setZ(z + 0.5);
-                location.setY(config.centerY ? y + 0.5 : y);
-                return location;
+            if (ColumnScanner.isSafe(access, x, y, z, minHeight, maxHeight, config)) {
+                return centeredLocation(world, x, y, z, config);
             }
 
             // Adjust position based on issues
-            Block block = location.getBlock();
-            Block blockBelow = location.clone().subtract(0, 1, 0).getBlock();
-
-            if (block.getType().isSolid()) {
-                // If current block is solid, move up
-                y++;
-            } else if (!blockBelow.getType().isSolid() && !isLiquidLocation(blockBelow, config)) {
+            byte flags = ColumnScanner.flags(access.getType(x, y, z));
+            byte flagsBelow = ColumnScanner.flags(access.getType(x, y - 1, z));
+
+            if ((flags & ColumnScanner.SOLID) != 0) {
+                // If current block is solid, scan the column above once instead of stepping up block by block
+                int window = Math.max(1, Math.min(maxTries - currentTry - 1, config.maxYRadius));
+                int safeY = ColumnScanner.findSafeY(access, x, z, y + 1, y + window, minHeight, maxHeight, config);
+                if (safeY != ColumnScanner.NOT_FOUND) {
+                    return centeredLocation(world, x, safeY, z, config);
+                }
+                // Each scanned layer counts as a try, then move on to a neighbouring column
+                currentTry += window - 1;
+                x += random.nextInt(3) - 1;
+                z += random.nextInt(3) - 1;
+            } else if ((flagsBelow & ColumnScanner.SOLID) == 0 && (flagsBelow & safeMask & ~ColumnScanner.AIR) == 0) {
                 // If there's no solid block below, move down
                 y--;
             } else {
@@ -150,28 +125,46 @@ public class LocationUtility {
                 z += random.nextInt(3) - 1;
             }
 
-            // Check if we're still within the group spacing radius
-            double distanceSquared = Math.pow(groupCenter.getX() - x, 2) + Math.pow(groupCenter.getZ() - z, 2);
-            if (distanceSquared > Math.pow(config.groupSpacing, 2)) {
-                // If we've moved outside the group radius, reset to a new position closer to group center
-                int xOffset = random.nextInt(config.groupSpacing * 2 + 1) - config.groupSpacing;
-                int zOffset = random.nextInt(config.groupSpacing * 2 + 1) - config.groupSpacing;
-                x = groupCenter.getBlockX() + xOffset;
-                z = groupCenter.getBlockZ() + zOffset;
+            // Check if we're still within the radius (and inside loaded chunks if required)
+            double distanceSquared = (anchorX - x) * (anchorX - x) + (anchorZ - z) * (anchorZ - z);
+            if (distanceSquared > radius * radius || (loadedOnly && !world.isChunkLoaded(x >> 4, z >> 4))) {
+                // If we've moved outside the radius, reset to a new random position within radius
+                if (group) {
+                    x = anchorBlockX + random.nextInt(config.groupSpacing * 2 + 1) - config.groupSpacing;
+                    z = anchorBlockZ + random.nextInt(config.groupSpacing * 2 + 1) - config.groupSpacing;
+                } else {
+                    x = anchorBlockX + getRandomOffset(config.minSpawnRadius, config.maxSpawnRadius);
+                    z = anchorBlockZ + getRandomOffset(config.minSpawnRadius, config.maxSpawnRadius);
+                }
 
                 // Reset y based on surface setting
-                if (config.surfaceOnlySpawning) {
+                if (config.surfaceOnlySpawning && (!loadedOnly || world.isChunkLoaded(x >> 4, z >> 4))) {
                     y = world.getHighestBlockYAt(x, z);
+                } else if (group) {
+                    y = anchorBlockY + (random.nextInt(3) - 1); // Small y variance in groups
                 } else {
-                    y = groupCenter.getBlockY() + (random.nextInt(3) - 1); // Small y variance in groups
+                    y = anchorBlockY + getRandomOffset(config.minYRadius, config.maxYRadius);
                 }
             }
             currentTry++;
         }
-
         return null;
     }
 
+    /**
+     * Creates a location centered in the given block.
+     *
+     * @param world  The world of the location.
+     * @param x      Block X coordinate.
+     * @param y      Block Y coordinate.
+     * @param z      Block Z coordinate.
+     * @param config The spawn configuration deciding whether Y is centered.
+     * @return The centered location.
+     */
+    private static Location centeredLocation(World world, int x, int y, int z, SpawnConfig config) {
+        return new Location(world, x + 0.5, config.centerY ? y + 0.5 : y, z + 0.5);
+    }
+
     /**
      * Checks if the given location is safe for spawning based on the spawn configuration.
      * A location is considered safe if it is within the world height limits, has a solid block below,
@@ -181,104 +174,77 @@ public class LocationUtility {
      * @param config   The spawn configuration containing clearance settings.
      * @return true if the location is safe, false otherwise.
      */
-    private static boolean isSafeLocation(Location location, SpawnConfig config) {
+    static boolean isSafeLocation(Location location, SpawnConfig config) {
         World world = location.getWorld();
-        if (location.getBlockY() < world.getMinHeight() || location.getBlockY() >= world.getMaxHeight()) {
-            return false;
-        }
-
-        Block block = location.getBlock();
-        Block blockBelow = location.clone().subtract(0, 1, 0).getBlock();
-
-        return isSafeBlock(block, config) &&
-                blockBelow.getType().isSolid() &&
-                checkBlockClearance(location, config);
+        return ColumnScanner.isSafe(world::getType, location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+                world.getMinHeight(), world.getMaxHeight(), config);
     }
 
     /**
-     * Checks if the given block is a liquid location (water or lava) based on the spawn configuration.
+     * Checks if the given material is a liquid (water or lava) that the spawn configuration allows spawning in.
      *
-     * @param block The block to check.
+     * @param type The material to check.
      * @param config The spawn configuration containing liquid spawn settings.
-     * @return true if the block is a liquid location allowed by the config, false otherwise.
+     * @return true if the material is a liquid allowed by the config, false otherwise.
      */
-    private static boolean isLiquidLocation(Block block, SpawnConfig config) {
-        Material type = block.getType();
+    static boolean isLiquidMaterial(Material type, SpawnConfig config) {
         return (type == Material.WATER && config.allowWaterSpawns) || (type == Material.LAVA && config.allowLavaSpawns);
     }
 
     /**
-     * Checks if the given block is safe for spawning.
-     * A block is considered safe if it is air or a liquid location (water/lava) allowed by the config.
-     *
-     * @param block The block to check.
-     * @param config The spawn configuration containing liquid spawn settings.
-     * @return true if the block is safe, false otherwise.
-     */
-    private static boolean isSafeBlock(Block block, SpawnConfig config) {
-        return block.getType() == Material.AIR || isLiquidLocation(block, config);
-    }
-
-    /**
-     * Checks if the area around the given location is clear for spawning.
-     * Takes into account width and height clearance specified in the config.
+     * Generates a random offset within the specified range.
+     * The offset can be positive or negative.
      *
-     * @param location The center location to check.
-     * @param config   The spawn configuration containing clearance settings.
-     * @return true if the area is clear, false otherwise.
+     * @param min Minimum value of the range (inclusive).
+     * @param max Maximum value of the range (inclusive).
+     * @return A random offset between -max and max, inclusive.
      */
-    private static boolean checkBlockClearance(Location location, SpawnConfig config) {
-        World world = location.getWorld();
-        int baseX = location.getBlockX();
-        int baseY = location.getBlockY();
-        int baseZ = location.getBlockZ();
-
-        int heightBlocks = (int)Math.ceil(config.heightClearance);
-        int widthBlocks = (int)Math.ceil(config.widthClearance);
-
-        // Check World height limit
-        if (baseY + config.heightClearance >= world.getMaxHeight()) {
-            return false;
-        }
-
-        for (int y = 0; y < heightBlocks; y++) {
-            int checkY = baseY + y;
-
-            int xStart = 0;
-            int zStart = 0;
-
-            // If widthClearance is odd, check both negative and positive x and z directions
-            if (config.widthClearance % 2 == 1) {
-                xStart = -widthBlocks;
-                zStart = -widthBlocks;
-            }
-
-            for (int x = xStart; x <= widthBlocks; x++) {
-                for (int z = zStart; z <= widthBlocks; z++) {
-                    if (!isSafeBlock(world.getBlockAt(baseX + x, checkY, baseZ + z), config)) {
-                        return false;
-                    }
-                }
-            }
-        }
-
-        return true;
+    public static int getRandomOffset(int min, int max) {
+        return getRandomOffset(random, min, max);
     }
 
     /**
-     * Generates a random offset within the specified range.
-     * The offset can be positive or negative.
+     * Generates a random offset within the specified range using the given random source.
+     * Worker threads should pass a thread-local random instead of sharing the static one.
      *
+     * @param random The random source to draw from.
      * @param min Minimum value of the range (inclusive).
      * @param max Maximum value of the range (inclusive).
      * @return A random offset between -max and max, inclusive.
      */
-    public static int getRandomOffset(int min, int max) {
+    public static int getRandomOffset(Random random, int min, int max) {
         int range = max - min;
         int offset = random.nextInt(range + 1) + min;
         return random.nextBoolean() ? offset : -offset;
     }
 
+    /**
+     * Controls how spawn searches treat chunks that are not loaded.
+     */
+    public enum ChunkPolicy {
+        /** Sample anywhere, loading (or generating) chunks synchronously if needed */
+        LOAD,
+        /** Only sample chunks that are already loaded, candidates elsewhere are skipped */
+        LOADED_ONLY,
+        /** Like LOADED_ONLY, and asynchronously prefetch the chunks around the player for later rounds */
+        PREFETCH;
+
+        /**
+         * Parses a policy from a configuration value.
+         *
+         * @param value The configured value, case-insensitive, with dashes or underscores.
+         * @return The matching policy, or LOAD if the value is unknown.
+         */
+        public static ChunkPolicy fromString(String value) {
+            for (ChunkPolicy policy : values()) {
+                if (value != null && policy.name().equalsIgnoreCase(value.replace('-', '_'))) {
+                    return policy;
+                }
+            }
+            return LOAD;
+        }
+    }
+
     /**
      * Configuration class for spawning mobs.
      * Allows customization of spawn parameters.
@@ -296,6 +262,8 @@ public class LocationUtility {
         public boolean allowWaterSpawns = false;
         public boolean allowLavaSpawns = false;
         public boolean centerY = false;
+        public boolean useSiteIndex = false;
+        public ChunkPolicy chunkPolicy = ChunkPolicy.LOAD;
 
         public SpawnConfig setMaxSpawnRadius(int radius) {
             this.maxSpawnRadius = radius;
@@ -356,5 +324,15 @@ public class LocationUtility {
             this.centerY = centerY;
             return this;
         }
+
+        public SpawnConfig setUseSiteIndex(boolean useSiteIndex) {
+            this.useSiteIndex = useSiteIndex;
+            return this;
+        }
+
+        public SpawnConfig setChunkPolicy(ChunkPolicy chunkPolicy) {
+            this.chunkPolicy = chunkPolicy;
+            return this;
+        }
     }
 }
\ No newline at end of file
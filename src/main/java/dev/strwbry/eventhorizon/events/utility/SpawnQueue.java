@@ -0,0 +1,210 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.utility.LocationUtility.SpawnConfig;
+import dev.strwbry.eventhorizon.events.utility.SpawningUtility.SpawnFunction;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Queue that spreads spawning over several ticks.
+ * A spawn plan (locations per player) is submitted as a batch and drained by a repeating task
+ * that stops each tick once the configured millisecond or entity budget is used up.
+ * Entries closest to their player are spawned first, so the spawns a player can see appear first.
+ *
+ * @param <T> Type of the spawned object (Entity, Item, etc.)
+ */
+public class SpawnQueue<T> {
+    /** Plugin instance used for scheduling */
+    private final EventHorizon plugin = EventHorizon.getPlugin();
+    /** Function creating the object at a location */
+    private final SpawnFunction<T> spawnFunction;
+    /** Hook called for every spawned object */
+    private final BiConsumer<T, Player> onSpawned;
+    /** Spawn configuration used to re-check locations before spawning */
+    private final SpawnConfig spawnConfig;
+    /** Pending entries, closest to their player first */
+    private final PriorityQueue<Entry<T>> entries = new PriorityQueue<>(Comparator.comparingDouble(Entry::distanceSquared));
+    /** Task draining the queue, null while the queue is idle */
+    private BukkitTask drainTask = null;
+
+    /**
+     * A single pending spawn.
+     *
+     * @param player          The player the spawn belongs to
+     * @param location        The planned spawn location
+     * @param distanceSquared Squared distance between the location and the player when planned
+     * @param batch           The batch the entry was submitted with
+     * @param <T>             Type of the spawned object
+     */
+    private record Entry<T>(Player player, Location location, double distanceSquared, Batch batch) {
+    }
+
+    /**
+     * Tracks the progress of one submitted spawn plan.
+     */
+    private static class Batch {
+        /** Number of entries not processed yet */
+        private int remaining;
+        /** Number of objects spawned so far */
+        private int spawned = 0;
+        /** Completed with the spawn count once every entry was processed */
+        private final CompletableFuture<Integer> completion = new CompletableFuture<>();
+
+        /**
+         * Creates a batch of the given size.
+         *
+         * @param size The number of entries in the batch
+         */
+        private Batch(int size) {
+            this.remaining = size;
+            if (size == 0) {
+                completion.complete(0);
+            }
+        }
+
+        /**
+         * Marks one entry as processed and completes the batch when it was the last one.
+         */
+        private void processed() {
+            remaining--;
+            if (remaining == 0) {
+                completion.complete(spawned);
+            }
+        }
+    }
+
+    /**
+     * Creates a spawn queue.
+     *
+     * @param spawnFunction Function to create the entity/item at the given location
+     * @param onSpawned     Hook called for every spawned object and the player it was spawned for
+     * @param spawnConfig   Configuration used to re-check locations right before spawning
+     */
+    public SpawnQueue(SpawnFunction<T> spawnFunction, BiConsumer<T, Player> onSpawned, SpawnConfig spawnConfig) {
+        this.spawnFunction = spawnFunction;
+        this.onSpawned = onSpawned;
+        this.spawnConfig = spawnConfig;
+    }
+
+    /**
+     * Submits a spawn plan and starts draining the queue if it is idle.
+     * Must be called from the main server thread.
+     *
+     * @param plan Planned spawn locations per player
+     * @return Future completed on the main thread with the number of objects spawned from this plan
+     */
+    public CompletableFuture<Integer> submit(Map<Player, List<Location>> plan) {
+        int size = 0;
+        for (List<Location> locations : plan.values()) {
+            size += locations.size();
+        }
+
+        Batch batch = new Batch(size);
+        plan.forEach((player, locations) -> {
+            Location playerLocation = player.getLocation();
+            for (Location location : locations) {
+                double distanceSquared = location.getWorld() == playerLocation.getWorld()
+                        ? location.distanceSquared(playerLocation)
+                        : Double.MAX_VALUE;
+                entries.add(new Entry<>(player, location, distanceSquared, batch));
+            }
+        });
+
+        if (!entries.isEmpty()) {
+            start();
+        }
+        return batch.completion;
+    }
+
+    /**
+     * Starts the drain task if it is not already running.
+     */
+    private void start() {
+        if (drainTask != null && !drainTask.isCancelled()) {
+            return;
+        }
+
+        long maxNanos = (long) (AdvConfig.getSpawnQueueMaxMillisPerTick() * 1_000_000L);
+        int maxSpawns = AdvConfig.getSpawnQueueMaxSpawnsPerTick();
+
+        drainTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                drain(maxNanos, maxSpawns);
+                if (entries.isEmpty()) {
+                    cancel();
+                    drainTask = null;
+                }
+            }
+        }.runTaskTimer(plugin, 0L, 1L);
+    }
+
+    /**
+     * Processes entries until the queue is empty or the tick budget is used up.
+     *
+     * @param maxNanos  Time budget for this tick in nanoseconds
+     * @param maxSpawns Maximum number of entries processed this tick
+     */
+    private void drain(long maxNanos, int maxSpawns) {
+        long deadline = System.nanoTime() + maxNanos;
+        int processed = 0;
+
+        while (!entries.isEmpty() && processed < maxSpawns && System.nanoTime() < deadline) {
+            Entry<T> entry = entries.poll();
+            processed++;
+
+            Player player = entry.player();
+            Location location = entry.location();
+            // The plan may be several ticks old, re-check the spot against live blocks
+            if (player.isOnline() && location.getWorld() == player.getWorld()
+                    && LocationUtility.isSafeLocation(location, spawnConfig)) {
+                T spawnedObject = spawnFunction.spawn(location.getWorld(), location);
+                if (spawnedObject != null) {
+                    entry.batch().spawned++;
+                    onSpawned.accept(spawnedObject, player);
+                }
+            }
+            entry.batch().processed();
+        }
+    }
+
+    /**
+     * Stops draining and drops every pending entry.
+     * Pending batches are completed with the number of objects spawned so far.
+     */
+    public void cancel() {
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+        while (!entries.isEmpty()) {
+            entries.poll().batch().processed();
+        }
+    }
+
+    /**
+     * Gets the number of pending entries.
+     *
+     * @return The pending spawn count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks whether the queue is currently draining.
+     *
+     * @return true if entries are pending
+     */
+    public boolean isDraining() {
+        return !entries.isEmpty();
+    }
+}
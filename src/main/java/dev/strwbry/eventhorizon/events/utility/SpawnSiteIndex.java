@@ -0,0 +1,642 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+import dev.strwbry.eventhorizon.events.utility.LocationUtility.SpawnConfig;
+import dev.strwbry.eventhorizon.listeners.ListenerManager;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-chunk index of precomputed spawnable sites.
+ * Each indexed chunk holds every position with a solid floor and a safe block on top of it,
+ * together with the vertical clearance of the column and of the 3x3 box around it for every
+ * combination of the water/lava spawn flags. Spawn queries then become a weighted pick from the
+ * matching sites of the chunks around a player instead of a random walk over live blocks.
+ *
+ * Chunks are indexed lazily: the first query touching a loaded chunk captures a snapshot on the main
+ * thread and scans it on a worker thread, and until it is ready the caller falls back to the random walk.
+ * Indexed chunks are kept in an LRU cache and dropped when a block inside them changes.
+ * Picked sites are always re-checked against live blocks, so stale or chunk-edge data never produces
+ * an unsafe spawn.
+ */
+public class SpawnSiteIndex {
+    // Block classes stored while scanning a chunk
+    /** Class bit for air */
+    private static final int AIR = 1;
+    /** Class bit for water */
+    private static final int WATER = 2;
+    /** Class bit for lava */
+    private static final int LAVA = 4;
+    /** Class bit for solid blocks */
+    private static final int SOLID = 8;
+    /** Safe block classes per liquid flag combination, indexed by {@link #liquidIndex(SpawnConfig)} */
+    private static final int[] SAFE_CLASSES = {AIR, AIR | WATER, AIR | LAVA, AIR | WATER | LAVA};
+    /** Largest clearance that fits into a site entry */
+    private static final int MAX_RUN = 15;
+
+    // Site bit layout
+    /** Bit offset of the Y coordinate relative to the world minimum height */
+    private static final int Y_SHIFT = 8;
+    /** Bit offset of the column clearance runs */
+    private static final int COLUMN_SHIFT = 20;
+    /** Bit offset of the 3x3 box clearance runs */
+    private static final int BOX_SHIFT = 36;
+    /** Bit offset of the surface flag */
+    private static final int SURFACE_SHIFT = 52;
+
+    /** Indexed chunks in least-recently-used order */
+    private static final LinkedHashMap<ChunkKey, ChunkSites> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChunkKey, ChunkSites> eldest) {
+            return size() > AdvConfig.getSpawnSiteIndexMaxChunks();
+        }
+    };
+    /** Chunks currently being scanned, mapped to the token of the running scan */
+    private static final Map<ChunkKey, Long> building = new ConcurrentHashMap<>();
+    /** Source of scan tokens, used to discard scans invalidated while they were running */
+    private static final AtomicLong buildTokens = new AtomicLong();
+
+    /**
+     * Identifies an indexed chunk.
+     *
+     * @param world The world UID
+     * @param chunk The packed chunk coordinates from {@link ChunkKeys#of(int, int)}
+     */
+    private record ChunkKey(UUID world, long chunk) {
+        /**
+         * Creates the key for a chunk.
+         *
+         * @param world  The world of the chunk
+         * @param chunkX The chunk X coordinate
+         * @param chunkZ The chunk Z coordinate
+         * @return The chunk key
+         */
+        static ChunkKey of(World world, int chunkX, int chunkZ) {
+            return new ChunkKey(world.getUID(), ChunkKeys.of(chunkX, chunkZ));
+        }
+    }
+
+    /**
+     * The indexed sites of a single chunk.
+     *
+     * @param chunkX    The chunk X coordinate
+     * @param chunkZ    The chunk Z coordinate
+     * @param minHeight The world minimum height the Y coordinates are relative to
+     * @param sites     The packed site entries
+     * @param builtAt   The time the chunk was scanned, in milliseconds
+     */
+    private record ChunkSites(int chunkX, int chunkZ, int minHeight, long[] sites, long builtAt) {
+        /**
+         * Gets the absolute X coordinate of a site.
+         *
+         * @param site The packed site
+         * @return The block X coordinate
+         */
+        int x(long site) {
+            return (chunkX << 4) | (int) (site & 15);
+        }
+
+        /**
+         * Gets the absolute Z coordinate of a site.
+         *
+         * @param site The packed site
+         * @return The block Z coordinate
+         */
+        int z(long site) {
+            return (chunkZ << 4) | (int) ((site >> 4) & 15);
+        }
+
+        /**
+         * Gets the absolute Y coordinate of a site.
+         *
+         * @param site The packed site
+         * @return The block Y coordinate
+         */
+        int y(long site) {
+            return minHeight + (int) ((site >> Y_SHIFT) & 0xFFF);
+        }
+    }
+
+    /**
+     * Matches site positions against a query.
+     */
+    @FunctionalInterface
+    private interface SiteFilter {
+        boolean test(int x, int y, int z, boolean surface);
+    }
+
+    /**
+     * Matching sites of the chunks around a query, with cumulative weights per chunk.
+     *
+     * @param chunks     The chunks with at least one matching site
+     * @param matches    Indices of the matching sites per chunk
+     * @param cumulative Running total of matching sites per chunk
+     * @param missing    Number of chunks in range that are not indexed yet
+     */
+    private record Candidates(List<ChunkSites> chunks, List<int[]> matches, int[] cumulative, int missing) {
+        /**
+         * Gets the total number of matching sites.
+         *
+         * @return The matching site count
+         */
+        int total() {
+            return cumulative.length == 0 ? 0 : cumulative[cumulative.length - 1];
+        }
+
+        /**
+         * Picks a matching site, weighting every chunk by its number of matching sites.
+         *
+         * @param random The random source
+         * @param config The spawn configuration used to center the location
+         * @param world  The world of the sites
+         * @return The block-centered location of the picked site
+         */
+        Location pick(Random random, SpawnConfig config, World world) {
+            int target = random.nextInt(total());
+            int chunkIndex = Arrays.binarySearch(cumulative, target + 1);
+            if (chunkIndex < 0) {
+                chunkIndex = -chunkIndex - 1;
+            }
+            int[] chunkMatches = matches.get(chunkIndex);
+            ChunkSites chunk = chunks.get(chunkIndex);
+            long site = chunk.sites()[chunkMatches[random.nextInt(chunkMatches.length)]];
+
+            int y = chunk.y(site);
+            return new Location(world, chunk.x(site) + 0.5, config.centerY ? y + 0.5 : y, chunk.z(site) + 0.5);
+        }
+    }
+
+    /**
+     * Checks whether the index can answer queries for the given configuration.
+     * Only single-column and centered 3x3 width clearances up to {@value #MAX_RUN} blocks high are indexed.
+     *
+     * @param config The spawn configuration
+     * @return true if the configuration can be served from the index
+     */
+    public static boolean supports(SpawnConfig config) {
+        return (config.widthClearance == 0 || config.widthClearance == 1)
+                && Math.ceil(config.heightClearance) <= MAX_RUN;
+    }
+
+    /**
+     * Finds spread spawn locations around a player from the index.
+     *
+     * @param player     The player to spawn around
+     * @param spawnCount The number of locations to find
+     * @param config     Configuration for spawning behavior
+     * @return The safe locations found, or null if the index cannot serve this query yet
+     */
+    public static List<Location> findSpread(Player player, int spawnCount, SpawnConfig config) {
+        if (!supports(config)) {
+            return null;
+        }
+        ListenerManager.initializeSpawnSiteIndex();
+
+        Location origin = player.getLocation();
+        Candidates candidates = gather(player.getWorld(), origin.getBlockX(), origin.getBlockZ(),
+                config.maxSpawnRadius, config, spreadFilter(origin, config));
+        if (candidates.total() == 0) {
+            return candidates.missing() > 0 ? null : Collections.emptyList();
+        }
+        return pickSafe(candidates, player.getWorld(), spawnCount, config);
+    }
+
+    /**
+     * Finds a group center and group member locations around a player from the index.
+     *
+     * @param player     The player to spawn around
+     * @param spawnCount The number of group members to find
+     * @param config     Configuration for spawning behavior
+     * @return The safe locations found, or null if the index cannot serve this query yet
+     */
+    public static List<Location> findGroup(Player player, int spawnCount, SpawnConfig config) {
+        if (!supports(config)) {
+            return null;
+        }
+        ListenerManager.initializeSpawnSiteIndex();
+
+        World world = player.getWorld();
+        Location origin = player.getLocation();
+        Candidates centers = gather(world, origin.getBlockX(), origin.getBlockZ(),
+                config.maxSpawnRadius, config, spreadFilter(origin, config));
+        if (centers.total() == 0) {
+            return centers.missing() > 0 ? null : Collections.emptyList();
+        }
+
+        List<Location> center = pickSafe(centers, world, 1, config);
+        if (center.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Location groupCenter = center.getFirst();
+        int centerX = groupCenter.getBlockX();
+        int centerY = groupCenter.getBlockY();
+        int centerZ = groupCenter.getBlockZ();
+        int spacingSquared = config.groupSpacing * config.groupSpacing;
+
+        Candidates members = gather(world, centerX, centerZ, config.groupSpacing, config,
+                (x, y, z, surface) -> {
+                    int dx = x - centerX;
+                    int dz = z - centerZ;
+                    if (dx * dx + dz * dz > spacingSquared) {
+                        return false;
+                    }
+                    // Small y variance in groups
+                    return config.surfaceOnlySpawning ? surface : Math.abs(y - centerY) <= 1;
+                });
+        if (members.total() == 0) {
+            return Collections.emptyList();
+        }
+        return pickSafe(members, world, spawnCount, config);
+    }
+
+    /**
+     * Creates the filter for sites around a player.
+     *
+     * @param origin The player location
+     * @param config Configuration for spawning behavior
+     * @return The site filter
+     */
+    private static SiteFilter spreadFilter(Location origin, SpawnConfig config) {
+        int originX = origin.getBlockX();
+        int originY = origin.getBlockY();
+        int originZ = origin.getBlockZ();
+        int minSquared = config.minSpawnRadius * config.minSpawnRadius;
+        int maxSquared = config.maxSpawnRadius * config.maxSpawnRadius;
+
+        return (x, y, z, surface) -> {
+            int dx = x - originX;
+            int dz = z - originZ;
+            int distanceSquared = dx * dx + dz * dz;
+            if (distanceSquared < minSquared || distanceSquared > maxSquared) {
+                return false;
+            }
+            return config.surfaceOnlySpawning ? surface : Math.abs(y - originY) <= config.maxYRadius;
+        };
+    }
+
+    /**
+     * Picks distinct sites and keeps those that are still safe in the live world.
+     *
+     * @param candidates The matching sites
+     * @param world      The world of the sites
+     * @param spawnCount The number of locations to find
+     * @param config     Configuration for spawning behavior
+     * @return The safe locations, possibly fewer than requested
+     */
+    private static List<Location> pickSafe(Candidates candidates, World world, int spawnCount, SpawnConfig config) {
+        Random random = ThreadLocalRandom.current();
+        List<Location> locations = new ArrayList<>();
+        Set<Location> tried = new HashSet<>();
+        int maxPicks = spawnCount + config.maxSpawnAttempts;
+
+        for (int pick = 0; pick < maxPicks && locations.size() < spawnCount; pick++) {
+            Location location = candidates.pick(random, config, world);
+            if (tried.add(location) && LocationUtility.isSafeLocation(location, config)) {
+                locations.add(location);
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Collects the matching sites of every loaded chunk within the radius of a column.
+     * Chunks that are not indexed yet are scheduled for scanning.
+     *
+     * @param world   The world to query
+     * @param centerX Block X coordinate of the query center
+     * @param centerZ Block Z coordinate of the query center
+     * @param radius  Horizontal radius around the center
+     * @param config  Configuration for spawning behavior
+     * @param filter  Position filter for the query
+     * @return The matching sites with their chunk weights
+     */
+    private static Candidates gather(World world, int centerX, int centerZ, int radius, SpawnConfig config, SiteFilter filter) {
+        int liquid = liquidIndex(config);
+        int height = (int) Math.ceil(config.heightClearance);
+        boolean box = config.widthClearance == 1;
+        long maxAge = AdvConfig.getSpawnSiteIndexMaxAge() * 1000L;
+        long now = System.currentTimeMillis();
+
+        List<ChunkSites> chunks = new ArrayList<>();
+        List<int[]> matches = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int missing = 0;
+
+        for (int chunkX = (centerX - radius) >> 4; chunkX <= (centerX + radius) >> 4; chunkX++) {
+            for (int chunkZ = (centerZ - radius) >> 4; chunkZ <= (centerZ + radius) >> 4; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                    continue;
+                }
+                ChunkKey key = ChunkKey.of(world, chunkX, chunkZ);
+                ChunkSites chunk;
+                synchronized (cache) {
+                    chunk = cache.get(key);
+                }
+                if (chunk == null || (maxAge > 0 && now - chunk.builtAt() > maxAge)) {
+                    requestBuild(world, chunkX, chunkZ, key);
+                    missing++;
+                    continue;
+                }
+
+                int[] chunkMatches = match(chunk, liquid, height, box, world.getMaxHeight(), config, filter);
+                if (chunkMatches.length > 0) {
+                    chunks.add(chunk);
+                    matches.add(chunkMatches);
+                    weights.add(chunkMatches.length);
+                }
+            }
+        }
+
+        int[] cumulative = new int[weights.size()];
+        int total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += weights.get(i);
+            cumulative[i] = total;
+        }
+        return new Candidates(chunks, matches, cumulative, missing);
+    }
+
+    /**
+     * Finds the sites of a chunk that satisfy the clearance requirements and the query filter.
+     *
+     * @param chunk     The indexed chunk
+     * @param liquid    The liquid flag combination index
+     * @param height    The required vertical clearance in blocks
+     * @param box       True if the 3x3 box clearance is required
+     * @param maxHeight The world maximum height
+     * @param config    Configuration for spawning behavior
+     * @param filter    Position filter for the query
+     * @return The indices of the matching sites
+     */
+    private static int[] match(ChunkSites chunk, int liquid, int height, boolean box, int maxHeight,
+                               SpawnConfig config, SiteFilter filter) {
+        long[] sites = chunk.sites();
+        int[] result = new int[sites.length];
+        int count = 0;
+
+        for (int i = 0; i < sites.length; i++) {
+            long site = sites[i];
+            int columnRun = (int) ((site >> (COLUMN_SHIFT + liquid * 4)) & 15);
+            if (columnRun == 0) {
+                continue;
+            }
+            int clearanceRun = box ? (int) ((site >> (BOX_SHIFT + liquid * 4)) & 15) : columnRun;
+            if (height > 0 && clearanceRun < height) {
+                continue;
+            }
+            int y = chunk.y(site);
+            if (y + config.heightClearance >= maxHeight) {
+                continue;
+            }
+            if (filter.test(chunk.x(site), y, chunk.z(site), ((site >> SURFACE_SHIFT) & 1) == 1)) {
+                result[count++] = i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Captures a chunk snapshot and scans it on a worker thread, unless a scan is already running.
+     * Must be called from the main server thread.
+     *
+     * @param world  The world of the chunk
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param key    The chunk key
+     */
+    private static void requestBuild(World world, int chunkX, int chunkZ, ChunkKey key) {
+        long token = buildTokens.incrementAndGet();
+        if (building.putIfAbsent(key, token) != null) {
+            return;
+        }
+
+        ChunkSnapshot snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(true, false, false);
+        int minHeight = world.getMinHeight();
+        int maxHeight = world.getMaxHeight();
+
+        CompletableFuture.supplyAsync(() -> new ChunkSites(chunkX, chunkZ, minHeight,
+                scan(snapshot, minHeight, maxHeight), System.currentTimeMillis()))
+                .whenComplete((sites, error) -> {
+                    // Always release the build slot, so a failed scan can be retried on the next request
+                    boolean current = building.remove(key, token);
+                    if (error != null) {
+                        MsgUtility.warning("Failed to index spawn sites of chunk " + chunkX + ", " + chunkZ +
+                                " in " + world.getName() + ": " + error.getMessage());
+                        return;
+                    }
+                    // Only publish if the chunk was not invalidated while scanning
+                    if (current) {
+                        synchronized (cache) {
+                            cache.put(key, sites);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Scans a chunk snapshot for spawnable sites.
+     * Clearance of the 3x3 box is computed from the columns inside the chunk; columns of neighbouring
+     * chunks are not part of the snapshot and are verified against live blocks when a site is picked.
+     *
+     * @param snapshot  The chunk snapshot
+     * @param minHeight The world minimum height
+     * @param maxHeight The world maximum height (exclusive)
+     * @return The packed site entries
+     */
+    private static long[] scan(ChunkSnapshot snapshot, int minHeight, int maxHeight) {
+        int height = maxHeight - minHeight;
+        byte[] classes = new byte[256 * height];
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int column = (x * 16 + z) * height;
+                for (int y = minHeight; y < maxHeight; y++) {
+                    classes[column + y - minHeight] = (byte) classify(snapshot.getBlockType(x, y, z));
+                }
+            }
+        }
+
+        long[] sites = new long[64];
+        int count = 0;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int column = (x * 16 + z) * height;
+                int surfaceY = snapshot.getHighestBlockYAt(x, z) + 1 - minHeight;
+
+                for (int y = 1; y < height; y++) {
+                    int blockClass = classes[column + y];
+                    if ((blockClass & (AIR | WATER | LAVA)) == 0 || (classes[column + y - 1] & SOLID) == 0) {
+                        continue;
+                    }
+
+                    long columnRuns = runs(classes, column, y, height);
+                    long boxRuns = columnRuns;
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dz = -1; dz <= 1; dz++) {
+                            int nx = x + dx;
+                            int nz = z + dz;
+                            if ((dx == 0 && dz == 0) || nx < 0 || nx > 15 || nz < 0 || nz > 15) {
+                                continue;
+                            }
+                            boxRuns = minRuns(boxRuns, runs(classes, (nx * 16 + nz) * height, y, height));
+                        }
+                    }
+
+                    long site = x | ((long) z << 4) | ((long) y << Y_SHIFT)
+                            | (columnRuns << COLUMN_SHIFT) | (boxRuns << BOX_SHIFT);
+                    if (y == surfaceY) {
+                        site |= 1L << SURFACE_SHIFT;
+                    }
+
+                    if (count == sites.length) {
+                        sites = Arrays.copyOf(sites, count * 2);
+                    }
+                    sites[count++] = site;
+                }
+            }
+        }
+        return Arrays.copyOf(sites, count);
+    }
+
+    /**
+     * Computes the upward clearance runs of a column for every liquid flag combination.
+     *
+     * @param classes The block classes of the chunk
+     * @param column  Offset of the column in the class array
+     * @param y       Starting Y index relative to the world minimum height
+     * @param height  World height in blocks
+     * @return Four 4-bit runs packed in a long, indexed by {@link #liquidIndex(SpawnConfig)}
+     */
+    private static long runs(byte[] classes, int column, int y, int height) {
+        long packed = 0;
+        for (int liquid = 0; liquid < SAFE_CLASSES.length; liquid++) {
+            int safe = SAFE_CLASSES[liquid];
+            int run = 0;
+            while (run < MAX_RUN && y + run < height && (classes[column + y + run] & safe) != 0) {
+                run++;
+            }
+            packed |= (long) run << (liquid * 4);
+        }
+        return packed;
+    }
+
+    /**
+     * Takes the per-combination minimum of two packed run sets.
+     *
+     * @param a The first packed runs
+     * @param b The second packed runs
+     * @return The packed minimum runs
+     */
+    private static long minRuns(long a, long b) {
+        long packed = 0;
+        for (int liquid = 0; liquid < SAFE_CLASSES.length; liquid++) {
+            int shift = liquid * 4;
+            packed |= Math.min((a >> shift) & 15, (b >> shift) & 15) << shift;
+        }
+        return packed;
+    }
+
+    /**
+     * Classifies a material for the scan.
+     *
+     * @param type The material
+     * @return The class bits of the material
+     */
+    private static int classify(Material type) {
+        if (type == Material.AIR) {
+            return AIR;
+        } else if (type == Material.WATER) {
+            return WATER;
+        } else if (type == Material.LAVA) {
+            return LAVA;
+        }
+        return type.isSolid() ? SOLID : 0;
+    }
+
+    /**
+     * Maps the liquid spawn flags of a configuration to the run index stored in each site.
+     *
+     * @param config The spawn configuration
+     * @return The liquid flag combination index
+     */
+    private static int liquidIndex(SpawnConfig config) {
+        return (config.allowWaterSpawns ? 1 : 0) | (config.allowLavaSpawns ? 2 : 0);
+    }
+
+    /**
+     * Drops the indexed sites of a chunk, for example after a block inside it changed.
+     *
+     * @param world  The world of the chunk
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     */
+    public static void invalidate(World world, int chunkX, int chunkZ) {
+        ChunkKey key = ChunkKey.of(world, chunkX, chunkZ);
+        building.remove(key);
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Drops the indexed sites of every chunk intersecting the given block area.
+     *
+     * @param world The world of the area
+     * @param minX  Minimum block X coordinate
+     * @param minZ  Minimum block Z coordinate
+     * @param maxX  Maximum block X coordinate
+     * @param maxZ  Maximum block Z coordinate
+     */
+    public static void invalidateArea(World world, int minX, int minZ, int maxX, int maxZ) {
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                invalidate(world, chunkX, chunkZ);
+            }
+        }
+    }
+
+    /**
+     * Drops the indexed sites of every chunk in a world.
+     *
+     * @param world The world to clear
+     */
+    public static void invalidateWorld(World world) {
+        UUID uid = world.getUID();
+        building.keySet().removeIf(key -> key.world().equals(uid));
+        synchronized (cache) {
+            cache.keySet().removeIf(key -> key.world().equals(uid));
+        }
+    }
+
+    /**
+     * Drops every indexed chunk.
+     * Used when block changes can no longer be tracked, e.g. after listeners were unregistered.
+     */
+    public static void clear() {
+        building.clear();
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Gets the number of indexed chunks.
+     *
+     * @return The cached chunk count
+     */
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package dev.strwbry.eventhorizon.events.utility;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable capture of chunk data used to evaluate spawn locations off the main thread.
+ * Snapshots are taken on the server thread and can then be read safely from worker threads,
+ * which lets the spawn search run without touching live blocks.
+ * Only chunks that are already loaded are captured so that a capture never forces a chunk load.
+ */
+public class SpawnSnapshot {
+    /** The world the snapshots were taken from */
+    private final World world;
+    /** Lowest buildable Y coordinate of the world */
+    private final int minHeight;
+    /** Highest buildable Y coordinate of the world (exclusive) */
+    private final int maxHeight;
+    /** Captured chunk snapshots keyed by chunk coordinates */
+    private final Map<Long, ChunkSnapshot> chunks;
+
+    /**
+     * Creates a new snapshot wrapper around already captured chunks.
+     *
+     * @param world  The world the chunks belong to
+     * @param chunks The captured chunk snapshots keyed by {@link ChunkKeys#of(int, int)}
+     */
+    private SpawnSnapshot(World world, Map<Long, ChunkSnapshot> chunks) {
+        this.world = world;
+        this.minHeight = world.getMinHeight();
+        this.maxHeight = world.getMaxHeight();
+        this.chunks = chunks;
+    }
+
+    /**
+     * Starts a new capture for the given world.
+     * Must be called from the main server thread.
+     *
+     * @param world The world to capture chunks from
+     * @return A builder that collects chunk snapshots for the world
+     */
+    public static Builder builder(World world) {
+        return new Builder(world);
+    }
+
+    /**
+     * Gets the material at the given block coordinates.
+     *
+     * @param x Block X coordinate
+     * @param y Block Y coordinate
+     * @param z Block Z coordinate
+     * @return The material at the position, or null if the chunk was not captured or Y is out of bounds
+     */
+    public Material getType(int x, int y, int z) {
+        if (y < minHeight || y >= maxHeight) {
+            return null;
+        }
+        ChunkSnapshot snapshot = chunks.get(ChunkKeys.of(x >> 4, z >> 4));
+        if (snapshot == null) {
+            return null;
+        }
+        return snapshot.getBlockType(x & 15, y, z & 15);
+    }
+
+    /**
+     * Gets the highest non-empty Y coordinate of the given column.
+     *
+     * @param x Block X coordinate
+     * @param z Block Z coordinate
+     * @return The highest block Y, or {@link Integer#MIN_VALUE} if the chunk was not captured
+     */
+    public int getHighestBlockYAt(int x, int z) {
+        ChunkSnapshot snapshot = chunks.get(ChunkKeys.of(x >> 4, z >> 4));
+        if (snapshot == null) {
+            return Integer.MIN_VALUE;
+        }
+        return snapshot.getHighestBlockYAt(x & 15, z & 15);
+    }
+
+    /**
+     * Checks whether the chunk containing the given column was captured.
+     *
+     * @param x Block X coordinate
+     * @param z Block Z coordinate
+     * @return true if the column can be read from this snapshot
+     */
+    public boolean contains(int x, int z) {
+        return chunks.containsKey(ChunkKeys.of(x >> 4, z >> 4));
+    }
+
+    /**
+     * Gets the world the snapshot was captured from.
+     *
+     * @return The captured world
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Gets the lowest buildable Y coordinate of the captured world.
+     *
+     * @return The world minimum height
+     */
+    public int getMinHeight() {
+        return minHeight;
+    }
+
+    /**
+     * Gets the highest buildable Y coordinate of the captured world (exclusive).
+     *
+     * @return The world maximum height
+     */
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    /**
+     * Gets the number of chunks held by this snapshot.
+     *
+     * @return The captured chunk count
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Collects chunk snapshots for a single world on the main thread.
+     * Chunks requested multiple times (for example by players standing close together)
+     * are only captured once.
+     */
+    public static class Builder {
+        /** The world chunks are captured from */
+        private final World world;
+        /** Chunks captured so far */
+        private final Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+
+        /**
+         * Creates a builder for the given world.
+         *
+         * @param world The world to capture chunks from
+         */
+        private Builder(World world) {
+            this.world = world;
+        }
+
+        /**
+         * Captures every loaded chunk intersecting the square of the given half-size around a block column.
+         *
+         * @param x      Block X coordinate of the column
+         * @param z      Block Z coordinate of the column
+         * @param margin Number of blocks around the column that must also be readable
+         * @return This builder for method chaining
+         */
+        public Builder captureAround(int x, int z, int margin) {
+            int minChunkX = (x - margin) >> 4;
+            int maxChunkX = (x + margin) >> 4;
+            int minChunkZ = (z - margin) >> 4;
+            int maxChunkZ = (z + margin) >> 4;
+
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    capture(chunkX, chunkZ);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Captures a single chunk if it is loaded and has not been captured yet.
+         *
+         * @param chunkX The chunk X coordinate
+         * @param chunkZ The chunk Z coordinate
+         */
+        private void capture(int chunkX, int chunkZ) {
+            long key = ChunkKeys.of(chunkX, chunkZ);
+            if (chunks.containsKey(key) || !world.isChunkLoaded(chunkX, chunkZ)) {
+                return;
+            }
+            chunks.put(key, world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(true, false, false));
+        }
+
+        /**
+         * Finishes the capture.
+         *
+         * @return An immutable snapshot that can be read from any thread
+         */
+        public SpawnSnapshot build() {
+            return new SpawnSnapshot(world, Map.copyOf(chunks));
+        }
+    }
+}
@@ -9,8 +9,11 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 import static dev.strwbry.eventhorizon.events.utility.LocationUtility.*;
@@ -48,6 +51,22 @@ public class SpawningUtility {
         int attempts = 0;
         int spawned = 0;
 
+        prefetchIfEnabled(world, playerLocation, spawnConfig.maxSpawnRadius, spawnConfig);
+
+        // Serve as many locations as possible from the spawn site index, the random walk covers the rest
+        if (spawnConfig.useSiteIndex) {
+            List<Location> indexedLocations = SpawnSiteIndex.findSpread(player, spawnCount, spawnConfig);
+            if (indexedLocations != null) {
+                for (Location spawnLocation : indexedLocations) {
+                    T spawnedObject = spawnFunction.spawn(world, spawnLocation);
+                    if (spawnedObject != null) {
+                        spawnedResults.add(spawnedObject);
+                        spawned++;
+                    }
+                }
+            }
+        }
+
         while (spawned < spawnCount && attempts < spawnConfig.maxSpawnAttempts) {
             attempts++;
 
@@ -61,6 +80,11 @@ public class SpawningUtility {
             int initialY = playerLocation.getBlockY() + yOffset;
             int initialZ = playerLocation.getBlockZ() + zOffset;
 
+            // Skip candidates that would load a chunk unless the policy allows it
+            if (!isSampleable(world, initialX, initialZ, spawnConfig)) {
+                continue;
+            }
+
             // For surface only spawning, find the highest block at this X,Z
             if (spawnConfig.surfaceOnlySpawning) {
                 initialY = world.getHighestBlockYAt(initialX, initialZ);
@@ -100,6 +124,22 @@ public class SpawningUtility {
         World world = player.getWorld();
         Location playerLocation = player.getLocation();
 
+        prefetchIfEnabled(world, playerLocation, spawnConfig.maxSpawnRadius + spawnConfig.groupSpacing, spawnConfig);
+
+        // Use the spawn site index if it already covers the area around the player
+        if (spawnConfig.useSiteIndex) {
+            List<Location> indexedLocations = SpawnSiteIndex.findGroup(player, spawnCount, spawnConfig);
+            if (indexedLocations != null && !indexedLocations.isEmpty()) {
+                for (Location spawnLocation : indexedLocations) {
+                    T spawnedObject = spawnFunction.spawn(world, spawnLocation);
+                    if (spawnedObject != null) {
+                        spawnedResults.add(spawnedObject);
+                    }
+                }
+                return spawnedResults;
+            }
+        }
+
         // Try to find a suitable location for the group
         Location groupCenter = null;
         int attempts = 0;
@@ -117,6 +157,11 @@ public class SpawningUtility {
             int initialY = playerLocation.getBlockY() + yOffset;
             int initialZ = playerLocation.getBlockZ() + zOffset;
 
+            // Skip candidates that would load a chunk unless the policy allows it
+            if (!isSampleable(world, initialX, initialZ, spawnConfig)) {
+                continue;
+            }
+
             // For surface only spawning, find the highest block at this X,Z
             if (spawnConfig.surfaceOnlySpawning) {
                 initialY = world.getHighestBlockYAt(initialX, initialZ);
@@ -148,6 +193,11 @@ public class SpawningUtility {
             int initialY = groupCenter.getBlockY() + yOffset;
             int initialZ = groupCenter.getBlockZ() + zOffset;
 
+            // Skip candidates that would load a chunk unless the policy allows it
+            if (!isSampleable(world, initialX, initialZ, spawnConfig)) {
+                continue;
+            }
+
             // For surface only spawning, adjust Y to the highest block
             if (spawnConfig.surfaceOnlySpawning) {
                 initialY = world.getHighestBlockYAt(initialX, initialZ);
@@ -168,6 +218,58 @@ public class SpawningUtility {
         return spawnedResults;
     }
 
+    /**
+     * Checks whether a candidate column may be sampled under the chunk policy of the config.
+     *
+     * @param world       The world of the candidate.
+     * @param x           Block X coordinate of the candidate.
+     * @param z           Block Z coordinate of the candidate.
+     * @param spawnConfig Configuration for spawning behavior.
+     * @return true if the column can be read without loading a chunk, or loading is allowed.
+     */
+    private static boolean isSampleable(World world, int x, int z, SpawnConfig spawnConfig) {
+        return spawnConfig.chunkPolicy == ChunkPolicy.LOAD || world.isChunkLoaded(x >> 4, z >> 4);
+    }
+
+    /**
+     * Prefetches the chunks around a location if the chunk policy asks for it.
+     *
+     * @param world       The world to prefetch in.
+     * @param center      The location to prefetch around.
+     * @param radius      Radius around the location in blocks.
+     * @param spawnConfig Configuration for spawning behavior.
+     */
+    static void prefetchIfEnabled(World world, Location center, int radius, SpawnConfig spawnConfig) {
+        if (spawnConfig.chunkPolicy == ChunkPolicy.PREFETCH) {
+            ChunkPrefetcher.prefetch(world, center.getBlockX(), center.getBlockZ(), radius);
+        }
+    }
+
+    // Convenience methods for planning without spawning
+    /**
+     * Finds spread spawn locations around a player without spawning anything.
+     *
+     * @param player        The player to spawn around.
+     * @param spawnCount    The number of locations to find.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @return List of safe spawn locations.
+     */
+    public static List<Location> planSpread(Player player, int spawnCount, SpawnConfig spawnConfig) {
+        return spawnSpread(player, spawnCount, spawnConfig, (world, location) -> location);
+    }
+
+    /**
+     * Finds group spawn locations around a player without spawning anything.
+     *
+     * @param player        The player to spawn around.
+     * @param spawnCount    The number of locations to find in the group.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @return List of safe spawn locations.
+     */
+    public static List<Location> planGroup(Player player, int spawnCount, SpawnConfig spawnConfig) {
+        return spawnGroup(player, spawnCount, spawnConfig, (world, location) -> location);
+    }
+
     // Convenience methods for entities
     /**
      * Spawns entities in a spread pattern around a player.
@@ -182,13 +284,7 @@ public class SpawningUtility {
     public static List<Entity> spawnEntitiesSpread(Player player, int spawnCount, SpawnConfig spawnConfig,
                                                    NamespacedKey key, SpawnFunction<Entity> entityCreator) {
         return spawnSpread(player, spawnCount, spawnConfig,
-                (world, location) -> {
-                    Entity entity = entityCreator.spawn(world, location);
-                    if (entity != null && key != null) {
-                        MarkingUtility.markEntity(entity, key);
-                    }
-                    return entity;
-                });
+                markingEntity(key, entityCreator));
     }
 
     /**
@@ -204,13 +300,7 @@ public class SpawningUtility {
     public static List<Entity> spawnEntitiesGroup(Player player, int spawnCount, SpawnConfig spawnConfig,
                                                   NamespacedKey key, SpawnFunction<Entity> entityCreator) {
         return spawnGroup(player, spawnCount, spawnConfig,
-                (world, location) -> {
-                    Entity entity = entityCreator.spawn(world, location);
-                    if (entity != null && key != null) {
-                        MarkingUtility.markEntity(entity, key);
-                    }
-                    return entity;
-                });
+                markingEntity(key, entityCreator));
     }
 
     // Convenience methods for items
@@ -227,14 +317,7 @@ public class SpawningUtility {
     public static List<Item> spawnItemsSpread(Player player, int spawnCount, SpawnConfig spawnConfig,
                                               NamespacedKey key, Supplier<ItemStack> itemSupplier) {
         return spawnSpread(player, spawnCount, spawnConfig,
-                (world, location) -> {
-                    ItemStack itemStack = itemSupplier.get(); // Called for each item
-                    Item item = world.dropItemNaturally(location, itemStack);
-                    if (key != null) {
-                        MarkingUtility.markItem(item, key);
-                    }
-                    return item;
-                });
+                markingItem(key, itemSupplier));
     }
 
     /**
@@ -250,14 +333,7 @@ public class SpawningUtility {
     public static List<Item> spawnItemsGroup(Player player, int spawnCount, SpawnConfig spawnConfig,
                                              NamespacedKey key, Supplier<ItemStack> itemSupplier) {
         return spawnGroup(player, spawnCount, spawnConfig,
-                (world, location) -> {
-                    ItemStack itemStack = itemSupplier.get(); // Called for each item
-                    Item item = world.dropItemNaturally(location, itemStack);
-                    if (key != null) {
-                        MarkingUtility.markItem(item, key);
-                    }
-                    return item;
-                });
+                markingItem(key, itemSupplier));
     }
 
     // Overloaded convenience methods for spawning single itemStacks
@@ -290,4 +366,119 @@ public class SpawningUtility {
                                              NamespacedKey key, ItemStack itemStack) {
         return spawnItemsGroup(player, spawnCount, spawnConfig, key, () -> itemStack);
     }
+
+    // Convenience methods for off-main-thread location search
+    /**
+     * Spawns entities in a spread pattern around each player, searching locations off the main thread.
+     *
+     * @param players       The players to spawn around.
+     * @param spawnCount    The number of entities to spawn per player.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @param key           Namespaced key for marking the spawned entities.
+     * @param entityCreator Function to create the entity at the given location.
+     * @return Future completed on the main thread with the spawned entities per player.
+     * @see AsyncSpawnSearch
+     */
+    public static CompletableFuture<Map<Player, List<Entity>>> spawnEntitiesSpreadAsync(Collection<Player> players, int spawnCount,
+                                                                                       SpawnConfig spawnConfig, NamespacedKey key,
+                                                                                       SpawnFunction<Entity> entityCreator) {
+        return AsyncSpawnSearch.spawnSpread(players, spawnCount, spawnConfig, markingEntity(key, entityCreator));
+    }
+
+    /**
+     * Spawns entities in a group around each player, searching locations off the main thread.
+     *
+     * @param players       The players to spawn around.
+     * @param spawnCount    The number of entities to spawn in each group.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @param key           Namespaced key for marking the spawned entities.
+     * @param entityCreator Function to create the entity at the given location.
+     * @return Future completed on the main thread with the spawned entities per player.
+     * @see AsyncSpawnSearch
+     */
+    public static CompletableFuture<Map<Player, List<Entity>>> spawnEntitiesGroupAsync(Collection<Player> players, int spawnCount,
+                                                                                      SpawnConfig spawnConfig, NamespacedKey key,
+                                                                                      SpawnFunction<Entity> entityCreator) {
+        return AsyncSpawnSearch.spawnGroup(players, spawnCount, spawnConfig, markingEntity(key, entityCreator));
+    }
+
+    /**
+     * Spawns items in a spread pattern around each player, searching locations off the main thread.
+     *
+     * @param players       The players to spawn around.
+     * @param spawnCount    The number of items to spawn per player.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @param key           Namespaced key for marking the spawned items.
+     * @param itemSupplier  Supplier for creating the ItemStack for each item.
+     * @return Future completed on the main thread with the spawned items per player.
+     * @see AsyncSpawnSearch
+     */
+    public static CompletableFuture<Map<Player, List<Item>>> spawnItemsSpreadAsync(Collection<Player> players, int spawnCount,
+                                                                                 SpawnConfig spawnConfig, NamespacedKey key,
+                                                                                 Supplier<ItemStack> itemSupplier) {
+        return AsyncSpawnSearch.spawnSpread(players, spawnCount, spawnConfig, markingItem(key, itemSupplier));
+    }
+
+    /**
+     * Spawns items in a group around each player, searching locations off the main thread.
+     *
+     * @param players       The players to spawn around.
+     * @param spawnCount    The number of items to spawn in each group.
+     * @param spawnConfig   Configuration for spawning behavior.
+     * @param key           Namespaced key for marking the spawned items.
+     * @param itemSupplier  Supplier for creating the ItemStack for each item.
+     * @return Future completed on the main thread with the spawned items per player.
+     * @see AsyncSpawnSearch
+     */
+    public static CompletableFuture<Map<Player, List<Item>>> spawnItemsGroupAsync(Collection<Player> players, int spawnCount,
+                                                                                SpawnConfig spawnConfig, NamespacedKey key,
+                                                                                Supplier<ItemStack> itemSupplier) {
+        return AsyncSpawnSearch.spawnGroup(players, spawnCount, spawnConfig, markingItem(key, itemSupplier));
+    }
+
+    /**
+     * Wraps an entity creator so that every spawned entity is marked with the given key.
+     * Marked entities count towards the {@link EntityBudget}; nothing is spawned once the budget
+     * of the world or chunk is used up.
+     *
+     * @param key           Namespaced key for marking, or null to skip marking.
+     * @param entityCreator Function to create the entity at the given location.
+     * @return The marking spawn function.
+     */
+    public static SpawnFunction<Entity> markingEntity(NamespacedKey key, SpawnFunction<Entity> entityCreator) {
+        return (world, location) -> {
+            if (key != null && !EntityBudget.tryAcquire(location)) {
+                return null;
+            }
+            Entity entity = entityCreator.spawn(world, location);
+            if (entity != null && key != null) {
+                MarkingUtility.markEntity(entity, key);
+                EntityBudget.track(entity);
+            }
+            return entity;
+        };
+    }
+
+    /**
+     * Creates a spawn function that drops a marked item from the supplier at the given location.
+     * Marked items count towards the {@link EntityBudget}; nothing is dropped once the budget
+     * of the world or chunk is used up.
+     *
+     * @param key          Namespaced key for marking, or null to skip marking.
+     * @param itemSupplier Supplier for creating the ItemStack for each item.
+     * @return The item dropping spawn function.
+     */
+    public static SpawnFunction<Item> markingItem(NamespacedKey key, Supplier<ItemStack> itemSupplier) {
+        return (world, location) -> {
+            if (key != null && !EntityBudget.tryAcquire(location)) {
+                return null;
+            }
+            Item item = world.dropItemNaturally(location, itemSupplier.get());
+            if (key != null) {
+                MarkingUtility.markItem(item, key);
+                EntityBudget.track(item);
+            }
+            return item;
+        };
+    }
 }
@@ -0,0 +1,137 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericCylindricalRegion;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericRegion;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericSurfaceRegion;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+
+/**
+ * Sizes the per-player regions of a block event so the whole event stays within a total block budget.
+ * The budget is split evenly between the players. A region template that covers more than its share is first
+ * switched to the surface band if it is a full cylinder, since that keeps the visible footprint; if it is still too
+ * large, its height and then its radius are shrunk, down to the configured minimums. An event therefore costs
+ * roughly the same whether 20 or 120 players are online.
+ * Estimates don't account for overlapping player regions being merged, so they are an upper bound.
+ */
+public class BlockBudgetPlanner
+{
+    /**
+     * Result of planning an event's regions.
+     *
+     * @param region The region template to edit with
+     * @param original The configured region template
+     * @param playerCount Number of players the event edits for
+     * @param budget The total block budget
+     * @param estimatedPerPlayer Estimated blocks covered by a single player's region
+     * @param surfaceShell Whether a cylinder was switched to the surface band
+     */
+    public record Plan(GenericRegion region, GenericRegion original, int playerCount, long budget, long estimatedPerPlayer,
+                       boolean surfaceShell) {
+
+        /**
+         * Gets the estimated number of blocks covered by all player regions together.
+         *
+         * @return The estimated total block count
+         */
+        public long estimatedTotal() {
+            return estimatedPerPlayer * playerCount;
+        }
+
+        /**
+         * Checks whether the configured template was changed to fit the budget.
+         *
+         * @return true if the region was resized or switched to the surface band
+         */
+        public boolean isScaled() {
+            return region != original;
+        }
+
+        /**
+         * Checks whether the estimate fits the budget, which it may not once the minimum sizes are reached.
+         *
+         * @return true if the estimated total is within the budget
+         */
+        public boolean isWithinBudget() {
+            return estimatedTotal() <= budget;
+        }
+
+        /**
+         * Describes the plan for the log.
+         *
+         * @return A single line describing the region size and the estimate
+         */
+        public String describe() {
+            String size = "radius " + original.getRadius() + (region.getRadius() != original.getRadius() ? " -> " + region.getRadius() : "")
+                    + ", height " + original.getHeight() + (region.getHeight() != original.getHeight() ? " -> " + region.getHeight() : "")
+                    + (surfaceShell ? ", surface band" : "");
+            return playerCount + " players, " + size + ", estimated " + estimatedTotal() + " of " + budget + " blocks"
+                    + (isWithinBudget() ? "" : " (minimum size reached)");
+        }
+    }
+
+    /**
+     * Plans the region template of an event with the configured budget and limits.
+     *
+     * @param region The configured region template
+     * @param playerCount Number of players the event edits for
+     * @return The plan
+     */
+    public static Plan plan(GenericRegion region, int playerCount) {
+        return plan(region, playerCount, AdvConfig.getBlockModBudgetTotalBlocks(), AdvConfig.getBlockModBudgetMinRadius(),
+                AdvConfig.getBlockModBudgetMinHeight(), AdvConfig.getBlockModBudgetAllowSurfaceShell());
+    }
+
+    /**
+     * Plans the region template of an event.
+     *
+     * @param region The configured region template
+     * @param playerCount Number of players the event edits for
+     * @param budget Blocks all player regions may cover together
+     * @param minRadius Smallest radius a region is shrunk to
+     * @param minHeight Smallest height a region is shrunk to
+     * @param allowSurfaceShell Whether full cylinders may be switched to the surface band
+     * @return The plan
+     */
+    public static Plan plan(GenericRegion region, int playerCount, long budget, int minRadius, int minHeight, boolean allowSurfaceShell) {
+        long volume = region.estimateVolume();
+        if (playerCount <= 0 || budget <= 0 || volume * playerCount <= budget) {
+            return new Plan(region, region, playerCount, budget, volume, false);
+        }
+        long share = budget / playerCount;
+
+        GenericRegion candidate = region;
+        boolean surfaceShell = false;
+        if (allowSurfaceShell && region instanceof GenericCylindricalRegion) {
+            candidate = new GenericSurfaceRegion(region.getRadius(), region.getHeight(), region.getHeightOffset(),
+                    AdvConfig.getBlockModSurfaceDepth(), AdvConfig.getBlockModSurfaceAbove(), AdvConfig.getBlockModSurfaceIncludeCaves());
+            surfaceShell = true;
+            if (candidate.estimateVolume() <= share) {
+                return new Plan(candidate, region, playerCount, budget, candidate.estimateVolume(), true);
+            }
+        }
+
+        // Surface bands are as thin as they get, full regions give up a third of the shrink factor in height
+        int height = candidate.getHeight();
+        if (!(candidate instanceof GenericSurfaceRegion)) {
+            double scale = Math.cbrt((double) share / candidate.estimateVolume());
+            height = Math.max(Math.min(minHeight, candidate.getHeight()), (int) Math.round(candidate.getHeight() * scale));
+        }
+        // Keep the vertical center of the region where it was
+        int heightOffset = candidate.getHeightOffset() - (candidate.getHeight() - height) / 2;
+
+        // The largest radius fitting the share, found by bisection so every shape can estimate itself
+        int low = Math.min(minRadius, candidate.getRadius());
+        int high = candidate.getRadius();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (candidate.resize(mid, height, heightOffset).estimateVolume() <= share) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        GenericRegion planned = candidate.resize(low, height, heightOffset);
+        return new Plan(planned, region, playerCount, budget, planned.estimateVolume(), surfaceShell);
+    }
+}
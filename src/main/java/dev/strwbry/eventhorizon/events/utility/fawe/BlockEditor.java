@@ -1,83 +1,224 @@
 package dev.strwbry.eventhorizon.events.utility.fawe;
 
+import com.fastasyncworldedit.core.Fawe;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
-import com.sk89q.worldedit.function.mask.BlockTypeMask;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.block.BlockType;
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.utility.SpawnSiteIndex;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.EditHistory;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.EditTag;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.HistoryEntry;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.UndoExecutor;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
 import dev.strwbry.eventhorizon.utility.MsgUtility;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
 /**
  * Utility class for manipulating blocks in WorldEdit regions.
  * This class provides functionality to replace blocks and undo modifications.
+ * Edits can either run synchronously or be submitted to FAWE's worker threads, in which case
+ * the caller receives a future completed on the main thread once the edit has been flushed.
  */
 public class BlockEditor
 {
+    /** Async edits whose blocks haven't been replaced and recorded yet, with the run each edit is made for */
+    private static final Map<CompletableFuture<EditResult>, EditTag> pendingEdits = new ConcurrentHashMap<>();
+    /** Executor that runs tasks on FAWE's async queue */
+    private static final Executor FAWE_QUEUE = task -> Fawe.instance().getQueueHandler().async(task);
+    /** Executor that runs tasks on the main server thread, dropping them while the plugin is disabling */
+    private static final Executor MAIN_THREAD = task -> {
+        // The scheduler refuses tasks of a disabled plugin, ShutdownRestore takes over the history instead
+        if (EventHorizon.getPlugin().isEnabled()) {
+            Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task);
+        }
+    };
+
     /**
-     * List of edit history entries storing world and edit session data.
-     * Used to track and undo block modifications made through this editor.
+     * Replaces blocks in a specified region using a pattern.
+     *
+     * @param region The region where blocks should be replaced
+     * @param replacingPattern The pattern to replace blocks with
+     * @param blockTypesToReplace Collection of block types to be replaced
+     * @param isMaskInverted If true, replaces blocks that don't match the mask
+     * @return The result of the edit
      */
-private static List<EditHistoryEntry> editHistory = new ArrayList<>();
+    public static EditResult replaceBlocksInRegion(@NotNull Region region, @NotNull Pattern replacingPattern, @NotNull Collection<BlockType> blockTypesToReplace, boolean isMaskInverted) {
+        return replaceBlocksInRegion(region, replacingPattern, blockTypesToReplace, isMaskInverted, EditTag.UNTAGGED);
+    }
 
     /**
-     * Inner class to store the necessary information for undoing edit operations.
+     * Replaces blocks in a specified region using a pattern and records the edit for an event run.
+     *
+     * @param region The region where blocks should be replaced
+     * @param replacingPattern The pattern to replace blocks with
+     * @param blockTypesToReplace Collection of block types to be replaced
+     * @param isMaskInverted If true, replaces blocks that don't match the mask
+     * @param tag The event run and players the edit is made for
+     * @return The result of the edit
      */
-    private static class EditHistoryEntry {
-        /**
-         * The WorldEdit world instance where the edit operation was performed.
-         * Used to create new edit sessions for undo operations.
-         */
-        private final com.sk89q.worldedit.world.World world;
-        /**
-         * The EditSession containing the changes made during the edit operation.
-         * Used to undo the changes when necessary.
-         */
-        private final EditSession session;
-
-        /**
-         * Creates a new edit history entry.
-         *
-         * @param world The WorldEdit world where the edit occurred
-         * @param session The EditSession containing the changes
-         */
-        public EditHistoryEntry(com.sk89q.worldedit.world.World world, EditSession session) {
-            this.world = world;
-            this.session = session;
+    public static EditResult replaceBlocksInRegion(@NotNull Region region, @NotNull Pattern replacingPattern, @NotNull Collection<BlockType> blockTypesToReplace, boolean isMaskInverted, @NotNull EditTag tag) {
+        EditResult result = performReplace(region, replacingPattern, blockTypesToReplace, isMaskInverted, tag);
+        invalidateSpawnSites(region);
+        return result;
+    }
+
+    /**
+     * Replaces blocks in a specified region using a pattern on FAWE's worker threads.
+     * The edit is recorded in the edit history like a synchronous edit, so it is undone by
+     * {@link #undoAllBlockModifications()} as well.
+     *
+     * @param region The region where blocks should be replaced
+     * @param replacingPattern The pattern to replace blocks with
+     * @param blockTypesToReplace Collection of block types to be replaced
+     * @param isMaskInverted If true, replaces blocks that don't match the mask
+     * @return Future completed on the main thread with the result of the edit
+     */
+    public static CompletableFuture<EditResult> replaceBlocksInRegionAsync(@NotNull Region region, @NotNull Pattern replacingPattern, @NotNull Collection<BlockType> blockTypesToReplace, boolean isMaskInverted) {
+        return replaceBlocksInRegionAsync(region, replacingPattern, blockTypesToReplace, isMaskInverted, EditTag.UNTAGGED);
+    }
+
+    /**
+     * Replaces blocks in a specified region using a pattern on FAWE's worker threads and records the edit for an
+     * event run.
+     *
+     * @param region The region where blocks should be replaced
+     * @param replacingPattern The pattern to replace blocks with
+     * @param blockTypesToReplace Collection of block types to be replaced
+     * @param isMaskInverted If true, replaces blocks that don't match the mask
+     * @param tag The event run and players the edit is made for
+     * @return Future completed on the main thread with the result of the edit
+     */
+    public static CompletableFuture<EditResult> replaceBlocksInRegionAsync(@NotNull Region region, @NotNull Pattern replacingPattern, @NotNull Collection<BlockType> blockTypesToReplace, boolean isMaskInverted, @NotNull EditTag tag) {
+        CompletableFuture<EditResult> performed = CompletableFuture
+                .supplyAsync(() -> performReplace(region, replacingPattern, blockTypesToReplace, isMaskInverted, tag), FAWE_QUEUE);
+        // Tracked until the edit is recorded, which doesn't depend on the main thread
+        pendingEdits.put(performed, tag);
+        performed.whenComplete((result, error) -> pendingEdits.remove(performed));
+
+        return performed.thenApplyAsync(result -> {
+            invalidateSpawnSites(region);
+            return result;
+        }, MAIN_THREAD);
+    }
+
+    /**
+     * Replaces blocks in a specified region using a Bukkit Material on FAWE's worker threads.
+     *
+     * @param region The region where blocks should be replaced
+     * @param blockId The Bukkit Material to replace blocks with
+     * @param blockTypesToReplace Collection of block types to be replaced
+     * @param isMaskInverted If true, replaces blocks that don't match the mask
+     * @return Future completed on the main thread with the result of the edit
+     */
+    public static CompletableFuture<EditResult> replaceBlocksInRegionAsync(Region region, Material blockId, Collection<BlockType> blockTypesToReplace, boolean isMaskInverted) {
+        BlockType blockType = BukkitAdapter.asBlockType(blockId);
+        if (blockType == null) {
+            MsgUtility.warning("Block type Null");
+            return CompletableFuture.completedFuture(new EditResult(region, 0L, 0, 0L, 0L, 0));
         }
+        return replaceBlocksInRegionAsync(region, blockType.getDefaultState(), blockTypesToReplace, isMaskInverted);
     }
 
     /**
-     * Replaces blocks in a specified region using a pattern.
+     * Builds an edit session with the {@link EditProfile} of the tagged event, replaces the masked blocks and
+     * flushes the session. Edits of events whose profile has history disabled aren't recorded and can't be undone.
+     * Safe to call from FAWE's worker threads.
      *
      * @param region The region where blocks should be replaced
      * @param replacingPattern The pattern to replace blocks with
      * @param blockTypesToReplace Collection of block types to be replaced
      * @param isMaskInverted If true, replaces blocks that don't match the mask
+     * @param tag The event run and players the edit is made for
+     * @return The result of the edit
      */
-    public static void replaceBlocksInRegion(@NotNull Region region, @NotNull Pattern replacingPattern, @NotNull Collection<BlockType> blockTypesToReplace, boolean isMaskInverted) {
+    private static EditResult performReplace(Region region, Pattern replacingPattern, Collection<BlockType> blockTypesToReplace, boolean isMaskInverted, EditTag tag) {
+        long start = System.nanoTime();
         com.sk89q.worldedit.world.World world = region.getWorld();
-        EditSession editSession = WorldEdit.getInstance()
+        EditProfile profile = EditProfile.forEvent(tag.eventName());
+        EditSession editSession = profile.applyTo(WorldEdit.getInstance()
                 .newEditSessionBuilder()
                 .world(world)
-                .maxBlocks(-1)
+                .maxBlocks(-1))
                 .build();
+        profile.applyTo(editSession);
 
-        BlockTypeMask mask = new BlockTypeMask(editSession, blockTypesToReplace);
-        editSession.replaceBlocks(region, isMaskInverted ? mask.inverse() : mask, replacingPattern);
-        Operations.complete(editSession.commit());
-        editSession.flushQueue();
+        // Rule sets read the current block through the session when a position is all they are given
+        Pattern pattern = replacingPattern instanceof BlockRuleSet ruleSet ? ruleSet.bind(editSession) : replacingPattern;
+        int blocksChanged;
+        if (AdvConfig.getBlockModSectionPrefilter()) {
+            // Sections without candidate blocks are skipped before any per-block work
+            SectionPrefilter filter = new SectionPrefilter(BlockTypeSet.of(blockTypesToReplace), isMaskInverted, pattern);
+            editSession.apply(region, filter, filter.matchesAir());
+            Operations.complete(editSession.commit());
+            editSession.flushQueue();
+            blocksChanged = filter.getChangedCount();
+        } else {
+            BlockTypeSetMask mask = new BlockTypeSetMask(editSession, BlockTypeSet.of(blockTypesToReplace), isMaskInverted);
+            editSession.replaceBlocks(region, mask, pattern);
+            Operations.complete(editSession.commit());
+            editSession.flushQueue();
+            blocksChanged = editSession.getBlockChangeCount();
+        }
+        long duration = System.nanoTime() - start;
+
+        if (profile.relight() == EditProfile.Relight.DEFERRED) {
+            DeferredRelighter.queue(region);
+        }
 
-        // Store the history entry
-        editHistory.add(new EditHistoryEntry(world, editSession));
+        // Store the history entry, this may spill the changes to disk and close the session
+        long retainedBytes = 0L;
+        if (profile.history()) {
+            retainedBytes = EditHistory.record(world, editSession, tag);
+        } else {
+            editSession.close();
+        }
+
+        return new EditResult(region, region.getVolume(), blocksChanged, duration, retainedBytes, countChunks(region));
+    }
+
+    /**
+     * Counts the chunks covered by the bounding box of a region, without building the region's chunk set.
+     *
+     * @param region The region
+     * @return The number of chunks the bounding box touches
+     */
+    private static int countChunks(Region region) {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        return ((max.x() >> 4) - (min.x() >> 4) + 1) * ((max.z() >> 4) - (min.z() >> 4) + 1);
+    }
+
+    /**
+     * Drops indexed spawn sites inside an edited region, since they are no longer accurate.
+     *
+     * @param region The edited region
+     */
+    private static void invalidateSpawnSites(Region region) {
+        SpawnSiteIndex.invalidateArea(BukkitAdapter.adapt(region.getWorld()),
+                region.getMinimumPoint().x(), region.getMinimumPoint().z(),
+                region.getMaximumPoint().x(), region.getMaximumPoint().z());
     }
 
     /**
@@ -100,42 +241,116 @@ private static List<EditHistoryEntry> editHistory = new ArrayList<>();
 
     /**
      * Undoes all block modifications stored in the edit history.
-     * Creates new sessions for each undo operation and closes them afterward.
-     * Clears the edit history after completion.
+     * The history is handed to the {@link UndoExecutor}, which restores it in batches under a per-tick budget
+     * without blocking the main thread. Blocks that no longer hold what the event placed are left as they are,
+     * and blocks in unloaded chunks can be deferred until the chunks load.
+     * Clears the edit history right away.
+     * Async edits still in progress are undone as soon as they complete, and the returned future waits for them.
+     * Only the runs of those edits are drained again then, so edits started after this call are kept.
+     *
+     * @return Future completed on the main thread with the number of restored blocks once the undo has finished
      */
-    public static void undoAllBlockModifications() {
-        try {
-            // Create new sessions for each undo operation
-            for (EditHistoryEntry entry : editHistory) {
-                // Create a new session for undoing
-                EditSession newSession = WorldEdit.getInstance()
-                        .newEditSessionBuilder()
-                        .world(entry.world)
-                        .maxBlocks(-1)
-                        .build();
-
-                // Perform the undo
-                entry.session.undo(newSession);
-                Operations.complete(newSession.commit());
-
-                // Close both sessions
-                newSession.close();
-                entry.session.close();
+    public static CompletableFuture<Long> undoAllBlockModifications() {
+        return thenUndoPending(UndoExecutor.submit(EditHistory.drain()), tag -> true, null);
+    }
+
+    /**
+     * Undoes the async edits in progress once they have been recorded, and combines their undo with an undo already
+     * started into one future. Only the runs of the edits pending now are drained then, so edits recorded in the
+     * meantime by other runs stay in the history. While the plugin is disabling, the edits are left to the shutdown
+     * restore instead.
+     *
+     * @param immediate The undo of the edits recorded so far
+     * @param filter Selects the pending edits to undo by the run they are made for
+     * @param playerName Name of the player whose part of the runs is undone, or null for the whole runs
+     * @return Future completed with the number of blocks restored by both undos
+     */
+    private static CompletableFuture<Long> thenUndoPending(CompletableFuture<Long> immediate, Predicate<EditTag> filter, String playerName) {
+        if (!EventHorizon.getPlugin().isEnabled()) {
+            return immediate;
+        }
+        List<CompletableFuture<EditResult>> waiting = new ArrayList<>();
+        Set<Long> runIds = new LinkedHashSet<>();
+        pendingEdits.forEach((edit, tag) -> {
+            if (filter.test(tag)) {
+                waiting.add(edit);
+                runIds.add(tag.runId());
             }
-            editHistory.clear();
-        } catch (Exception e) {
-            MsgUtility.warning("Failed to undo block modifications: " + e.getMessage());
+        });
+        if (waiting.isEmpty()) {
+            return immediate;
         }
+        return CompletableFuture.allOf(waiting.toArray(new CompletableFuture[0]))
+                .handle((ignored, error) -> null)
+                .thenComposeAsync(ignored -> {
+                    List<HistoryEntry> entries = new ArrayList<>();
+                    for (long runId : runIds) {
+                        entries.addAll(EditHistory.drainRun(runId, playerName));
+                    }
+                    if (entries.isEmpty()) {
+                        return immediate;
+                    }
+                    CompletableFuture<Long> later = UndoExecutor.submit(entries);
+                    // Both undos share the executor's future when the second one joins a running undo
+                    return later == immediate ? later : immediate.thenCombine(later, Long::sum);
+                }, MAIN_THREAD);
     }
 
     /**
-     * Closes all active edit sessions and clears the edit history.
+     * Undoes the block modifications of a single event run, leaving the edits of other runs in place.
+     * Only the run's own history entries are restored, through the {@link UndoExecutor} like a full undo.
+     * Blocks the run changed that were edited again by a later run keep the later edit, unless undo is configured
+     * to restore every change regardless of the current block.
+     * Async edits of the run still in progress are undone as soon as they complete, and the returned future waits
+     * for that undo as well.
+     *
+     * @param runId Id of the event run
+     * @param playerName Name of the player whose part of the run is undone, or null for the whole run
+     * @return Future completed on the main thread with the number of restored blocks once the undo has finished,
+     *         completed with 0 right away if the run has no recorded edits
+     */
+    public static CompletableFuture<Long> undoRun(long runId, String playerName) {
+        List<HistoryEntry> entries = EditHistory.drainRun(runId, playerName);
+        CompletableFuture<Long> immediate = entries.isEmpty() ? CompletableFuture.completedFuture(0L) : UndoExecutor.submit(entries);
+        return thenUndoPending(immediate, tag -> tag.runId() == runId && (playerName == null || tag.isOwnedBy(playerName)), playerName);
+    }
+
+    /**
+     * Closes all active edit sessions, deletes spilled history files and clears the edit history.
      * Should be called during plugin shutdown or when cleanup is needed.
      */
     public static void clearActiveEditSessions() {
-        for (EditHistoryEntry entry : editHistory) {
-            entry.session.close();
+        EditHistory.clear();
+    }
+
+    /**
+     * Blocks until every async edit submitted so far has been recorded in the edit history.
+     * Used during shutdown, when the main thread can't complete futures anymore.
+     *
+     * @param timeoutMillis Longest time to wait in milliseconds
+     * @return true if every edit was recorded in time
+     */
+    public static boolean awaitPendingEdits(long timeoutMillis) {
+        try {
+            CompletableFuture.allOf(pendingEdits.keySet().toArray(new CompletableFuture[0])).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            // Failed edits weren't recorded, there is nothing left to wait for
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (TimeoutException e) {
+            return false;
         }
-        editHistory.clear();
+    }
+
+    /**
+     * Gets the number of async edits whose blocks haven't been replaced and recorded yet.
+     *
+     * @return The pending edit count
+     */
+    public static int getPendingEditCount() {
+        return pendingEdits.size();
     }
 }
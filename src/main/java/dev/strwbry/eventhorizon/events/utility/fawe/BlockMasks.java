@@ -12,6 +12,8 @@ import java.util.Collection;
 /**
  * Constructs a new BlockMasks instance and initializes all block collections.
  * This includes ground blocks, non-replaceable blocks, and air blocks.
+ * Every collection is compiled into an immutable {@link BlockTypeSet} once built, so the masks of all events
+ * share it and test block types with a single bit lookup.
  */
 public class BlockMasks
 {
@@ -53,8 +55,7 @@ public class BlockMasks
         initializeCannotBeReplaced();
         initializeUndergroundBlocks();
         initializePlants();
-        air =  new ArrayList<>();
-        air.addAll(getBlocksFromTag(MaterialSetTag.AIR)); //https://minecraft.wiki/w/Block_tag_(Java_Edition)#air
+        air = BlockTypeSet.of(getBlocksFromTag(MaterialSetTag.AIR)); //https://minecraft.wiki/w/Block_tag_(Java_Edition)#air
 
     }
 
@@ -82,6 +83,7 @@ public class BlockMasks
         groundBlocks.addAll(getBlocksFromTag(MaterialSetTag.SCULK_REPLACEABLE)); //https://minecraft.wiki/w/Block_tag_(Java_Edition)#sculk_replaceable
         groundBlocks.add(BukkitAdapter.asBlockType(Material.SNOW_BLOCK));
         groundBlocks.add(BukkitAdapter.asBlockType(Material.POWDER_SNOW));
+        groundBlocks = BlockTypeSet.of(groundBlocks);
     }
 
     /**
@@ -143,6 +145,7 @@ public class BlockMasks
         cannotBeReplaced.add(BukkitAdapter.asBlockType(Material.SPAWNER));
         cannotBeReplaced.add(BukkitAdapter.asBlockType(Material.TRIAL_SPAWNER));
         cannotBeReplaced.add(BukkitAdapter.asBlockType(Material.VAULT));
+        cannotBeReplaced = BlockTypeSet.of(cannotBeReplaced);
 
     }
 
@@ -153,6 +156,7 @@ public class BlockMasks
     public void initializeUndergroundBlocks(){
         undergroundBlocks = new ArrayList<>();
         undergroundBlocks.addAll(getBlocksFromTag(MaterialSetTag.BASE_STONE_OVERWORLD)); //https://minecraft.wiki/w/Block_tag_(Java_Edition)#base_stone_overworld
+        undergroundBlocks = BlockTypeSet.of(undergroundBlocks);
     }
     /**
      * Initializes the collection of plants.
@@ -181,6 +185,7 @@ public class BlockMasks
 
         //end replacement for plants
         plants.add(BukkitAdapter.asBlockType(Material.CHORUS_PLANT));
+        plants = BlockTypeSet.of(plants);
 
     }
 
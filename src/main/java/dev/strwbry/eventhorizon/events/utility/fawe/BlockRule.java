@@ -0,0 +1,16 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.world.block.BlockType;
+
+import java.util.Collection;
+
+/**
+ * A single replacement of a {@link BlockRuleSet}: blocks matching the mask are replaced with the pattern.
+ *
+ * @param pattern             The pattern to replace blocks with
+ * @param blockTypesToReplace Block types to be replaced
+ * @param isMaskInverted      If true, replaces blocks that don't match the mask
+ */
+public record BlockRule(Pattern pattern, Collection<BlockType> blockTypesToReplace, boolean isMaskInverted) {
+}
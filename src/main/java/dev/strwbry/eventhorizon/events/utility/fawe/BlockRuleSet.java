@@ -0,0 +1,163 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Several block rules applied in a single pass over a region.
+ * The rule set is a pattern that picks, for every block, the first rule whose mask matches the block's current type
+ * and applies that rule's pattern. Together with {@link #getBlockTypesToReplace()} as the mask it can be passed to
+ * {@link BlockEditor} like any other pattern, so a compound event scans its region once and keeps one change set
+ * instead of one per rule.
+ * Rules are matched against the block as it was before the pass, so a later rule never sees what an earlier one
+ * placed. {@link #applyBlock(BlockVector3)} reads the current block from the extent the set is bound to, see
+ * {@link #bind(Extent)}.
+ */
+public class BlockRuleSet implements Pattern
+{
+    /** Marks block types that no rule replaces */
+    private static final byte NO_RULE = -1;
+
+    /** The rules, in priority order */
+    private final List<BlockRule> rules;
+    /** Patterns of the rules, in priority order */
+    private final Pattern[] patterns;
+    /** Index of the first matching rule by block type internal id, {@link #NO_RULE} if none matches */
+    private final byte[] ruleByType;
+    /** Block types replaced by at least one rule */
+    private final BlockTypeSet blockTypesToReplace;
+    /** The extent current blocks are read from when only a position is known */
+    private final Extent extent;
+
+    /**
+     * Compiles a rule set.
+     *
+     * @param rules The rules, in priority order, at most 127
+     * @throws IllegalArgumentException If there are no rules or more than 127
+     */
+    public BlockRuleSet(List<BlockRule> rules) {
+        if (rules.isEmpty() || rules.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("A block rule set needs between 1 and " + Byte.MAX_VALUE + " rules");
+        }
+        this.rules = List.copyOf(rules);
+        this.patterns = new Pattern[rules.size()];
+        List<BlockTypeSet> masks = new ArrayList<>(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            patterns[i] = rules.get(i).pattern();
+            masks.add(BlockTypeSet.of(rules.get(i).blockTypesToReplace()));
+        }
+
+        Collection<BlockType> allTypes = BlockType.REGISTRY.values();
+        int maxId = 0;
+        for (BlockType type : allTypes) {
+            maxId = Math.max(maxId, type.getInternalId());
+        }
+        this.ruleByType = new byte[maxId + 1];
+        Arrays.fill(ruleByType, NO_RULE);
+        List<BlockType> replaced = new ArrayList<>();
+        for (BlockType type : allTypes) {
+            for (int i = 0; i < rules.size(); i++) {
+                if (masks.get(i).contains(type) != rules.get(i).isMaskInverted()) {
+                    ruleByType[type.getInternalId()] = (byte) i;
+                    replaced.add(type);
+                    break;
+                }
+            }
+        }
+        this.blockTypesToReplace = BlockTypeSet.of(replaced);
+        this.extent = NullExtent.INSTANCE;
+    }
+
+    /**
+     * Creates a copy of a compiled rule set bound to an extent.
+     *
+     * @param compiled The compiled rule set
+     * @param extent The extent current blocks are read from
+     */
+    private BlockRuleSet(BlockRuleSet compiled, Extent extent) {
+        this.rules = compiled.rules;
+        this.patterns = compiled.patterns;
+        this.ruleByType = compiled.ruleByType;
+        this.blockTypesToReplace = compiled.blockTypesToReplace;
+        this.extent = extent;
+    }
+
+    /**
+     * Binds the rule set to the extent being edited, so {@link #applyBlock(BlockVector3)} matches the rules against
+     * the blocks of that extent. The compiled rules are shared with this set.
+     *
+     * @param extent The extent being edited
+     * @return A rule set reading current blocks from the extent
+     */
+    public BlockRuleSet bind(Extent extent) {
+        return new BlockRuleSet(this, extent);
+    }
+
+    /**
+     * Gets the rules of the set.
+     *
+     * @return The rules, in priority order
+     */
+    public List<BlockRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Gets the block types replaced by at least one rule, to be used as the non-inverted mask of the edit.
+     *
+     * @return The replaced block types
+     */
+    public BlockTypeSet getBlockTypesToReplace() {
+        return blockTypesToReplace;
+    }
+
+    /**
+     * Applies the pattern of the first rule matching the block at a position.
+     *
+     * @param extent The extent the block is read from and written to
+     * @param get The position to read the current block from
+     * @param set The position to write the new block to
+     * @return true if the block was changed
+     * @throws WorldEditException If the extent refuses the block
+     */
+    @Override
+    public boolean apply(Extent extent, BlockVector3 get, BlockVector3 set) throws WorldEditException {
+        byte rule = ruleFor(extent.getBlock(get).getBlockType());
+        return rule != NO_RULE && patterns[rule].apply(extent, get, set);
+    }
+
+    /**
+     * Gets the block the first rule matching the block at a position places there.
+     * The current block is read from the bound extent; a set that isn't bound reads every block as air.
+     *
+     * @param position The position of the block
+     * @return The block to place, the current block if no rule matches it
+     */
+    @Override
+    public BaseBlock applyBlock(BlockVector3 position) {
+        BaseBlock current = extent.getFullBlock(position);
+        byte rule = ruleFor(current.getBlockType());
+        return rule == NO_RULE ? current : patterns[rule].applyBlock(position);
+    }
+
+    /**
+     * Finds the first rule matching a block type.
+     *
+     * @param type The block type
+     * @return Index of the rule, {@link #NO_RULE} if none matches
+     */
+    private byte ruleFor(BlockType type) {
+        int id = type.getInternalId();
+        return id < ruleByType.length ? ruleByType[id] : NO_RULE;
+    }
+}
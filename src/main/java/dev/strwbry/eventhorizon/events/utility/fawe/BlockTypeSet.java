@@ -0,0 +1,121 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.world.block.BlockType;
+
+import java.util.*;
+
+/**
+ * Immutable set of block types backed by a bitset indexed by the block types' internal ids.
+ * Membership tests are a single bit lookup, which makes it suitable for the per-block test of a mask.
+ * Sets are compiled once and shared; compiling a set that already is a BlockTypeSet returns it unchanged.
+ */
+public final class BlockTypeSet extends AbstractSet<BlockType>
+{
+    /** Bits of the contained internal ids */
+    private final long[] bits;
+    /** Contained block types, ordered by internal id */
+    private final BlockType[] members;
+
+    /**
+     * Creates a set from already compiled data.
+     *
+     * @param bits Bits of the contained internal ids
+     * @param members Contained block types, ordered by internal id
+     */
+    private BlockTypeSet(long[] bits, BlockType[] members) {
+        this.bits = bits;
+        this.members = members;
+    }
+
+    /**
+     * Compiles a collection of block types into a set.
+     * Null entries, as returned by {@link com.sk89q.worldedit.bukkit.BukkitAdapter#asBlockType} for materials that
+     * aren't blocks, are ignored.
+     *
+     * @param blockTypes The block types to compile
+     * @return The compiled set, the collection itself if it already is a BlockTypeSet
+     */
+    public static BlockTypeSet of(Collection<BlockType> blockTypes) {
+        if (blockTypes instanceof BlockTypeSet set) {
+            return set;
+        }
+
+        int maxId = -1;
+        for (BlockType type : blockTypes) {
+            if (type != null) {
+                maxId = Math.max(maxId, type.getInternalId());
+            }
+        }
+        long[] bits = new long[(maxId >> 6) + 1];
+        BlockType[] byId = new BlockType[maxId + 1];
+        int count = 0;
+        for (BlockType type : blockTypes) {
+            if (type != null && byId[type.getInternalId()] == null) {
+                byId[type.getInternalId()] = type;
+                bits[type.getInternalId() >> 6] |= 1L << type.getInternalId();
+                count++;
+            }
+        }
+
+        BlockType[] members = new BlockType[count];
+        int index = 0;
+        for (BlockType type : byId) {
+            if (type != null) {
+                members[index++] = type;
+            }
+        }
+        return new BlockTypeSet(bits, members);
+    }
+
+    /**
+     * Checks whether the set contains a block type by its internal id.
+     *
+     * @param internalId The internal id of the block type
+     * @return true if the block type is in the set
+     */
+    public boolean containsId(int internalId) {
+        int word = internalId >> 6;
+        return word < bits.length && (bits[word] & (1L << internalId)) != 0;
+    }
+
+    /**
+     * Checks whether the set contains a block type.
+     *
+     * @param type The block type to check
+     * @return true if the block type is in the set
+     */
+    public boolean contains(BlockType type) {
+        return containsId(type.getInternalId());
+    }
+
+    /**
+     * Checks whether the set contains an object.
+     *
+     * @param o The object to check
+     * @return true if the object is a block type in the set
+     */
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof BlockType type && contains(type);
+    }
+
+    /**
+     * Iterates the block types of the set in internal id order.
+     *
+     * @return An unmodifiable iterator
+     */
+    @Override
+    public Iterator<BlockType> iterator() {
+        return Collections.unmodifiableList(Arrays.asList(members)).iterator();
+    }
+
+    /**
+     * Gets the number of block types in the set.
+     *
+     * @return The block type count
+     */
+    @Override
+    public int size() {
+        return members.length;
+    }
+}
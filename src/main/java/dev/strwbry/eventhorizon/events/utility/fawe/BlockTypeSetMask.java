@@ -0,0 +1,74 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.mask.AbstractExtentMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.math.BlockVector3;
+
+/**
+ * Mask matching blocks whose type is in a {@link BlockTypeSet}.
+ * The per-block test is a single bit lookup, and inversion is folded into the test instead of wrapping the mask.
+ */
+public class BlockTypeSetMask extends AbstractExtentMask
+{
+    /** The block types matched by the mask */
+    private final BlockTypeSet types;
+    /** Whether the mask matches blocks that are not in the set instead */
+    private final boolean inverted;
+
+    /**
+     * Creates a mask for a set of block types.
+     *
+     * @param extent The extent blocks are read from
+     * @param types The block types matched by the mask
+     * @param inverted If true, the mask matches blocks that are not in the set
+     */
+    public BlockTypeSetMask(Extent extent, BlockTypeSet types, boolean inverted) {
+        super(extent);
+        this.types = types;
+        this.inverted = inverted;
+    }
+
+    /**
+     * Tests a block of the mask's extent.
+     *
+     * @param vector The position of the block
+     * @return true if the block matches
+     */
+    @Override
+    public boolean test(BlockVector3 vector) {
+        return test(getExtent(), vector);
+    }
+
+    /**
+     * Tests a block of an extent.
+     *
+     * @param extent The extent to read the block from
+     * @param vector The position of the block
+     * @return true if the block matches
+     */
+    @Override
+    public boolean test(Extent extent, BlockVector3 vector) {
+        return types.containsId(extent.getBlock(vector).getBlockType().getInternalId()) != inverted;
+    }
+
+    /**
+     * Gets a mask matching the opposite blocks.
+     *
+     * @return The inverted mask
+     */
+    @Override
+    public Mask inverse() {
+        return new BlockTypeSetMask(getExtent(), types, !inverted);
+    }
+
+    /**
+     * Copies the mask, the block type set is shared since it is immutable.
+     *
+     * @return The copy
+     */
+    @Override
+    public Mask copy() {
+        return new BlockTypeSetMask(getExtent(), types, inverted);
+    }
+}
@@ -0,0 +1,79 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.FaweAPI;
+import com.fastasyncworldedit.core.extent.processor.lighting.RelightMode;
+import com.sk89q.worldedit.regions.Region;
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import org.bukkit.Bukkit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recalculates the lighting of edited regions shortly after the edits instead of during them.
+ * Regions queued within the configured delay are relit together on FAWE's worker threads, so edits of an event
+ * don't pay for lighting while they are applied and a burst of edits is relit in one go.
+ */
+public class DeferredRelighter
+{
+    /** Regions waiting to be relit, guarded by itself */
+    private static final List<Region> pending = new ArrayList<>();
+    /** Whether a relight pass is scheduled, guarded by the pending list */
+    private static boolean scheduled = false;
+
+    /**
+     * Queues an edited region for relighting. Safe to call from any thread.
+     *
+     * @param region The edited region
+     */
+    public static void queue(Region region) {
+        synchronized (pending) {
+            pending.add(region);
+            if (scheduled || !EventHorizon.getPlugin().isEnabled()) {
+                return;
+            }
+            scheduled = true;
+        }
+        Bukkit.getScheduler().runTaskLater(EventHorizon.getPlugin(),
+                () -> Fawe.instance().getQueueHandler().async(DeferredRelighter::relightPending),
+                AdvConfig.getBlockModProfileDeferredRelightDelayTicks());
+    }
+
+    /**
+     * Relights every queued region.
+     * Runs on FAWE's worker threads.
+     */
+    private static void relightPending() {
+        List<Region> regions;
+        synchronized (pending) {
+            regions = new ArrayList<>(pending);
+            pending.clear();
+            scheduled = false;
+        }
+
+        long start = System.nanoTime();
+        int chunks = 0;
+        for (Region region : regions) {
+            try {
+                chunks += FaweAPI.fixLighting(region.getWorld(), region, null, RelightMode.OPTIMAL);
+            } catch (RuntimeException e) {
+                MsgUtility.warning("Failed to relight edited region: " + e.getMessage());
+            }
+        }
+        MsgUtility.log("Relit " + chunks + " chunks of " + regions.size() + " block edits in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+
+    /**
+     * Gets the number of regions waiting to be relit.
+     *
+     * @return The pending region count
+     */
+    public static int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+}
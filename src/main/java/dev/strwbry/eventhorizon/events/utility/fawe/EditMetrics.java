@@ -0,0 +1,206 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.regions.Region;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.ChunkClippedRegion;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.MergedRegion;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Bounded history of the block edits made by events.
+ * Every edit is stored together with the event and the players it was made for, so the scanned volume,
+ * changed blocks, time, undo memory and touched chunks can be compared per event and per player.
+ * Once the configured number of records is reached the oldest ones are dropped.
+ */
+public class EditMetrics
+{
+    /** Recorded edits, oldest first */
+    private static final Deque<EditRecord> records = new ArrayDeque<>();
+    /** Totals of no edits */
+    private static final Summary EMPTY = new Summary(0, 0, 0, 0, 0, 0, 0);
+
+    /**
+     * Metrics of a single edit.
+     *
+     * @param timestamp     Time the edit was recorded in milliseconds
+     * @param eventName     Name of the event that made the edit
+     * @param owner         Players the edit was made for
+     * @param world         Name of the world of the edit
+     * @param regionVolume  Number of blocks in the edited region
+     * @param blocksChanged Number of blocks changed by the edit
+     * @param durationNanos Time spent on the edit in nanoseconds
+     * @param retainedBytes Bytes retained in the edit history for undoing the edit
+     * @param chunksTouched Number of chunks the edited region touches
+     */
+    public record EditRecord(long timestamp, String eventName, String owner, String world, long regionVolume,
+                             int blocksChanged, long durationNanos, long retainedBytes, int chunksTouched) {
+        /**
+         * Gets the edit duration in milliseconds.
+         *
+         * @return The duration of the edit in milliseconds
+         */
+        public double durationMillis() {
+            return durationNanos / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Totals over several edits.
+     *
+     * @param edits         Number of edits
+     * @param regionVolume  Total number of blocks in the edited regions
+     * @param blocksChanged Total number of changed blocks
+     * @param durationNanos Total time spent on the edits in nanoseconds
+     * @param slowestNanos  Time spent on the slowest edit in nanoseconds
+     * @param retainedBytes Total bytes retained for undo
+     * @param chunksTouched Total number of touched chunks
+     */
+    public record Summary(int edits, long regionVolume, long blocksChanged, long durationNanos, long slowestNanos,
+                          long retainedBytes, long chunksTouched) {
+        /**
+         * Adds an edit to the totals.
+         *
+         * @param record The edit to add
+         * @return The new totals
+         */
+        private Summary add(EditRecord record) {
+            return new Summary(edits + 1, regionVolume + record.regionVolume(), blocksChanged + record.blocksChanged(),
+                    durationNanos + record.durationNanos(), Math.max(slowestNanos, record.durationNanos()),
+                    retainedBytes + record.retainedBytes(), chunksTouched + record.chunksTouched());
+        }
+    }
+
+    /**
+     * Records the result of an edit.
+     *
+     * @param eventName Name of the event that made the edit
+     * @param owner Players the edit was made for
+     * @param result The result of the edit
+     */
+    public static void record(String eventName, String owner, EditResult result) {
+        Region region = result.region();
+        EditRecord record = new EditRecord(System.currentTimeMillis(), eventName, owner,
+                region.getWorld() == null ? "unknown" : region.getWorld().getName(), result.blocksScanned(),
+                result.blocksChanged(), result.durationNanos(), result.retainedBytes(), result.chunksTouched());
+
+        int limit = Math.max(1, AdvConfig.getBlockModMetricsHistorySize());
+        synchronized (records) {
+            records.addLast(record);
+            while (records.size() > limit) {
+                records.pollFirst();
+            }
+        }
+    }
+
+    /**
+     * Resolves the players an edited region was made for.
+     * Chunk pieces are attributed to the region they were cut from, and merged regions to all of their parts.
+     *
+     * @param region The edited region
+     * @param owners Player names keyed by the regions created for them
+     * @return The player names joined by commas, or "unknown" if the region has no known owner
+     */
+    public static String ownerOf(Region region, Map<Region, String> owners) {
+        if (region instanceof ChunkClippedRegion clipped) {
+            return ownerOf(clipped.getSource(), owners);
+        }
+        if (region instanceof MergedRegion merged) {
+            StringJoiner joiner = new StringJoiner(", ");
+            for (Region part : merged.getParts()) {
+                joiner.add(owners.getOrDefault(part, "unknown"));
+            }
+            return joiner.toString();
+        }
+        return owners.getOrDefault(region, "unknown");
+    }
+
+    /**
+     * Gets the most recent edits.
+     *
+     * @param limit Maximum number of edits to return
+     * @return The edits, newest first
+     */
+    public static List<EditRecord> getRecent(int limit) {
+        List<EditRecord> recent = new ArrayList<>();
+        synchronized (records) {
+            Iterator<EditRecord> it = records.descendingIterator();
+            while (it.hasNext() && recent.size() < limit) {
+                recent.add(it.next());
+            }
+        }
+        return recent;
+    }
+
+    /**
+     * Gets the recorded edits of an event.
+     *
+     * @param eventName The event name
+     * @return The event's edits, oldest first
+     */
+    public static List<EditRecord> getByEvent(String eventName) {
+        synchronized (records) {
+            return records.stream().filter(record -> record.eventName().equalsIgnoreCase(eventName)).toList();
+        }
+    }
+
+    /**
+     * Sums the recorded edits per event.
+     *
+     * @return Totals keyed by event name, in order of the events' first recorded edit
+     */
+    public static Map<String, Summary> summarizeByEvent() {
+        return summarize(EditRecord::eventName, null);
+    }
+
+    /**
+     * Sums the recorded edits of an event per player.
+     * Edits made for several players at once, such as merged regions, are kept under their combined owner.
+     *
+     * @param eventName The event name
+     * @return Totals keyed by owner, in order of the owners' first recorded edit
+     */
+    public static Map<String, Summary> summarizeByOwner(String eventName) {
+        return summarize(EditRecord::owner, eventName);
+    }
+
+    /**
+     * Sums the recorded edits by a key.
+     *
+     * @param key Extracts the key of an edit
+     * @param eventName Only edits of this event are summed, or all edits if null
+     * @return Totals keyed by the extracted key
+     */
+    private static Map<String, Summary> summarize(Function<EditRecord, String> key, String eventName) {
+        Map<String, Summary> summaries = new LinkedHashMap<>();
+        synchronized (records) {
+            for (EditRecord record : records) {
+                if (eventName == null || record.eventName().equalsIgnoreCase(eventName)) {
+                    summaries.compute(key.apply(record), (k, summary) -> (summary == null ? EMPTY : summary).add(record));
+                }
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Gets the number of recorded edits.
+     *
+     * @return The record count
+     */
+    public static int size() {
+        synchronized (records) {
+            return records.size();
+        }
+    }
+
+    /**
+     * Drops every recorded edit.
+     */
+    public static void clear() {
+        synchronized (records) {
+            records.clear();
+        }
+    }
+}
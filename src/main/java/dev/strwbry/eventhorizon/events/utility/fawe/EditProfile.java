@@ -0,0 +1,113 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.fastasyncworldedit.core.extent.processor.lighting.RelightMode;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.EditSessionBuilder;
+import com.sk89q.worldedit.util.SideEffect;
+import com.sk89q.worldedit.util.SideEffectSet;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+
+import java.util.Locale;
+
+/**
+ * How the block edits of an event are applied: when lighting is recalculated, whether neighbouring blocks are
+ * notified, whether block physics run and whether the edit is recorded for undo.
+ * Profiles are read from the config per event name, falling back to the default profile for every setting an
+ * event doesn't override.
+ *
+ * @param relight When lighting of the edited chunks is recalculated
+ * @param neighborUpdates Whether neighbouring blocks are notified of changed blocks
+ * @param physics Whether block physics run on changed blocks
+ * @param history Whether the edit is recorded so it is undone when the event ends
+ */
+public record EditProfile(Relight relight, boolean neighborUpdates, boolean physics, boolean history)
+{
+    /**
+     * When lighting of edited chunks is recalculated.
+     */
+    public enum Relight
+    {
+        /** Lighting is never recalculated */
+        NONE,
+        /** Lighting is recalculated shortly after the edit by the {@link DeferredRelighter} */
+        DEFERRED,
+        /** Lighting is recalculated during the edit as configured in FAWE */
+        FULL
+    }
+
+    /**
+     * Reads the profile of an event from the config.
+     *
+     * @param eventName The name of the event, as passed to its edit tag
+     * @return The profile of the event
+     */
+    public static EditProfile forEvent(String eventName) {
+        String key = toConfigKey(eventName);
+        String relight = AdvConfig.getBlockModProfileRelight(key);
+        Relight mode;
+        try {
+            mode = Relight.valueOf(relight.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            MsgUtility.warning("Unknown relight mode " + relight + " for event " + eventName + ", using full");
+            mode = Relight.FULL;
+        }
+        return new EditProfile(mode, AdvConfig.getBlockModProfileNeighborUpdates(key), AdvConfig.getBlockModProfilePhysics(key),
+                AdvConfig.getBlockModProfileHistory(key));
+    }
+
+    /**
+     * Converts an event name to its config key, e.g. netherInvasion to nether-invasion.
+     *
+     * @param eventName The name of the event
+     * @return The kebab case config key
+     */
+    private static String toConfigKey(String eventName) {
+        StringBuilder key = new StringBuilder(eventName.length() + 4);
+        for (char c : eventName.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                key.append('-').append(Character.toLowerCase(c));
+            } else {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Applies the settings that have to be set before the edit session is built.
+     * Sessions without history don't keep a change set at all.
+     *
+     * @param builder The edit session builder
+     * @return The builder
+     */
+    public EditSessionBuilder applyTo(EditSessionBuilder builder) {
+        if (relight != Relight.FULL) {
+            builder.relightMode(RelightMode.NONE);
+        }
+        if (!history) {
+            builder.changeSetNull();
+        }
+        return builder;
+    }
+
+    /**
+     * Applies the side effects of the profile to a built edit session.
+     * Sessions with the default side effects are left untouched.
+     *
+     * @param session The edit session
+     */
+    public void applyTo(EditSession session) {
+        if (neighborUpdates && physics) {
+            return;
+        }
+        SideEffectSet sideEffects = SideEffectSet.defaults();
+        if (!neighborUpdates) {
+            sideEffects = sideEffects.with(SideEffect.NEIGHBORS, SideEffect.State.OFF);
+        }
+        if (!physics) {
+            sideEffects = sideEffects.with(SideEffect.UPDATE, SideEffect.State.OFF);
+        }
+        session.setSideEffectApplier(sideEffects);
+    }
+}
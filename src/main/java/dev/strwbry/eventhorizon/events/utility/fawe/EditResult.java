@@ -0,0 +1,25 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.regions.Region;
+
+/**
+ * Outcome of a single block edit performed by {@link BlockEditor}.
+ *
+ * @param region        The region that was edited
+ * @param blocksScanned Number of blocks in the edited region
+ * @param blocksChanged Number of blocks changed by the edit
+ * @param durationNanos Time spent building, applying and flushing the edit in nanoseconds
+ * @param retainedBytes Bytes retained in the edit history for undoing the edit
+ * @param chunksTouched Number of chunks the bounding box of the edited region touches
+ */
+public record EditResult(Region region, long blocksScanned, int blocksChanged, long durationNanos, long retainedBytes, int chunksTouched) {
+
+    /**
+     * Gets the edit duration in milliseconds.
+     *
+     * @return The duration of the edit in milliseconds
+     */
+    public double durationMillis() {
+        return durationNanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,474 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.block.BlockType;
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.utility.ChunkKeys;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.EditTag;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.ChunkClippedRegion;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.GenericRegion;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.SurfaceShellRegion;
+import dev.strwbry.eventhorizon.listeners.ListenerManager;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Applies block modification rules lazily, chunk by chunk, for as long as an event is running.
+ * Instead of editing the whole region around every player when the event starts, a rule edits the chunks of a
+ * player's region as the player approaches them or as they load, under a per-tick chunk budget. The work is
+ * spread across the event and proportional to the area players actually visit.
+ * A chunk is visited again when a player's shifted region covers part of it that no earlier region did; it is then
+ * edited clipped to the new region minus the regions it was already edited for, so edge chunks end up fully edited.
+ * Every chunk edit is recorded in the edit history, so the rule's changes are undone like any other edit.
+ */
+public class LazyBlockEditor
+{
+    /** Interval of the chunk processing task in ticks */
+    private static final long PROCESS_INTERVAL = 1L;
+
+    /** Rules of running events */
+    private static final List<Rule> rules = new ArrayList<>();
+    /** Chunks waiting to be edited, in the order they were visited */
+    private static final Deque<PendingChunk> queue = new ArrayDeque<>();
+    /** Repeating task processing the queue, null while no rule is active */
+    private static BukkitTask processTask = null;
+
+    /**
+     * The player regions a chunk was visited for.
+     */
+    private static final class Coverage
+    {
+        /** Regions the chunk is queued for but wasn't edited for yet */
+        private final List<Region> queued = new ArrayList<>(1);
+        /** Regions the chunk was already edited for */
+        private final List<Region> edited = new ArrayList<>(1);
+    }
+
+    /**
+     * A block modification applied lazily for the lifetime of an event.
+     */
+    public static class Rule
+    {
+        /** Name of the event the rule belongs to */
+        private final String eventName;
+        /** Id of the event run the rule's edits are recorded for */
+        private final long runId;
+        /** Region shape created around each participating player */
+        private final GenericRegion region;
+        /** Players the rule applies to */
+        private final Set<UUID> players = new HashSet<>();
+        /** The pattern to replace blocks with */
+        private final Pattern pattern;
+        /** Block types to be replaced */
+        private final Collection<BlockType> blockTypesToReplace;
+        /** Whether the block type mask is inverted */
+        private final boolean isMaskInverted;
+        /** Whether chunk edits run on FAWE's worker threads */
+        private final boolean async;
+        /** Regions every queued or edited chunk was visited for, keyed by world and packed chunk coordinates */
+        private final Map<UUID, Map<Long, Coverage>> visitedChunks = new HashMap<>();
+        /** Whether the rule is still active */
+        private boolean active = true;
+        /** Number of chunks edited so far */
+        private int editedChunks = 0;
+        /** Number of blocks changed so far */
+        private long blocksChanged = 0L;
+
+        /**
+         * Creates a new rule.
+         *
+         * @param eventName Name of the event the rule belongs to
+         * @param runId Id of the event run the rule's edits are recorded for
+         * @param region Region shape created around each participating player
+         * @param players Players the rule applies to
+         * @param pattern The pattern to replace blocks with
+         * @param blockTypesToReplace Block types to be replaced
+         * @param isMaskInverted Whether the block type mask is inverted
+         * @param async Whether chunk edits run on FAWE's worker threads
+         */
+        private Rule(String eventName, long runId, GenericRegion region, Collection<Player> players, Pattern pattern,
+                     Collection<BlockType> blockTypesToReplace, boolean isMaskInverted, boolean async) {
+            this.eventName = eventName;
+            this.runId = runId;
+            this.region = region;
+            this.pattern = pattern;
+            this.blockTypesToReplace = blockTypesToReplace;
+            this.isMaskInverted = isMaskInverted;
+            this.async = async;
+            for (Player player : players) {
+                this.players.add(player.getUniqueId());
+            }
+        }
+
+        /**
+         * Gets the name of the event the rule belongs to.
+         *
+         * @return The event name
+         */
+        public String getEventName() {
+            return eventName;
+        }
+
+        /**
+         * Checks whether the rule is still active.
+         *
+         * @return true until the rule is stopped
+         */
+        public boolean isActive() {
+            return active;
+        }
+
+        /**
+         * Gets the number of chunks edited by the rule.
+         *
+         * @return The edited chunk count
+         */
+        public int getEditedChunks() {
+            return editedChunks;
+        }
+
+        /**
+         * Gets the number of blocks changed by the rule.
+         *
+         * @return The changed block count
+         */
+        public long getBlocksChanged() {
+            return blocksChanged;
+        }
+
+        /**
+         * Marks a chunk as visited for a player region.
+         *
+         * @param world The world of the chunk
+         * @param chunkX The chunk X coordinate
+         * @param chunkZ The chunk Z coordinate
+         * @param source The player region
+         * @return true if the region covers part of the chunk that no region it was visited for covers
+         */
+        private boolean visit(World world, int chunkX, int chunkZ, Region source) {
+            Coverage coverage = visitedChunks.computeIfAbsent(world.getUID(), k -> new HashMap<>())
+                    .computeIfAbsent(ChunkKeys.of(chunkX, chunkZ), k -> new Coverage());
+            if (coversClip(coverage.queued, source, chunkX, chunkZ) || coversClip(coverage.edited, source, chunkX, chunkZ)) {
+                return false;
+            }
+            coverage.queued.add(source);
+            return true;
+        }
+
+        /**
+         * Marks a queued chunk as edited for a player region.
+         *
+         * @param world The world of the chunk
+         * @param chunkX The chunk X coordinate
+         * @param chunkZ The chunk Z coordinate
+         * @param source The player region the chunk was queued for
+         * @return The regions the chunk was edited for before, whose blocks are left out of this edit
+         */
+        private List<Region> markEdited(World world, int chunkX, int chunkZ, Region source) {
+            Coverage coverage = visitedChunks.computeIfAbsent(world.getUID(), k -> new HashMap<>())
+                    .computeIfAbsent(ChunkKeys.of(chunkX, chunkZ), k -> new Coverage());
+            List<Region> excluded = List.copyOf(coverage.edited);
+            coverage.queued.removeIf(region -> region == source);
+            coverage.edited.add(source);
+            return excluded;
+        }
+
+        /**
+         * Forgets that a chunk was queued for a player region, so it is queued again once it is visited the next time.
+         *
+         * @param world The world of the chunk
+         * @param chunkX The chunk X coordinate
+         * @param chunkZ The chunk Z coordinate
+         * @param source The player region the chunk was queued for
+         */
+        private void forget(World world, int chunkX, int chunkZ, Region source) {
+            Map<Long, Coverage> chunks = visitedChunks.get(world.getUID());
+            Coverage coverage = chunks == null ? null : chunks.get(ChunkKeys.of(chunkX, chunkZ));
+            if (coverage == null) {
+                return;
+            }
+            coverage.queued.removeIf(region -> region == source);
+            if (coverage.queued.isEmpty() && coverage.edited.isEmpty()) {
+                chunks.remove(ChunkKeys.of(chunkX, chunkZ));
+            }
+        }
+    }
+
+    /**
+     * A chunk waiting to be edited.
+     *
+     * @param rule The rule to apply
+     * @param world The world of the chunk
+     * @param source The player region the chunk was queued for
+     * @param owner Name of the player the chunk was queued for
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     */
+    private record PendingChunk(Rule rule, World world, Region source, String owner, int chunkX, int chunkZ) {
+    }
+
+    /**
+     * Starts applying a rule lazily and queues the chunks around the players right away.
+     * Must be called from the main server thread.
+     *
+     * @param eventName Name of the event the rule belongs to
+     * @param runId Id of the event run the rule's edits are recorded for
+     * @param region Region shape created around each participating player
+     * @param players Players the rule applies to
+     * @param pattern The pattern to replace blocks with
+     * @param blockTypesToReplace Block types to be replaced
+     * @param isMaskInverted Whether the block type mask is inverted
+     * @param async Whether chunk edits run on FAWE's worker threads
+     * @return The started rule, used to stop it again
+     */
+    public static Rule start(String eventName, long runId, GenericRegion region, Collection<Player> players, Pattern pattern,
+                             Collection<BlockType> blockTypesToReplace, boolean isMaskInverted, boolean async) {
+        ListenerManager.initializeLazyBlockEdit();
+        Rule rule = new Rule(eventName, runId, region, players, pattern, blockTypesToReplace, isMaskInverted, async);
+        rules.add(rule);
+        for (Player player : players) {
+            queueAround(rule, player.getName(), player.getLocation());
+        }
+        if (processTask == null) {
+            processTask = Bukkit.getScheduler().runTaskTimer(EventHorizon.getPlugin(), LazyBlockEditor::processQueue, PROCESS_INTERVAL, PROCESS_INTERVAL);
+        }
+        MsgUtility.log("Applying block edits lazily for event: " + eventName + " (" + queue.size() + " chunks queued)");
+        return rule;
+    }
+
+    /**
+     * Stops a rule. Chunks that were already edited keep their changes until the edit history is undone.
+     *
+     * @param rule The rule to stop
+     */
+    public static void stop(Rule rule) {
+        if (rule == null || !rule.active) {
+            return;
+        }
+        rule.active = false;
+        rules.remove(rule);
+        queue.removeIf(pending -> pending.rule() == rule);
+        MsgUtility.log("Lazy block edits for event " + rule.eventName + " edited " + rule.editedChunks +
+                " chunks and changed " + rule.blocksChanged + " blocks");
+        if (rules.isEmpty()) {
+            cancelTask();
+        }
+    }
+
+    /**
+     * Stops every rule and drops the queue.
+     */
+    public static void clear() {
+        for (Rule rule : new ArrayList<>(rules)) {
+            stop(rule);
+        }
+        queue.clear();
+        cancelTask();
+    }
+
+    /**
+     * Queues a freshly loaded chunk for every rule whose player regions cover it.
+     *
+     * @param chunk The loaded chunk
+     */
+    public static void handleChunkLoad(Chunk chunk) {
+        for (Rule rule : rules) {
+            for (UUID uuid : rule.players) {
+                Player player = Bukkit.getPlayer(uuid);
+                if (player == null || !player.getWorld().equals(chunk.getWorld())) {
+                    continue;
+                }
+                Region source = rule.region.getRegion(player);
+                if (coversChunk(source, chunk.getX(), chunk.getZ())) {
+                    if (rule.visit(chunk.getWorld(), chunk.getX(), chunk.getZ(), source)) {
+                        queue.add(new PendingChunk(rule, chunk.getWorld(), source, player.getName(), chunk.getX(), chunk.getZ()));
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the chunks around a player who moved into a new chunk.
+     *
+     * @param player The player who moved
+     * @param to The location the player moved to
+     */
+    public static void handlePlayerChunkChange(Player player, Location to) {
+        for (Rule rule : rules) {
+            if (rule.players.contains(player.getUniqueId())) {
+                queueAround(rule, player.getName(), to);
+            }
+        }
+    }
+
+    /**
+     * Queues every chunk of the region around a location that isn't covered yet, nearest chunks first.
+     *
+     * @param rule The rule to apply
+     * @param owner Name of the player the chunks are queued for
+     * @param center The location the region is created around, usually a player's position
+     */
+    private static void queueAround(Rule rule, String owner, Location center) {
+        World world = center.getWorld();
+        Region source = rule.region.getRegion(center);
+        BlockVector3 min = source.getMinimumPoint();
+        BlockVector3 max = source.getMaximumPoint();
+        int centerX = center.getBlockX() >> 4;
+        int centerZ = center.getBlockZ() >> 4;
+
+        List<long[]> chunks = new ArrayList<>();
+        for (int chunkX = min.x() >> 4; chunkX <= max.x() >> 4; chunkX++) {
+            for (int chunkZ = min.z() >> 4; chunkZ <= max.z() >> 4; chunkZ++) {
+                if (rule.visit(world, chunkX, chunkZ, source)) {
+                    long dx = chunkX - centerX;
+                    long dz = chunkZ - centerZ;
+                    chunks.add(new long[]{dx * dx + dz * dz, chunkX, chunkZ});
+                }
+            }
+        }
+        chunks.sort(Comparator.comparingLong(chunk -> chunk[0]));
+        for (long[] chunk : chunks) {
+            queue.add(new PendingChunk(rule, world, source, owner, (int) chunk[1], (int) chunk[2]));
+        }
+    }
+
+    /**
+     * Edits queued chunks until the per-tick chunk budget is used up.
+     * Chunks that aren't loaded are skipped and queued again once they load.
+     */
+    private static void processQueue() {
+        int budget = AdvConfig.getBlockModLazyChunksPerTick();
+        while (budget > 0 && !queue.isEmpty()) {
+            PendingChunk pending = queue.poll();
+            Rule rule = pending.rule();
+            if (!rule.active) {
+                continue;
+            }
+            if (!pending.world().isChunkLoaded(pending.chunkX(), pending.chunkZ())) {
+                rule.forget(pending.world(), pending.chunkX(), pending.chunkZ(), pending.source());
+                continue;
+            }
+
+            List<Region> excluded = rule.markEdited(pending.world(), pending.chunkX(), pending.chunkZ(), pending.source());
+            Region clipped = new ChunkClippedRegion(pending.source(), pending.chunkX(), pending.chunkZ(), excluded);
+            EditTag tag = new EditTag(rule.runId, rule.eventName, pending.owner());
+            if (rule.async) {
+                BlockEditor.replaceBlocksInRegionAsync(clipped, rule.pattern, rule.blockTypesToReplace, rule.isMaskInverted, tag)
+                        .thenAccept(result -> countEdit(rule, pending.owner(), result));
+            } else {
+                countEdit(rule, pending.owner(), BlockEditor.replaceBlocksInRegion(clipped, rule.pattern, rule.blockTypesToReplace, rule.isMaskInverted, tag));
+            }
+            budget--;
+        }
+    }
+
+    /**
+     * Adds the result of a chunk edit to a rule's totals and records it in the {@link EditMetrics}.
+     *
+     * @param rule The rule the edit was made for
+     * @param owner Name of the player the chunk was edited for
+     * @param result The result of the edit
+     */
+    private static void countEdit(Rule rule, String owner, EditResult result) {
+        rule.editedChunks++;
+        rule.blocksChanged += result.blocksChanged();
+        EditMetrics.record(rule.eventName, owner, result);
+    }
+
+    /**
+     * Checks whether the bounding box of a region overlaps a chunk.
+     *
+     * @param region The region to check
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return true if the region's bounding box touches the chunk
+     */
+    private static boolean coversChunk(Region region, int chunkX, int chunkZ) {
+        return chunkX >= region.getMinimumPoint().x() >> 4 && chunkX <= region.getMaximumPoint().x() >> 4
+                && chunkZ >= region.getMinimumPoint().z() >> 4 && chunkZ <= region.getMaximumPoint().z() >> 4;
+    }
+
+    /**
+     * Checks whether one of several regions covers the part of another region inside a chunk.
+     * The corners of the part's bounding box are tested, which is exact for the convex cuboids and cylinders player
+     * regions are made of; surface shells compare their footprints and bands instead. Other shapes are never
+     * considered covered, so they are edited again rather than skipped.
+     *
+     * @param regions The regions the chunk was visited for
+     * @param source The new region
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return true if a region contains every corner of the new region's part of the chunk
+     */
+    private static boolean coversClip(List<Region> regions, Region source, int chunkX, int chunkZ) {
+        BlockVector3 min = source.getMinimumPoint();
+        BlockVector3 max = source.getMaximumPoint();
+        int minX = Math.max(min.x(), chunkX << 4);
+        int maxX = Math.min(max.x(), (chunkX << 4) + 15);
+        int minZ = Math.max(min.z(), chunkZ << 4);
+        int maxZ = Math.min(max.z(), (chunkZ << 4) + 15);
+        if (source instanceof SurfaceShellRegion shell) {
+            for (Region region : regions) {
+                if (region instanceof SurfaceShellRegion earlier && earlier.covers(shell, minX, minZ, maxX, maxZ)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (!(source instanceof CuboidRegion || source instanceof CylinderRegion)) {
+            return false;
+        }
+        for (Region region : regions) {
+            if ((region instanceof CuboidRegion || region instanceof CylinderRegion)
+                    && region.contains(BlockVector3.at(minX, min.y(), minZ)) && region.contains(BlockVector3.at(minX, min.y(), maxZ))
+                    && region.contains(BlockVector3.at(maxX, min.y(), minZ)) && region.contains(BlockVector3.at(maxX, min.y(), maxZ))
+                    && region.contains(BlockVector3.at(minX, max.y(), minZ)) && region.contains(BlockVector3.at(minX, max.y(), maxZ))
+                    && region.contains(BlockVector3.at(maxX, max.y(), minZ)) && region.contains(BlockVector3.at(maxX, max.y(), maxZ))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cancels the chunk processing task.
+     */
+    private static void cancelTask() {
+        if (processTask != null) {
+            processTask.cancel();
+            processTask = null;
+        }
+    }
+
+    /**
+     * Checks whether any rule is active.
+     *
+     * @return true if at least one event applies its edits lazily
+     */
+    public static boolean hasActiveRules() {
+        return !rules.isEmpty();
+    }
+
+    /**
+     * Gets the number of chunks waiting to be edited.
+     *
+     * @return The queued chunk count
+     */
+    public static int getQueuedChunkCount() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,225 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.block.BlockType;
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.utility.fawe.history.EditTag;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.ChunkClippedRegion;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Applies block edits as a wavefront spreading out from the players.
+ * Every region is split into chunk pieces that are edited nearest-first under a per-tick block budget, so the area
+ * around the players changes within a tick and the far edges fill in over the following ticks. This trades the
+ * single tick spike of editing whole regions for a bounded, steady load.
+ */
+public class ProgressiveEdit
+{
+    /** Interval between waves in ticks */
+    private static final long WAVE_INTERVAL = 1L;
+
+    /**
+     * A chunk piece waiting to be edited.
+     *
+     * @param region The chunk piece
+     * @param distance Squared horizontal distance from the piece's center to the nearest player
+     * @param scanEstimate Number of blocks in the piece's bounding box
+     * @param result Completed once the piece is edited
+     */
+    private record Piece(Region region, long distance, long scanEstimate, CompletableFuture<EditResult> result) {
+    }
+
+    /** Pieces waiting to be edited, nearest first */
+    private final Deque<Piece> pieces;
+    /** Futures of every piece, in wavefront order */
+    private final List<CompletableFuture<EditResult>> edits;
+    /** The pattern to replace blocks with */
+    private final Pattern pattern;
+    /** Block types to be replaced */
+    private final Collection<BlockType> blockTypesToReplace;
+    /** Whether the block type mask is inverted */
+    private final boolean isMaskInverted;
+    /** Whether pieces are edited on FAWE's worker threads */
+    private final boolean async;
+    /** Gets the event run and players a piece is edited for */
+    private final Function<Region, EditTag> tagger;
+    /** Task submitting the waves, null once the edit is finished or cancelled */
+    private BukkitTask task;
+
+    /**
+     * Splits the regions into pieces ordered by their distance to the nearest center.
+     *
+     * @param regions The regions to edit
+     * @param centers Positions the wavefront spreads out from, usually the players' positions
+     * @param pattern The pattern to replace blocks with
+     * @param blockTypesToReplace Block types to be replaced
+     * @param isMaskInverted Whether the block type mask is inverted
+     * @param async Whether pieces are edited on FAWE's worker threads
+     * @param tagger Gets the event run and players a piece is edited for
+     */
+    private ProgressiveEdit(List<? extends Region> regions, Collection<BlockVector3> centers, Pattern pattern,
+                            Collection<BlockType> blockTypesToReplace, boolean isMaskInverted, boolean async,
+                            Function<Region, EditTag> tagger) {
+        this.pattern = pattern;
+        this.blockTypesToReplace = blockTypesToReplace;
+        this.isMaskInverted = isMaskInverted;
+        this.async = async;
+        this.tagger = tagger;
+
+        List<Piece> sorted = new ArrayList<>();
+        for (Region region : regions) {
+            for (BlockVector2 chunk : region.getChunks()) {
+                Region piece = new ChunkClippedRegion(region, chunk.x(), chunk.z());
+                BlockVector3 min = piece.getMinimumPoint();
+                BlockVector3 max = piece.getMaximumPoint();
+                if (min.x() > max.x() || min.z() > max.z()) {
+                    continue;
+                }
+                long scanEstimate = (long) (max.x() - min.x() + 1) * (max.y() - min.y() + 1) * (max.z() - min.z() + 1);
+                sorted.add(new Piece(piece, nearestDistance(chunk, centers), scanEstimate, new CompletableFuture<>()));
+            }
+        }
+        sorted.sort(Comparator.comparingLong(Piece::distance));
+
+        this.pieces = new ArrayDeque<>(sorted);
+        this.edits = new ArrayList<>(sorted.size());
+        for (Piece piece : sorted) {
+            edits.add(piece.result());
+        }
+    }
+
+    /**
+     * Starts a progressive edit, the first wave is submitted right away.
+     * Must be called from the main server thread.
+     *
+     * @param regions The regions to edit
+     * @param centers Positions the wavefront spreads out from, usually the players' positions
+     * @param pattern The pattern to replace blocks with
+     * @param blockTypesToReplace Block types to be replaced
+     * @param isMaskInverted Whether the block type mask is inverted
+     * @param async Whether pieces are edited on FAWE's worker threads
+     * @param tagger Gets the event run and players a piece is edited for
+     * @return The running edit
+     */
+    public static ProgressiveEdit start(List<? extends Region> regions, Collection<BlockVector3> centers, Pattern pattern,
+                                        Collection<BlockType> blockTypesToReplace, boolean isMaskInverted, boolean async,
+                                        Function<Region, EditTag> tagger) {
+        ProgressiveEdit edit = new ProgressiveEdit(regions, centers, pattern, blockTypesToReplace, isMaskInverted, async, tagger);
+        edit.wave();
+        if (!edit.pieces.isEmpty()) {
+            edit.task = Bukkit.getScheduler().runTaskTimer(EventHorizon.getPlugin(), edit::wave, WAVE_INTERVAL, WAVE_INTERVAL);
+        }
+        return edit;
+    }
+
+    /**
+     * Gets the squared horizontal distance from the center of a chunk to the nearest center.
+     *
+     * @param chunk The chunk coordinates
+     * @param centers The centers to measure from
+     * @return The squared distance, 0 if there are no centers
+     */
+    private static long nearestDistance(BlockVector2 chunk, Collection<BlockVector3> centers) {
+        long nearest = centers.isEmpty() ? 0L : Long.MAX_VALUE;
+        long chunkCenterX = (chunk.x() << 4) + 8;
+        long chunkCenterZ = (chunk.z() << 4) + 8;
+        for (BlockVector3 center : centers) {
+            long dx = chunkCenterX - center.x();
+            long dz = chunkCenterZ - center.z();
+            nearest = Math.min(nearest, dx * dx + dz * dz);
+        }
+        return nearest;
+    }
+
+    /**
+     * Submits the nearest pieces until the per-tick block budget is used up.
+     * At least one piece is submitted per wave, so pieces larger than the budget still make progress.
+     */
+    private void wave() {
+        long budget = AdvConfig.getBlockModProgressiveBlocksPerTick();
+        boolean first = true;
+        while (!pieces.isEmpty() && (first || pieces.peekFirst().scanEstimate() <= budget)) {
+            Piece piece = pieces.pollFirst();
+            budget -= piece.scanEstimate();
+            first = false;
+            submit(piece);
+        }
+        if (pieces.isEmpty()) {
+            cancelTask();
+        }
+    }
+
+    /**
+     * Edits a piece and completes its future with the result.
+     *
+     * @param piece The piece to edit
+     */
+    private void submit(Piece piece) {
+        EditTag tag = tagger.apply(piece.region());
+        if (!async) {
+            try {
+                piece.result().complete(BlockEditor.replaceBlocksInRegion(piece.region(), pattern, blockTypesToReplace, isMaskInverted, tag));
+            } catch (RuntimeException e) {
+                piece.result().completeExceptionally(e);
+            }
+            return;
+        }
+        BlockEditor.replaceBlocksInRegionAsync(piece.region(), pattern, blockTypesToReplace, isMaskInverted, tag)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        piece.result().completeExceptionally(error);
+                    } else {
+                        piece.result().complete(result);
+                    }
+                });
+    }
+
+    /**
+     * Stops submitting pieces. Pieces that weren't submitted yet are cancelled, submitted ones still complete.
+     */
+    public void cancel() {
+        cancelTask();
+        for (Piece piece : pieces) {
+            piece.result().cancel(false);
+        }
+        pieces.clear();
+    }
+
+    /**
+     * Cancels the wave task.
+     */
+    private void cancelTask() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Gets the futures of every piece, nearest first.
+     * Pieces that were cancelled before being submitted complete with a CancellationException.
+     *
+     * @return The piece futures
+     */
+    public List<CompletableFuture<EditResult>> getEdits() {
+        return edits;
+    }
+
+    /**
+     * Gets the number of pieces that haven't been submitted yet.
+     *
+     * @return The remaining piece count
+     */
+    public int getRemainingPieces() {
+        return pieces.size();
+    }
+}
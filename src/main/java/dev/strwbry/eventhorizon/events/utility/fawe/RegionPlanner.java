@@ -0,0 +1,113 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.Region;
+import dev.strwbry.eventhorizon.events.utility.fawe.region.MergedRegion;
+
+import java.util.*;
+
+/**
+ * Plans block edits for several (per-player) regions.
+ * Overlapping cuboid and cylinder regions in the same world are merged into a single {@link MergedRegion},
+ * so blocks shared by several players are scanned, replaced and stored in the edit history only once.
+ * Regions that don't overlap anything, and shapes that can't be merged, are kept as they are.
+ */
+public class RegionPlanner
+{
+    /**
+     * Result of planning a set of regions.
+     *
+     * @param regions       The regions to edit, disjoint wherever regions could be merged
+     * @param sourceCount   Number of regions that were planned
+     * @param scannedBefore Number of blocks the source regions would have scanned when edited one by one
+     */
+    public record Plan(List<Region> regions, int sourceCount, long scannedBefore) {
+    }
+
+    /**
+     * Merges overlapping regions per world.
+     *
+     * @param regions The regions to plan, typically one per player
+     * @return The planned regions
+     */
+    public static Plan plan(List<? extends Region> regions) {
+        List<Region> planned = new ArrayList<>();
+        Map<String, List<Region>> mergeableByWorld = new LinkedHashMap<>();
+        long scannedBefore = 0;
+
+        for (Region region : regions) {
+            scannedBefore += region.getVolume();
+            if (region.getWorld() != null && (region instanceof CuboidRegion || region instanceof CylinderRegion)) {
+                mergeableByWorld.computeIfAbsent(region.getWorld().getName(), name -> new ArrayList<>()).add(region);
+            } else {
+                planned.add(region);
+            }
+        }
+
+        for (List<Region> worldRegions : mergeableByWorld.values()) {
+            for (List<Region> cluster : findOverlappingClusters(worldRegions)) {
+                planned.add(cluster.size() == 1 ? cluster.get(0) : new MergedRegion(cluster.get(0).getWorld(), cluster));
+            }
+        }
+        return new Plan(planned, regions.size(), scannedBefore);
+    }
+
+    /**
+     * Groups regions whose bounding boxes overlap, directly or through other regions.
+     *
+     * @param regions Regions in the same world
+     * @return The clusters of overlapping regions
+     */
+    private static Collection<List<Region>> findOverlappingClusters(List<Region> regions) {
+        int[] parent = new int[regions.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+
+        for (int i = 0; i < regions.size(); i++) {
+            for (int j = i + 1; j < regions.size(); j++) {
+                if (boundsOverlap(regions.get(i), regions.get(j))) {
+                    parent[find(parent, i)] = find(parent, j);
+                }
+            }
+        }
+
+        Map<Integer, List<Region>> clusters = new LinkedHashMap<>();
+        for (int i = 0; i < regions.size(); i++) {
+            clusters.computeIfAbsent(find(parent, i), root -> new ArrayList<>()).add(regions.get(i));
+        }
+        return clusters.values();
+    }
+
+    /**
+     * Finds the root of a cluster, compressing the path along the way.
+     *
+     * @param parent Parent index of every region
+     * @param index  The region index
+     * @return The index of the cluster root
+     */
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    /**
+     * Checks whether the bounding boxes of two regions overlap.
+     *
+     * @param a The first region
+     * @param b The second region
+     * @return true if the bounding boxes share at least one block
+     */
+    private static boolean boundsOverlap(Region a, Region b) {
+        BlockVector3 minA = a.getMinimumPoint(), maxA = a.getMaximumPoint();
+        BlockVector3 minB = b.getMinimumPoint(), maxB = b.getMaximumPoint();
+        return minA.x() <= maxB.x() && minB.x() <= maxA.x()
+                && minA.y() <= maxB.y() && minB.y() <= maxA.y()
+                && minA.z() <= maxB.z() && minB.z() <= maxA.z();
+    }
+}
@@ -0,0 +1,126 @@
+package dev.strwbry.eventhorizon.events.utility.fawe;
+
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replaces blocks of a set of types with a pattern, skipping whole 16x16x16 chunk sections that contain none of them.
+ * Before FAWE iterates the blocks of a section, its block data is checked against a table of candidate block states;
+ * sections that can't match, like pure air or pure stone, are never visited block by block. Empty sections are
+ * skipped without reading them at all unless air itself is a candidate.
+ * The filter is stateless apart from its counter, so FAWE's worker threads share a single instance.
+ */
+public class SectionPrefilter implements Filter
+{
+    /** Whether a block state matches, indexed by the state's ordinal */
+    private final boolean[] candidates;
+    /** Whether air matches, in which case empty sections have to be visited */
+    private final boolean matchesAir;
+    /** The pattern matching blocks are replaced with */
+    private final Pattern pattern;
+    /** Number of blocks the pattern changed */
+    private final LongAdder changed = new LongAdder();
+
+    /**
+     * Creates a filter replacing the blocks of a set of types.
+     *
+     * @param types The block types to replace
+     * @param inverted If true, replaces blocks that aren't of the given types
+     * @param pattern The pattern to replace blocks with
+     */
+    public SectionPrefilter(BlockTypeSet types, boolean inverted, Pattern pattern) {
+        this(candidates(types, inverted), BlockTypes.AIR.getDefaultState().getOrdinal(), pattern);
+    }
+
+    /**
+     * Creates a filter from a table of candidate block states.
+     *
+     * @param candidates Whether a block state matches, indexed by the state's ordinal
+     * @param airOrdinal The ordinal of air
+     * @param pattern The pattern to replace blocks with
+     */
+    SectionPrefilter(boolean[] candidates, int airOrdinal, Pattern pattern) {
+        this.candidates = candidates;
+        this.matchesAir = candidates[airOrdinal];
+        this.pattern = pattern;
+    }
+
+    /**
+     * Builds the table of candidate block states of a set of block types.
+     *
+     * @param types The block types to replace
+     * @param inverted If true, the states of every other block type are candidates
+     * @return Whether a block state matches, indexed by the state's ordinal
+     */
+    private static boolean[] candidates(BlockTypeSet types, boolean inverted) {
+        boolean[] candidates = new boolean[BlockTypesCache.states.length];
+        for (int ordinal = 0; ordinal < candidates.length; ordinal++) {
+            candidates[ordinal] = types.containsId(BlockTypesCache.states[ordinal].getBlockType().getInternalId()) != inverted;
+        }
+        return candidates;
+    }
+
+    /**
+     * Checks whether air matches, in which case FAWE has to visit sections that hold no block data.
+     *
+     * @return true if empty sections have to be visited
+     */
+    public boolean matchesAir() {
+        return matchesAir;
+    }
+
+    /**
+     * Checks whether a section contains any candidate block before its blocks are iterated.
+     *
+     * @param chunk The chunk being filtered
+     * @param layer The section index
+     * @return true if the section has to be visited block by block
+     */
+    @Override
+    public boolean appliesLayer(IChunk chunk, int layer) {
+        if (!chunk.hasSection(layer)) {
+            return matchesAir;
+        }
+        for (char ordinal : chunk.load(layer)) {
+            if (candidates[ordinal]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces a block of a candidate section if it matches.
+     *
+     * @param block The block being filtered
+     */
+    @Override
+    public void applyBlock(FilterBlock block) {
+        if (!candidates[block.getOrdinal()]) {
+            return;
+        }
+        try {
+            if (pattern.apply(block, block, block)) {
+                changed.increment();
+            }
+        } catch (WorldEditException e) {
+            throw new IllegalStateException("Failed to apply the replacing pattern", e);
+        }
+    }
+
+    /**
+     * Gets the number of blocks the pattern changed.
+     *
+     * @return The changed block count
+     */
+    public int getChangedCount() {
+        return changed.intValue();
+    }
+}
@@ -0,0 +1,391 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.fastasyncworldedit.core.history.change.MutableBlockChange;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.bukkit.Bukkit;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Compact on-disk format for the undo side of a change set.
+ * Every change is stored as the zigzag varint delta of its position to the previous change followed by the
+ * varint index of its previous block state in a palette, so runs of neighbouring blocks take 4-5 bytes each.
+ * The palette is written after the changes, which lets the file be streamed while iterating the change set.
+ *
+ * Layout: {@code int magic, byte version, changes..., palette (varint size, varint-length UTF-8 states),
+ * long palette offset, int change count}.
+ */
+public class ChangeSetFile
+{
+    /** Magic number at the start of every history file, "EHH1" */
+    private static final int MAGIC = 0x45484831;
+    /** Current format version */
+    private static final byte VERSION = 1;
+    /** Size of the header in bytes */
+    private static final int HEADER_SIZE = 5;
+    /** Size of the trailer in bytes */
+    private static final int TRAILER_SIZE = 12;
+    /** Size of the heap window changes are decoded from */
+    private static final int WINDOW_SIZE = 1 << 16;
+    /** Largest encoded size of a single change, four varints of at most 5 bytes */
+    private static final int MAX_CHANGE_SIZE = 20;
+
+    /**
+     * Thrown while writing when the change set contains changes other than block changes.
+     */
+    private static class UnsupportedChangeException extends IOException {
+        /**
+         * Creates the exception for a change type.
+         *
+         * @param change The unsupported change
+         */
+        private UnsupportedChangeException(Change change) {
+            super("Unsupported change type " + change.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Streams previous block states to a history file, in undo order.
+     * The palette and trailer are written by {@link #finish()}; a writer closed before that leaves an invalid file.
+     */
+    static class Writer implements Closeable {
+        /** The stream to the history file */
+        private final DataOutputStream out;
+        /** Palette index of every block state written so far */
+        private final Map<BlockState, Integer> paletteIndex = new HashMap<>();
+        /** Block states in palette order */
+        private final List<BlockState> palette = new ArrayList<>();
+        /** Number of changes written */
+        private int count = 0;
+        /** Position of the last written change */
+        private int lastX = 0, lastY = 0, lastZ = 0;
+
+        /**
+         * Creates the history file and writes its header.
+         *
+         * @param file The file to write to
+         * @throws IOException If the file can't be created
+         */
+        Writer(Path file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        /**
+         * Writes a change.
+         *
+         * @param x The X coordinate
+         * @param y The Y coordinate
+         * @param z The Z coordinate
+         * @param previous The block state to restore
+         * @throws IOException If writing fails
+         */
+        void add(int x, int y, int z, BlockState previous) throws IOException {
+            Integer index = paletteIndex.get(previous);
+            if (index == null) {
+                index = palette.size();
+                paletteIndex.put(previous, index);
+                palette.add(previous);
+            }
+
+            writeVarInt(out, zigzag(x - lastX));
+            writeVarInt(out, zigzag(y - lastY));
+            writeVarInt(out, zigzag(z - lastZ));
+            writeVarInt(out, index);
+            lastX = x;
+            lastY = y;
+            lastZ = z;
+            count++;
+        }
+
+        /**
+         * Writes the palette and trailer.
+         *
+         * @return The number of changes written
+         * @throws IOException If writing fails
+         */
+        int finish() throws IOException {
+            long paletteOffset = out.size();
+            writeVarInt(out, palette.size());
+            for (BlockState state : palette) {
+                byte[] bytes = state.getAsString().getBytes(StandardCharsets.UTF_8);
+                writeVarInt(out, bytes.length);
+                out.write(bytes);
+            }
+            out.writeLong(paletteOffset);
+            out.writeInt(count);
+            return count;
+        }
+
+        /**
+         * Closes the stream.
+         *
+         * @throws IOException If flushing fails
+         */
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the previous block states of a change set to a history file, in undo order.
+     * The file is deleted again if writing fails.
+     *
+     * @param changeSet The change set to write
+     * @param file The file to write to
+     * @return The number of changes written
+     * @throws IOException If the file can't be written or the change set contains non-block changes
+     */
+    public static int write(ChangeSet changeSet, Path file) throws IOException {
+        try (Writer writer = new Writer(file)) {
+            Iterator<Change> changes = changeSet.backwardIterator();
+            while (changes.hasNext()) {
+                Change change = changes.next();
+                if (change instanceof MutableBlockChange blockChange) {
+                    // FAWE reuses the change object, the backward iterator fills in the previous state
+                    writer.add(blockChange.x, blockChange.y, blockChange.z, BlockState.getFromOrdinal(blockChange.ordinal));
+                } else if (change instanceof BlockChange blockChange) {
+                    BlockVector3 position = blockChange.getPosition();
+                    writer.add(position.x(), position.y(), position.z(), blockChange.getPrevious().toImmutableState());
+                } else {
+                    throw new UnsupportedChangeException(change);
+                }
+            }
+            return writer.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the previous block states of a compacted history entry to a history file, in undo order.
+     * The file is deleted again if writing fails.
+     *
+     * @param entry The entry to write
+     * @param file The file to write to
+     * @return The number of changes written
+     * @throws IOException If the file can't be written
+     */
+    public static int write(CompactedHistoryEntry entry, Path file) throws IOException {
+        try (Writer writer = new Writer(file)) {
+            entry.writeTo(writer);
+            return writer.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Cursor decoding a history file through a small heap window.
+     * The file is only opened while the window is refilled, so no handle or mapping keeps it from being deleted
+     * while the cursor is still around.
+     */
+    private static class Reader implements UndoCursor {
+        /** The history file */
+        private final Path file;
+        /** Window over the encoded changes, in read mode */
+        private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE).limit(0);
+        /** Offset in the file of the first byte after the window's content */
+        private long windowEnd = HEADER_SIZE;
+        /** The palette of previous block states */
+        private final BlockState[] palette;
+        /** Number of changes not read yet */
+        private int remaining;
+        /** Position of the last read change */
+        private int x = 0, y = 0, z = 0;
+
+        /**
+         * Creates a reader positioned at the first change.
+         *
+         * @param file The history file
+         * @param palette The palette of previous block states
+         * @param count The number of changes in the file
+         */
+        private Reader(Path file, BlockState[] palette, int count) {
+            this.file = file;
+            this.palette = palette;
+            this.remaining = count;
+        }
+
+        /**
+         * Writes the next previous block states into an undo extent.
+         *
+         * @param undoExtent The extent the restored blocks are written to
+         * @param maxChanges Maximum number of changes to write
+         * @return The number of changes processed, 0 once the file is exhausted
+         * @throws IOException If the file can't be read
+         * @throws WorldEditException If the undo extent refuses a change
+         */
+        @Override
+        public int undoNext(Extent undoExtent, int maxChanges) throws IOException, WorldEditException {
+            int undone = 0;
+            while (undone < maxChanges && remaining > 0) {
+                if (window.remaining() < MAX_CHANGE_SIZE) {
+                    refill();
+                }
+                x += unzigzag(readVarInt(window));
+                y += unzigzag(readVarInt(window));
+                z += unzigzag(readVarInt(window));
+                undoExtent.setBlock(BlockVector3.at(x, y, z), palette[readVarInt(window)]);
+                remaining--;
+                undone++;
+            }
+            return undone;
+        }
+
+        /**
+         * Moves the unread bytes to the start of the window and fills the rest from the file.
+         *
+         * @throws IOException If the file can't be read
+         */
+        private void refill() throws IOException {
+            window.compact();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (window.hasRemaining()) {
+                    int read = channel.read(window, windowEnd);
+                    if (read < 0) {
+                        break;
+                    }
+                    windowEnd += read;
+                }
+            } finally {
+                window.flip();
+            }
+        }
+
+        /**
+         * Checks whether there are changes left in the file.
+         *
+         * @return true if the file is not exhausted
+         */
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+    }
+
+    /**
+     * Reads the palette of a history file and opens a cursor over its previous block states.
+     *
+     * @param file The history file
+     * @return The undo cursor
+     * @throws IOException If the file can't be read or is not a valid history file
+     */
+    public static UndoCursor open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Invalid history file " + file.getFileName());
+            }
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long paletteOffset = trailer.getLong(0);
+            if (header.getInt(0) != MAGIC || header.get(4) != VERSION || paletteOffset < HEADER_SIZE || paletteOffset > size - TRAILER_SIZE) {
+                throw new IOException("Invalid history file " + file.getFileName());
+            }
+
+            ByteBuffer paletteBytes = readFully(channel, paletteOffset, (int) (size - TRAILER_SIZE - paletteOffset));
+            BlockState[] palette = new BlockState[readVarInt(paletteBytes)];
+            for (int i = 0; i < palette.length; i++) {
+                byte[] bytes = new byte[readVarInt(paletteBytes)];
+                paletteBytes.get(bytes);
+                palette[i] = BukkitAdapter.adapt(Bukkit.createBlockData(new String(bytes, StandardCharsets.UTF_8)));
+            }
+            return new Reader(file, palette, trailer.getInt(8));
+        }
+    }
+
+    /**
+     * Reads a range of a file into a heap buffer.
+     *
+     * @param channel The open file
+     * @param offset Offset of the range in the file
+     * @param length Length of the range in bytes
+     * @return The buffer, positioned at its start
+     * @throws IOException If the range can't be read
+     */
+    private static ByteBuffer readFully(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of history file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Writes an unsigned varint.
+     *
+     * @param out The stream to write to
+     * @param value The value, treated as unsigned
+     * @throws IOException If writing fails
+     */
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param buffer The buffer to read from
+     * @return The value
+     */
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Maps a signed value to an unsigned one so small negative deltas stay small.
+     *
+     * @param value The signed value
+     * @return The zigzag encoded value
+     */
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Reverses {@link #zigzag(int)}.
+     *
+     * @param value The zigzag encoded value
+     * @return The signed value
+     */
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
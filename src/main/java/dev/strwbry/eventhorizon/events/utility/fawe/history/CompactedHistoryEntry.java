@@ -0,0 +1,343 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.fastasyncworldedit.core.history.change.MutableBlockChange;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.block.BlockState;
+import dev.strwbry.eventhorizon.events.utility.ChunkKeys;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * History entry folding the changes of several edits into a single record keyed by block position.
+ * Only the earliest previous state of every position is kept; states in between are dropped as later edits are
+ * folded in, so the retained heap is bounded by the number of unique positions instead of the number of edits.
+ * Undoing the entry leaves every position in the state it had before the first folded edit, the same as undoing
+ * the folded edits one after another, newest first.
+ * Entries are created and grown by {@link EditHistory} under its lock. Journaled edits keep their segments until
+ * the entry is closed, so a crash still restores them one by one.
+ */
+public class CompactedHistoryEntry implements HistoryEntry
+{
+    /** Smallest capacity of the position arrays */
+    private static final int MIN_CAPACITY = 256;
+
+    /** The world the edits were made in */
+    private final World world;
+    /** Packed positions, in the order they were first recorded */
+    private long[] positions;
+    /** Ordinals of the earliest previous states, parallel to the positions */
+    private char[] states;
+    /** Number of recorded positions */
+    private int size = 0;
+    /** Open addressing table of position indices plus one, 0 marks a free slot */
+    private int[] table;
+    /** Packed coordinates of the touched chunks */
+    private final Set<Long> chunks = new HashSet<>();
+    /** What the folded edits placed, null if it isn't known */
+    private PlacedBlocks placed;
+    /** Journal segments of the folded edits */
+    private final List<Path> segments = new ArrayList<>();
+
+    /**
+     * Creates an empty entry.
+     *
+     * @param world The world the edits were made in
+     * @param capacity Expected number of positions
+     * @param placed What the edits placed, null if it isn't known
+     */
+    private CompactedHistoryEntry(World world, int capacity, PlacedBlocks placed) {
+        this.world = world;
+        this.placed = placed;
+        int arrayCapacity = Math.max(MIN_CAPACITY, capacity);
+        this.positions = new long[arrayCapacity];
+        this.states = new char[arrayCapacity];
+        this.table = new int[Integer.highestOneBit(arrayCapacity - 1) << 2];
+    }
+
+    /**
+     * Reads the previous block states of a flushed session into a new entry.
+     * Sessions with changes other than block changes, like tile entity contents, can't be compacted.
+     *
+     * @param world The WorldEdit world where the edit occurred
+     * @param session The flushed EditSession containing the changes
+     * @param placed What the edit placed, null if it isn't known
+     * @param segment The journal segment of the edit, null if it isn't journaled
+     * @return The entry, or null if the change set can't be compacted
+     */
+    public static CompactedHistoryEntry of(World world, EditSession session, PlacedBlocks placed, Path segment) {
+        CompactedHistoryEntry entry = new CompactedHistoryEntry(world, session.getBlockChangeCount(), placed);
+        long lastChunk = Long.MIN_VALUE;
+        Iterator<Change> changes = session.getChangeSet().backwardIterator();
+        while (changes.hasNext()) {
+            Change change = changes.next();
+            int x, y, z, ordinal;
+            if (change instanceof MutableBlockChange blockChange) {
+                // FAWE reuses the change object, the backward iterator fills in the previous state
+                x = blockChange.x;
+                y = blockChange.y;
+                z = blockChange.z;
+                ordinal = blockChange.ordinal;
+            } else if (change instanceof BlockChange blockChange) {
+                BlockVector3 position = blockChange.getPosition();
+                x = position.x();
+                y = position.y();
+                z = position.z();
+                ordinal = blockChange.getPrevious().toImmutableState().getOrdinal();
+            } else {
+                return null;
+            }
+            // Iterating backwards, a position seen again was changed earlier in the session
+            entry.put(pack(x, y, z), (char) ordinal, true);
+            long chunk = ChunkKeys.of(x >> 4, z >> 4);
+            if (chunk != lastChunk) {
+                entry.chunks.add(chunk);
+                lastChunk = chunk;
+            }
+        }
+        if (segment != null) {
+            entry.segments.add(segment);
+        }
+        return entry;
+    }
+
+    /**
+     * Folds a newer entry into this one. Positions already recorded keep their earlier state.
+     * The newer entry must not be used afterwards; its journal segments now belong to this entry.
+     *
+     * @param newer The entry of later edits in the same world
+     */
+    public void absorb(CompactedHistoryEntry newer) {
+        for (int i = 0; i < newer.size; i++) {
+            put(newer.positions[i], newer.states[i], false);
+        }
+        chunks.addAll(newer.chunks);
+        placed = PlacedBlocks.union(placed, newer.placed);
+        segments.addAll(newer.segments);
+    }
+
+    /**
+     * Records the previous state of a position.
+     *
+     * @param position The packed position
+     * @param state The ordinal of the previous state
+     * @param overwrite Whether a state already recorded for the position is replaced
+     */
+    private void put(long position, char state, boolean overwrite) {
+        int mask = table.length - 1;
+        int slot = hash(position) & mask;
+        while (table[slot] != 0) {
+            int index = table[slot] - 1;
+            if (positions[index] == position) {
+                if (overwrite) {
+                    states[index] = state;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size << 1);
+            states = Arrays.copyOf(states, size << 1);
+        }
+        positions[size] = position;
+        states[size] = state;
+        table[slot] = ++size;
+        // Keep the table at most half full so probe runs stay short
+        if (size << 1 > table.length) {
+            rehash(table.length << 1);
+        }
+    }
+
+    /**
+     * Rebuilds the position table with a new size.
+     *
+     * @param tableSize The new table size, a power of two
+     */
+    private void rehash(int tableSize) {
+        int[] rehashed = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = hash(positions[index]) & mask;
+            while (rehashed[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = index + 1;
+        }
+        table = rehashed;
+    }
+
+    /**
+     * Spreads a packed position over the bits of a table index.
+     *
+     * @param position The packed position
+     * @return The hash
+     */
+    private static int hash(long position) {
+        return (int) ((position * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    /**
+     * Packs a position into a single key, 26 bits for x and z and 12 bits for y.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The packed position
+     */
+    private static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * Checks whether the folded edits touched any of the given chunks.
+     *
+     * @param chunkKeys Packed chunk coordinates
+     * @return true if at least one of the chunks was touched
+     */
+    public boolean touchesAny(Set<Long> chunkKeys) {
+        Set<Long> smaller = chunkKeys.size() < chunks.size() ? chunkKeys : chunks;
+        Set<Long> larger = smaller == chunks ? chunkKeys : chunks;
+        for (long chunk : smaller) {
+            if (larger.contains(chunk)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the chunks the folded edits touched.
+     *
+     * @return The packed chunk coordinates
+     */
+    public Set<Long> getChunks() {
+        return Collections.unmodifiableSet(chunks);
+    }
+
+    /**
+     * Checks whether every folded edit is journaled, in which case the journal restores them after a crash.
+     *
+     * @return true if the entry holds journal segments
+     */
+    public boolean isJournaled() {
+        return !segments.isEmpty();
+    }
+
+    /**
+     * Writes the recorded previous states to a history file writer, in undo order.
+     *
+     * @param writer The writer
+     * @throws IOException If writing fails
+     */
+    void writeTo(ChangeSetFile.Writer writer) throws IOException {
+        for (int index = size - 1; index >= 0; index--) {
+            long position = positions[index];
+            writer.add((int) (position >> 38), (int) (position << 52 >> 52), (int) (position << 26 >> 38),
+                    BlockState.getFromOrdinal(states[index]));
+        }
+    }
+
+    /**
+     * Gets the world the edits were made in.
+     *
+     * @return The WorldEdit world of the edits
+     */
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Gets the number of unique positions recorded by the entry.
+     *
+     * @return The change count
+     */
+    @Override
+    public int getChangeCount() {
+        return size;
+    }
+
+    /**
+     * Gets the heap used by the position arrays and table.
+     *
+     * @return The heap usage in bytes
+     */
+    @Override
+    public long getHeapBytes() {
+        return positions.length * 10L + table.length * 4L;
+    }
+
+    /**
+     * Gets what the folded edits placed.
+     *
+     * @return The placed block states and touched chunks, or null if they aren't known
+     */
+    @Override
+    public PlacedBlocks getPlacedBlocks() {
+        return placed;
+    }
+
+    /**
+     * Opens a cursor over the recorded previous states, most recently recorded positions first.
+     *
+     * @return The undo cursor
+     */
+    @Override
+    public UndoCursor openUndo() {
+        return new UndoCursor() {
+            /** Index of the next position to restore */
+            private int index = size - 1;
+
+            /**
+             * Restores the next positions into the undo extent.
+             *
+             * @param undoExtent The extent the restored blocks are written to
+             * @param maxChanges Maximum number of changes to write
+             * @return The number of changes processed
+             * @throws WorldEditException If the undo extent refuses a change
+             */
+            @Override
+            public int undoNext(Extent undoExtent, int maxChanges) throws WorldEditException {
+                int undone = 0;
+                while (undone < maxChanges && index >= 0) {
+                    long position = positions[index];
+                    undoExtent.setBlock(BlockVector3.at((int) (position >> 38), (int) (position << 52 >> 52), (int) (position << 26 >> 38)),
+                            BlockState.getFromOrdinal(states[index]));
+                    index--;
+                    undone++;
+                }
+                return undone;
+            }
+
+            /**
+             * Checks whether there are positions left to restore.
+             *
+             * @return true if the cursor is not exhausted
+             */
+            @Override
+            public boolean hasNext() {
+                return index >= 0;
+            }
+        };
+    }
+
+    /**
+     * Releases the journal segments of the folded edits.
+     */
+    @Override
+    public void close() {
+        for (Path segment : segments) {
+            EditJournal.release(segment);
+        }
+        segments.clear();
+    }
+}
@@ -0,0 +1,133 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.block.BlockState;
+
+/**
+ * History entry of restores that were deferred because their chunk wasn't loaded during an undo.
+ * Created by {@link DeferredRestores} once the chunk loads; one entry holds the restores of one undone edit.
+ */
+public class DeferredHistoryEntry implements HistoryEntry
+{
+    /** The world of the chunk */
+    private final World world;
+    /** Chunk X coordinate */
+    private final int chunkX;
+    /** Chunk Z coordinate */
+    private final int chunkZ;
+    /** Local positions of the restores, packed as {@code x << 4 | z} */
+    private final byte[] columns;
+    /** Y coordinates of the restores */
+    private final short[] heights;
+    /** Block states to restore */
+    private final BlockState[] states;
+    /** What the undone edit placed in the chunk, null if it isn't known */
+    private final PlacedBlocks placed;
+    /** Called once the entry is closed */
+    private final Runnable onClose;
+
+    /**
+     * Creates a deferred entry.
+     *
+     * @param world The world of the chunk
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @param columns Local positions of the restores, packed as {@code x << 4 | z}
+     * @param heights Y coordinates of the restores
+     * @param states Block states to restore
+     * @param placed What the undone edit placed in the chunk, null if it isn't known
+     * @param onClose Called once the entry is closed
+     */
+    public DeferredHistoryEntry(World world, int chunkX, int chunkZ, byte[] columns, short[] heights,
+                                BlockState[] states, PlacedBlocks placed, Runnable onClose) {
+        this.world = world;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.columns = columns;
+        this.heights = heights;
+        this.states = states;
+        this.placed = placed;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Gets the world of the chunk.
+     *
+     * @return The WorldEdit world of the entry
+     */
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Gets the number of deferred restores.
+     *
+     * @return The restore count
+     */
+    @Override
+    public int getChangeCount() {
+        return states.length;
+    }
+
+    /**
+     * Deferred entries are only created right before they are undone, so they aren't accounted for.
+     *
+     * @return Always 0
+     */
+    @Override
+    public long getHeapBytes() {
+        return 0L;
+    }
+
+    /**
+     * Gets what the undone edit placed in the chunk.
+     *
+     * @return The placed block states and the chunk, or null if they aren't known
+     */
+    @Override
+    public PlacedBlocks getPlacedBlocks() {
+        return placed;
+    }
+
+    /**
+     * Opens a cursor over the deferred restores, in the order they were deferred.
+     *
+     * @return The undo cursor
+     */
+    @Override
+    public UndoCursor openUndo() {
+        return new UndoCursor() {
+            /** Index of the next restore */
+            private int index = 0;
+
+            @Override
+            public int undoNext(Extent undoExtent, int maxChanges) throws WorldEditException {
+                int undone = 0;
+                while (undone < maxChanges && index < states.length) {
+                    int column = columns[index] & 0xFF;
+                    undoExtent.setBlock(BlockVector3.at((chunkX << 4) + (column >> 4), heights[index], (chunkZ << 4) + (column & 15)), states[index]);
+                    index++;
+                    undone++;
+                }
+                return undone;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < states.length;
+            }
+        };
+    }
+
+    /**
+     * Notifies the deferred restore store that the entry is done.
+     */
+    @Override
+    public void close() {
+        onClose.run();
+    }
+}
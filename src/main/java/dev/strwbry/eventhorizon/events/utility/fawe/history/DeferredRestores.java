@@ -0,0 +1,518 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.block.BlockState;
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.utility.ChunkKeys;
+import dev.strwbry.eventhorizon.listeners.ListenerManager;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Persisted queue of undo restores for chunks that weren't loaded while an undo ran.
+ * Restores are appended to one file per chunk, {@code pending/<world uid>/<x>_<z>.ehp} in the history folder, in
+ * undo order. When the chunk loads, the file is renamed to {@code .restoring}, read back into
+ * {@link DeferredHistoryEntry deferred entries} and submitted to the {@link UndoExecutor}; the file is deleted once
+ * every entry is undone. Files left behind by a stop or crash are picked up again on startup.
+ *
+ * Every file is a sequence of groups, one per undone edit and chunk: {@code int palette size, UTF states,
+ * boolean placed states known, int change count, (byte xz, short y, short palette index,
+ * short placed state palette index if known, 0xFFFF if the position isn't covered)...}.
+ */
+public class DeferredRestores
+{
+    /** File extension of chunks waiting to be restored */
+    private static final String PENDING_EXTENSION = ".ehp";
+    /** File extension of chunks being restored */
+    private static final String RESTORING_EXTENSION = ".restoring";
+    /** Executor that runs tasks on the main server thread */
+    private static final Executor MAIN_THREAD = task -> Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task);
+    /** Executor that runs tasks on Bukkit's async pool */
+    private static final Executor ASYNC = task -> Bukkit.getScheduler().runTaskAsynchronously(EventHorizon.getPlugin(), task);
+
+    /** Palette index written for restores of positions the undone edit's record doesn't cover */
+    private static final int UNKNOWN_PLACED = 0xFFFF;
+    /** Guards appending to and renaming chunk files */
+    private static final Object FILE_LOCK = new Object();
+    /** Chunks with a pending file by world uid */
+    private static final Map<UUID, Set<Long>> pending = new ConcurrentHashMap<>();
+    /** Chunks whose restores are read or queued for undo by world uid */
+    private static final Map<UUID, Set<Long>> restoring = new ConcurrentHashMap<>();
+
+    /**
+     * Restores deferred by a single undo batch, grouped by chunk and undone edit.
+     * Only touched by the batch that created it.
+     */
+    public static final class Batch
+    {
+        /** The world of the batch */
+        private final UUID worldId;
+        /** Groups of each chunk, in undo order */
+        private final Map<Long, List<Group>> groups = new LinkedHashMap<>();
+        /** Open group of each chunk for the entry currently being undone */
+        private final Map<Long, Group> openGroups = new HashMap<>();
+        /** The entry the open groups belong to */
+        private HistoryEntry openEntry = null;
+
+        /**
+         * Creates an empty batch.
+         *
+         * @param worldId The world of the batch
+         */
+        private Batch(UUID worldId) {
+            this.worldId = worldId;
+        }
+
+        /**
+         * Buffers a restore.
+         *
+         * @param entry The entry being undone
+         * @param x The X coordinate of the block
+         * @param y The Y coordinate of the block
+         * @param z The Z coordinate of the block
+         * @param state The previous block state to restore
+         */
+        public void defer(HistoryEntry entry, int x, int y, int z, BlockState state) {
+            if (entry != openEntry) {
+                openGroups.clear();
+                openEntry = entry;
+            }
+            long chunk = ChunkKeys.of(x >> 4, z >> 4);
+            Group group = openGroups.get(chunk);
+            if (group == null) {
+                group = new Group(entry.getPlacedBlocks());
+                openGroups.put(chunk, group);
+                groups.computeIfAbsent(chunk, key -> new ArrayList<>()).add(group);
+            }
+            group.add((x & 15) << 4 | (z & 15), y, state, group.placed == null ? null : group.placed.getPlacedAt(x, y, z));
+        }
+
+        /**
+         * Checks whether the batch deferred any restore.
+         *
+         * @return true if nothing was deferred
+         */
+        public boolean isEmpty() {
+            return groups.isEmpty();
+        }
+    }
+
+    /**
+     * Restores of one undone edit in one chunk.
+     */
+    private static final class Group
+    {
+        /** Palette indices of the restored and placed block states */
+        private final Map<BlockState, Integer> palette = new LinkedHashMap<>();
+        /** What the undone edit placed, null if it isn't known */
+        private final PlacedBlocks placed;
+        /** Encoded restores */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        /** Stream writing to the encoded restores */
+        private final DataOutputStream changes = new DataOutputStream(bytes);
+        /** Number of restores */
+        private int count = 0;
+
+        /**
+         * Creates an empty group.
+         *
+         * @param placed What the undone edit placed, null if it isn't known
+         */
+        private Group(PlacedBlocks placed) {
+            this.placed = placed;
+        }
+
+        /**
+         * Adds a restore.
+         *
+         * @param column Local position in the chunk, packed as {@code x << 4 | z}
+         * @param y The Y coordinate of the block
+         * @param state The previous block state to restore
+         * @param placedState The state the undone edit placed at the position, null if it isn't known
+         */
+        private void add(int column, int y, BlockState state, BlockState placedState) {
+            try {
+                changes.writeByte(column);
+                changes.writeShort(y);
+                changes.writeShort(palette.computeIfAbsent(state, key -> palette.size()));
+                if (placed != null) {
+                    changes.writeShort(placedState == null ? UNKNOWN_PLACED : palette.computeIfAbsent(placedState, key -> palette.size()));
+                }
+            } catch (IOException e) {
+                // Writing to a byte array never fails
+                throw new UncheckedIOException(e);
+            }
+            count++;
+        }
+
+        /**
+         * Writes the group in the file format.
+         *
+         * @param out The stream to write to
+         * @throws IOException If writing fails
+         */
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(palette.size());
+            for (BlockState state : palette.keySet()) {
+                out.writeUTF(state.getAsString());
+            }
+            out.writeBoolean(placed != null);
+            out.writeInt(count);
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * Checks whether restores of unloaded chunks are deferred.
+     *
+     * @return true if deferring is enabled in the config
+     */
+    public static boolean isEnabled() {
+        return AdvConfig.getBlockModUndoDeferUnloadedChunks();
+    }
+
+    /**
+     * Creates an empty batch for deferred restores.
+     *
+     * @param world The world of the undo batch
+     * @return The batch
+     */
+    public static Batch newBatch(World world) {
+        return new Batch(BukkitAdapter.adapt(world).getUID());
+    }
+
+    /**
+     * Appends the restores of a batch to the chunk files and syncs them to disk.
+     * Called on the thread that ran the batch, after its session was committed.
+     *
+     * @param batch The batch to store
+     */
+    public static void flush(Batch batch) {
+        for (Map.Entry<Long, List<Group>> chunk : batch.groups.entrySet()) {
+            int chunkX = ChunkKeys.x(chunk.getKey());
+            int chunkZ = ChunkKeys.z(chunk.getKey());
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                for (Group group : chunk.getValue()) {
+                    group.writeTo(out);
+                }
+                Path file = getChunkFile(batch.worldId, chunkX, chunkZ, PENDING_EXTENSION);
+                synchronized (FILE_LOCK) {
+                    Files.createDirectories(file.getParent());
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        channel.force(false);
+                    }
+                }
+                pending.computeIfAbsent(batch.worldId, key -> ConcurrentHashMap.newKeySet()).add(chunk.getKey());
+            } catch (IOException e) {
+                MsgUtility.warning("Failed to store deferred restores of chunk " + chunkX + ", " + chunkZ + ", they won't be undone: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the chunks left pending by a previous run and restores the ones already loaded.
+     * Must be called from the main server thread once worlds are loaded.
+     */
+    public static void load() {
+        Path folder = getPendingFolder();
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        try (Stream<Path> worlds = Files.list(folder)) {
+            for (Path worldFolder : worlds.filter(Files::isDirectory).toList()) {
+                UUID worldId;
+                try {
+                    worldId = UUID.fromString(worldFolder.getFileName().toString());
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                try (Stream<Path> files = Files.list(worldFolder)) {
+                    for (Path file : files.toList()) {
+                        String name = file.getFileName().toString();
+                        String coordinates = name.endsWith(PENDING_EXTENSION) ? name.substring(0, name.length() - PENDING_EXTENSION.length())
+                                : name.endsWith(RESTORING_EXTENSION) ? name.substring(0, name.length() - RESTORING_EXTENSION.length()) : null;
+                        String[] parts = coordinates == null ? new String[0] : coordinates.split("_");
+                        if (parts.length != 2) {
+                            continue;
+                        }
+                        try {
+                            long chunk = ChunkKeys.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+                            pending.computeIfAbsent(worldId, key -> ConcurrentHashMap.newKeySet()).add(chunk);
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            MsgUtility.warning("Failed to read deferred restores: " + e.getMessage());
+        }
+
+        if (hasPending()) {
+            MsgUtility.log("Found deferred restores for " + getPendingChunkCount() + " chunks, they are undone when the chunks load");
+            ensureListening();
+            restoreLoaded();
+        }
+    }
+
+    /**
+     * Starts restoring a chunk that just loaded if it has pending restores.
+     * Must be called from the main server thread.
+     *
+     * @param chunk The loaded chunk
+     */
+    public static void handleChunkLoad(Chunk chunk) {
+        restore(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Starts restoring every pending chunk that is currently loaded, for example one that loaded while its restores
+     * were being deferred. Must be called from the main server thread.
+     */
+    public static void restoreLoaded() {
+        for (Map.Entry<UUID, Set<Long>> worldChunks : pending.entrySet()) {
+            org.bukkit.World world = Bukkit.getWorld(worldChunks.getKey());
+            if (world == null) {
+                continue;
+            }
+            for (long chunk : List.copyOf(worldChunks.getValue())) {
+                int chunkX = ChunkKeys.x(chunk);
+                int chunkZ = ChunkKeys.z(chunk);
+                if (world.isChunkLoaded(chunkX, chunkZ)) {
+                    restore(world, chunkX, chunkZ);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers the chunk load listener if restores are pending.
+     * Must be called from the main server thread.
+     */
+    public static void ensureListening() {
+        if (hasPending()) {
+            ListenerManager.initializeDeferredRestore();
+        }
+    }
+
+    /**
+     * Reads the pending restores of a chunk off the main thread and submits them for undo.
+     *
+     * @param world The world of the chunk
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     */
+    private static void restore(org.bukkit.World world, int chunkX, int chunkZ) {
+        UUID worldId = world.getUID();
+        long chunk = ChunkKeys.of(chunkX, chunkZ);
+        Set<Long> pendingChunks = pending.get(worldId);
+        if (pendingChunks == null || !pendingChunks.contains(chunk)) {
+            return;
+        }
+        // A chunk whose previous restores are still queued is picked up again once they are done
+        if (!restoring.computeIfAbsent(worldId, key -> ConcurrentHashMap.newKeySet()).add(chunk)) {
+            return;
+        }
+        pendingChunks.remove(chunk);
+
+        World weWorld = BukkitAdapter.adapt(world);
+        CompletableFuture.supplyAsync(() -> read(weWorld, worldId, chunkX, chunkZ), ASYNC)
+                .thenAcceptAsync(UndoExecutor::submit, MAIN_THREAD);
+    }
+
+    /**
+     * Moves the pending file of a chunk to its restoring file and reads it into history entries.
+     *
+     * @param world The WorldEdit world of the chunk
+     * @param worldId The uid of the world
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The entries, oldest first, so the first group in the file is undone first
+     */
+    private static List<HistoryEntry> read(World world, UUID worldId, int chunkX, int chunkZ) {
+        long chunk = ChunkKeys.of(chunkX, chunkZ);
+        Path pendingFile = getChunkFile(worldId, chunkX, chunkZ, PENDING_EXTENSION);
+        Path restoringFile = getChunkFile(worldId, chunkX, chunkZ, RESTORING_EXTENSION);
+        List<HistoryEntry> entries = new ArrayList<>();
+        AtomicInteger remaining = new AtomicInteger();
+        try {
+            synchronized (FILE_LOCK) {
+                if (Files.exists(pendingFile)) {
+                    if (Files.exists(restoringFile)) {
+                        // Left over from an interrupted restore, its groups were deferred first
+                        Files.write(restoringFile, Files.readAllBytes(pendingFile), StandardOpenOption.APPEND);
+                        Files.delete(pendingFile);
+                    } else {
+                        Files.move(pendingFile, restoringFile, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+            }
+            if (!Files.exists(restoringFile)) {
+                restoring.get(worldId).remove(chunk);
+                return entries;
+            }
+
+            Runnable onClose = () -> {
+                if (remaining.decrementAndGet() == 0) {
+                    finishChunk(worldId, chunk, restoringFile);
+                }
+            };
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(restoringFile)))) {
+                while (in.available() > 0) {
+                    entries.add(readGroup(in, world, chunkX, chunkZ, onClose));
+                }
+            } catch (EOFException e) {
+                MsgUtility.warning("Deferred restores of chunk " + chunkX + ", " + chunkZ + " were cut off, restoring the complete part");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            MsgUtility.warning("Failed to read deferred restores of chunk " + chunkX + ", " + chunkZ + ": " + e.getMessage());
+            restoring.get(worldId).remove(chunk);
+            return List.of();
+        }
+
+        if (entries.isEmpty()) {
+            finishChunk(worldId, chunk, restoringFile);
+            return entries;
+        }
+        // Set before the entries are submitted, so no entry can finish the chunk early
+        remaining.set(entries.size());
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    /**
+     * Reads a group into a history entry.
+     *
+     * @param in The stream positioned at the group
+     * @param world The WorldEdit world of the chunk
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param onClose Called once the entry is undone
+     * @return The entry
+     * @throws IOException If the group can't be read
+     */
+    private static DeferredHistoryEntry readGroup(DataInputStream in, World world, int chunkX, int chunkZ, Runnable onClose) throws IOException {
+        BlockState[] palette = new BlockState[in.readInt()];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = parseState(in.readUTF());
+        }
+        boolean placedKnown = in.readBoolean();
+        int count = in.readInt();
+        byte[] columns = new byte[count];
+        short[] heights = new short[count];
+        BlockState[] states = new BlockState[count];
+        BlockState[] placedStates = placedKnown ? new BlockState[count] : null;
+        for (int i = 0; i < count; i++) {
+            columns[i] = in.readByte();
+            heights[i] = in.readShort();
+            states[i] = palette[in.readUnsignedShort()];
+            if (placedKnown) {
+                int index = in.readUnsignedShort();
+                placedStates[i] = index == UNKNOWN_PLACED ? null : palette[index];
+            }
+        }
+        PlacedBlocks placed = placedKnown ? PlacedBlocks.of(chunkX, chunkZ, columns, heights, placedStates) : null;
+        return new DeferredHistoryEntry(world, chunkX, chunkZ, columns, heights, states, placed, onClose);
+    }
+
+    /**
+     * Parses a block state stored as a string.
+     *
+     * @param state The block state string
+     * @return The block state
+     */
+    private static BlockState parseState(String state) {
+        return BukkitAdapter.adapt(Bukkit.createBlockData(state));
+    }
+
+    /**
+     * Deletes the restoring file of a chunk once its restores are undone, and picks the chunk up again if new
+     * restores were deferred for it in the meantime.
+     *
+     * @param worldId The uid of the world
+     * @param chunk The packed chunk coordinates
+     * @param restoringFile The restoring file of the chunk
+     */
+    private static void finishChunk(UUID worldId, long chunk, Path restoringFile) {
+        try {
+            Files.deleteIfExists(restoringFile);
+        } catch (IOException e) {
+            MsgUtility.warning("Failed to delete deferred restores " + restoringFile.getFileName() + ": " + e.getMessage());
+        }
+        restoring.get(worldId).remove(chunk);
+        if (EventHorizon.getPlugin().isEnabled()) {
+            MAIN_THREAD.execute(DeferredRestores::restoreLoaded);
+        }
+    }
+
+    /**
+     * Checks whether any chunk has pending restores.
+     *
+     * @return true if at least one chunk is waiting to load
+     */
+    public static boolean hasPending() {
+        for (Set<Long> chunks : pending.values()) {
+            if (!chunks.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of chunks with pending restores.
+     *
+     * @return The pending chunk count
+     */
+    public static int getPendingChunkCount() {
+        int count = 0;
+        for (Set<Long> chunks : pending.values()) {
+            count += chunks.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the folder holding the pending chunk files.
+     *
+     * @return The pending folder inside the history folder
+     */
+    public static Path getPendingFolder() {
+        return EditHistory.getHistoryFolder().resolve("pending");
+    }
+
+    /**
+     * Gets the file of a chunk.
+     *
+     * @param worldId The uid of the world
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param extension The file extension
+     * @return The chunk file
+     */
+    private static Path getChunkFile(UUID worldId, int chunkX, int chunkZ, String extension) {
+        return getPendingFolder().resolve(worldId.toString()).resolve(chunkX + "_" + chunkZ + extension);
+    }
+}
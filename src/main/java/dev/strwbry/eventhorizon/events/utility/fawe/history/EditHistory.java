@@ -0,0 +1,609 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.world.World;
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Undo history of the block edits made by {@link dev.strwbry.eventhorizon.events.utility.fawe.BlockEditor}.
+ * Edits are kept in memory until the estimated heap used by the history would exceed the configured ceiling;
+ * edits beyond that are spilled to compact history files on disk and their edit sessions are closed right away.
+ * Every edit is indexed by the {@link EditTag} of the event run it was made for, so a single run, or a single
+ * player's part of it, can be drained for undo without walking the rest of the history.
+ * When compaction is enabled, an in-memory edit is folded into the compacted edit that last touched its chunks if
+ * both were made for the same run and players, so repeated edits of the same blocks only retain each block's
+ * original state once while every run can still be undone on its own.
+ * Edits are also indexed by the chunks they touched, which is how the edit to fold into is found.
+ * Safe to use from FAWE's worker threads.
+ */
+public class EditHistory
+{
+    /** Rough heap estimate for a single change kept in an edit session's change set */
+    private static final long ESTIMATED_BYTES_PER_CHANGE = 16L;
+    /** File extension of history files */
+    private static final String FILE_EXTENSION = ".ehh";
+
+    /** Recorded edits, oldest first */
+    private static final Set<RecordedEdit> entries = new LinkedHashSet<>();
+    /** Recorded edits keyed by run id, oldest first */
+    private static final Map<Long, List<RecordedEdit>> runs = new LinkedHashMap<>();
+    /** Recorded edits keyed by world name and packed chunk coordinates, oldest first, guarded by the entries */
+    private static final Map<String, Map<Long, List<RecordedEdit>>> chunkIndex = new HashMap<>();
+    /** Recorded edits whose touched chunks aren't known keyed by world name, oldest first, guarded by the entries */
+    private static final Map<String, List<RecordedEdit>> unknownChunks = new HashMap<>();
+    /** Last assigned recording sequence number, guarded by the entries */
+    private static long lastSequence = 0L;
+    /** Estimated heap used by in-memory entries in bytes */
+    private static long heapBytes = 0L;
+
+    /**
+     * A recorded edit and the run it belongs to.
+     * The entry is swapped once a journaled edit is moved out of memory.
+     */
+    private static final class RecordedEdit
+    {
+        /** The run and players the edit was made for */
+        private final EditTag tag;
+        /** The undoable entry of the edit */
+        private HistoryEntry entry;
+        /** Position of the edit in the history, assigned when it is added */
+        private long sequence;
+
+        /**
+         * Creates a recorded edit.
+         *
+         * @param tag The run the edit was made for
+         * @param entry The undoable entry of the edit
+         */
+        private RecordedEdit(EditTag tag, HistoryEntry entry) {
+            this.tag = tag;
+            this.entry = entry;
+        }
+
+        /**
+         * Checks whether the edit belongs to a run, or to a player's part of it.
+         *
+         * @param runId Id of the run
+         * @param playerName Name of the player, or null for every edit of the run
+         * @return true if the edit's tag matches
+         */
+        private boolean matches(long runId, String playerName) {
+            return tag.runId() == runId && (playerName == null || tag.isOwnedBy(playerName));
+        }
+    }
+
+    /**
+     * A summary of the recorded edits of an event run.
+     *
+     * @param runId       Id of the run
+     * @param eventName   Name of the event of the run
+     * @param edits       Number of recorded edits
+     * @param changeCount Number of recorded block changes
+     * @param owners      Players the edits were made for
+     */
+    public record RunSummary(long runId, String eventName, int edits, long changeCount, Set<String> owners) {
+    }
+
+    /**
+     * Records a completed edit.
+     * The session is kept in memory if it fits under the heap ceiling, otherwise its changes are spilled to disk.
+     * With compaction enabled, in-memory changes are folded into a compacted entry and the session is closed.
+     * When the journal is enabled the changes are journaled in the background, and a journaled edit over the
+     * heap ceiling reuses its journal segment instead of being spilled a second time.
+     *
+     * @param world The WorldEdit world where the edit occurred
+     * @param session The flushed EditSession containing the changes
+     * @param tag The run the edit was made for
+     * @return Bytes retained for undoing the edit, estimated heap for in-memory entries or the size of the history file
+     */
+    public static long record(World world, EditSession session, EditTag tag) {
+        if (EditJournal.isEnabled()) {
+            return recordJournaled(world, session, tag);
+        }
+
+        long sessionBytes = session.getBlockChangeCount() * ESTIMATED_BYTES_PER_CHANGE;
+        PlacedBlocks placed = placedBlocks(session);
+        if (AdvConfig.getBlockModHistoryCompact()) {
+            CompactedHistoryEntry compacted = CompactedHistoryEntry.of(world, session, placed, null);
+            if (compacted != null) {
+                long retained = -1L;
+                synchronized (entries) {
+                    if (!AdvConfig.getBlockModHistorySpillToDisk() || heapBytes + compacted.getHeapBytes() <= AdvConfig.getBlockModHistoryHeapLimitMb() * 1024L * 1024L) {
+                        RecordedEdit edit = new RecordedEdit(tag, compacted);
+                        add(edit);
+                        heapBytes += compacted.getHeapBytes();
+                        retained = compact(edit);
+                    }
+                }
+                if (retained >= 0L) {
+                    session.close();
+                    return retained;
+                }
+            }
+        }
+
+        boolean keepInMemory;
+        synchronized (entries) {
+            keepInMemory = !AdvConfig.getBlockModHistorySpillToDisk()
+                    || heapBytes + sessionBytes <= AdvConfig.getBlockModHistoryHeapLimitMb() * 1024L * 1024L;
+            if (keepInMemory) {
+                heapBytes += sessionBytes;
+            }
+        }
+
+        HistoryEntry entry = keepInMemory ? null : spill(world, session, placed);
+        if (entry == null) {
+            entry = new SessionHistoryEntry(world, session, sessionBytes, CompletableFuture.completedFuture(null), placed);
+            if (!keepInMemory) {
+                synchronized (entries) {
+                    heapBytes += sessionBytes;
+                }
+            }
+        }
+
+        synchronized (entries) {
+            add(new RecordedEdit(tag, entry));
+        }
+        return entry instanceof SpilledHistoryEntry spilled ? fileSize(spilled.getFile()) : sessionBytes;
+    }
+
+    /**
+     * Adds a recorded edit to the history and its run index. Callers must hold the lock on the entries.
+     *
+     * @param edit The recorded edit
+     */
+    private static void add(RecordedEdit edit) {
+        edit.sequence = ++lastSequence;
+        entries.add(edit);
+        insert(runs.computeIfAbsent(edit.tag.runId(), runId -> new ArrayList<>()), edit);
+        index(edit);
+    }
+
+    /**
+     * Inserts an edit into a list ordered by sequence, unless the list already holds it.
+     * Edits are mostly inserted at the end, so the list is walked from there.
+     *
+     * @param edits The edits, oldest first
+     * @param edit The edit to insert
+     */
+    private static void insert(List<RecordedEdit> edits, RecordedEdit edit) {
+        int index = edits.size();
+        while (index > 0 && edits.get(index - 1).sequence >= edit.sequence) {
+            if (edits.get(index - 1) == edit) {
+                return;
+            }
+            index--;
+        }
+        edits.add(index, edit);
+    }
+
+    /**
+     * Gets the chunks an entry touched.
+     *
+     * @param entry The history entry
+     * @return The packed chunk coordinates, or null if they aren't known
+     */
+    private static Set<Long> chunksOf(HistoryEntry entry) {
+        if (entry instanceof CompactedHistoryEntry compacted) {
+            return compacted.getChunks();
+        }
+        PlacedBlocks placed = entry.getPlacedBlocks();
+        if (placed == null) {
+            return null;
+        }
+        Set<Long> chunks = new HashSet<>();
+        placed.addChunksTo(chunks);
+        return chunks;
+    }
+
+    /**
+     * Adds an edit to the chunk index under every chunk its entry touched. Callers must hold the lock on the entries.
+     *
+     * @param edit The recorded edit
+     */
+    private static void index(RecordedEdit edit) {
+        String worldName = edit.entry.getWorld().getName();
+        Set<Long> chunks = chunksOf(edit.entry);
+        if (chunks == null) {
+            insert(unknownChunks.computeIfAbsent(worldName, name -> new ArrayList<>()), edit);
+            return;
+        }
+        indexChunks(edit, chunks);
+    }
+
+    /**
+     * Adds an edit to the chunk index under some chunks. Callers must hold the lock on the entries.
+     *
+     * @param edit The recorded edit
+     * @param chunks The packed chunk coordinates
+     */
+    private static void indexChunks(RecordedEdit edit, Set<Long> chunks) {
+        Map<Long, List<RecordedEdit>> world = chunkIndex.computeIfAbsent(edit.entry.getWorld().getName(), name -> new HashMap<>());
+        for (long chunk : chunks) {
+            insert(world.computeIfAbsent(chunk, key -> new ArrayList<>()), edit);
+        }
+    }
+
+    /**
+     * Removes an edit from the chunk index. Callers must hold the lock on the entries.
+     *
+     * @param edit The recorded edit
+     */
+    private static void unindex(RecordedEdit edit) {
+        String worldName = edit.entry.getWorld().getName();
+        Set<Long> chunks = chunksOf(edit.entry);
+        if (chunks == null) {
+            List<RecordedEdit> unknown = unknownChunks.get(worldName);
+            if (unknown != null && unknown.remove(edit) && unknown.isEmpty()) {
+                unknownChunks.remove(worldName);
+            }
+            return;
+        }
+        Map<Long, List<RecordedEdit>> world = chunkIndex.get(worldName);
+        if (world == null) {
+            return;
+        }
+        for (long chunk : chunks) {
+            List<RecordedEdit> touching = world.get(chunk);
+            if (touching != null && touching.remove(edit) && touching.isEmpty()) {
+                world.remove(chunk);
+            }
+        }
+        if (world.isEmpty()) {
+            chunkIndex.remove(worldName);
+        }
+    }
+
+    /**
+     * Swaps the entry of a recorded edit, keeping the chunk index in line with what the new entry knows.
+     * Callers must hold the lock on the entries.
+     *
+     * @param edit The recorded edit
+     * @param entry The new entry
+     */
+    private static void swap(RecordedEdit edit, HistoryEntry entry) {
+        unindex(edit);
+        edit.entry = entry;
+        index(edit);
+    }
+
+    /**
+     * Finds the newest edit of a list recorded before a sequence number.
+     *
+     * @param edits The edits, oldest first, may be null
+     * @param sequence The sequence number
+     * @return The edit, or null if there is none
+     */
+    private static RecordedEdit newestBefore(List<RecordedEdit> edits, long sequence) {
+        if (edits == null) {
+            return null;
+        }
+        for (int index = edits.size() - 1; index >= 0; index--) {
+            if (edits.get(index).sequence < sequence) {
+                return edits.get(index);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Folds a freshly recorded compacted edit into the compacted edit that last touched its chunks, if both were made
+     * for the same run and players. Folding moves the edit's changes back to the older entry's place in the history,
+     * so it is only done if the older entry is the newest edit before it to touch any of its chunks, and no edit
+     * whose chunks aren't known was recorded in between. Otherwise the edit stays on its own, and later edits of
+     * its chunks are folded into it. Callers must hold the lock on the entries.
+     *
+     * @param edit The recorded edit, holding a compacted entry of its own changes
+     * @return Heap retained for the edit's changes in bytes
+     */
+    private static long compact(RecordedEdit edit) {
+        CompactedHistoryEntry fresh = (CompactedHistoryEntry) edit.entry;
+        RecordedEdit target = foldTarget(edit);
+        if (target == null) {
+            return fresh.getHeapBytes();
+        }
+
+        CompactedHistoryEntry compacted = (CompactedHistoryEntry) target.entry;
+        remove(edit);
+        long before = compacted.getHeapBytes();
+        compacted.absorb(fresh);
+        long grown = compacted.getHeapBytes() - before;
+        heapBytes += grown;
+        indexChunks(target, fresh.getChunks());
+        return grown;
+    }
+
+    /**
+     * Finds the compacted edit a freshly recorded edit can be folded into, using the chunk index.
+     * Callers must hold the lock on the entries.
+     *
+     * @param edit The edit to fold, holding a compacted entry
+     * @return The newest edit before it that touched any of its chunks, or null if that edit isn't compacted, was
+     *         made for another run or other players, an edit with unknown chunks was recorded after it, or none of
+     *         the chunks were touched before
+     */
+    private static RecordedEdit foldTarget(RecordedEdit edit) {
+        String worldName = edit.entry.getWorld().getName();
+        Map<Long, List<RecordedEdit>> world = chunkIndex.getOrDefault(worldName, Map.of());
+        RecordedEdit target = null;
+        for (long chunk : ((CompactedHistoryEntry) edit.entry).getChunks()) {
+            RecordedEdit previous = newestBefore(world.get(chunk), edit.sequence);
+            if (previous != null && (target == null || previous.sequence > target.sequence)) {
+                target = previous;
+            }
+        }
+        // Folding edits of different runs or players would undo them together
+        if (target == null || !(target.entry instanceof CompactedHistoryEntry) || !target.tag.equals(edit.tag)) {
+            return null;
+        }
+        RecordedEdit unknown = newestBefore(unknownChunks.get(worldName), edit.sequence);
+        return unknown == null || unknown.sequence < target.sequence ? target : null;
+    }
+
+    /**
+     * Removes a recorded edit from the history, its run index and the chunk index.
+     * Callers must hold the lock on the entries.
+     *
+     * @param edit The recorded edit
+     */
+    private static void remove(RecordedEdit edit) {
+        entries.remove(edit);
+        heapBytes -= edit.entry.getHeapBytes();
+        List<RecordedEdit> run = runs.get(edit.tag.runId());
+        if (run != null && run.remove(edit) && run.isEmpty()) {
+            runs.remove(edit.tag.runId());
+        }
+        unindex(edit);
+    }
+
+    /**
+     * Gets the size of a history file.
+     *
+     * @param file The history file
+     * @return The file size in bytes, 0 if it can't be read
+     */
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Records a completed edit and journals it.
+     * The session stays in memory until its journal segment is written; if the history is over the heap ceiling
+     * by then, the session is closed and the entry is swapped for one reading the segment. Otherwise, with
+     * compaction enabled, the session is folded into a compacted entry and closed, keeping its segment until the
+     * compacted entry is closed.
+     *
+     * @param world The WorldEdit world where the edit occurred
+     * @param session The flushed EditSession containing the changes
+     * @param tag The run the edit was made for
+     * @return Estimated heap retained for undoing the edit until it is swapped for its journal segment
+     */
+    private static long recordJournaled(World world, EditSession session, EditTag tag) {
+        long sessionBytes = session.getBlockChangeCount() * ESTIMATED_BYTES_PER_CHANGE;
+        PlacedBlocks placed = placedBlocks(session);
+        CompletableFuture<Path> journaled = EditJournal.append(world, session);
+        SessionHistoryEntry entry = new SessionHistoryEntry(world, session, sessionBytes, journaled, placed);
+        RecordedEdit edit = new RecordedEdit(tag, entry);
+        synchronized (entries) {
+            add(edit);
+            heapBytes += sessionBytes;
+        }
+
+        boolean spillToDisk = AdvConfig.getBlockModHistorySpillToDisk();
+        boolean compact = AdvConfig.getBlockModHistoryCompact();
+        if (!spillToDisk && !compact) {
+            return sessionBytes;
+        }
+        journaled.thenAccept(segment -> {
+            synchronized (entries) {
+                if (segment == null || !entries.contains(edit)) {
+                    return;
+                }
+                if (spillToDisk && heapBytes > AdvConfig.getBlockModHistoryHeapLimitMb() * 1024L * 1024L) {
+                    swap(edit, new SpilledHistoryEntry(world, segment, entry.getChangeCount(), placed));
+                    heapBytes -= sessionBytes;
+                } else if (!compact) {
+                    return;
+                }
+            }
+            if (edit.entry == entry) {
+                CompactedHistoryEntry compacted = CompactedHistoryEntry.of(world, session, placed, segment);
+                if (compacted == null) {
+                    return;
+                }
+                synchronized (entries) {
+                    // The edit may have been drained for undo while its changes were read
+                    if (!entries.contains(edit)) {
+                        return;
+                    }
+                    swap(edit, compacted);
+                    heapBytes += compacted.getHeapBytes() - sessionBytes;
+                    compact(edit);
+                }
+            }
+            // Close the session directly, the segment now belongs to the spilled or compacted entry
+            session.close();
+        });
+        return sessionBytes;
+    }
+
+    /**
+     * Reads what a session placed, if undo is configured to skip blocks changed since the edit.
+     *
+     * @param session The flushed EditSession containing the changes
+     * @return The placed block states and touched chunks, or null if undo restores every change
+     */
+    private static PlacedBlocks placedBlocks(EditSession session) {
+        return AdvConfig.getBlockModUndoSkipChangedBlocks() ? PlacedBlocks.of(session.getChangeSet()) : null;
+    }
+
+    /**
+     * Writes the changes of a session to a new history file and closes the session.
+     *
+     * @param world The WorldEdit world where the edit occurred
+     * @param session The EditSession containing the changes
+     * @param placed What the edit placed, null if it isn't known
+     * @return The spilled entry, or null if the changes couldn't be spilled and the session is still open
+     */
+    private static SpilledHistoryEntry spill(World world, EditSession session, PlacedBlocks placed) {
+        Path file = getHistoryFolder().resolve(UUID.randomUUID() + FILE_EXTENSION);
+        try {
+            Files.createDirectories(file.getParent());
+            int changeCount = ChangeSetFile.write(session.getChangeSet(), file);
+            session.close();
+            return new SpilledHistoryEntry(world, file, changeCount, placed);
+        } catch (IOException e) {
+            MsgUtility.warning("Failed to spill edit history to disk, keeping it in memory: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Removes and returns every recorded entry, oldest first.
+     * The caller is responsible for undoing and closing the entries.
+     *
+     * @return The recorded entries
+     */
+    public static List<HistoryEntry> drain() {
+        synchronized (entries) {
+            List<HistoryEntry> drained = new ArrayList<>(entries.size());
+            for (RecordedEdit edit : entries) {
+                drained.add(edit.entry);
+            }
+            entries.clear();
+            runs.clear();
+            chunkIndex.clear();
+            unknownChunks.clear();
+            heapBytes = 0L;
+            return drained;
+        }
+    }
+
+    /**
+     * Removes and returns the recorded entries of an event run, oldest first.
+     * Only the run's own entries are visited, the rest of the history is left untouched.
+     * The caller is responsible for undoing and closing the entries.
+     *
+     * @param runId Id of the run
+     * @return The run's entries, empty if the run has no recorded edits
+     */
+    public static List<HistoryEntry> drainRun(long runId) {
+        return drainRun(runId, null);
+    }
+
+    /**
+     * Removes and returns the recorded entries of a player's part of an event run, oldest first.
+     * Edits of merged regions are shared by several players and are drained for each of them.
+     * The caller is responsible for undoing and closing the entries.
+     *
+     * @param runId Id of the run
+     * @param playerName Name of the player, or null for every edit of the run
+     * @return The matching entries, empty if there are none
+     */
+    public static List<HistoryEntry> drainRun(long runId, String playerName) {
+        synchronized (entries) {
+            List<RecordedEdit> run = runs.get(runId);
+            if (run == null) {
+                return List.of();
+            }
+            List<RecordedEdit> matching = new ArrayList<>();
+            for (RecordedEdit edit : run) {
+                if (edit.matches(runId, playerName)) {
+                    matching.add(edit);
+                }
+            }
+            List<HistoryEntry> drained = new ArrayList<>(matching.size());
+            for (RecordedEdit edit : matching) {
+                remove(edit);
+                drained.add(edit.entry);
+            }
+            return drained;
+        }
+    }
+
+    /**
+     * Summarizes the recorded edits of every event run, oldest run first.
+     *
+     * @return The run summaries
+     */
+    public static List<RunSummary> getRuns() {
+        synchronized (entries) {
+            List<RunSummary> summaries = new ArrayList<>(runs.size());
+            for (Map.Entry<Long, List<RecordedEdit>> run : runs.entrySet()) {
+                long changeCount = 0L;
+                String eventName = null;
+                Set<String> owners = new LinkedHashSet<>();
+                for (RecordedEdit edit : run.getValue()) {
+                    changeCount += edit.entry.getChangeCount();
+                    eventName = eventName == null ? edit.tag.eventName() : eventName;
+                    owners.addAll(Arrays.asList(edit.tag.owner().split(", ")));
+                }
+                summaries.add(new RunSummary(run.getKey(), eventName, run.getValue().size(), changeCount, owners));
+            }
+            return summaries;
+        }
+    }
+
+    /**
+     * Closes every recorded entry without undoing it and clears the history.
+     */
+    public static void clear() {
+        for (HistoryEntry entry : drain()) {
+            entry.close();
+        }
+    }
+
+    /**
+     * Gets the folder history files are spilled to.
+     *
+     * @return The history folder inside the plugin's data folder
+     */
+    public static Path getHistoryFolder() {
+        return EventHorizon.getPlugin().getDataFolder().toPath().resolve("history");
+    }
+
+    /**
+     * Gets the number of recorded entries.
+     *
+     * @return The entry count
+     */
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Gets the number of recorded entries that were spilled to disk.
+     *
+     * @return The spilled entry count
+     */
+    public static int getSpilledCount() {
+        synchronized (entries) {
+            return (int) entries.stream().filter(edit -> edit.entry instanceof SpilledHistoryEntry).count();
+        }
+    }
+
+    /**
+     * Gets the estimated heap used by in-memory entries.
+     *
+     * @return The estimated heap usage in bytes
+     */
+    public static long getHeapBytes() {
+        synchronized (entries) {
+            return heapBytes;
+        }
+    }
+}
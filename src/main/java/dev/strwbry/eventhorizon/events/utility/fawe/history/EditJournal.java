@@ -0,0 +1,356 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.world.World;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import org.bukkit.Bukkit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Crash-safe journal of the original block states of committed edits.
+ * Every edit's undo side is written to its own segment file in the {@link ChangeSetFile} format, and an
+ * append-only manifest records which segments are live ({@code ADD}) and which were undone or discarded
+ * ({@code DONE}). All writes happen on a single background thread; the manifest is fsynced in batches at most
+ * once per sync interval, or as soon as the writer runs out of work.
+ *
+ * On startup every live segment is restored, newest first, so blocks changed by an event that was running
+ * when the server crashed or stopped are put back. The manifest is truncated whenever no segment is live.
+ */
+public class EditJournal
+{
+    /** Name of the manifest file */
+    private static final String MANIFEST_NAME = "journal.log";
+    /** File extension of segment files */
+    private static final String SEGMENT_EXTENSION = ".ehh";
+    /** Time the writer waits for queued writes during shutdown, in seconds */
+    private static final long SHUTDOWN_TIMEOUT = 30L;
+
+    /** Single background thread performing all journal writes */
+    private static ThreadPoolExecutor writer = null;
+    /** Open manifest channel, only touched by the writer thread */
+    private static FileChannel manifest = null;
+    /** Live segment ids mapped to their manifest line, only touched by the writer thread */
+    private static final Map<String, String> liveSegments = new LinkedHashMap<>();
+    /** Whether the manifest has unsynced writes, only touched by the writer thread */
+    private static boolean dirty = false;
+    /** Time the manifest was last synced in milliseconds, only touched by the writer thread */
+    private static long lastSync = 0L;
+
+    /**
+     * Checks whether journaling is enabled.
+     *
+     * @return true if the journal is enabled in the config
+     */
+    public static boolean isEnabled() {
+        return AdvConfig.getBlockModJournalEnabled();
+    }
+
+    /**
+     * Gets the folder holding the manifest and segment files.
+     *
+     * @return The journal folder inside the history folder
+     */
+    public static Path getJournalFolder() {
+        return EditHistory.getHistoryFolder().resolve("journal");
+    }
+
+    /**
+     * Checks whether a file is a journal segment.
+     *
+     * @param file The file to check
+     * @return true if the file is inside the journal folder
+     */
+    public static boolean isSegment(Path file) {
+        return getJournalFolder().equals(file.getParent());
+    }
+
+    /**
+     * Journals a committed edit on the writer thread.
+     * The session must not be closed or undone before the returned future completes.
+     *
+     * @param world The WorldEdit world where the edit occurred
+     * @param session The flushed EditSession containing the changes
+     * @return Future completed on the writer thread with the segment file, or null if journaling failed
+     */
+    public static CompletableFuture<Path> append(World world, EditSession session) {
+        CompletableFuture<Path> journaled = new CompletableFuture<>();
+        getWriter().execute(() -> {
+            String id = UUID.randomUUID().toString();
+            Path segment = getJournalFolder().resolve(id + SEGMENT_EXTENSION);
+            try {
+                Files.createDirectories(segment.getParent());
+                int changeCount = ChangeSetFile.write(session.getChangeSet(), segment);
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                String line = "ADD " + id + " " + changeCount + " " + world.getName();
+                writeLine(line);
+                liveSegments.put(id, line);
+                journaled.complete(segment);
+            } catch (IOException | RuntimeException e) {
+                MsgUtility.warning("Failed to journal block edit, it won't be restored after a crash: " + e.getMessage());
+                journaled.complete(null);
+            }
+            syncIfDue();
+        });
+        return journaled;
+    }
+
+    /**
+     * Journals a recorded entry on the writer thread if it isn't journaled already, so it is restored on the next
+     * startup. In-memory entries have their change set written to a new segment and spilled entries have their
+     * history file moved into the journal. Compacted entries of journaled edits keep the edits' own segments.
+     * Used during shutdown for edits that couldn't be undone in time.
+     * The entry must not be closed afterwards.
+     *
+     * @param entry The entry to keep for the next startup
+     */
+    public static void adopt(HistoryEntry entry) {
+        getWriter().execute(() -> {
+            Path existing = entry instanceof SessionHistoryEntry session ? session.getJournalSegment()
+                    : entry instanceof SpilledHistoryEntry spilled ? spilled.getFile() : null;
+            if ((existing != null && isSegment(existing)) || (entry instanceof CompactedHistoryEntry compacted && compacted.isJournaled())) {
+                return;
+            }
+            String id = UUID.randomUUID().toString();
+            Path segment = getJournalFolder().resolve(id + SEGMENT_EXTENSION);
+            try {
+                Files.createDirectories(segment.getParent());
+                int changeCount;
+                if (entry instanceof SessionHistoryEntry session) {
+                    changeCount = ChangeSetFile.write(session.getSession().getChangeSet(), segment);
+                } else if (entry instanceof SpilledHistoryEntry spilled) {
+                    Files.move(spilled.getFile(), segment, StandardCopyOption.ATOMIC_MOVE);
+                    changeCount = spilled.getChangeCount();
+                } else if (entry instanceof CompactedHistoryEntry compacted) {
+                    changeCount = ChangeSetFile.write(compacted, segment);
+                } else {
+                    // Deferred restores keep their own files
+                    return;
+                }
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                String line = "ADD " + id + " " + changeCount + " " + entry.getWorld().getName();
+                writeLine(line);
+                liveSegments.put(id, line);
+            } catch (IOException | RuntimeException e) {
+                MsgUtility.warning("Failed to journal block edit for the next startup, it won't be restored: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Marks a segment as no longer needed, because it was undone or discarded, and deletes it.
+     * Truncates the manifest once no segment is live anymore.
+     *
+     * @param segment The segment file
+     */
+    public static void release(Path segment) {
+        getWriter().execute(() -> {
+            String id = segment.getFileName().toString().replace(SEGMENT_EXTENSION, "");
+            try {
+                if (liveSegments.remove(id) != null) {
+                    writeLine("DONE " + id);
+                }
+                if (liveSegments.isEmpty()) {
+                    compact();
+                } else {
+                    syncIfDue();
+                }
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                MsgUtility.warning("Failed to update block edit journal: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Restores every live segment left behind by a previous run, newest first.
+     * Must be called from the main server thread once worlds are loaded.
+     *
+     * @return Future completed on the main thread with the number of restored blocks
+     */
+    public static CompletableFuture<Long> recover() {
+        Path manifestFile = getJournalFolder().resolve(MANIFEST_NAME);
+        if (!Files.exists(manifestFile)) {
+            return CompletableFuture.completedFuture(0L);
+        }
+
+        Map<String, String[]> live = new LinkedHashMap<>();
+        try {
+            for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(" ", 4);
+                if (parts.length == 4 && parts[0].equals("ADD")) {
+                    live.put(parts[1], parts);
+                } else if (parts.length >= 2 && parts[0].equals("DONE")) {
+                    live.remove(parts[1]);
+                }
+            }
+        } catch (IOException e) {
+            MsgUtility.warning("Failed to read block edit journal: " + e.getMessage());
+            return CompletableFuture.completedFuture(0L);
+        }
+
+        List<HistoryEntry> entries = new ArrayList<>();
+        Map<String, String> restorable = new LinkedHashMap<>();
+        for (String[] parts : live.values()) {
+            Path segment = getJournalFolder().resolve(parts[1] + SEGMENT_EXTENSION);
+            org.bukkit.World world = Bukkit.getWorld(parts[3]);
+            if (world == null || !Files.exists(segment)) {
+                MsgUtility.warning("Can't restore journaled block edit " + parts[1] + " in world " + parts[3]);
+                continue;
+            }
+            entries.add(new SpilledHistoryEntry(BukkitAdapter.adapt(world), segment, Integer.parseInt(parts[2]), null));
+            restorable.put(parts[1], String.join(" ", parts));
+        }
+
+        // Segments that can't be restored are dropped, the others stay live until the restore releases them
+        getWriter().execute(() -> {
+            liveSegments.putAll(restorable);
+            try {
+                compact();
+            } catch (IOException e) {
+                MsgUtility.warning("Failed to compact block edit journal: " + e.getMessage());
+            }
+        });
+        if (entries.isEmpty()) {
+            return CompletableFuture.completedFuture(0L);
+        }
+
+        MsgUtility.log("Restoring " + entries.size() + " block edits left behind by the last shutdown");
+        return UndoExecutor.submit(entries);
+    }
+
+    /**
+     * Syncs pending manifest writes and stops the writer thread.
+     * Should be called during plugin shutdown.
+     */
+    public static void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                if (dirty) {
+                    manifest.force(false);
+                }
+                if (manifest != null) {
+                    manifest.close();
+                    manifest = null;
+                }
+            } catch (IOException e) {
+                MsgUtility.warning("Failed to close block edit journal: " + e.getMessage());
+            }
+        });
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                MsgUtility.warning("Block edit journal did not finish writing in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    /**
+     * Gets the writer, starting it if necessary.
+     *
+     * @return The single-threaded writer
+     */
+    private static synchronized ThreadPoolExecutor getWriter() {
+        if (writer == null) {
+            writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "EventHorizon-Journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return writer;
+    }
+
+    /**
+     * Appends a line to the manifest without syncing it.
+     * Runs on the writer thread.
+     *
+     * @param line The line to append
+     * @throws IOException If the manifest can't be written
+     */
+    private static void writeLine(String line) throws IOException {
+        if (manifest == null) {
+            Files.createDirectories(getJournalFolder());
+            manifest = FileChannel.open(getJournalFolder().resolve(MANIFEST_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            manifest.write(buffer);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Syncs the manifest if the sync interval has passed or no more writes are queued.
+     * Runs on the writer thread.
+     */
+    private static void syncIfDue() {
+        long now = System.currentTimeMillis();
+        if (!dirty || (now - lastSync < AdvConfig.getBlockModJournalSyncIntervalMs() && !writer.getQueue().isEmpty())) {
+            return;
+        }
+        try {
+            manifest.force(false);
+            dirty = false;
+            lastSync = now;
+        } catch (IOException e) {
+            MsgUtility.warning("Failed to sync block edit journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the manifest with only the live segments, and deletes stray segment files when nothing is live.
+     * Runs on the writer thread.
+     *
+     * @throws IOException If the manifest can't be rewritten
+     */
+    private static void compact() throws IOException {
+        if (manifest != null) {
+            manifest.close();
+            manifest = null;
+        }
+        Path manifestFile = getJournalFolder().resolve(MANIFEST_NAME);
+        Files.createDirectories(getJournalFolder());
+        Path temp = getJournalFolder().resolve(MANIFEST_NAME + ".tmp");
+        Files.write(temp, liveSegments.values(), StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+
+        if (liveSegments.isEmpty()) {
+            try (Stream<Path> files = Files.list(getJournalFolder())) {
+                for (Path file : files.filter(file -> file.toString().endsWith(SEGMENT_EXTENSION)).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
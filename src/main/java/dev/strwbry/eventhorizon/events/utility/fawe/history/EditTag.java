@@ -0,0 +1,56 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identifies which event run and which players a recorded edit was made for.
+ * Every execution of a block modification event gets its own run id, so the edits of one run can be undone
+ * without touching the edits of other events.
+ *
+ * @param runId     Id of the event run, {@link #UNTAGGED_RUN} for edits made outside of an event run
+ * @param eventName Name of the event that made the edit
+ * @param owner     Players the edit was made for, joined by commas
+ */
+public record EditTag(long runId, String eventName, String owner) {
+
+    /** Run id of edits made outside of an event run */
+    public static final long UNTAGGED_RUN = 0L;
+    /** Tag of edits made outside of an event run */
+    public static final EditTag UNTAGGED = new EditTag(UNTAGGED_RUN, "unknown", "unknown");
+    /** Last assigned run id */
+    private static final AtomicLong lastRunId = new AtomicLong();
+
+    /**
+     * Assigns a new run id.
+     *
+     * @return The run id, unique for the lifetime of the server
+     */
+    public static long nextRunId() {
+        return lastRunId.incrementAndGet();
+    }
+
+    /**
+     * Creates a tag of the same run for other players.
+     *
+     * @param owner Players the edit was made for
+     * @return The new tag
+     */
+    public EditTag withOwner(String owner) {
+        return new EditTag(runId, eventName, owner);
+    }
+
+    /**
+     * Checks whether the edit was made for a player.
+     *
+     * @param playerName Name of the player
+     * @return true if the player is one of the tag's owners
+     */
+    public boolean isOwnedBy(String playerName) {
+        for (String name : owner.split(", ")) {
+            if (name.equalsIgnoreCase(playerName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.world.World;
+
+import java.io.IOException;
+
+/**
+ * A recorded block edit that can be undone.
+ * Entries either keep the edit session and its change set in memory or have spilled the changes to disk.
+ */
+public interface HistoryEntry
+{
+    /**
+     * Gets the world the edit was made in.
+     *
+     * @return The WorldEdit world of the edit
+     */
+    World getWorld();
+
+    /**
+     * Gets the number of block changes recorded by the entry.
+     *
+     * @return The change count
+     */
+    int getChangeCount();
+
+    /**
+     * Gets the estimated heap used by the entry.
+     *
+     * @return The estimated heap usage in bytes, 0 for entries stored on disk
+     */
+    long getHeapBytes();
+
+    /**
+     * Gets what the edit placed, used to skip positions that changed since the edit.
+     *
+     * @return The placed block states and touched chunks, or null if they aren't known
+     */
+    PlacedBlocks getPlacedBlocks();
+
+    /**
+     * Opens a cursor over the previous block states of the edit, in undo order.
+     *
+     * @return The undo cursor
+     * @throws IOException If spilled changes can't be read
+     */
+    UndoCursor openUndo() throws IOException;
+
+    /**
+     * Releases the resources held by the entry (edit session or history file).
+     */
+    void close();
+}
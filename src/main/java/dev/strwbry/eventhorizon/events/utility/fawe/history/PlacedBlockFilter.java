@@ -0,0 +1,74 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+
+/**
+ * Extent used while undoing an edit that only lets a block be restored if its position still holds the state the
+ * edit placed there. Positions players built on, mined or swapped for another block during the event keep their
+ * current block, and the write is skipped entirely.
+ */
+public class PlacedBlockFilter extends AbstractDelegateExtent
+{
+    /** What the edit being undone placed */
+    private final PlacedBlocks placed;
+    /** Number of restores skipped because the position changed since the edit */
+    private int skipped = 0;
+
+    /**
+     * Creates a filter in front of an undo session.
+     *
+     * @param extent The undo session the restored blocks are written to
+     * @param placed What the edit being undone placed
+     */
+    public PlacedBlockFilter(Extent extent, PlacedBlocks placed) {
+        super(extent);
+        this.placed = placed;
+    }
+
+    /**
+     * Restores a block if its position still holds the state the edit placed there.
+     *
+     * @param location The position of the block
+     * @param block The previous block to restore
+     * @return true if the block was restored
+     * @throws WorldEditException If the undo session refuses the block
+     */
+    @Override
+    public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block) throws WorldEditException {
+        return setBlock(location.x(), location.y(), location.z(), block);
+    }
+
+    /**
+     * Restores a block if its position still holds the state the edit placed there.
+     *
+     * @param x The X coordinate of the block
+     * @param y The Y coordinate of the block
+     * @param z The Z coordinate of the block
+     * @param block The previous block to restore
+     * @return true if the block was restored
+     * @throws WorldEditException If the undo session refuses the block
+     */
+    @Override
+    public <T extends BlockStateHolder<T>> boolean setBlock(int x, int y, int z, T block) throws WorldEditException {
+        if (!placed.isPlacedAt(x, y, z, getExtent().getBlock(x, y, z))) {
+            skipped++;
+            return false;
+        }
+        return super.setBlock(x, y, z, block);
+    }
+
+    /**
+     * Gets the number of restores skipped so far and resets the counter.
+     *
+     * @return The skipped restore count
+     */
+    public int takeSkipped() {
+        int count = skipped;
+        skipped = 0;
+        return count;
+    }
+}
@@ -0,0 +1,297 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.fastasyncworldedit.core.history.change.MutableBlockChange;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockState;
+import dev.strwbry.eventhorizon.events.utility.ChunkKeys;
+
+import java.util.*;
+
+/**
+ * Compact record of what an edit placed: the block state it left at every position, grouped by the chunks it
+ * touched. Chunks are kept as a sorted array of chunk keys, and the positions of each chunk as a sorted run of
+ * packed local positions with the placed state ordinal next to them, about 6 bytes per position.
+ * Used by diff-aware undo to skip positions that no longer hold the block the edit placed there, and to keep
+ * edits touching the same chunks out of a single undo batch.
+ */
+public class PlacedBlocks
+{
+    /** Packed coordinates of the touched chunks, sorted */
+    private final long[] chunks;
+    /** Start of each chunk's positions, with one extra entry holding the total count */
+    private final int[] offsets;
+    /** Packed local positions, sorted within each chunk */
+    private final int[] positions;
+    /** Ordinals of the placed states, parallel to the positions */
+    private final char[] states;
+
+    /**
+     * Growable buffer of the changes of one chunk.
+     * Every change is packed as {@code local position << 40 | sequence << 16 | ordinal}, so sorting orders the
+     * changes by position and keeps later changes of a position after earlier ones.
+     */
+    private static final class ChunkBuffer
+    {
+        /** The packed changes */
+        private long[] changes = new long[64];
+        /** Number of changes */
+        private int size = 0;
+
+        /**
+         * Adds a change.
+         *
+         * @param local The packed local position
+         * @param ordinal The ordinal of the placed state
+         */
+        private void add(int local, int ordinal) {
+            if (size == changes.length) {
+                changes = Arrays.copyOf(changes, size << 1);
+            }
+            changes[size] = (long) local << 40 | (long) (size & 0xFFFFFF) << 16 | ordinal;
+            size++;
+        }
+    }
+
+    /**
+     * Creates a record.
+     *
+     * @param chunks Packed coordinates of the touched chunks, sorted
+     * @param offsets Start of each chunk's positions, with one extra entry holding the total count
+     * @param positions Packed local positions, sorted within each chunk
+     * @param states Ordinals of the placed states, parallel to the positions
+     */
+    private PlacedBlocks(long[] chunks, int[] offsets, int[] positions, char[] states) {
+        this.chunks = chunks;
+        this.offsets = offsets;
+        this.positions = positions;
+        this.states = states;
+    }
+
+    /**
+     * Reads the placed block states from the forward side of a change set.
+     * A position changed more than once keeps the state it was changed to last. Changes other than block changes
+     * are ignored.
+     *
+     * @param changeSet The change set of the edit
+     * @return The record
+     */
+    public static PlacedBlocks of(ChangeSet changeSet) {
+        Map<Long, ChunkBuffer> buffers = new HashMap<>();
+        long lastChunk = Long.MIN_VALUE;
+        ChunkBuffer buffer = null;
+        Iterator<Change> changes = changeSet.forwardIterator();
+        while (changes.hasNext()) {
+            Change change = changes.next();
+            int x, y, z, ordinal;
+            if (change instanceof MutableBlockChange blockChange) {
+                // FAWE reuses the change object, the forward iterator fills in the placed state
+                x = blockChange.x;
+                y = blockChange.y;
+                z = blockChange.z;
+                ordinal = blockChange.ordinal;
+            } else if (change instanceof BlockChange blockChange) {
+                BlockVector3 position = blockChange.getPosition();
+                x = position.x();
+                y = position.y();
+                z = position.z();
+                ordinal = blockChange.getCurrent().toImmutableState().getOrdinal();
+            } else {
+                continue;
+            }
+            long chunk = ChunkKeys.of(x >> 4, z >> 4);
+            // Changes arrive grouped by chunk, so most lookups are skipped
+            if (chunk != lastChunk) {
+                buffer = buffers.computeIfAbsent(chunk, key -> new ChunkBuffer());
+                lastChunk = chunk;
+            }
+            buffer.add(local(x, y, z), ordinal);
+        }
+        return build(buffers);
+    }
+
+    /**
+     * Creates a record of the states placed at positions of a single chunk.
+     *
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param columns Local positions, packed as {@code x << 4 | z}
+     * @param heights Y coordinates, parallel to the columns
+     * @param placed The placed states, parallel to the columns, null for positions the edit didn't change
+     * @return The record
+     */
+    public static PlacedBlocks of(int chunkX, int chunkZ, byte[] columns, short[] heights, BlockState[] placed) {
+        ChunkBuffer buffer = new ChunkBuffer();
+        for (int i = 0; i < placed.length; i++) {
+            if (placed[i] == null) {
+                continue;
+            }
+            int column = columns[i] & 0xFF;
+            buffer.add(local(column >> 4, heights[i], column & 15), placed[i].getOrdinal());
+        }
+        return build(Map.of(ChunkKeys.of(chunkX, chunkZ), buffer));
+    }
+
+    /**
+     * Sorts the buffered changes of every chunk into a record, keeping the last change of every position.
+     *
+     * @param buffers The buffered changes by chunk
+     * @return The record
+     */
+    private static PlacedBlocks build(Map<Long, ChunkBuffer> buffers) {
+        long[] chunks = new long[buffers.size()];
+        int total = 0;
+        int i = 0;
+        for (Map.Entry<Long, ChunkBuffer> entry : buffers.entrySet()) {
+            chunks[i++] = entry.getKey();
+            total += entry.getValue().size;
+        }
+        Arrays.sort(chunks);
+
+        int[] offsets = new int[chunks.length + 1];
+        int[] positions = new int[total];
+        char[] states = new char[total];
+        int count = 0;
+        for (int c = 0; c < chunks.length; c++) {
+            offsets[c] = count;
+            ChunkBuffer buffer = buffers.get(chunks[c]);
+            Arrays.sort(buffer.changes, 0, buffer.size);
+            for (int j = 0; j < buffer.size; j++) {
+                long change = buffer.changes[j];
+                // Only the last change of a run of the same position is kept
+                if (j + 1 < buffer.size && buffer.changes[j + 1] >>> 40 == change >>> 40) {
+                    continue;
+                }
+                positions[count] = (int) (change >>> 40);
+                states[count] = (char) change;
+                count++;
+            }
+        }
+        offsets[chunks.length] = count;
+        return new PlacedBlocks(chunks, offsets, Arrays.copyOf(positions, count), Arrays.copyOf(states, count));
+    }
+
+    /**
+     * Combines the records of two edits. Positions both edits changed keep the state the second edit placed.
+     *
+     * @param first The record of the earlier edit, may be null
+     * @param second The record of the later edit, may be null
+     * @return A record of what both edits left behind, or null if either record isn't known
+     */
+    public static PlacedBlocks union(PlacedBlocks first, PlacedBlocks second) {
+        if (first == null || second == null) {
+            return null;
+        }
+        Map<Long, ChunkBuffer> buffers = new HashMap<>();
+        // The second record is added last, so its state sorts after the first record's for a shared position
+        for (PlacedBlocks record : List.of(first, second)) {
+            for (int c = 0; c < record.chunks.length; c++) {
+                ChunkBuffer buffer = buffers.computeIfAbsent(record.chunks[c], key -> new ChunkBuffer());
+                for (int j = record.offsets[c]; j < record.offsets[c + 1]; j++) {
+                    buffer.add(record.positions[j], record.states[j]);
+                }
+            }
+        }
+        return build(buffers);
+    }
+
+    /**
+     * Packs a position into its local position inside the chunk.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The packed local position, ordered by height first
+     */
+    private static int local(int x, int y, int z) {
+        return ((y + 2048) & 0xFFF) << 8 | (x & 15) << 4 | (z & 15);
+    }
+
+    /**
+     * Gets the state the edit placed at a position.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The placed state, or null if the edit didn't change the position
+     */
+    public BlockState getPlacedAt(int x, int y, int z) {
+        int index = indexOf(x, y, z);
+        return index < 0 ? null : BlockState.getFromOrdinal(states[index]);
+    }
+
+    /**
+     * Checks whether a position still holds the state the edit placed there.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @param current The current block at the position
+     * @return true if the edit placed exactly the current state at the position
+     */
+    public boolean isPlacedAt(int x, int y, int z, BlockState current) {
+        int index = indexOf(x, y, z);
+        return index >= 0 && states[index] == current.getOrdinal();
+    }
+
+    /**
+     * Finds a position in the record.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return The index of the position, or a negative value if the edit didn't change it
+     */
+    private int indexOf(int x, int y, int z) {
+        int chunk = Arrays.binarySearch(chunks, ChunkKeys.of(x >> 4, z >> 4));
+        if (chunk < 0) {
+            return -1;
+        }
+        return Arrays.binarySearch(positions, offsets[chunk], offsets[chunk + 1], local(x, y, z));
+    }
+
+    /**
+     * Gets the heap used by the record.
+     *
+     * @return The heap usage in bytes
+     */
+    public long getHeapBytes() {
+        return chunks.length * 12L + positions.length * 6L;
+    }
+
+    /**
+     * Checks whether the edit touched any of the given chunks.
+     *
+     * @param chunkKeys Packed chunk coordinates
+     * @return true if at least one of the chunks was touched
+     */
+    public boolean touchesAny(Set<Long> chunkKeys) {
+        if (chunkKeys.size() < chunks.length) {
+            for (long chunk : chunkKeys) {
+                if (Arrays.binarySearch(chunks, chunk) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (long chunk : chunks) {
+            if (chunkKeys.contains(chunk)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the touched chunks to a set.
+     *
+     * @param chunkKeys The set receiving the packed chunk coordinates
+     */
+    public void addChunksTo(Set<Long> chunkKeys) {
+        for (long chunk : chunks) {
+            chunkKeys.add(chunk);
+        }
+    }
+}
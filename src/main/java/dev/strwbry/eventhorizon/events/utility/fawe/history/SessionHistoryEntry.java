@@ -0,0 +1,161 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.history.UndoContext;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.world.World;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * History entry keeping the edit session and its change set in memory.
+ */
+public class SessionHistoryEntry implements HistoryEntry
+{
+    /** The world the edit was made in */
+    private final World world;
+    /** The edit session containing the changes */
+    private final EditSession session;
+    /** Estimated heap used by the change set in bytes */
+    private final long heapBytes;
+    /** Completed with the journal segment of the edit, or null if it isn't journaled */
+    private final CompletableFuture<Path> journaled;
+    /** What the edit placed, null if it isn't known */
+    private final PlacedBlocks placed;
+
+    /**
+     * Creates a new in-memory history entry.
+     *
+     * @param world The WorldEdit world where the edit occurred
+     * @param session The EditSession containing the changes
+     * @param heapBytes Estimated heap used by the change set in bytes
+     * @param journaled Completed with the journal segment of the edit, or null if it isn't journaled
+     * @param placed What the edit placed, null if it isn't known
+     */
+    public SessionHistoryEntry(World world, EditSession session, long heapBytes, CompletableFuture<Path> journaled, PlacedBlocks placed) {
+        this.world = world;
+        this.session = session;
+        this.heapBytes = heapBytes;
+        this.journaled = journaled;
+        this.placed = placed;
+    }
+
+    /**
+     * Gets the edit session of the entry.
+     *
+     * @return The EditSession containing the changes
+     */
+    public EditSession getSession() {
+        return session;
+    }
+
+    /**
+     * Gets the journal segment of the edit.
+     *
+     * @return The segment file, or null if the edit isn't journaled or its segment isn't written yet
+     */
+    public Path getJournalSegment() {
+        return journaled.getNow(null);
+    }
+
+    /**
+     * Gets the world the edit was made in.
+     *
+     * @return The WorldEdit world of the edit
+     */
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Gets the number of block changes recorded by the entry.
+     *
+     * @return The change count
+     */
+    @Override
+    public int getChangeCount() {
+        return session.getBlockChangeCount();
+    }
+
+    /**
+     * Gets the estimated heap used by the change set.
+     *
+     * @return The estimated heap usage in bytes
+     */
+    @Override
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    /**
+     * Gets what the edit placed.
+     *
+     * @return The placed block states and touched chunks, or null if they aren't known
+     */
+    @Override
+    public PlacedBlocks getPlacedBlocks() {
+        return placed;
+    }
+
+    /**
+     * Opens a cursor over the backward iterator of the session's change set.
+     * Changes are undone through an {@link UndoContext}, so non-block changes are supported as well.
+     * Waits for the journal to finish reading the change set first.
+     *
+     * @return The undo cursor
+     */
+    @Override
+    public UndoCursor openUndo() {
+        journaled.join();
+        Iterator<Change> changes = session.getChangeSet().backwardIterator();
+        UndoContext context = new UndoContext();
+        return new UndoCursor() {
+            /**
+             * Undoes the next changes into the undo extent.
+             *
+             * @param undoExtent The extent the restored blocks are written to
+             * @param maxChanges Maximum number of changes to undo
+             * @return The number of changes processed
+             * @throws WorldEditException If the undo extent refuses a change
+             */
+            @Override
+            public int undoNext(Extent undoExtent, int maxChanges) throws WorldEditException {
+                context.setExtent(undoExtent);
+                int undone = 0;
+                while (undone < maxChanges && changes.hasNext()) {
+                    changes.next().undo(context);
+                    undone++;
+                }
+                return undone;
+            }
+
+            /**
+             * Checks whether the change set has changes left.
+             *
+             * @return true if there are changes left to undo
+             */
+            @Override
+            public boolean hasNext() {
+                return changes.hasNext();
+            }
+        };
+    }
+
+    /**
+     * Closes the edit session once the journal is done with it and releases its journal segment.
+     */
+    @Override
+    public void close() {
+        journaled.whenComplete((segment, error) -> {
+            session.close();
+            if (segment != null) {
+                EditJournal.release(segment);
+            }
+        });
+    }
+}
@@ -0,0 +1,309 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.world.World;
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.BaseEvent;
+import dev.strwbry.eventhorizon.events.utility.fawe.BlockEditor;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Restores outstanding edit history while the plugin shuts down.
+ * The main thread can't schedule undo batches anymore at that point, so the active event is terminated and every
+ * entry left in the {@link EditHistory} or the {@link UndoExecutor} is undone on FAWE's worker threads instead,
+ * spread over all cores. Entries are split into lanes of edits sharing chunks; each lane is undone newest first on
+ * its own worker, while lanes run in parallel since they can't overwrite each other's blocks.
+ * Work not finished by the configured deadline is handed to the {@link EditJournal}, so it is restored on the next
+ * startup instead of delaying the stop. Lanes are stopped cooperatively first, and only the entries of lanes that
+ * confirmed they stopped are handed over, so no worker keeps writing an entry the journal is reading.
+ * Nothing on this path goes through the Bukkit scheduler, which refuses tasks while the plugin is disabling.
+ */
+public class ShutdownRestore
+{
+    /** Time lanes get to finish their current slice and confirm they stopped after the deadline, in milliseconds */
+    private static final long GRACE_PERIOD = 2000L;
+    /** Executor that runs tasks on FAWE's async queue */
+    private static final Executor FAWE_QUEUE = task -> Fawe.instance().getQueueHandler().async(task);
+
+    /**
+     * Entries undone one after another by a single worker.
+     */
+    private static final class Lane
+    {
+        /** The entries, newest first */
+        private final List<HistoryEntry> entries = new ArrayList<>();
+        /** Index of the next entry to undo, only read by the shutdown once the lane stopped */
+        private int next = 0;
+        /** Whether the lane was claimed, by its worker when it starts or by the shutdown if it never started */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        /** Set by the shutdown to stop the lane, checked by its worker between slices */
+        private volatile boolean cancelled = false;
+        /** Completed by the lane's worker once it stopped and won't touch its entries anymore */
+        private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+    }
+
+    /**
+     * Terminates the active event and restores all outstanding edit history before the deadline.
+     * Must be called from the plugin's onDisable, before the journal is shut down.
+     */
+    public static void run() {
+        if (!AdvConfig.getBlockModUndoRestoreOnShutdown()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(AdvConfig.getBlockModUndoShutdownDeadlineSeconds());
+
+        BaseEvent currentEvent = EventHorizon.getEventManager() == null ? null : EventHorizon.getEventManager().getCurrentEvent();
+        if (currentEvent != null) {
+            try {
+                currentEvent.terminate();
+            } catch (RuntimeException e) {
+                // Parts of the event's cleanup may need the scheduler, which is gone during shutdown
+                MsgUtility.warning("Failed to terminate " + currentEvent.getClass().getSimpleName() + " during shutdown: " + e.getMessage());
+            }
+        }
+        if (!BlockEditor.awaitPendingEdits(remainingMillis(deadline))) {
+            MsgUtility.warning("Block edits still running at shutdown won't be restored");
+        }
+
+        // The executor's entries are older than the ones still in the history
+        List<HistoryEntry> entries = new ArrayList<>(UndoExecutor.drainForShutdown(remainingMillis(deadline)));
+        entries.addAll(EditHistory.drain());
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        List<Lane> lanes = buildLanes(entries);
+        long totalChanges = 0L;
+        for (HistoryEntry entry : entries) {
+            totalChanges += entry.getChangeCount();
+        }
+        MsgUtility.log("Restoring " + totalChanges + " block changes of " + entries.size() + " edits in " + lanes.size() + " parallel lanes before shutdown");
+
+        AtomicLong restored = new AtomicLong();
+        List<CompletableFuture<Void>> running = new ArrayList<>(lanes.size());
+        for (Lane lane : lanes) {
+            running.add(CompletableFuture.runAsync(() -> runLane(lane, deadline, restored), FAWE_QUEUE));
+        }
+        CompletableFuture<Void> all = CompletableFuture.allOf(running.toArray(new CompletableFuture[0]));
+        try {
+            all.get(remainingMillis(deadline) + GRACE_PERIOD, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            MsgUtility.warning("Restoring block edits during shutdown failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException ignored) {
+            // Lanes still running are stopped below
+        }
+
+        for (Lane lane : lanes) {
+            lane.cancelled = true;
+        }
+        long acknowledgeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GRACE_PERIOD);
+        int persisted = 0;
+        int abandoned = 0;
+        for (Lane lane : lanes) {
+            if (!awaitStopped(lane, acknowledgeDeadline)) {
+                // The worker may still be writing, its entries can't be handed over safely
+                abandoned += lane.entries.size() - lane.next;
+                continue;
+            }
+            List<HistoryEntry> remaining = new ArrayList<>(lane.entries.subList(lane.next, lane.entries.size()));
+            // Journal the lane's entries oldest first, so they are restored newest first on startup
+            Collections.reverse(remaining);
+            for (HistoryEntry entry : remaining) {
+                EditJournal.adopt(entry);
+                persisted++;
+            }
+        }
+
+        MsgUtility.log("<green>Restored " + restored.get() + " blocks in " + (System.currentTimeMillis() - start) + "ms during shutdown");
+        if (persisted > 0) {
+            MsgUtility.warning(persisted + " block edits couldn't be restored before the shutdown deadline, they are restored on the next startup");
+        }
+        if (abandoned > 0) {
+            MsgUtility.warning(abandoned + " block edits were still being restored when the plugin stopped, only journaled ones are restored on the next startup");
+        }
+    }
+
+    /**
+     * Waits for a cancelled lane to confirm it stopped. A lane whose worker never started is claimed instead, so
+     * it can't start anymore.
+     *
+     * @param lane The cancelled lane
+     * @param deadline The deadline in {@link System#nanoTime()} units
+     * @return true if the lane won't touch its entries anymore
+     */
+    private static boolean awaitStopped(Lane lane, long deadline) {
+        if (lane.claimed.compareAndSet(false, true)) {
+            return true;
+        }
+        try {
+            lane.stopped.get(remainingMillis(deadline), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            // The worker completes the future normally, even when undoing fails
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Splits entries into lanes of edits that share chunks, per world.
+     * Entries that don't know which chunks they touched put their whole world into a single lane.
+     *
+     * @param entries The entries, oldest first
+     * @return The lanes, each holding its entries newest first
+     */
+    private static List<Lane> buildLanes(List<HistoryEntry> entries) {
+        Map<World, List<HistoryEntry>> byWorld = new LinkedHashMap<>();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            byWorld.computeIfAbsent(entries.get(i).getWorld(), world -> new ArrayList<>()).add(entries.get(i));
+        }
+
+        List<Lane> lanes = new ArrayList<>();
+        for (List<HistoryEntry> worldEntries : byWorld.values()) {
+            if (worldEntries.stream().anyMatch(entry -> entry.getPlacedBlocks() == null)) {
+                Lane lane = new Lane();
+                lane.entries.addAll(worldEntries);
+                lanes.add(lane);
+                continue;
+            }
+
+            // Union-find over the entries, joined whenever two of them touch the same chunk
+            int[] parent = new int[worldEntries.size()];
+            Map<Long, Integer> chunkOwner = new HashMap<>();
+            for (int i = 0; i < parent.length; i++) {
+                parent[i] = i;
+                Set<Long> chunks = new HashSet<>();
+                worldEntries.get(i).getPlacedBlocks().addChunksTo(chunks);
+                for (long chunk : chunks) {
+                    Integer owner = chunkOwner.putIfAbsent(chunk, i);
+                    if (owner != null) {
+                        parent[find(parent, i)] = find(parent, owner);
+                    }
+                }
+            }
+            Map<Integer, Lane> byRoot = new LinkedHashMap<>();
+            for (int i = 0; i < parent.length; i++) {
+                byRoot.computeIfAbsent(find(parent, i), root -> new Lane()).entries.add(worldEntries.get(i));
+            }
+            lanes.addAll(byRoot.values());
+        }
+        return lanes;
+    }
+
+    /**
+     * Finds the root of an entry in the union-find forest, compressing the path on the way.
+     *
+     * @param parent Parent index of every entry
+     * @param index The entry
+     * @return Index of the root entry
+     */
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    /**
+     * Undoes the entries of a lane one after another until the lane is done, cancelled or past the deadline, then
+     * confirms it stopped. Does nothing if the shutdown claimed the lane before it started.
+     * Runs on FAWE's worker threads.
+     *
+     * @param lane The lane
+     * @param deadline The deadline in {@link System#nanoTime()} units
+     * @param restored Counter of processed changes
+     */
+    private static void runLane(Lane lane, long deadline, AtomicLong restored) {
+        if (!lane.claimed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (!lane.cancelled && lane.next < lane.entries.size()) {
+                HistoryEntry entry = lane.entries.get(lane.next);
+                if (!undoEntry(entry, lane, deadline, restored)) {
+                    return;
+                }
+                lane.next++;
+                entry.close();
+            }
+        } finally {
+            lane.stopped.complete(null);
+        }
+    }
+
+    /**
+     * Undoes an entry in slices of the configured undo batch size, each in its own edit session.
+     * Unreadable entries count as done and are skipped, like in the {@link UndoExecutor}.
+     *
+     * @param entry The entry to undo
+     * @param lane The lane of the entry, checked for cancellation between slices
+     * @param deadline The deadline in {@link System#nanoTime()} units
+     * @param restored Counter of processed changes
+     * @return true if the entry was undone, false if the lane was cancelled or the deadline passed first
+     */
+    private static boolean undoEntry(HistoryEntry entry, Lane lane, long deadline, AtomicLong restored) {
+        int sliceSize = AdvConfig.getBlockModUndoMaxChangesPerTick();
+        UndoCursor cursor;
+        try {
+            cursor = entry.openUndo();
+        } catch (IOException e) {
+            MsgUtility.warning("Failed to read edit history, skipping it: " + e.getMessage());
+            return true;
+        }
+
+        PlacedBlocks placed = entry.getPlacedBlocks();
+        while (cursor.hasNext()) {
+            if (lane.cancelled || System.nanoTime() > deadline) {
+                return false;
+            }
+            try (EditSession session = WorldEdit.getInstance()
+                    .newEditSessionBuilder()
+                    .world(entry.getWorld())
+                    .maxBlocks(-1)
+                    .changeSetNull()
+                    .build()) {
+                Extent target = placed == null ? session : new PlacedBlockFilter(session, placed);
+                restored.addAndGet(cursor.undoNext(target, sliceSize));
+                Operations.complete(session.commit());
+            } catch (IOException | WorldEditException e) {
+                MsgUtility.warning("Failed to undo block modifications, skipping the rest of the edit: " + e.getMessage());
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the time left until a deadline.
+     *
+     * @param deadline The deadline in {@link System#nanoTime()} units
+     * @return The remaining time in milliseconds, at least 0
+     */
+    private static long remainingMillis(long deadline) {
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+}
@@ -0,0 +1,116 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.world.World;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * History entry whose changes were spilled to a history file on disk.
+ * The file is read through a small heap window when the edit is undone and deleted once the entry is closed.
+ */
+public class SpilledHistoryEntry implements HistoryEntry
+{
+    /** The world the edit was made in */
+    private final World world;
+    /** The history file holding the changes */
+    private final Path file;
+    /** Number of changes stored in the file */
+    private final int changeCount;
+    /** What the edit placed, null if it isn't known */
+    private final PlacedBlocks placed;
+
+    /**
+     * Creates a new spilled history entry.
+     *
+     * @param world The WorldEdit world where the edit occurred
+     * @param file The history file holding the changes
+     * @param changeCount Number of changes stored in the file
+     * @param placed What the edit placed, null if it isn't known
+     */
+    public SpilledHistoryEntry(World world, Path file, int changeCount, PlacedBlocks placed) {
+        this.world = world;
+        this.file = file;
+        this.changeCount = changeCount;
+        this.placed = placed;
+    }
+
+    /**
+     * Gets the history file of the entry.
+     *
+     * @return The path of the history file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the world the edit was made in.
+     *
+     * @return The WorldEdit world of the edit
+     */
+    @Override
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Gets the number of block changes recorded by the entry.
+     *
+     * @return The change count
+     */
+    @Override
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Spilled entries don't keep their changes on the heap.
+     *
+     * @return Always 0
+     */
+    @Override
+    public long getHeapBytes() {
+        return 0L;
+    }
+
+    /**
+     * Gets what the edit placed.
+     * Entries recovered from the journal after a restart don't know it.
+     *
+     * @return The placed block states and touched chunks, or null if they aren't known
+     */
+    @Override
+    public PlacedBlocks getPlacedBlocks() {
+        return placed;
+    }
+
+    /**
+     * Opens a cursor over the previous block states of the history file, decoding them through a small heap window.
+     *
+     * @return The undo cursor
+     * @throws IOException If the history file can't be read
+     */
+    @Override
+    public UndoCursor openUndo() throws IOException {
+        return ChangeSetFile.open(file);
+    }
+
+    /**
+     * Deletes the history file, or releases it if it is a journal segment.
+     */
+    @Override
+    public void close() {
+        if (EditJournal.isSegment(file)) {
+            EditJournal.release(file);
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            MsgUtility.warning("Failed to delete history file " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+}
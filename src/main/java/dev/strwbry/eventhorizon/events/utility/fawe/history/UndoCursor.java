@@ -0,0 +1,32 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+
+import java.io.IOException;
+
+/**
+ * Incremental reader over the undo side of a {@link HistoryEntry}.
+ * Lets an undo be split into batches that are applied to separate edit sessions.
+ * Cursors write through the given extent, which may be a {@link PlacedBlockFilter} in front of the undo session.
+ */
+public interface UndoCursor
+{
+    /**
+     * Writes the next previous block states into an undo extent.
+     *
+     * @param undoExtent The extent the restored blocks are written to
+     * @param maxChanges Maximum number of changes to write
+     * @return The number of changes processed, 0 once the cursor is exhausted
+     * @throws IOException If spilled changes can't be read
+     * @throws WorldEditException If the undo extent refuses a change
+     */
+    int undoNext(Extent undoExtent, int maxChanges) throws IOException, WorldEditException;
+
+    /**
+     * Checks whether there are changes left to undo.
+     *
+     * @return true if the cursor is not exhausted
+     */
+    boolean hasNext();
+}
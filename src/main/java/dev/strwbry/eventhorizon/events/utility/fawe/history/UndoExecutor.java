@@ -0,0 +1,425 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.world.World;
+import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.utility.ChunkKeys;
+import dev.strwbry.eventhorizon.events.utility.SpawnSiteIndex;
+import dev.strwbry.eventhorizon.utility.AdvConfig;
+import dev.strwbry.eventhorizon.utility.MsgUtility;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Restores recorded edit history incrementally.
+ * Submitted entries are undone in batches of at most the configured number of changes, one batch per tick.
+ * Each batch is written to its own edit session on FAWE's worker threads, so the main thread only schedules
+ * batches and the undo of a huge edit never stalls a single tick.
+ * Entries that know what they placed are undone through a {@link PlacedBlockFilter}, so positions changed since the
+ * edit are skipped. Such an entry starts a new batch when it touches a chunk the current batch already wrote to,
+ * since the check has to see the blocks restored by newer entries.
+ * When restores of unloaded chunks are deferred, each batch only writes to the chunks loaded when it was scheduled
+ * and hands the rest to {@link DeferredRestores}, so an undo never loads chunks nobody is near.
+ */
+public class UndoExecutor
+{
+    /** Interval between progress log messages in milliseconds */
+    private static final long PROGRESS_LOG_INTERVAL = 5000L;
+    /** Executor that runs tasks on FAWE's async queue */
+    private static final Executor FAWE_QUEUE = task -> Fawe.instance().getQueueHandler().async(task);
+    /** Executor that runs tasks on the main server thread, dropping them while the plugin is disabling */
+    private static final Executor MAIN_THREAD = task -> {
+        // The scheduler refuses tasks of a disabled plugin, ShutdownRestore takes over the history instead
+        if (EventHorizon.getPlugin().isEnabled()) {
+            Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), task);
+        }
+    };
+
+    /** Entries waiting to be undone, oldest first */
+    private static final Deque<HistoryEntry> queue = new ArrayDeque<>();
+    /** Entry currently being undone, only touched by the running batch */
+    private static HistoryEntry currentEntry = null;
+    /** Cursor of the entry currently being undone, only touched by the running batch */
+    private static UndoCursor currentCursor = null;
+    /** Whether the current entry hasn't written to a batch yet, only touched by the running batch */
+    private static boolean currentEntryFresh = false;
+    /** Batch currently running on FAWE's worker threads, null if none */
+    private static CompletableFuture<BatchResult> inFlight = null;
+    /** Whether batches are being scheduled */
+    private static boolean running = false;
+    /** Completed on the main thread with the number of restored changes once the queue is empty */
+    private static CompletableFuture<Long> completion = CompletableFuture.completedFuture(0L);
+    /** Number of changes submitted since the executor was last idle */
+    private static long totalChanges = 0L;
+    /** Number of changes processed since the executor was last idle, including skipped and deferred ones */
+    private static long restoredChanges = 0L;
+    /** Number of changes skipped since the executor was last idle because their blocks changed since the edit */
+    private static long skippedChanges = 0L;
+    /** Number of changes deferred since the executor was last idle because their chunk wasn't loaded */
+    private static long deferredChanges = 0L;
+    /** Time the current run started, in milliseconds */
+    private static long startTime = 0L;
+    /** Time progress was last logged, in milliseconds */
+    private static long lastProgressLog = 0L;
+
+    /**
+     * Result of a single batch.
+     *
+     * @param restored Number of changes processed by the batch, including skipped and deferred ones
+     * @param skipped Number of changes skipped because their blocks changed since the edit
+     * @param deferred Number of changes deferred because their chunk wasn't loaded
+     * @param finishedWorlds Worlds of the entries completed by the batch
+     */
+    private record BatchResult(int restored, int skipped, int deferred, Set<World> finishedWorlds) {
+    }
+
+    /**
+     * Chunks loaded when a batch was scheduled.
+     *
+     * @param world The world of the chunks
+     * @param chunks Packed coordinates of the loaded chunks
+     */
+    private record LoadedChunks(World world, Set<Long> chunks) {
+    }
+
+    /**
+     * Queues history entries for undo and starts the executor if it is idle.
+     * Entries are undone newest first, so overlapping edits are restored in the right order.
+     * While the plugin is disabling, entries are only queued, to be taken over by {@link ShutdownRestore}.
+     * Must be called from the main server thread.
+     *
+     * @param entries The entries to undo, oldest first
+     * @return Future completed on the main thread with the number of restored changes once every queued entry is undone
+     */
+    public static CompletableFuture<Long> submit(List<HistoryEntry> entries) {
+        if (entries.isEmpty()) {
+            return completion;
+        }
+
+        synchronized (queue) {
+            for (HistoryEntry entry : entries) {
+                queue.addFirst(entry);
+                totalChanges += entry.getChangeCount();
+            }
+        }
+
+        if (!running && EventHorizon.getPlugin().isEnabled()) {
+            running = true;
+            completion = new CompletableFuture<>();
+            startTime = System.currentTimeMillis();
+            lastProgressLog = startTime;
+            MsgUtility.log("Undoing " + totalChanges + " block changes in batches of " + AdvConfig.getBlockModUndoMaxChangesPerTick() + " per tick");
+            Bukkit.getScheduler().runTask(EventHorizon.getPlugin(), UndoExecutor::step);
+        }
+        return completion;
+    }
+
+    /**
+     * Submits the next batch to FAWE's worker threads and schedules the following one for the next tick.
+     */
+    private static void step() {
+        int budget = AdvConfig.getBlockModUndoMaxChangesPerTick();
+        LoadedChunks loadedChunks = DeferredRestores.isEnabled() ? snapshotLoadedChunks() : null;
+        inFlight = CompletableFuture.supplyAsync(() -> runBatch(budget, loadedChunks), FAWE_QUEUE);
+        inFlight.whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                MsgUtility.warning("Undo batch failed: " + error.getMessage());
+            } else {
+                restoredChanges += result.restored();
+                skippedChanges += result.skipped();
+                deferredChanges += result.deferred();
+                for (World world : result.finishedWorlds()) {
+                    SpawnSiteIndex.invalidateWorld(BukkitAdapter.adapt(world));
+                }
+                if (result.deferred() > 0) {
+                    DeferredRestores.ensureListening();
+                    // Chunks that loaded while the batch ran missed their load event
+                    DeferredRestores.restoreLoaded();
+                }
+            }
+
+            boolean done;
+            synchronized (queue) {
+                done = queue.isEmpty() && currentEntry == null;
+            }
+            if (done) {
+                finish();
+            } else {
+                logProgress();
+                Bukkit.getScheduler().runTaskLater(EventHorizon.getPlugin(), UndoExecutor::step, 1L);
+            }
+        }, MAIN_THREAD);
+    }
+
+    /**
+     * Collects the chunks loaded in the world of the next entry to undo.
+     * Must be called from the main server thread while no batch is running.
+     *
+     * @return The loaded chunks, or null if nothing is left to undo
+     */
+    private static LoadedChunks snapshotLoadedChunks() {
+        HistoryEntry next;
+        synchronized (queue) {
+            next = currentEntry != null ? currentEntry : queue.peekFirst();
+        }
+        if (next == null) {
+            return null;
+        }
+        Chunk[] chunks = BukkitAdapter.adapt(next.getWorld()).getLoadedChunks();
+        Set<Long> keys = new HashSet<>(chunks.length * 2);
+        for (Chunk chunk : chunks) {
+            keys.add(ChunkKeys.of(chunk.getX(), chunk.getZ()));
+        }
+        return new LoadedChunks(next.getWorld(), keys);
+    }
+
+    /**
+     * Undoes up to the given number of changes into a single edit session.
+     * A batch stops early when the next entry is in a different world than the batch's session or loaded chunk
+     * snapshot, or when it skips changed blocks and touches a chunk the batch already wrote to.
+     *
+     * @param budget Maximum number of changes to restore
+     * @param loadedChunks Chunks loaded when the batch was scheduled, or null to restore every chunk right away
+     * @return The result of the batch
+     */
+    private static BatchResult runBatch(int budget, LoadedChunks loadedChunks) {
+        int restored = 0;
+        int skipped = 0;
+        int deferred = 0;
+        Set<World> finishedWorlds = new HashSet<>();
+        Set<Long> batchChunks = new HashSet<>();
+        EditSession session = null;
+        DeferredRestores.Batch deferredRestores = null;
+
+        try {
+            while (restored < budget) {
+                if (currentCursor == null || !currentCursor.hasNext()) {
+                    if (currentEntry != null) {
+                        currentEntry.close();
+                        finishedWorlds.add(currentEntry.getWorld());
+                        currentEntry = null;
+                        currentCursor = null;
+                    }
+                    synchronized (queue) {
+                        currentEntry = queue.pollFirst();
+                    }
+                    if (currentEntry == null) {
+                        break;
+                    }
+                    try {
+                        currentCursor = currentEntry.openUndo();
+                        currentEntryFresh = true;
+                    } catch (IOException e) {
+                        MsgUtility.warning("Failed to read edit history, skipping it: " + e.getMessage());
+                        currentEntry.close();
+                        currentEntry = null;
+                        continue;
+                    }
+                }
+
+                if (session != null && !session.getWorld().equals(currentEntry.getWorld())) {
+                    break;
+                }
+                if (loadedChunks != null && !loadedChunks.world().equals(currentEntry.getWorld())) {
+                    break;
+                }
+                PlacedBlocks placed = currentEntry.getPlacedBlocks();
+                if (session != null && currentEntryFresh && placed != null && placed.touchesAny(batchChunks)) {
+                    break;
+                }
+                if (session == null) {
+                    session = WorldEdit.getInstance()
+                            .newEditSessionBuilder()
+                            .world(currentEntry.getWorld())
+                            .maxBlocks(-1)
+                            .changeSetNull()
+                            .build();
+                    if (loadedChunks != null) {
+                        deferredRestores = DeferredRestores.newBatch(currentEntry.getWorld());
+                    }
+                }
+                if (placed != null) {
+                    placed.addChunksTo(batchChunks);
+                }
+                currentEntryFresh = false;
+
+                try {
+                    PlacedBlockFilter filter = placed == null ? null : new PlacedBlockFilter(session, placed);
+                    Extent target = filter == null ? session : filter;
+                    // Unloaded chunks are filtered first, checking their current blocks would load them
+                    UnloadedChunkFilter unloaded = deferredRestores == null ? null
+                            : new UnloadedChunkFilter(target, loadedChunks.chunks(), deferredRestores, currentEntry);
+                    restored += currentCursor.undoNext(unloaded == null ? target : unloaded, budget - restored);
+                    if (filter != null) {
+                        skipped += filter.takeSkipped();
+                    }
+                    if (unloaded != null) {
+                        deferred += unloaded.takeDeferred();
+                    }
+                } catch (IOException | WorldEditException e) {
+                    MsgUtility.warning("Failed to undo block modifications, skipping the rest of the edit: " + e.getMessage());
+                    currentCursor = null;
+                }
+            }
+        } finally {
+            if (session != null) {
+                try {
+                    Operations.complete(session.commit());
+                } catch (WorldEditException e) {
+                    MsgUtility.warning("Failed to commit undo batch: " + e.getMessage());
+                }
+                session.close();
+            }
+            if (deferredRestores != null && !deferredRestores.isEmpty()) {
+                DeferredRestores.flush(deferredRestores);
+            }
+        }
+        return new BatchResult(restored, skipped, deferred, finishedWorlds);
+    }
+
+    /**
+     * Logs the undo progress if the log interval has passed.
+     */
+    private static void logProgress() {
+        long now = System.currentTimeMillis();
+        if (now - lastProgressLog < PROGRESS_LOG_INTERVAL) {
+            return;
+        }
+        lastProgressLog = now;
+        MsgUtility.log("Undo progress: " + Math.round(getProgress() * 100) + "% (" + restoredChanges + "/" + totalChanges + " blocks)");
+    }
+
+    /**
+     * Marks the executor as idle and completes the pending future.
+     */
+    private static void finish() {
+        long restored = restoredChanges - skippedChanges - deferredChanges;
+        MsgUtility.log("<green>Restored " + restored + " blocks in " + (System.currentTimeMillis() - startTime) + "ms");
+        if (skippedChanges > 0) {
+            MsgUtility.log("Kept " + skippedChanges + " blocks that changed since the edits were made");
+        }
+        if (deferredChanges > 0) {
+            MsgUtility.log("Deferred " + deferredChanges + " blocks in unloaded chunks until the chunks load");
+        }
+        running = false;
+        totalChanges = 0L;
+        restoredChanges = 0L;
+        skippedChanges = 0L;
+        deferredChanges = 0L;
+        DeferredRestores.ensureListening();
+        completion.complete(restored);
+    }
+
+    /**
+     * Stops scheduling batches and takes every entry that hasn't been fully undone yet.
+     * Waits for the running batch first; the entry it was working on is returned whole, undoing it again only
+     * restores blocks that already hold their previous state. Used during shutdown, when the main thread can't
+     * schedule batches anymore.
+     *
+     * @param timeoutMillis Longest time to wait for the running batch in milliseconds
+     * @return The entries left to undo, oldest first
+     */
+    public static List<HistoryEntry> drainForShutdown(long timeoutMillis) {
+        if (inFlight != null) {
+            try {
+                inFlight.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                MsgUtility.warning("Undo batch did not finish before shutdown: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<HistoryEntry> entries = new ArrayList<>();
+        synchronized (queue) {
+            if (currentEntry != null) {
+                entries.add(currentEntry);
+            }
+            entries.addAll(queue);
+            queue.clear();
+            currentEntry = null;
+            currentCursor = null;
+        }
+        running = false;
+        inFlight = null;
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    /**
+     * Checks whether an undo is in progress.
+     *
+     * @return true if entries are being undone
+     */
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets a future completed once the executor is idle.
+     *
+     * @return Future completed on the main thread with the number of changes restored by the current run
+     */
+    public static CompletableFuture<Long> whenIdle() {
+        return completion;
+    }
+
+    /**
+     * Gets the progress of the current run.
+     *
+     * @return The share of submitted changes that has been restored, 1 when idle
+     */
+    public static double getProgress() {
+        return totalChanges == 0 ? 1.0 : (double) restoredChanges / totalChanges;
+    }
+
+    /**
+     * Gets the number of changes processed by the current run, including skipped ones.
+     *
+     * @return The processed change count
+     */
+    public static long getRestoredChanges() {
+        return restoredChanges;
+    }
+
+    /**
+     * Gets the number of changes the current run skipped because their blocks changed since the edit.
+     *
+     * @return The skipped change count
+     */
+    public static long getSkippedChanges() {
+        return skippedChanges;
+    }
+
+    /**
+     * Gets the number of changes the current run deferred because their chunk wasn't loaded.
+     *
+     * @return The deferred change count
+     */
+    public static long getDeferredChanges() {
+        return deferredChanges;
+    }
+
+    /**
+     * Gets the number of changes submitted in the current run.
+     *
+     * @return The submitted change count
+     */
+    public static long getTotalChanges() {
+        return totalChanges;
+    }
+}
@@ -0,0 +1,86 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.history;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import dev.strwbry.eventhorizon.events.utility.ChunkKeys;
+
+import java.util.Set;
+
+/**
+ * Extent used while undoing an edit that only writes restores to chunks that were loaded when the batch started.
+ * Restores in other chunks are handed to a {@link DeferredRestores.Batch} instead, so the undo never forces a
+ * chunk to load; they are applied once the chunk loads again.
+ */
+public class UnloadedChunkFilter extends AbstractDelegateExtent
+{
+    /** Packed coordinates of the chunks loaded when the batch started */
+    private final Set<Long> loadedChunks;
+    /** Buffer receiving the deferred restores */
+    private final DeferredRestores.Batch deferred;
+    /** The entry being undone */
+    private final HistoryEntry entry;
+    /** Number of restores deferred because their chunk isn't loaded */
+    private int deferredCount = 0;
+
+    /**
+     * Creates a filter in front of an undo session.
+     *
+     * @param extent The extent the restores of loaded chunks are written to
+     * @param loadedChunks Packed coordinates of the chunks loaded when the batch started
+     * @param deferred Buffer receiving the deferred restores
+     * @param entry The entry being undone
+     */
+    public UnloadedChunkFilter(Extent extent, Set<Long> loadedChunks, DeferredRestores.Batch deferred, HistoryEntry entry) {
+        super(extent);
+        this.loadedChunks = loadedChunks;
+        this.deferred = deferred;
+        this.entry = entry;
+    }
+
+    /**
+     * Restores a block if its chunk is loaded, otherwise defers the restore.
+     *
+     * @param location The position of the block
+     * @param block The previous block to restore
+     * @return true if the block was restored or deferred
+     * @throws WorldEditException If the undo session refuses the block
+     */
+    @Override
+    public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block) throws WorldEditException {
+        return setBlock(location.x(), location.y(), location.z(), block);
+    }
+
+    /**
+     * Restores a block if its chunk is loaded, otherwise defers the restore.
+     *
+     * @param x The X coordinate of the block
+     * @param y The Y coordinate of the block
+     * @param z The Z coordinate of the block
+     * @param block The previous block to restore
+     * @return true if the block was restored or deferred
+     * @throws WorldEditException If the undo session refuses the block
+     */
+    @Override
+    public <T extends BlockStateHolder<T>> boolean setBlock(int x, int y, int z, T block) throws WorldEditException {
+        if (loadedChunks.contains(ChunkKeys.of(x >> 4, z >> 4))) {
+            return super.setBlock(x, y, z, block);
+        }
+        deferred.defer(entry, x, y, z, block.toImmutableState());
+        deferredCount++;
+        return true;
+    }
+
+    /**
+     * Gets the number of restores deferred so far and resets the counter.
+     *
+     * @return The deferred restore count
+     */
+    public int takeDeferred() {
+        int count = deferredCount;
+        deferredCount = 0;
+        return count;
+    }
+}
@@ -0,0 +1,227 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.region;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.AbstractRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionOperationException;
+import com.sk89q.worldedit.util.formatting.text.TextComponent;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The part of a region that lies inside a single chunk column.
+ * Used to apply an edit chunk by chunk, so a large region can be edited piece by piece as its chunks are visited.
+ * Blocks of regions the chunk was already edited for can be excluded, so a chunk visited again for a shifted region
+ * only gets the part that wasn't covered before.
+ */
+public class ChunkClippedRegion extends AbstractRegion
+{
+    /** The region being clipped */
+    private final Region source;
+    /** Regions whose blocks are left out */
+    private final List<Region> excluded;
+    /** X coordinate of the chunk */
+    private final int chunkX;
+    /** Z coordinate of the chunk */
+    private final int chunkZ;
+    /** Minimum point of the clipped bounding box */
+    private final BlockVector3 minimumPoint;
+    /** Maximum point of the clipped bounding box */
+    private final BlockVector3 maximumPoint;
+    /** Exact block count of the clipped region, computed on first use */
+    private long volume = -1;
+
+    /**
+     * Clips a region to a chunk column.
+     *
+     * @param source The region to clip
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     */
+    public ChunkClippedRegion(Region source, int chunkX, int chunkZ) {
+        this(source, chunkX, chunkZ, List.of());
+    }
+
+    /**
+     * Clips a region to a chunk column, leaving out the blocks of other regions.
+     *
+     * @param source The region to clip
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @param excluded Regions whose blocks are left out, usually the ones the chunk was already edited for
+     */
+    public ChunkClippedRegion(Region source, int chunkX, int chunkZ, List<Region> excluded) {
+        super(source.getWorld());
+        this.source = source;
+        this.excluded = excluded;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        BlockVector3 min = source.getMinimumPoint();
+        BlockVector3 max = source.getMaximumPoint();
+        this.minimumPoint = BlockVector3.at(Math.max(min.x(), chunkX << 4), min.y(), Math.max(min.z(), chunkZ << 4));
+        this.maximumPoint = BlockVector3.at(Math.min(max.x(), (chunkX << 4) + 15), max.y(), Math.min(max.z(), (chunkZ << 4) + 15));
+    }
+
+    /**
+     * Gets the region being clipped.
+     *
+     * @return The source region
+     */
+    public Region getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the minimum point of the clipped bounding box.
+     *
+     * @return The minimum point
+     */
+    @Override
+    public BlockVector3 getMinimumPoint() {
+        return minimumPoint;
+    }
+
+    /**
+     * Gets the maximum point of the clipped bounding box.
+     *
+     * @return The maximum point
+     */
+    @Override
+    public BlockVector3 getMaximumPoint() {
+        return maximumPoint;
+    }
+
+    /**
+     * Checks whether the clipped region contains a position.
+     *
+     * @param position The position to check
+     * @return true if the position is in the chunk and in the source region, but in none of the excluded regions
+     */
+    @Override
+    public boolean contains(BlockVector3 position) {
+        return position.x() >> 4 == chunkX && position.z() >> 4 == chunkZ && source.contains(position) && !isExcluded(position);
+    }
+
+    /**
+     * Checks whether a position is in one of the excluded regions.
+     *
+     * @param position The position to check
+     * @return true if an excluded region contains the position
+     */
+    private boolean isExcluded(BlockVector3 position) {
+        for (Region region : excluded) {
+            if (region.contains(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the exact number of blocks in the clipped region.
+     *
+     * @return The block count
+     */
+    @Override
+    public long getVolume() {
+        if (volume < 0) {
+            long total = 0;
+            for (Iterator<BlockVector3> it = iterator(); it.hasNext(); it.next()) {
+                total++;
+            }
+            volume = total;
+        }
+        return volume;
+    }
+
+    /**
+     * Gets the chunk of the clipped region.
+     *
+     * @return A set containing only the clipping chunk
+     */
+    @Override
+    public Set<BlockVector2> getChunks() {
+        return Collections.singleton(BlockVector2.at(chunkX, chunkZ));
+    }
+
+    /**
+     * Iterates every block of the clipped region, column by column from the bottom up.
+     *
+     * @return The block iterator
+     */
+    @Override
+    public Iterator<BlockVector3> iterator() {
+        return new Iterator<>() {
+            /** Coordinates of the next candidate block */
+            private int x = minimumPoint.x(), y = minimumPoint.y(), z = minimumPoint.z();
+            /** The next block, or null if it hasn't been found yet */
+            private BlockVector3 next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && x <= maximumPoint.x()) {
+                    BlockVector3 candidate = BlockVector3.at(x, y, z);
+                    if (++y > maximumPoint.y()) {
+                        y = minimumPoint.y();
+                        if (++z > maximumPoint.z()) {
+                            z = minimumPoint.z();
+                            x++;
+                        }
+                    }
+                    if (source.contains(candidate) && !isExcluded(candidate)) {
+                        next = candidate;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public BlockVector3 next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                BlockVector3 result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Not supported, clipped regions are fixed to their chunk.
+     *
+     * @param changes Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void expand(BlockVector3... changes) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Chunk clipped regions can't be expanded"));
+    }
+
+    /**
+     * Not supported, clipped regions are fixed to their chunk.
+     *
+     * @param changes Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void contract(BlockVector3... changes) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Chunk clipped regions can't be contracted"));
+    }
+
+    /**
+     * Not supported, clipped regions are fixed to their chunk.
+     *
+     * @param change Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void shift(BlockVector3 change) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Chunk clipped regions can't be shifted"));
+    }
+}
@@ -23,6 +23,32 @@ public class GenericCuboidRegion extends GenericRegion
         super(radius, height, heightOffset);
     }
 
+    /**
+     * Creates a cuboid region with different dimensions.
+     *
+     * @param radius The radius of the new cuboid
+     * @param height The height of the new cuboid
+     * @param heightOffset The vertical offset of the new cuboid
+     * @return The resized cuboid region
+     */
+    @Override
+    public GenericRegion resize(int radius, int height, int heightOffset)
+    {
+        return new GenericCuboidRegion(radius, height, heightOffset);
+    }
+
+    /**
+     * Gets the block count of the cuboid.
+     *
+     * @return The block count
+     */
+    @Override
+    public long estimateVolume()
+    {
+        long width = 2L * radius + 1;
+        return width * width * height;
+    }
+
     /**
      * Creates a cuboid region around a center point.
      * The cuboid extends from (center - radius) to (center + radius) horizontally,
@@ -23,6 +23,31 @@ public class GenericCylindricalRegion extends GenericRegion
     {
         super(radius, height, heightOffset);
     }
+    /**
+     * Creates a cylindrical region with different dimensions.
+     *
+     * @param radius The radius of the new cylinder
+     * @param height The height of the new cylinder
+     * @param heightOffset The vertical offset of the new cylinder
+     * @return The resized cylindrical region
+     */
+    @Override
+    public GenericRegion resize(int radius, int height, int heightOffset)
+    {
+        return new GenericCylindricalRegion(radius, height, heightOffset);
+    }
+
+    /**
+     * Estimates the block count of the cylinder from its circular footprint.
+     *
+     * @return The estimated block count
+     */
+    @Override
+    public long estimateVolume()
+    {
+        return Math.round(Math.PI * radius * radius) * height;
+    }
+
     /**
      * Creates a cylindrical region around a center point.
      * The cylinder extends from (center.y - height + heightOffset) to (center.y - 1 + heightOffset).
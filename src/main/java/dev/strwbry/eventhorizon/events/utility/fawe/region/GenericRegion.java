@@ -5,6 +5,7 @@ import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.AbstractRegion;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.block.BlockType;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 
 import java.util.Collection;
@@ -39,6 +40,50 @@ public abstract class GenericRegion
         this.heightOffset = heightOffset;
     }
 
+    /**
+     * Gets the radius of the region.
+     *
+     * @return The radius in blocks
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Gets the height of the region.
+     *
+     * @return The height in blocks
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the vertical offset of the region.
+     *
+     * @return The vertical offset from the center point
+     */
+    public int getHeightOffset() {
+        return heightOffset;
+    }
+
+    /**
+     * Creates a region of the same kind with different dimensions.
+     *
+     * @param radius The radius of the new region
+     * @param height The height of the new region
+     * @param heightOffset The vertical offset of the new region
+     * @return The resized region
+     */
+    public abstract GenericRegion resize(int radius, int height, int heightOffset);
+
+    /**
+     * Estimates the number of blocks a single region created by this template covers.
+     *
+     * @return The estimated block count
+     */
+    public abstract long estimateVolume();
+
     /**
      * Creates a specific region implementation around a center point.
      *
@@ -55,10 +100,20 @@ public abstract class GenericRegion
      * @return An AbstractRegion centered on the player's location
      */
     public AbstractRegion getRegion(Player player) {
-        return createRegion(BukkitAdapter.adapt(player.getWorld()), BlockVector3.at(
-                player.getLocation().getBlockX(),
-                player.getLocation().getBlockY(),
-                player.getLocation().getBlockZ()
+        return getRegion(player.getLocation());
+    }
+
+    /**
+     * Creates a region centered on a location.
+     *
+     * @param location The location that will be used as the center of the region
+     * @return An AbstractRegion centered on the location
+     */
+    public AbstractRegion getRegion(Location location) {
+        return createRegion(BukkitAdapter.adapt(location.getWorld()), BlockVector3.at(
+                location.getBlockX(),
+                location.getBlockY(),
+                location.getBlockZ()
         ));
     }
 }
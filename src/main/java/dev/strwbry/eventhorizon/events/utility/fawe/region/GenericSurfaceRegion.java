@@ -0,0 +1,88 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.region;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.AbstractRegion;
+import com.sk89q.worldedit.world.World;
+
+/**
+ * A specific implementation of GenericRegion that creates surface shell regions.
+ * This class defines cylindrical regions that only cover a band around the terrain surface,
+ * found through the world's heightmaps, and optionally the floors and ceilings of caves.
+ */
+public class GenericSurfaceRegion extends GenericRegion
+{
+    /** Number of blocks below the surface that are covered */
+    private final int depth;
+    /** Number of blocks above the surface that are covered */
+    private final int above;
+    /** Whether floors and ceilings of caves below the surface band are covered as well */
+    private final boolean includeCaves;
+
+    /**
+     * Constructs a new surface region with specified dimensions.
+     *
+     * @param radius The radius of the cylinder
+     * @param height The height of the cylinder the surface band is clipped to
+     * @param heightOffset The vertical offset from the center point
+     * @param depth Number of blocks below the surface that are covered
+     * @param above Number of blocks above the surface that are covered
+     * @param includeCaves Whether floors and ceilings of caves below the surface band are covered as well
+     */
+    public GenericSurfaceRegion(int radius, int height, int heightOffset, int depth, int above, boolean includeCaves)
+    {
+        super(radius, height, heightOffset);
+        this.depth = depth;
+        this.above = above;
+        this.includeCaves = includeCaves;
+    }
+
+    /**
+     * Creates a surface region with different dimensions and the same surface band.
+     *
+     * @param radius The radius of the new cylinder
+     * @param height The height of the new cylinder
+     * @param heightOffset The vertical offset of the new cylinder
+     * @return The resized surface region
+     */
+    @Override
+    public GenericRegion resize(int radius, int height, int heightOffset)
+    {
+        return new GenericSurfaceRegion(radius, height, heightOffset, depth, above, includeCaves);
+    }
+
+    /**
+     * Estimates the block count of the surface band from the circular footprint.
+     * Cave floors and ceilings depend on the terrain and aren't counted.
+     *
+     * @return The estimated block count
+     */
+    @Override
+    public long estimateVolume()
+    {
+        return Math.round(Math.PI * radius * radius) * Math.min(height, depth + above + 1);
+    }
+
+    /**
+     * Creates a surface shell region around a center point.
+     * The shell is clipped to the same vertical range as a cylindrical region,
+     * from (center.y - height + heightOffset) to (center.y - 1 + heightOffset).
+     *
+     * @param world The world in which to create the region
+     * @param center The center point of the region
+     * @return A SurfaceShellRegion instance covering the surface around the center
+     */
+    @Override
+    protected AbstractRegion createRegion(World world, BlockVector3 center)
+    {
+        return new SurfaceShellRegion(
+                world,
+                center,
+                radius,
+                center.y() - height + heightOffset, //start height blocks below player's feet
+                center.y() - 1 + heightOffset, //end at player's feet
+                depth,
+                above,
+                includeCaves
+        );
+    }
+}
@@ -0,0 +1,363 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.region;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.AbstractRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionOperationException;
+import com.sk89q.worldedit.util.formatting.text.TextComponent;
+import com.sk89q.worldedit.world.World;
+import dev.strwbry.eventhorizon.events.utility.ChunkKeys;
+
+import java.util.*;
+
+/**
+ * The union of several overlapping vertical prism regions (cuboids and cylinders) in one world.
+ * The union is stored as a disjoint set of chunk columns, each holding the source regions that touch it.
+ * Iteration walks chunk by chunk and column by column, merging the vertical ranges of all regions covering
+ * a column first, so every block of the union is visited exactly once no matter how many regions overlap it.
+ */
+public class MergedRegion extends AbstractRegion
+{
+    /**
+     * A source region together with its bounding box.
+     * The region is treated as a vertical prism: its footprint is tested at its lowest layer
+     * and it covers its whole vertical range wherever the footprint contains a column.
+     *
+     * @param shape The source region
+     * @param minX  Minimum X coordinate of the bounding box
+     * @param minY  Minimum Y coordinate of the bounding box
+     * @param minZ  Minimum Z coordinate of the bounding box
+     * @param maxX  Maximum X coordinate of the bounding box
+     * @param maxY  Maximum Y coordinate of the bounding box
+     * @param maxZ  Maximum Z coordinate of the bounding box
+     */
+    private record Prism(Region shape, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        /**
+         * Creates a prism from a region.
+         *
+         * @param shape The source region
+         * @return The prism covering the region
+         */
+        static Prism of(Region shape) {
+            BlockVector3 min = shape.getMinimumPoint();
+            BlockVector3 max = shape.getMaximumPoint();
+            return new Prism(shape, min.x(), min.y(), min.z(), max.x(), max.y(), max.z());
+        }
+
+        /**
+         * Checks whether the footprint of the prism contains a column.
+         *
+         * @param x Column X coordinate
+         * @param z Column Z coordinate
+         * @return true if the column is covered by the prism
+         */
+        boolean coversColumn(int x, int z) {
+            return x >= minX && x <= maxX && z >= minZ && z <= maxZ && shape.contains(BlockVector3.at(x, minY, z));
+        }
+    }
+
+    /** Source regions touching each chunk, keyed by packed chunk coordinates */
+    private final Map<Long, List<Prism>> chunkParts = new HashMap<>();
+    /** Chunk keys in iteration order */
+    private final long[] chunkOrder;
+    /** Minimum point of the union */
+    private final BlockVector3 minimumPoint;
+    /** Maximum point of the union */
+    private final BlockVector3 maximumPoint;
+    /** The source regions */
+    private final List<Region> parts;
+    /** Number of source regions */
+    private final int partCount;
+    /** Exact block count of the union, computed on first use */
+    private long volume = -1;
+
+    /**
+     * Creates the union of the given regions.
+     *
+     * @param world The world all regions are in
+     * @param parts The regions to merge, must be vertical prisms such as cuboids or cylinders
+     */
+    public MergedRegion(World world, Collection<? extends Region> parts) {
+        super(world);
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        for (Region part : parts) {
+            Prism prism = Prism.of(part);
+            for (int chunkX = prism.minX() >> 4; chunkX <= prism.maxX() >> 4; chunkX++) {
+                for (int chunkZ = prism.minZ() >> 4; chunkZ <= prism.maxZ() >> 4; chunkZ++) {
+                    chunkParts.computeIfAbsent(ChunkKeys.of(chunkX, chunkZ), k -> new ArrayList<>(2)).add(prism);
+                }
+            }
+            minX = Math.min(minX, prism.minX());
+            minY = Math.min(minY, prism.minY());
+            minZ = Math.min(minZ, prism.minZ());
+            maxX = Math.max(maxX, prism.maxX());
+            maxY = Math.max(maxY, prism.maxY());
+            maxZ = Math.max(maxZ, prism.maxZ());
+        }
+
+        this.parts = List.copyOf(parts);
+        this.partCount = parts.size();
+        this.minimumPoint = BlockVector3.at(minX, minY, minZ);
+        this.maximumPoint = BlockVector3.at(maxX, maxY, maxZ);
+        this.chunkOrder = chunkParts.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    /**
+     * Merges the vertical ranges of all parts covering a column.
+     *
+     * @param x     Column X coordinate
+     * @param z     Column Z coordinate
+     * @param parts Parts touching the chunk of the column
+     * @param out   Receives the merged ranges as min/max pairs, sorted bottom to top; needs room for two entries per part
+     * @return The number of merged ranges
+     */
+    private static int columnRanges(int x, int z, List<Prism> parts, int[] out) {
+        int count = 0;
+        for (Prism prism : parts) {
+            if (!prism.coversColumn(x, z)) {
+                continue;
+            }
+            // Insertion sort by lower bound, there are only a handful of parts per chunk
+            int i = count++;
+            while (i > 0 && out[2 * (i - 1)] > prism.minY()) {
+                out[2 * i] = out[2 * (i - 1)];
+                out[2 * i + 1] = out[2 * (i - 1) + 1];
+                i--;
+            }
+            out[2 * i] = prism.minY();
+            out[2 * i + 1] = prism.maxY();
+        }
+
+        if (count < 2) {
+            return count;
+        }
+        int merged = 0;
+        for (int i = 1; i < count; i++) {
+            if (out[2 * i] <= out[2 * merged + 1] + 1) {
+                out[2 * merged + 1] = Math.max(out[2 * merged + 1], out[2 * i + 1]);
+            } else {
+                merged++;
+                out[2 * merged] = out[2 * i];
+                out[2 * merged + 1] = out[2 * i + 1];
+            }
+        }
+        return merged + 1;
+    }
+
+    /**
+     * Gets the regions merged into this one.
+     *
+     * @return The source regions
+     */
+    public List<Region> getParts() {
+        return parts;
+    }
+
+    /**
+     * Gets the number of regions merged into this one.
+     *
+     * @return The source region count
+     */
+    public int getPartCount() {
+        return partCount;
+    }
+
+    /**
+     * Gets the minimum point of the bounding box of all merged regions.
+     *
+     * @return The minimum point
+     */
+    @Override
+    public BlockVector3 getMinimumPoint() {
+        return minimumPoint;
+    }
+
+    /**
+     * Gets the maximum point of the bounding box of all merged regions.
+     *
+     * @return The maximum point
+     */
+    @Override
+    public BlockVector3 getMaximumPoint() {
+        return maximumPoint;
+    }
+
+    /**
+     * Checks whether the union contains a position.
+     *
+     * @param position The position to check
+     * @return true if any merged region contains the position
+     */
+    @Override
+    public boolean contains(BlockVector3 position) {
+        return contains(position.x(), position.y(), position.z());
+    }
+
+    /**
+     * Checks whether the union contains a position.
+     *
+     * @param x Block X coordinate
+     * @param y Block Y coordinate
+     * @param z Block Z coordinate
+     * @return true if any merged region contains the position
+     */
+    public boolean contains(int x, int y, int z) {
+        List<Prism> parts = chunkParts.get(ChunkKeys.of(x >> 4, z >> 4));
+        if (parts == null) {
+            return false;
+        }
+        for (Prism prism : parts) {
+            if (y >= prism.minY() && y <= prism.maxY() && prism.coversColumn(x, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the exact number of blocks in the union.
+     * Overlapping parts are only counted once.
+     *
+     * @return The block count
+     */
+    @Override
+    public long getVolume() {
+        if (volume < 0) {
+            long total = 0;
+            int[] ranges = new int[2 * partCount];
+            for (long key : chunkOrder) {
+                List<Prism> parts = chunkParts.get(key);
+                int baseX = ChunkKeys.x(key) << 4;
+                int baseZ = ChunkKeys.z(key) << 4;
+                for (int x = baseX; x < baseX + 16; x++) {
+                    for (int z = baseZ; z < baseZ + 16; z++) {
+                        int count = columnRanges(x, z, parts, ranges);
+                        for (int i = 0; i < count; i++) {
+                            total += ranges[2 * i + 1] - ranges[2 * i] + 1;
+                        }
+                    }
+                }
+            }
+            volume = total;
+        }
+        return volume;
+    }
+
+    /**
+     * Gets the chunks touched by the union.
+     *
+     * @return The chunk coordinates
+     */
+    @Override
+    public Set<BlockVector2> getChunks() {
+        Set<BlockVector2> chunks = new HashSet<>();
+        for (long key : chunkOrder) {
+            chunks.add(BlockVector2.at(ChunkKeys.x(key), ChunkKeys.z(key)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Iterates every block of the union exactly once, chunk by chunk and column by column from the bottom up.
+     *
+     * @return The block iterator
+     */
+    @Override
+    public Iterator<BlockVector3> iterator() {
+        return new Iterator<>() {
+            /** Merged ranges of the current column */
+            private final int[] ranges = new int[2 * partCount];
+            /** Index of the current chunk in the iteration order */
+            private int chunkIndex = -1;
+            /** Parts touching the current chunk */
+            private List<Prism> parts;
+            /** Block coordinates of the current chunk's corner */
+            private int baseX, baseZ;
+            /** Index of the current column in the chunk, 0-255 */
+            private int column = 256;
+            /** Number of ranges in the current column and index of the current range */
+            private int rangeCount = 0, rangeIndex = 0;
+            /** Next Y coordinate in the current range */
+            private int y;
+
+            /**
+             * Moves to the next column that contains at least one block.
+             *
+             * @return false once every chunk has been visited
+             */
+            private boolean nextColumn() {
+                do {
+                    if (++column >= 256) {
+                        if (++chunkIndex >= chunkOrder.length) {
+                            return false;
+                        }
+                        long key = chunkOrder[chunkIndex];
+                        parts = chunkParts.get(key);
+                        baseX = ChunkKeys.x(key) << 4;
+                        baseZ = ChunkKeys.z(key) << 4;
+                        column = 0;
+                    }
+                    rangeCount = columnRanges(baseX + (column >> 4), baseZ + (column & 15), parts, ranges);
+                } while (rangeCount == 0);
+                rangeIndex = 0;
+                y = ranges[0];
+                return true;
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (rangeIndex < rangeCount && y > ranges[2 * rangeIndex + 1]) {
+                    rangeIndex++;
+                    if (rangeIndex < rangeCount) {
+                        y = ranges[2 * rangeIndex];
+                    }
+                }
+                return rangeIndex < rangeCount || nextColumn();
+            }
+
+            @Override
+            public BlockVector3 next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return BlockVector3.at(baseX + (column >> 4), y++, baseZ + (column & 15));
+            }
+        };
+    }
+
+    /**
+     * Not supported, merged regions are fixed once planned.
+     *
+     * @param changes Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void expand(BlockVector3... changes) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Merged regions can't be expanded"));
+    }
+
+    /**
+     * Not supported, merged regions are fixed once planned.
+     *
+     * @param changes Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void contract(BlockVector3... changes) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Merged regions can't be contracted"));
+    }
+
+    /**
+     * Not supported, merged regions are fixed once planned.
+     *
+     * @param change Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void shift(BlockVector3 change) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Merged regions can't be shifted"));
+    }
+}
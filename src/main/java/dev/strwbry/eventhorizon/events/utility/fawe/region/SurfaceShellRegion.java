@@ -0,0 +1,481 @@
+package dev.strwbry.eventhorizon.events.utility.fawe.region;
+
+import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.AbstractRegion;
+import com.sk89q.worldedit.regions.RegionOperationException;
+import com.sk89q.worldedit.util.formatting.text.TextComponent;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.HeightMap;
+
+import java.util.*;
+
+/**
+ * A cylinder footprint that only covers a band of blocks around the terrain surface of every column,
+ * and optionally the floors and ceilings of caves below it.
+ * The surface of each column is read from the world's heightmaps when the region is created, so no block has to be
+ * scanned to find it. Columns in chunks that aren't loaded at that time keep the full vertical range of the cylinder,
+ * so the region never covers less than necessary.
+ * When FAWE filters the region chunk by chunk, only the sections and Y ranges inside each column's band are visited.
+ * Must be created on the main server thread; afterwards it can be iterated from FAWE's worker threads.
+ */
+public class SurfaceShellRegion extends AbstractRegion
+{
+    /** X coordinate of the cylinder axis */
+    private final int centerX;
+    /** Z coordinate of the cylinder axis */
+    private final int centerZ;
+    /** Radius of the cylinder */
+    private final int radius;
+    /** Lowest Y coordinate of the region */
+    private final int minY;
+    /** Highest Y coordinate of the region */
+    private final int maxY;
+    /** Thickness of the cave floors and ceilings covered below the surface band */
+    private final int caveDepth;
+    /** Number of blocks above the surface that are covered */
+    private final int above;
+    /** Lowest chunk X coordinate of the footprint */
+    private final int minChunkX;
+    /** Lowest chunk Z coordinate of the footprint */
+    private final int minChunkZ;
+    /** Number of chunks along the X axis of the footprint */
+    private final int chunksX;
+    /** Number of chunks along the Z axis of the footprint */
+    private final int chunksZ;
+    /** Lowest and highest Y of the surface band of every column, per chunk of the footprint, null if it wasn't loaded */
+    private final int[][] bands;
+    /** Snapshots of the loaded chunks used to find caves, per chunk of the footprint, null if caves aren't covered */
+    private final ChunkSnapshot[] caveSnapshots;
+    /** Exact block count of the region, computed on first use */
+    private long volume = -1;
+
+    /**
+     * Creates a surface shell and reads the surface of every loaded column.
+     *
+     * @param world The world in which to create the region
+     * @param center The center point of the cylinder
+     * @param radius The radius of the cylinder
+     * @param minY Lowest Y coordinate of the region
+     * @param maxY Highest Y coordinate of the region
+     * @param depth Number of blocks below the surface that are covered
+     * @param above Number of blocks above the surface that are covered
+     * @param includeCaves Whether floors and ceilings of caves below the surface band are covered as well
+     */
+    public SurfaceShellRegion(com.sk89q.worldedit.world.World world, BlockVector3 center, int radius, int minY, int maxY,
+                              int depth, int above, boolean includeCaves) {
+        super(world);
+        this.centerX = center.x();
+        this.centerZ = center.z();
+        this.radius = radius;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.caveDepth = depth;
+        this.above = above;
+        this.minChunkX = (centerX - radius) >> 4;
+        this.minChunkZ = (centerZ - radius) >> 4;
+        this.chunksX = ((centerX + radius) >> 4) - minChunkX + 1;
+        this.chunksZ = ((centerZ + radius) >> 4) - minChunkZ + 1;
+        this.bands = new int[chunksX * chunksZ][];
+        this.caveSnapshots = includeCaves ? new ChunkSnapshot[chunksX * chunksZ] : null;
+
+        org.bukkit.World bukkitWorld = BukkitAdapter.adapt(world);
+        for (int chunkX = minChunkX; chunkX < minChunkX + chunksX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ < minChunkZ + chunksZ; chunkZ++) {
+                // Reading the heightmap of an unloaded chunk would load it
+                if (!bukkitWorld.isChunkLoaded(chunkX, chunkZ)) {
+                    continue;
+                }
+                int[] band = new int[512];
+                for (int column = 0; column < 256; column++) {
+                    int x = (chunkX << 4) + (column >> 4);
+                    int z = (chunkZ << 4) + (column & 15);
+                    int top = bukkitWorld.getHighestBlockYAt(x, z, HeightMap.WORLD_SURFACE);
+                    int ground = bukkitWorld.getHighestBlockYAt(x, z, HeightMap.MOTION_BLOCKING_NO_LEAVES);
+                    band[2 * column] = Math.max(minY, Math.min(top, ground) - depth);
+                    band[2 * column + 1] = Math.min(maxY, top + above);
+                }
+                bands[chunkIndex(chunkX, chunkZ)] = band;
+                if (caveSnapshots != null) {
+                    caveSnapshots[chunkIndex(chunkX, chunkZ)] = bukkitWorld.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the index of a chunk in the per-chunk arrays.
+     *
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The index, or -1 if the chunk is outside the footprint's bounding box
+     */
+    private int chunkIndex(int chunkX, int chunkZ) {
+        int dx = chunkX - minChunkX;
+        int dz = chunkZ - minChunkZ;
+        if (dx < 0 || dz < 0 || dx >= chunksX || dz >= chunksZ) {
+            return -1;
+        }
+        return dx * chunksZ + dz;
+    }
+
+    /**
+     * Gets the cave snapshot of a chunk.
+     *
+     * @param chunkX The chunk X coordinate
+     * @param chunkZ The chunk Z coordinate
+     * @return The snapshot, or null if caves aren't covered or the chunk wasn't loaded
+     */
+    private ChunkSnapshot caveSnapshot(int chunkX, int chunkZ) {
+        int index = chunkIndex(chunkX, chunkZ);
+        return caveSnapshots == null || index < 0 ? null : caveSnapshots[index];
+    }
+
+    /**
+     * Checks whether a column is inside the cylinder footprint.
+     *
+     * @param x Column X coordinate
+     * @param z Column Z coordinate
+     * @return true if the column is covered by the footprint
+     */
+    private boolean inFootprint(int x, int z) {
+        long dx = x - centerX;
+        long dz = z - centerZ;
+        return dx * dx + dz * dz <= (radius + 0.5) * (radius + 0.5);
+    }
+
+    /**
+     * Gets the surface band of a column.
+     *
+     * @param x Column X coordinate
+     * @param z Column Z coordinate
+     * @param out Receives the lowest and highest Y of the band, the full range if the column's chunk wasn't loaded
+     */
+    private void band(int x, int z, int[] out) {
+        int index = chunkIndex(x >> 4, z >> 4);
+        int[] band = index < 0 ? null : bands[index];
+        if (band == null) {
+            out[0] = minY;
+            out[1] = maxY;
+            return;
+        }
+        int column = ((x & 15) << 4) | (z & 15);
+        out[0] = band[2 * column];
+        out[1] = band[2 * column + 1];
+    }
+
+    /**
+     * Collects the Y coordinates of every covered block of a column, bottom to top.
+     * Below the surface band these are the solid blocks with air within the cave depth above or below them.
+     *
+     * @param x Column X coordinate
+     * @param z Column Z coordinate
+     * @param out Receives the Y coordinates, needs room for the full height of the region
+     * @param range Scratch array for the surface band
+     * @param airPrefix Scratch array for air counts, needs room for the full height of the region plus one
+     * @return The number of collected Y coordinates
+     */
+    private int columnBlocks(int x, int z, int[] out, int[] range, int[] airPrefix) {
+        band(x, z, range);
+        int count = 0;
+        ChunkSnapshot snapshot = caveSnapshot(x >> 4, z >> 4);
+        if (snapshot != null && range[0] > minY) {
+            // airPrefix[i] is the number of air blocks in the first i blocks below the band
+            int height = Math.min(range[0], maxY + 1) - minY;
+            airPrefix[0] = 0;
+            for (int i = 0; i < height; i++) {
+                airPrefix[i + 1] = airPrefix[i] + (snapshot.getBlockType(x & 15, minY + i, z & 15).isAir() ? 1 : 0);
+            }
+            for (int i = 0; i < height; i++) {
+                boolean solid = airPrefix[i + 1] == airPrefix[i];
+                boolean airBelow = airPrefix[i] > airPrefix[Math.max(0, i - caveDepth)];
+                boolean airAbove = airPrefix[Math.min(height, i + caveDepth + 1)] > airPrefix[i + 1];
+                if (solid && (airBelow || airAbove)) {
+                    out[count++] = minY + i;
+                }
+            }
+        }
+        for (int y = range[0]; y <= range[1]; y++) {
+            out[count++] = y;
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether this shell covers every block another shell covers inside a rectangle of columns.
+     * Both shells are assumed to read the same surface, so only their footprints, vertical ranges and band settings
+     * are compared.
+     *
+     * @param other The other shell
+     * @param minX Lowest X coordinate of the rectangle
+     * @param minZ Lowest Z coordinate of the rectangle
+     * @param maxX Highest X coordinate of the rectangle, in the same chunk as the lowest
+     * @param maxZ Highest Z coordinate of the rectangle, in the same chunk as the lowest
+     * @return true if the other shell's blocks inside the rectangle are all in this shell
+     */
+    public boolean covers(SurfaceShellRegion other, int minX, int minZ, int maxX, int maxZ) {
+        if (minY > other.minY || maxY < other.maxY || caveDepth != other.caveDepth || above != other.above
+                || (caveSnapshots == null) != (other.caveSnapshots == null)) {
+            return false;
+        }
+        // A column without a band covers its full height, which a banded column doesn't cover
+        int index = chunkIndex(minX >> 4, minZ >> 4);
+        int otherIndex = other.chunkIndex(minX >> 4, minZ >> 4);
+        if (index < 0 || (bands[index] != null && (otherIndex < 0 || other.bands[otherIndex] == null))) {
+            return false;
+        }
+        return inFootprint(minX, minZ) && inFootprint(minX, maxZ) && inFootprint(maxX, minZ) && inFootprint(maxX, maxZ);
+    }
+
+    /**
+     * Gets the minimum point of the bounding box.
+     *
+     * @return The minimum point
+     */
+    @Override
+    public BlockVector3 getMinimumPoint() {
+        return BlockVector3.at(centerX - radius, minY, centerZ - radius);
+    }
+
+    /**
+     * Gets the maximum point of the bounding box.
+     *
+     * @return The maximum point
+     */
+    @Override
+    public BlockVector3 getMaximumPoint() {
+        return BlockVector3.at(centerX + radius, maxY, centerZ + radius);
+    }
+
+    /**
+     * Checks whether the region contains a position.
+     *
+     * @param position The position to check
+     * @return true if the position is in the surface band or the cave shell of its column
+     */
+    @Override
+    public boolean contains(BlockVector3 position) {
+        return contains(position.x(), position.y(), position.z());
+    }
+
+    /**
+     * Checks whether the region contains a position, without allocating.
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param z The Z coordinate
+     * @return true if the position is in the surface band or the cave shell of its column
+     */
+    @Override
+    public boolean contains(int x, int y, int z) {
+        if (y < minY || y > maxY || !inFootprint(x, z)) {
+            return false;
+        }
+        int index = chunkIndex(x >> 4, z >> 4);
+        int[] band = bands[index];
+        int column = ((x & 15) << 4) | (z & 15);
+        int low = band == null ? minY : band[2 * column];
+        int high = band == null ? maxY : band[2 * column + 1];
+        if (y >= low && y <= high) {
+            return true;
+        }
+        ChunkSnapshot snapshot = caveSnapshots == null ? null : caveSnapshots[index];
+        if (snapshot == null || y > low || snapshot.getBlockType(x & 15, y, z & 15).isAir()) {
+            return false;
+        }
+        for (int d = 1; d <= caveDepth; d++) {
+            if ((y - d >= minY && snapshot.getBlockType(x & 15, y - d, z & 15).isAir())
+                    || (y + d < low && y + d <= maxY && snapshot.getBlockType(x & 15, y + d, z & 15).isAir())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Filters the blocks of a chunk, visiting only the sections and Y ranges inside the band of each column.
+     * Chunks that weren't loaded when the region was created, or whose caves are covered, are filtered block by
+     * block through {@link #contains(int, int, int)} instead.
+     *
+     * @param chunk The chunk being filtered
+     * @param filter The filter applied to every block of the region
+     * @param block The filter block used to visit the chunk
+     * @param get The current blocks of the chunk
+     * @param set The blocks set in the chunk
+     * @param full Whether sections without set blocks are visited as well
+     */
+    @Override
+    public void filter(IChunk chunk, Filter filter, ChunkFilterBlock block, IChunkGet get, IChunkSet set, boolean full) {
+        int index = chunkIndex(chunk.getX(), chunk.getZ());
+        int[] band = index < 0 ? null : bands[index];
+        if (band == null || (caveSnapshots != null && caveSnapshots[index] != null)) {
+            super.filter(chunk, filter, block, get, set, full);
+            return;
+        }
+
+        // Every column of the footprint inside this chunk with a non-empty band, and the Y range they span together
+        int baseX = chunk.getX() << 4;
+        int baseZ = chunk.getZ() << 4;
+        int low = Integer.MAX_VALUE;
+        int high = Integer.MIN_VALUE;
+        boolean[] covered = new boolean[256];
+        for (int column = 0; column < 256; column++) {
+            if (band[2 * column] <= band[2 * column + 1] && inFootprint(baseX + (column >> 4), baseZ + (column & 15))) {
+                covered[column] = true;
+                low = Math.min(low, band[2 * column]);
+                high = Math.max(high, band[2 * column + 1]);
+            }
+        }
+        if (low > high) {
+            return;
+        }
+
+        int minSection = Math.max(get.getMinSectionPosition(), low >> 4);
+        int maxSection = Math.min(get.getMaxSectionPosition(), high >> 4);
+        block = block.initChunk(chunk.getX(), chunk.getZ());
+        for (int layer = minSection; layer <= maxSection; layer++) {
+            if ((!full && !set.hasSection(layer)) || !filter.appliesLayer(chunk, layer)) {
+                continue;
+            }
+            block = block.initLayer(get, set, layer);
+            int layerLow = layer << 4;
+            int layerHigh = layerLow + 15;
+            for (int column = 0; column < 256; column++) {
+                if (!covered[column] || band[2 * column] > layerHigh || band[2 * column + 1] < layerLow) {
+                    continue;
+                }
+                int localX = column >> 4;
+                int localZ = column & 15;
+                block.filter(filter, localX, Math.max(band[2 * column], layerLow) & 15, localZ,
+                        localX, Math.min(band[2 * column + 1], layerHigh) & 15, localZ);
+            }
+        }
+    }
+
+    /**
+     * Gets the exact number of blocks in the region.
+     *
+     * @return The block count
+     */
+    @Override
+    public long getVolume() {
+        if (volume < 0) {
+            long total = 0;
+            int[] ys = new int[maxY - minY + 1];
+            int[] range = new int[2];
+            int[] airPrefix = new int[maxY - minY + 2];
+            for (int x = centerX - radius; x <= centerX + radius; x++) {
+                for (int z = centerZ - radius; z <= centerZ + radius; z++) {
+                    if (inFootprint(x, z)) {
+                        total += columnBlocks(x, z, ys, range, airPrefix);
+                    }
+                }
+            }
+            volume = total;
+        }
+        return volume;
+    }
+
+    /**
+     * Gets the chunks touched by the footprint.
+     *
+     * @return The chunk coordinates
+     */
+    @Override
+    public Set<BlockVector2> getChunks() {
+        Set<BlockVector2> chunks = new HashSet<>();
+        for (int x = centerX - radius; x <= centerX + radius; x++) {
+            for (int z = centerZ - radius; z <= centerZ + radius; z++) {
+                if (inFootprint(x, z)) {
+                    chunks.add(BlockVector2.at(x >> 4, z >> 4));
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Iterates every block of the region, column by column from the bottom up.
+     *
+     * @return The block iterator
+     */
+    @Override
+    public Iterator<BlockVector3> iterator() {
+        return new Iterator<>() {
+            /** Covered Y coordinates of the current column */
+            private final int[] ys = new int[maxY - minY + 1];
+            /** Scratch array for the surface band */
+            private final int[] range = new int[2];
+            /** Scratch array for air counts of the cave scan */
+            private final int[] airPrefix = new int[maxY - minY + 2];
+            /** Coordinates of the current column */
+            private int x = centerX - radius, z = centerZ - radius - 1;
+            /** Number of covered blocks in the current column and index of the next one */
+            private int count = 0, index = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (index >= count) {
+                    if (++z > centerZ + radius) {
+                        z = centerZ - radius;
+                        if (++x > centerX + radius) {
+                            return false;
+                        }
+                    }
+                    if (inFootprint(x, z)) {
+                        count = columnBlocks(x, z, ys, range, airPrefix);
+                        index = 0;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public BlockVector3 next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return BlockVector3.at(x, ys[index++], z);
+            }
+        };
+    }
+
+    /**
+     * Not supported, the surface is only read once when the region is created.
+     *
+     * @param changes Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void expand(BlockVector3... changes) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Surface shell regions can't be expanded"));
+    }
+
+    /**
+     * Not supported, the surface is only read once when the region is created.
+     *
+     * @param changes Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void contract(BlockVector3... changes) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Surface shell regions can't be contracted"));
+    }
+
+    /**
+     * Not supported, the surface is only read once when the region is created.
+     *
+     * @param change Ignored
+     * @throws RegionOperationException always
+     */
+    @Override
+    public void shift(BlockVector3 change) throws RegionOperationException {
+        throw new RegionOperationException(TextComponent.of("Surface shell regions can't be shifted"));
+    }
+}
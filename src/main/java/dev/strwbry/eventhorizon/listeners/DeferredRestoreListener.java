@@ -0,0 +1,27 @@
+package dev.strwbry.eventhorizon.listeners;
+
+import dev.strwbry.eventhorizon.events.utility.fawe.history.DeferredRestores;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+/**
+ * Listener class responsible for undoing block modifications that were deferred while their chunk was unloaded.
+ *
+ * Implements Bukkit's Listener interface to handle chunk load events.
+ */
+public class DeferredRestoreListener implements Listener {
+
+    /**
+     * Restores the deferred blocks of a loaded chunk.
+     *
+     * @param event The ChunkLoadEvent containing the loaded chunk
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (DeferredRestores.hasPending()) {
+            DeferredRestores.handleChunkLoad(event.getChunk());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package dev.strwbry.eventhorizon.listeners;
+
+import com.destroystokyo.paper.event.entity.EntityAddToWorldEvent;
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import dev.strwbry.eventhorizon.events.utility.EntityBudget;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/**
+ * Listener class responsible for keeping the entity budget in sync with the world.
+ * Marked event entities are counted again when they are added back to the world (for example
+ * when their chunk loads) and stop counting once they are removed (death, despawn, chunk unload).
+ * Unlike the event listeners it stays registered while no tournament runs, so the counts never go stale.
+ *
+ * Implements Bukkit's Listener interface to handle entity world entry and exit events.
+ */
+public class EntityBudgetListener implements Listener {
+
+    /**
+     * Tracks marked event entities entering the world.
+     * Runs after the removal of entities marked for deletion.
+     *
+     * @param event The EntityAddToWorldEvent containing the added entity
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityAddedToWorld(EntityAddToWorldEvent event) {
+        Entity entity = event.getEntity();
+        if (entity.isValid() && EntityBudget.isEventEntity(entity)) {
+            EntityBudget.track(entity);
+        }
+    }
+
+    /**
+     * Untracks entities leaving the world.
+     *
+     * @param event The EntityRemoveFromWorldEvent containing the removed entity
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityRemovedFromWorld(EntityRemoveFromWorldEvent event) {
+        EntityBudget.untrack(event.getEntity());
+    }
+}
@@ -0,0 +1,68 @@
+package dev.strwbry.eventhorizon.listeners;
+
+import dev.strwbry.eventhorizon.events.utility.fawe.LazyBlockEditor;
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+/**
+ * Listener class responsible for feeding lazily applied block modifications.
+ * Loaded chunks and players moving into new chunks queue the chunks around them for editing.
+ *
+ * Implements Bukkit's Listener interface to handle chunk load and player movement events.
+ */
+public class LazyBlockEditListener implements Listener {
+
+    /**
+     * Queues a loaded chunk for the rules covering it.
+     *
+     * @param event The ChunkLoadEvent containing the loaded chunk
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (LazyBlockEditor.hasActiveRules()) {
+            LazyBlockEditor.handleChunkLoad(event.getChunk());
+        }
+    }
+
+    /**
+     * Queues the chunks around a player who walked into a new chunk.
+     *
+     * @param event The PlayerMoveEvent containing the movement
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        handleMove(event);
+    }
+
+    /**
+     * Queues the chunks around a player who teleported into a new chunk.
+     *
+     * @param event The PlayerTeleportEvent containing the teleport
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        handleMove(event);
+    }
+
+    /**
+     * Notifies the lazy block editor if a movement crossed a chunk border.
+     *
+     * @param event The movement event
+     */
+    private void handleMove(PlayerMoveEvent event) {
+        if (!LazyBlockEditor.hasActiveRules()) {
+            return;
+        }
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (from.getWorld() == to.getWorld() && from.getBlockX() >> 4 == to.getBlockX() >> 4 && from.getBlockZ() >> 4 == to.getBlockZ() >> 4) {
+            return;
+        }
+        LazyBlockEditor.handlePlayerChunkChange(event.getPlayer(), to);
+    }
+}
@@ -1,6 +1,9 @@
 package dev.strwbry.eventhorizon.listeners;
 
 import dev.strwbry.eventhorizon.EventHorizon;
+import dev.strwbry.eventhorizon.events.utility.EntityBudget;
+import dev.strwbry.eventhorizon.events.utility.SpawnSiteIndex;
+import dev.strwbry.eventhorizon.events.utility.fawe.LazyBlockEditor;
 import org.bukkit.Bukkit;
 import org.bukkit.event.HandlerList;
 
@@ -11,6 +14,10 @@ public class ListenerManager
     private static PlayerDropItemListener playerDropItemListener;
     private static PlayerGamemodeChangeListener playerGamemodeChangeListener;
     private static PlayerInventoryListener playerInventoryListener;
+    private static SpawnSiteIndexListener spawnSiteIndexListener;
+    private static EntityBudgetListener entityBudgetListener;
+    private static LazyBlockEditListener lazyBlockEditListener;
+    private static DeferredRestoreListener deferredRestoreListener;
 
     // methods for initializing listeners
     public static void initializeEffectListener(){
@@ -44,6 +51,33 @@ public class ListenerManager
         }
     }
 
+    public static void initializeSpawnSiteIndex(){
+        if (spawnSiteIndexListener == null) {
+            spawnSiteIndexListener = new SpawnSiteIndexListener();
+            Bukkit.getPluginManager().registerEvents(spawnSiteIndexListener, EventHorizon.getPlugin());
+        }
+    }
+
+    public static void initializeEntityBudget(){
+        if (entityBudgetListener == null) {
+            entityBudgetListener = new EntityBudgetListener();
+            Bukkit.getPluginManager().registerEvents(entityBudgetListener, EventHorizon.getPlugin());
+        }
+    }
+
+    public static void initializeLazyBlockEdit(){
+        if (lazyBlockEditListener == null) {
+            lazyBlockEditListener = new LazyBlockEditListener();
+            Bukkit.getPluginManager().registerEvents(lazyBlockEditListener, EventHorizon.getPlugin());
+        }
+    }
+    public static void initializeDeferredRestore(){
+        if (deferredRestoreListener == null) {
+            deferredRestoreListener = new DeferredRestoreListener();
+            Bukkit.getPluginManager().registerEvents(deferredRestoreListener, EventHorizon.getPlugin());
+        }
+    }
+
     // methods to unregister listeners
     public static void unregisterAllListeners(){
         unregisterEffectListener();
@@ -51,6 +85,9 @@ public class ListenerManager
         unregisterPlayerDropItem();
         unregisterPlayerGamemodeChange();
         unregisterPlayerInventory();
+        unregisterSpawnSiteIndex();
+        unregisterLazyBlockEdit();
+        unregisterDeferredRestore();
     }
     public static void unregisterEffectListener(){
         if (effectListener != null) {
@@ -82,6 +119,37 @@ public class ListenerManager
             playerInventoryListener = null;
         }
     }
+    public static void unregisterSpawnSiteIndex(){
+        if (spawnSiteIndexListener != null) {
+            HandlerList.unregisterAll(spawnSiteIndexListener);
+            spawnSiteIndexListener = null;
+        }
+        // Block changes are no longer tracked, so indexed sites can't be trusted anymore
+        SpawnSiteIndex.clear();
+    }
+    public static void unregisterEntityBudget(){
+        if (entityBudgetListener != null) {
+            HandlerList.unregisterAll(entityBudgetListener);
+            entityBudgetListener = null;
+        }
+        // Entity removals are no longer tracked, so the counts can't be trusted anymore
+        EntityBudget.clear();
+    }
+    public static void unregisterLazyBlockEdit(){
+        if (lazyBlockEditListener != null) {
+            HandlerList.unregisterAll(lazyBlockEditListener);
+            lazyBlockEditListener = null;
+        }
+        // Chunk loads and player movement are no longer tracked, so lazy edits can't continue
+        LazyBlockEditor.clear();
+    }
+    public static void unregisterDeferredRestore(){
+        if (deferredRestoreListener != null) {
+            HandlerList.unregisterAll(deferredRestoreListener);
+            deferredRestoreListener = null;
+        }
+        // Pending restores stay on disk and the listener is registered again by the next undo or startup
+    }
 
 
     // methods for getting listeners
@@ -100,4 +168,16 @@ public class ListenerManager
     public static PlayerInventoryListener getPlayerInventoryListener(){
         return playerInventoryListener;
     }
+    public static SpawnSiteIndexListener getSpawnSiteIndexListener(){
+        return spawnSiteIndexListener;
+    }
+    public static EntityBudgetListener getEntityBudgetListener(){
+        return entityBudgetListener;
+    }
+    public static LazyBlockEditListener getLazyBlockEditListener(){
+        return lazyBlockEditListener;
+    }
+    public static DeferredRestoreListener getDeferredRestoreListener(){
+        return deferredRestoreListener;
+    }
 }
@@ -0,0 +1,114 @@
+package dev.strwbry.eventhorizon.listeners;
+
+import dev.strwbry.eventhorizon.events.utility.SpawnSiteIndex;
+import org.bukkit.Chunk;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.List;
+
+/**
+ * Listener class responsible for keeping the spawn site index in sync with the world.
+ * Any block change drops the indexed sites of the affected chunk so they are rescanned
+ * on the next spawn query, and unloaded chunks are dropped from the index entirely.
+ *
+ * Implements Bukkit's Listener interface to handle block change events.
+ */
+public class SpawnSiteIndexListener implements Listener {
+
+    /**
+     * Invalidates the chunk of a broken block.
+     *
+     * @param event The BlockBreakEvent containing the broken block
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    /**
+     * Invalidates the chunk of a placed block.
+     *
+     * @param event The BlockPlaceEvent containing the placed block
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    /**
+     * Invalidates the chunks of a burnt block.
+     *
+     * @param event The BlockBurnEvent containing the burnt block
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        invalidate(event.getBlock());
+    }
+
+    /**
+     * Invalidates the chunk liquid is flowing into.
+     *
+     * @param event The BlockFromToEvent containing the destination block
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        invalidate(event.getToBlock());
+    }
+
+    /**
+     * Invalidates the chunks of blocks destroyed by a block explosion.
+     *
+     * @param event The BlockExplodeEvent containing the destroyed blocks
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        invalidate(event.blockList());
+    }
+
+    /**
+     * Invalidates the chunks of blocks destroyed by an entity explosion.
+     *
+     * @param event The EntityExplodeEvent containing the destroyed blocks
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        invalidate(event.blockList());
+    }
+
+    /**
+     * Drops an unloading chunk from the index.
+     *
+     * @param event The ChunkUnloadEvent containing the unloading chunk
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        SpawnSiteIndex.invalidate(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Invalidates the chunk containing a block.
+     *
+     * @param block The changed block
+     */
+    private void invalidate(Block block) {
+        SpawnSiteIndex.invalidate(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    /**
+     * Invalidates the chunks containing a list of blocks.
+     *
+     * @param blocks The changed blocks
+     */
+    private void invalidate(List<Block> blocks) {
+        for (Block block : blocks) {
+            invalidate(block);
+        }
+    }
+}
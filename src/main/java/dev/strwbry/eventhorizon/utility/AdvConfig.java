@@ -26,12 +26,63 @@ public class AdvConfig {
     private static int getI(String path, int def){
         return EventHorizon.getAdvConfig().getInt(path, def);
     }
+    /**
+     * @see #getD(String, double)
+     */
+    private static String getS(String path, String def){
+        return EventHorizon.getAdvConfig().getString(path, def);
+    }
 
     public static void reload() {
         EventHorizon.reloadAdvConfig();
     }
 
 
+    // Universal //
+
+    // Spawn Site Index
+    private static final String siteIndexPath = "universal.spawn-site-index.";
+    public static boolean getSpawnSiteIndexEnabled(){
+        return getB(siteIndexPath+"enabled", false);
+    }
+    public static int getSpawnSiteIndexMaxChunks(){
+        return getI(siteIndexPath+"max-chunks", 512);
+    }
+    public static int getSpawnSiteIndexMaxAge(){
+        return getI(siteIndexPath+"max-age", 300);
+    }
+
+    // Spawn Chunk Policy
+    private static final String chunkPolicyPath = "universal.spawn-chunk-policy.";
+    public static String getSpawnChunkPolicy(){
+        return getS(chunkPolicyPath+"policy", "load");
+    }
+    public static int getChunkPrefetchHoldSeconds(){
+        return getI(chunkPolicyPath+"prefetch-hold-seconds", 30);
+    }
+
+    // Spawn Queue
+    private static final String spawnQueuePath = "universal.spawn-queue.";
+    public static double getSpawnQueueMaxMillisPerTick(){
+        return getD(spawnQueuePath+"max-millis-per-tick", 5.0);
+    }
+    public static int getSpawnQueueMaxSpawnsPerTick(){
+        return getI(spawnQueuePath+"max-spawns-per-tick", 50);
+    }
+
+    // Entity Budget
+    private static final String entityBudgetPath = "universal.entity-budget.";
+    public static boolean getEntityBudgetEnabled(){
+        return getB(entityBudgetPath+"enabled", true);
+    }
+    public static int getEntityBudgetWorldLimit(){
+        return getI(entityBudgetPath+"world-limit", 2000);
+    }
+    public static int getEntityBudgetChunkLimit(){
+        return getI(entityBudgetPath+"chunk-limit", 100);
+    }
+
+
     // Attributes //
 
 
@@ -134,8 +185,109 @@ public class AdvConfig {
     // Block Modifications //
 
 
-    // Universal // Implementation not yet decided
-    
+    // Universal
+    private static final String blockModUniPath = "block-modification.universal.";
+    public static boolean getBlockModAsyncEdits(){
+        return getB(blockModUniPath+"async-edits", true);
+    }
+    public static boolean getBlockModMergeRegions(){
+        return getB(blockModUniPath+"merge-regions", true);
+    }
+    public static boolean getBlockModFuseSubEvents(){
+        return getB(blockModUniPath+"fuse-sub-events", true);
+    }
+    public static boolean getBlockModSectionPrefilter(){
+        return getB(blockModUniPath+"section-prefilter", true);
+    }
+    public static boolean getBlockModHistorySpillToDisk(){
+        return getB(blockModUniPath+"history.spill-to-disk", true);
+    }
+    public static int getBlockModHistoryHeapLimitMb(){
+        return getI(blockModUniPath+"history.heap-limit-mb", 256);
+    }
+    public static boolean getBlockModHistoryCompact(){
+        return getB(blockModUniPath+"history.compact", true);
+    }
+    public static int getBlockModUndoMaxChangesPerTick(){
+        return getI(blockModUniPath+"undo.max-changes-per-tick", 32768);
+    }
+    public static boolean getBlockModUndoWaitBeforeNextEdit(){
+        return getB(blockModUniPath+"undo.wait-before-next-edit", true);
+    }
+    public static boolean getBlockModUndoSkipChangedBlocks(){
+        return getB(blockModUniPath+"undo.skip-changed-blocks", true);
+    }
+    public static boolean getBlockModUndoDeferUnloadedChunks(){
+        return getB(blockModUniPath+"undo.defer-unloaded-chunks", false);
+    }
+    public static boolean getBlockModUndoRestoreOnShutdown(){
+        return getB(blockModUniPath+"undo.restore-on-shutdown", true);
+    }
+    public static int getBlockModUndoShutdownDeadlineSeconds(){
+        return getI(blockModUniPath+"undo.shutdown-deadline-seconds", 20);
+    }
+    public static boolean getBlockModJournalEnabled(){
+        return getB(blockModUniPath+"journal.enabled", true);
+    }
+    public static int getBlockModJournalSyncIntervalMs(){
+        return getI(blockModUniPath+"journal.sync-interval-ms", 250);
+    }
+    public static boolean getBlockModLazyEnabled(){
+        return getB(blockModUniPath+"lazy.enabled", false);
+    }
+    public static int getBlockModLazyChunksPerTick(){
+        return getI(blockModUniPath+"lazy.chunks-per-tick", 4);
+    }
+    public static boolean getBlockModProgressiveEnabled(){
+        return getB(blockModUniPath+"progressive.enabled", false);
+    }
+    public static int getBlockModProgressiveBlocksPerTick(){
+        return getI(blockModUniPath+"progressive.blocks-per-tick", 131072);
+    }
+    public static int getBlockModSurfaceDepth(){
+        return getI(blockModUniPath+"surface.depth", 4);
+    }
+    public static int getBlockModSurfaceAbove(){
+        return getI(blockModUniPath+"surface.above", 1);
+    }
+    public static boolean getBlockModSurfaceIncludeCaves(){
+        return getB(blockModUniPath+"surface.include-caves", false);
+    }
+    public static int getBlockModMetricsHistorySize(){
+        return getI(blockModUniPath+"metrics.history-size", 256);
+    }
+    public static boolean getBlockModBudgetEnabled(){
+        return getB(blockModUniPath+"budget.enabled", false);
+    }
+    public static int getBlockModBudgetTotalBlocks(){
+        return getI(blockModUniPath+"budget.total-blocks", 80000000);
+    }
+    public static int getBlockModBudgetMinRadius(){
+        return getI(blockModUniPath+"budget.min-radius", 8);
+    }
+    public static int getBlockModBudgetMinHeight(){
+        return getI(blockModUniPath+"budget.min-height", 16);
+    }
+    public static boolean getBlockModBudgetAllowSurfaceShell(){
+        return getB(blockModUniPath+"budget.allow-surface-shell", true);
+    }
+    private static final String profilePath = blockModUniPath+"profiles.";
+    public static String getBlockModProfileRelight(String eventKey){
+        return getS(profilePath+"events."+eventKey+".relight", getS(profilePath+"default.relight", "full"));
+    }
+    public static boolean getBlockModProfileNeighborUpdates(String eventKey){
+        return getB(profilePath+"events."+eventKey+".neighbor-updates", getB(profilePath+"default.neighbor-updates", true));
+    }
+    public static boolean getBlockModProfilePhysics(String eventKey){
+        return getB(profilePath+"events."+eventKey+".physics", getB(profilePath+"default.physics", true));
+    }
+    public static boolean getBlockModProfileHistory(String eventKey){
+        return getB(profilePath+"events."+eventKey+".history", getB(profilePath+"default.history", true));
+    }
+    public static int getBlockModProfileDeferredRelightDelayTicks(){
+        return getI(profilePath+"deferred-relight-delay-ticks", 40);
+    }
+
     // Deep Dark Invasion Event // Pattern not yet implemented
     private static final String deepDarkPath = "block-modification.events.deep-dark-invasion.";
     public static int getDeepDarkRadius(){
@@ -147,6 +299,9 @@ public class AdvConfig {
     public static int getDeepDarkOffset(){
         return getI(deepDarkPath+"height-offset", 200);
     }
+    public static boolean getDeepDarkSurfaceOnly(){
+        return getB(deepDarkPath+"surface-only", false);
+    }
     
     // Gold Rush Event
     private static final String goldRushPath = "block-modification.events.gold-rush.";
@@ -171,6 +326,9 @@ public class AdvConfig {
     public static int getIceHeightOffset(){
         return getI(icePath+"height-offset", 0);
     }
+    public static boolean getIceSurfaceOnly(){
+        return getB(icePath+"surface-only", false);
+    }
     
     // Nether Invasion Event
     private static final String netherPath = "block-modification.events.nether-invasion.";
@@ -183,6 +341,9 @@ public class AdvConfig {
     public static int getNetherOffset(){
         return getI(netherPath+"height-offset", 200);
     }
+    public static boolean getNetherSurfaceOnly(){
+        return getB(netherPath+"surface-only", false);
+    }
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
@@ -357,8 +518,15 @@ public class AdvConfig {
     // Item Spawn //
 
 
-    // Universal // Implementation not yet decided
-    
+    // Universal
+    private static final String itemUniPath = "item-spawn.universal.";
+    public static boolean getItemSpawnAsyncLocationSearch(){
+        return getB(itemUniPath+"async-location-search", false);
+    }
+    public static boolean getItemSpawnUseSpawnQueue(){
+        return getB(itemUniPath+"use-spawn-queue", false);
+    }
+
     // Drop Party Event
     private static final String dropPath = "item-spawn.events.drop-party.";
     public static int getDropPartyItemCt(){
@@ -526,8 +694,15 @@ public class AdvConfig {
     // Mob Spawn //
 
     
-    // Universal // Implementation not yet decided
-    
+    // Universal
+    private static final String mobUniPath = "mob-spawn.universal.";
+    public static boolean getMobSpawnAsyncLocationSearch(){
+        return getB(mobUniPath+"async-location-search", false);
+    }
+    public static boolean getMobSpawnUseSpawnQueue(){
+        return getB(mobUniPath+"use-spawn-queue", false);
+    }
+
     // Chicken Flock Event
     private static final String chickPath = "mob-spawn.events.chicken-flock.";
     public static int getChickenFMobCt(){